@@ -23,7 +23,8 @@ dependencies {
     
     // ONNX Runtime Engine for DJL
     implementation("ai.djl.onnxruntime:onnxruntime-engine:0.28.0")
-    runtimeOnly("com.microsoft.onnxruntime:onnxruntime:1.17.1")
+    // ONNX Runtime Java API, for session options passed through DJL
+    implementation("com.microsoft.onnxruntime:onnxruntime:1.17.1")
     
     // HuggingFace Tokenizers
     implementation("ai.djl.huggingface:tokenizers:0.28.0")
@@ -61,3 +62,12 @@ tasks.jar {
         )
     }
 }
+
+// Class-data-sharing archive for the shadow jar, as 'jinfer warmup' creates for an installed jar
+tasks.register<Exec>("cdsArchive") {
+    group = "distribution"
+    description = "Creates a class-data-sharing archive next to the shadow jar for faster CLI startup"
+    dependsOn(tasks.shadowJar)
+    val jar = tasks.shadowJar.get().archiveFile.get().asFile
+    commandLine("java", "-jar", jar.absolutePath, "warmup")
+}
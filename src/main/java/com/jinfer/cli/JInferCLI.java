@@ -2,15 +2,30 @@ package com.jinfer.cli;
 
 import com.jinfer.config.GenerationConfig;
 import com.jinfer.config.ModelConfig;
+import com.jinfer.config.SessionTuning;
+import com.jinfer.config.TruncationStrategy;
+import com.jinfer.config.WeightQuantization;
 import com.jinfer.engine.JInferEngine;
 import com.jinfer.engine.LLMEngine;
+import com.jinfer.engine.LoadStats;
+import com.jinfer.engine.PerformanceTuner;
+import com.jinfer.engine.WeightQuantizer;
+import com.jinfer.hub.CachedModel;
+import com.jinfer.hub.DownloadOptions;
+import com.jinfer.hub.DownloadPlan;
+import com.jinfer.hub.DownloadStats;
 import com.jinfer.hub.HuggingFaceHub;
 import com.jinfer.hub.ModelResolver;
+import com.jinfer.tokenization.ChatMessage;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -22,27 +37,66 @@ import java.util.concurrent.Callable;
     name = "jinfer",
     mixinStandardHelpOptions = true,
     version = "JInfer 1.0.0",
-    description = "Java LLM Inference Engine",
-    subcommands = {
-        JInferCLI.RunCommand.class,
-        JInferCLI.DownloadCommand.class,
-        JInferCLI.ListCommand.class,
-        JInferCLI.DeleteCommand.class
-    }
+    description = "Java LLM Inference Engine"
 )
 public class JInferCLI implements Callable<Integer> {
 
+    /** Subcommand names, in the order of the usage help. */
+    static final List<String> COMMANDS = List.of(
+            "run", "tune", "quantize", "download", "list", "delete", "verify", "pin", "warmup");
+
     @Override
     public Integer call() {
-        CommandLine.usage(this, System.out);
+        CommandLine.usage(commandLine(null), System.out);
         return 0;
     }
 
     public static void main(String[] args) {
-        int exitCode = new CommandLine(new JInferCLI()).execute(args);
+        int exitCode = commandLine(args.length > 0 ? args[0] : null).execute(args);
         System.exit(exitCode);
     }
 
+    /**
+     * The command line for a subcommand. Only that subcommand is registered,
+     * so the classes of the others and the engine and hub classes they use
+     * are not loaded or introspected on startup; help and unknown names get
+     * all of them.
+     */
+    static CommandLine commandLine(String name) {
+        CommandLine commandLine = new CommandLine(new JInferCLI());
+        for (String command : COMMANDS) {
+            if (name == null || !COMMANDS.contains(name) || command.equals(name)) {
+                commandLine.addSubcommand(command, newCommand(command));
+            }
+        }
+        return commandLine;
+    }
+
+    private static Object newCommand(String name) {
+        switch (name) {
+            case "run":
+                return new RunCommand();
+            case "tune":
+                return new TuneCommand();
+            case "quantize":
+                return new QuantizeCommand();
+            case "download":
+                return new DownloadCommand();
+            case "list":
+                return new ListCommand();
+            case "delete":
+                return new DeleteCommand();
+            case "verify":
+                return new VerifyCommand();
+            case "pin":
+                return new PinCommand();
+            case "warmup":
+                return new WarmupCommand();
+            default:
+                throw new IllegalArgumentException("Unknown command: " + name);
+        }
+    }
+
     /**
      * Run inference with a model.
      */
@@ -70,6 +124,15 @@ public class JInferCLI implements Callable<Integer> {
         @Option(names = {"--seed"}, description = "Random seed for reproducibility", defaultValue = "-1")
         private long seed;
 
+        @Option(names = {"--truncation"}, description = "Prompt truncation when it exceeds the context: ${COMPLETION-CANDIDATES}", defaultValue = "NONE")
+        private TruncationStrategy truncation;
+
+        @Option(names = {"--chat"}, description = "Format the prompt as a user message with the model's chat template")
+        private boolean chat;
+
+        @Option(names = {"--system"}, description = "System prompt for chat mode (implies --chat)")
+        private String systemPrompt;
+
         @Option(names = {"--stream"}, description = "Enable streaming output")
         private boolean stream;
 
@@ -79,6 +142,67 @@ public class JInferCLI implements Callable<Integer> {
         @Option(names = {"--force-download"}, description = "Force re-download even if cached")
         private boolean forceDownload;
 
+        @Option(names = {"--variant"}, description = "Weight variant to download and load, e.g. quantized or fp16")
+        private String variant;
+
+        @Option(names = {"--format"}, description = "Weight format to download and load: auto, onnx, safetensors or gguf (run GPT-2 models in Java)", defaultValue = DownloadOptions.FORMAT_AUTO)
+        private String format;
+
+        @Option(names = {"--quantize"}, description = "Quantize float weights of the Java backend at load time: ${COMPLETION-CANDIDATES}", defaultValue = "NONE")
+        private WeightQuantization quantize;
+
+        @Option(names = {"--endpoint"}, description = "HuggingFace endpoint or mirror URL (default: $HF_ENDPOINT or huggingface.co)")
+        private String endpoint;
+
+        @Option(names = {"--warmup"}, description = "Warmup forward passes per sequence length before generating (0 = off)", defaultValue = "0")
+        private int warmup;
+
+        @Option(names = {"--warmup-lengths"}, split = ",", description = "Sequence lengths of the warmup passes (default: 1,16,128)")
+        private List<Integer> warmupLengths;
+
+        @Option(names = {"--graph-opt-level"}, description = "ONNX Runtime graph optimization: NO_OPT, BASIC_OPT, EXTENDED_OPT, ALL_OPT", defaultValue = "ALL_OPT")
+        private String graphOptLevel;
+
+        @Option(names = {"--cache-optimized-graph"}, description = "Save the optimized ONNX graph next to the model and reuse it on later runs")
+        private boolean cacheOptimizedGraph;
+
+        @Option(names = {"--intra-op-threads"}, description = "ONNX Runtime threads per operator (default: one per core, or per --cpu-cores)", defaultValue = "0")
+        private int intraOpThreads;
+
+        @Option(names = {"--inter-op-threads"}, description = "ONNX Runtime threads across operators in PARALLEL mode (default: runtime default)", defaultValue = "0")
+        private int interOpThreads;
+
+        @Option(names = {"--execution-mode"}, description = "ONNX Runtime execution mode: SEQUENTIAL or PARALLEL", defaultValue = "SEQUENTIAL")
+        private String executionMode;
+
+        @Option(names = {"--cpu-cores"}, description = "Pin intra-op threads to these logical CPUs, e.g. 0-3 or 4,5,6,7")
+        private String cpuCores;
+
+        @Option(names = {"--no-cpu-arena"}, description = "Disable ONNX Runtime's CPU memory arena")
+        private boolean noCpuArena;
+
+        @Option(names = {"--no-memory-pattern"}, description = "Disable ONNX Runtime's memory pattern optimization")
+        private boolean noMemoryPattern;
+
+        @Option(names = {"--no-spinning"}, description = "Let idle ONNX Runtime threads sleep instead of spinning")
+        private boolean noSpinning;
+
+        @Option(names = {"--tuning-profile"}, description = "Apply the session tuning saved by 'jinfer tune' (overrides the tuning options)")
+        private Path tuningProfile;
+
+        private SessionTuning sessionTuning() {
+            return SessionTuning.builder()
+                    .graphOptimizationLevel(graphOptLevel)
+                    .intraOpThreads(intraOpThreads)
+                    .interOpThreads(interOpThreads)
+                    .executionMode(executionMode)
+                    .cpuCores(cpuCores != null ? SessionTuning.parseCores(cpuCores) : List.of())
+                    .cpuArena(!noCpuArena)
+                    .memoryPattern(!noMemoryPattern)
+                    .allowSpinning(!noSpinning)
+                    .build();
+        }
+
         @Override
         public Integer call() throws Exception {
             System.out.println("JInfer - Java LLM Inference Engine");
@@ -89,6 +213,12 @@ public class JInferCLI implements Callable<Integer> {
             if (hfToken != null) {
                 resolver.setAuthToken(hfToken);
             }
+            if (endpoint != null) {
+                resolver.setEndpoint(endpoint);
+            }
+            if (variant != null || !DownloadOptions.FORMAT_AUTO.equals(format)) {
+                resolver.setDownloadOptions(DownloadOptions.builder().format(format).variant(variant).build());
+            }
 
             System.out.println("Resolving model: " + model);
             
@@ -102,10 +232,37 @@ public class JInferCLI implements Callable<Integer> {
                 return 1;
             }
 
+            modelConfig.setWarmupRuns(warmup);
+            try {
+                modelConfig.setSessionTuning(sessionTuning());
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return 1;
+            }
+            if (tuningProfile != null) {
+                try {
+                    modelConfig.loadTuningProfile(tuningProfile);
+                } catch (Exception e) {
+                    System.err.println("Failed to load tuning profile: " + e.getMessage());
+                    return 1;
+                }
+            }
+            modelConfig.setCacheOptimizedModel(cacheOptimizedGraph);
+            modelConfig.setWeightQuantization(quantize);
+            if (warmupLengths != null) {
+                modelConfig.setWarmupSequenceLengths(warmupLengths);
+            }
+
             // Load engine
             LLMEngine engine = new JInferEngine();
             try {
                 ((JInferEngine) engine).loadModel(modelConfig);
+                LoadStats stats = ((JInferEngine) engine).getLoadStats();
+                System.out.printf("Loaded in %d ms", stats.getLoadMillis());
+                if (stats.getWarmupMillis() > 0) {
+                    System.out.printf(", warmed up in %d ms", stats.getWarmupMillis());
+                }
+                System.out.println();
             } catch (Exception e) {
                 System.err.println("Failed to load model: " + e.getMessage());
                 return 1;
@@ -119,6 +276,7 @@ public class JInferCLI implements Callable<Integer> {
                     .topK(topK)
                     .seed(seed)
                     .doSample(temperature > 0.01f)
+                    .truncation(truncation)
                     .build();
 
             System.out.println("\nPrompt: " + prompt);
@@ -126,16 +284,29 @@ public class JInferCLI implements Callable<Integer> {
             System.out.println("\nGenerated Output:");
             System.out.println("-----------------");
 
+            List<ChatMessage> messages = null;
+            if (chat || systemPrompt != null) {
+                messages = new ArrayList<>();
+                if (systemPrompt != null) {
+                    messages.add(ChatMessage.system(systemPrompt));
+                }
+                messages.add(ChatMessage.user(prompt));
+            }
+
             try {
                 if (stream) {
-                    Iterator<String> tokens = engine.generateStream(prompt, genConfig);
+                    Iterator<String> tokens = messages != null
+                            ? engine.chatStream(messages, genConfig)
+                            : engine.generateStream(prompt, genConfig);
                     while (tokens.hasNext()) {
                         System.out.print(tokens.next());
                         System.out.flush();
                     }
                     System.out.println();
                 } else {
-                    String output = engine.generate(prompt, genConfig);
+                    String output = messages != null
+                            ? engine.chat(messages, genConfig)
+                            : engine.generate(prompt, genConfig);
                     System.out.println(output);
                 }
             } finally {
@@ -149,6 +320,187 @@ public class JInferCLI implements Callable<Integer> {
         }
     }
 
+    /**
+     * Benchmark session tunings for a model and save the best one.
+     */
+    @Command(name = "tune", description = {"Find the fastest session tuning for a model on this host",
+            "Only session settings are searched; decoding is greedy and sampler settings are not tuned"})
+    static class TuneCommand implements Callable<Integer> {
+
+        @Option(names = {"-m", "--model"}, description = "Model path or HuggingFace repo (user/repo)", required = true)
+        private String model;
+
+        @Option(names = {"-o", "--output"}, description = "Profile file to write, loaded with 'run --tuning-profile'", defaultValue = "tuning-profile.json")
+        private Path output;
+
+        @Option(names = {"--prompt-tokens"}, description = "Length of the synthetic prompt in tokens", defaultValue = "128")
+        private int promptTokens;
+
+        @Option(names = {"--new-tokens"}, description = "Tokens generated per measurement", defaultValue = "32")
+        private int newTokens;
+
+        @Option(names = {"--repetitions"}, description = "Measured generations per candidate", defaultValue = "2")
+        private int repetitions;
+
+        @Option(names = {"--budget"}, description = "Time budget of the search in seconds", defaultValue = "60")
+        private long budgetSeconds;
+
+        @Option(names = {"--cpu-cores"}, description = "Only use these logical CPUs, e.g. 0-3 or 4,5,6,7")
+        private String cpuCores;
+
+        @Option(names = {"--token"}, description = "HuggingFace auth token for private models")
+        private String hfToken;
+
+        @Option(names = {"--endpoint"}, description = "HuggingFace endpoint or mirror URL (default: $HF_ENDPOINT or huggingface.co)")
+        private String endpoint;
+
+        @Override
+        public Integer call() throws Exception {
+            ModelResolver resolver = new ModelResolver();
+            if (hfToken != null) {
+                resolver.setAuthToken(hfToken);
+            }
+            if (endpoint != null) {
+                resolver.setEndpoint(endpoint);
+            }
+
+            ModelConfig modelConfig;
+            try {
+                modelConfig = resolver.resolve(model, false);
+            } catch (Exception e) {
+                System.err.println("Failed to resolve model: " + e.getMessage());
+                return 1;
+            }
+
+            PerformanceTuner tuner = new PerformanceTuner(modelConfig);
+            tuner.setPromptTokens(promptTokens);
+            tuner.setNewTokens(newTokens);
+            tuner.setRepetitions(repetitions);
+            tuner.setBudgetMillis(budgetSeconds * 1000);
+            if (cpuCores != null) {
+                try {
+                    tuner.setCpuCores(SessionTuning.parseCores(cpuCores));
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    return 1;
+                }
+            }
+
+            System.out.printf("Tuning %s: %d candidates, %d s budget, %d prompt tokens, %d new tokens%n",
+                    model, tuner.candidates().size(), budgetSeconds, promptTokens, newTokens);
+            List<PerformanceTuner.Result> results;
+            try {
+                results = tuner.run();
+            } catch (Exception e) {
+                System.err.println("Tuning failed: " + e.getMessage());
+                return 1;
+            }
+
+            System.out.printf("%n%-8s %-9s %10s %10s %8s%n", "THREADS", "SPINNING", "TOKENS/S", "TTFT MS", "+RSS MB");
+            for (PerformanceTuner.Result result : results) {
+                System.out.printf("%-8d %-9s %10.1f %10.1f %8d%n",
+                        result.getTuning().effectiveIntraOpThreads(), result.getTuning().isAllowSpinning(),
+                        result.getTokensPerSecond(), result.getTtftMillis(), result.getRssBytes() / (1024 * 1024));
+            }
+
+            PerformanceTuner.Result best = PerformanceTuner.best(results);
+            tuner.toProfile(model, best).save(output);
+            System.out.println("\nBest: " + best);
+            System.out.println("Saved profile to " + output);
+            return 0;
+        }
+    }
+
+    /**
+     * Quantize a SafeTensors checkpoint for the Java backend.
+     */
+    @Command(name = "quantize", description = "Quantize a GPT-2 SafeTensors checkpoint to 8 or 4 bits for the Java backend")
+    static class QuantizeCommand implements Callable<Integer> {
+
+        @Option(names = {"-m", "--model"}, description = "Model path or HuggingFace repo (user/repo)", required = true)
+        private String model;
+
+        @Option(names = {"-t", "--type"}, description = "Quantization: Q8 or Q4", defaultValue = "Q8")
+        private WeightQuantization type;
+
+        @Option(names = {"-o", "--output"}, description = "Output directory (default: next to the model, suffixed with the type)")
+        private Path output;
+
+        @Option(names = {"--benchmark"}, description = "Compare weight memory and tokens/s of the float and quantized weights")
+        private boolean benchmark;
+
+        @Option(names = {"--prompt-tokens"}, description = "Prompt length of the benchmark", defaultValue = "32")
+        private int promptTokens;
+
+        @Option(names = {"--new-tokens"}, description = "Tokens decoded by the benchmark", defaultValue = "32")
+        private int newTokens;
+
+        @Option(names = {"--token"}, description = "HuggingFace auth token for private models")
+        private String hfToken;
+
+        @Option(names = {"--endpoint"}, description = "HuggingFace endpoint or mirror URL (default: $HF_ENDPOINT or huggingface.co)")
+        private String endpoint;
+
+        @Override
+        public Integer call() throws Exception {
+            if (type == WeightQuantization.NONE) {
+                System.err.println("Choose Q8 or Q4");
+                return 1;
+            }
+            ModelResolver resolver = new ModelResolver();
+            if (hfToken != null) {
+                resolver.setAuthToken(hfToken);
+            }
+            if (endpoint != null) {
+                resolver.setEndpoint(endpoint);
+            }
+            resolver.setDownloadOptions(DownloadOptions.builder().format("safetensors").build());
+
+            ModelConfig modelConfig;
+            try {
+                modelConfig = resolver.resolve(model, false);
+            } catch (Exception e) {
+                System.err.println("Failed to resolve model: " + e.getMessage());
+                return 1;
+            }
+            if (!"safetensors".equals(modelConfig.getModelFormat())) {
+                System.err.println("No SafeTensors weights found for " + model);
+                return 1;
+            }
+
+            Path modelDir = modelConfig.getModelPath().toAbsolutePath().getParent();
+            Path outputDir = output != null ? output
+                    : modelDir.resolveSibling(modelDir.getFileName() + "-" + type.name().toLowerCase());
+            Path written;
+            try {
+                written = WeightQuantizer.quantize(modelConfig, type, outputDir);
+            } catch (Exception e) {
+                System.err.println("Quantization failed: " + e.getMessage());
+                return 1;
+            }
+            System.out.printf("Wrote %s (%.1f MB)%n", written, Files.size(written) / (1024.0 * 1024));
+
+            if (benchmark) {
+                ModelConfig quantized = ModelConfig.builder()
+                        .modelPath(written)
+                        .modelFormat("safetensors")
+                        .contextLength(modelConfig.getContextLength())
+                        .build();
+                List<WeightQuantizer.Benchmark> results = List.of(
+                        WeightQuantizer.benchmark(modelConfig, promptTokens, newTokens),
+                        WeightQuantizer.benchmark(quantized, promptTokens, newTokens));
+                System.out.printf("%n%-6s %12s %10s %12s %10s%n", "TYPE", "WEIGHTS MB", "LOAD MS", "PREFILL MS",
+                        "TOKENS/S");
+                for (WeightQuantizer.Benchmark result : results) {
+                    System.out.printf("%-6s %12.1f %10d %12.1f %10.1f%n", result.getQuantization(),
+                            result.getWeightBytes() / (1024.0 * 1024), result.getLoadMillis(),
+                            result.getPrefillMillis(), result.getTokensPerSecond());
+                }
+            }
+            return 0;
+        }
+    }
+
     /**
      * Download a model from HuggingFace.
      */
@@ -164,6 +516,42 @@ public class JInferCLI implements Callable<Integer> {
         @Option(names = {"--force"}, description = "Force re-download even if cached")
         private boolean force;
 
+        @Option(names = {"--concurrency"}, description = "Number of files downloaded in parallel", defaultValue = "4")
+        private int concurrency;
+
+        @Option(names = {"--retries"}, description = "Retries per file on transient failures", defaultValue = "3")
+        private int retries;
+
+        @Option(names = {"--range-connections"}, description = "Parallel range requests per large file (1 disables)", defaultValue = "4")
+        private int rangeConnections;
+
+        @Option(names = {"--chunk-size-mb"}, description = "Byte range size in MB for large files", defaultValue = "16")
+        private int chunkSizeMb;
+
+        @Option(names = {"--cache-quota"}, description = "Evict least recently used models beyond this cache size (e.g. 50G)")
+        private String cacheQuota;
+
+        @Option(names = {"--format"}, description = "Weight format: auto, onnx, safetensors, pytorch or gguf", defaultValue = DownloadOptions.FORMAT_AUTO)
+        private String format;
+
+        @Option(names = {"--variant"}, description = "Weight variant, e.g. quantized or fp16 (default: full precision)")
+        private String variant;
+
+        @Option(names = {"--include"}, description = "Also download files matching this glob (repeatable)")
+        private List<String> include = new ArrayList<>();
+
+        @Option(names = {"--exclude"}, description = "Skip files matching this glob (repeatable)")
+        private List<String> exclude = new ArrayList<>();
+
+        @Option(names = {"--dry-run"}, description = "Print the planned files and size without downloading")
+        private boolean dryRun;
+
+        @Option(names = {"--endpoint"}, description = "HuggingFace endpoint or mirror URL (default: $HF_ENDPOINT or huggingface.co)")
+        private String endpoint;
+
+        @Option(names = {"--no-progress"}, description = "Don't draw the progress bar")
+        private boolean noProgress;
+
         @Override
         public Integer call() throws Exception {
             System.out.println("JInfer Model Downloader");
@@ -173,15 +561,61 @@ public class JInferCLI implements Callable<Integer> {
             if (hfToken != null) {
                 hub.setAuthToken(hfToken);
             }
+            if (endpoint != null) {
+                hub.setEndpoint(endpoint);
+            }
+            hub.setMaxConcurrentDownloads(concurrency);
+            hub.setMaxRetries(retries);
+            hub.setRangeParallelism(rangeConnections);
+            hub.setRangeChunkSize(chunkSizeMb * 1024L * 1024L);
+            if (cacheQuota != null) {
+                hub.setCacheQuotaBytes(HuggingFaceHub.parseSize(cacheQuota));
+            }
+            DownloadOptions options = DownloadOptions.builder().format(format).variant(variant).build();
+            options.setInclude(include);
+            options.setExclude(exclude);
+            hub.setDownloadOptions(options);
+
+            if (dryRun) {
+                try {
+                    DownloadPlan plan = hub.planDownload(model);
+                    System.out.println("Planned files for " + model + ":");
+                    for (String file : plan.getFiles()) {
+                        System.out.println("  - " + file);
+                    }
+                    System.out.printf("%n%d of %d files, %.1f MB of %.1f MB%n", plan.getFiles().size(),
+                            plan.getRepoFileCount(), plan.getTotalBytes() / (1024.0 * 1024),
+                            plan.getRepoBytes() / (1024.0 * 1024));
+                } catch (Exception e) {
+                    System.err.println("Planning failed: " + e.getMessage());
+                    return 1;
+                }
+                return 0;
+            }
 
             System.out.println("Downloading: " + model);
             System.out.println("Cache directory: " + hub.getCacheDir());
             System.out.println();
 
+            if (!noProgress) {
+                hub.addDownloadListener(new ProgressBar(System.out));
+            }
+
             try {
-                Path modelPath = hub.getModel(model, force);
-                System.out.println("\nModel downloaded successfully!");
-                System.out.println("Location: " + modelPath);
+                DownloadStats stats = hub.getModelWithStats(model, force);
+                if (stats.isCached()) {
+                    System.out.println("\nModel already cached.");
+                } else {
+                    System.out.println("\nModel downloaded successfully!");
+                    System.out.printf("Transferred %s in %.1fs (%s/s), %d of %d files reused, %d retries%n",
+                            ProgressBar.formatSize(stats.getTransferredBytes()), stats.getElapsedMillis() / 1000.0,
+                            ProgressBar.formatSize((long) stats.getBytesPerSecond()), stats.getReusedFiles(),
+                            stats.getPlannedFiles(), stats.getRetries());
+                }
+                if (stats.getLockWaitMillis() > 0) {
+                    System.out.printf("Waited %.1fs for another download of this model%n", stats.getLockWaitMillis() / 1000.0);
+                }
+                System.out.println("Location: " + stats.getModelDir());
                 System.out.println("\nRun with:");
                 System.out.println("  jinfer run -m " + model + " -p \"Your prompt here\"");
             } catch (Exception e) {
@@ -208,7 +642,7 @@ public class JInferCLI implements Callable<Integer> {
             System.out.println("Cache directory: " + hub.getCacheDir());
             System.out.println();
 
-            List<String> models = hub.listCachedModels();
+            List<CachedModel> models = hub.listCachedModelInfo();
 
             if (models.isEmpty()) {
                 System.out.println("No models cached.");
@@ -216,10 +650,12 @@ public class JInferCLI implements Callable<Integer> {
                 System.out.println("  jinfer download -m user/repo");
             } else {
                 System.out.println("Cached models:");
-                for (String model : models) {
-                    Path path = hub.getModelCachePath(model);
-                    System.out.println("  - " + model);
+                for (CachedModel model : models) {
+                    Path path = hub.getModelCachePath(model.getRepoId());
+                    System.out.println("  - " + model.getRepoId() + (model.isPinned() ? " (pinned)" : ""));
                     System.out.println("    " + path);
+                    System.out.printf("    %.1f MB, last used %s%n", model.getSizeBytes() / (1024.0 * 1024),
+                            Instant.ofEpochMilli(model.getLastAccess()).truncatedTo(ChronoUnit.SECONDS));
                 }
             }
 
@@ -249,4 +685,177 @@ public class JInferCLI implements Callable<Integer> {
             return 0;
         }
     }
+
+    /**
+     * Verify a cached model against its recorded checksums.
+     */
+    @Command(name = "verify", description = "Verify a cached model's files")
+    static class VerifyCommand implements Callable<Integer> {
+
+        @Option(names = {"-m", "--model"}, description = "Model repo ID to verify", required = true)
+        private String model;
+
+        @Option(names = {"--rehash"}, description = "Re-hash every file instead of comparing sizes and modification times")
+        private boolean rehash;
+
+        @Override
+        public Integer call() throws Exception {
+            HuggingFaceHub hub = new HuggingFaceHub();
+
+            if (!Files.exists(hub.getModelCachePath(model))) {
+                System.out.println("Model not found in cache: " + model);
+                return 1;
+            }
+
+            List<String> invalid = hub.verifyModel(model, rehash);
+            if (invalid.isEmpty()) {
+                System.out.println("OK: " + model);
+                return 0;
+            }
+
+            System.out.println("Modified or corrupt files in " + model + ":");
+            for (String file : invalid) {
+                System.out.println("  - " + file);
+            }
+            System.out.println("\nRe-download with:");
+            System.out.println("  jinfer download -m " + model);
+            return 1;
+        }
+    }
+
+    /**
+     * Pin or unpin a cached model.
+     */
+    @Command(name = "pin", description = "Protect a cached model from quota eviction")
+    static class PinCommand implements Callable<Integer> {
+
+        @Option(names = {"-m", "--model"}, description = "Model repo ID to pin", required = true)
+        private String model;
+
+        @Option(names = {"--unpin"}, description = "Allow the model to be evicted again")
+        private boolean unpin;
+
+        @Override
+        public Integer call() throws Exception {
+            HuggingFaceHub hub = new HuggingFaceHub();
+
+            if (!hub.setPinned(model, !unpin)) {
+                System.out.println("Model not found in cache: " + model);
+                return 1;
+            }
+
+            System.out.println((unpin ? "Unpinned: " : "Pinned: ") + model);
+            return 0;
+        }
+    }
+
+    /**
+     * Create the class-data-sharing archive that speeds up CLI startup.
+     */
+    @Command(name = "warmup", description = "Create a class-data-sharing archive that bin/jinfer uses to start faster")
+    static class WarmupCommand implements Callable<Integer> {
+
+        /** Classes of the run path loaded by the training run besides those it uses itself. */
+        private static final List<String> TRAINING_CLASSES = List.of(
+                "com.jinfer.engine.OnnxInferenceSession",
+                "com.jinfer.engine.Gpt2InferenceSession",
+                "com.jinfer.engine.GgufReader",
+                "com.jinfer.tokenization.HuggingFaceTokenizer",
+                "com.jinfer.hub.ModelResolver",
+                "com.jinfer.hub.HuggingFaceHub",
+                "com.jinfer.hub.DownloadPlanner",
+                "com.jinfer.config.ModelMetadata",
+                "ai.djl.repository.zoo.Criteria",
+                "ai.djl.onnxruntime.engine.OrtEngine",
+                "ai.djl.huggingface.tokenizers.HuggingFaceTokenizer",
+                "ai.onnxruntime.OrtSession",
+                "com.google.gson.Gson");
+
+        @Option(names = {"-m", "--model"}, description = "Also load and run this model during training, so its backend's classes are archived")
+        private String model;
+
+        @Option(names = {"-o", "--output"}, description = "Archive file (default: next to the jar, where bin/jinfer looks for it)")
+        private Path output;
+
+        @Option(names = {"--runs"}, description = "Startups timed with and without the archive (0 = skip)", defaultValue = "3")
+        private int runs;
+
+        @Option(names = {"--training"}, hidden = true, description = "Run the training workload in the archiving JVM")
+        private boolean training;
+
+        @Override
+        public Integer call() throws Exception {
+            if (training) {
+                return train();
+            }
+            Path jar = StartupArchive.applicationJar();
+            if (jar == null) {
+                System.err.println("Class-data-sharing needs the packaged jar; build it with './gradlew shadowJar'");
+                return 1;
+            }
+            Path archive = output != null ? output : StartupArchive.defaultArchive(jar);
+            StartupArchive startupArchive = new StartupArchive(jar, archive, StartupArchive.inheritedJvmOptions());
+            List<String> trainingArgs = new ArrayList<>(List.of("warmup", "--training"));
+            if (model != null) {
+                trainingArgs.addAll(List.of("--model", model));
+            }
+
+            System.out.println("Creating " + archive);
+            long bytes;
+            try {
+                bytes = startupArchive.create(trainingArgs);
+            } catch (Exception e) {
+                System.err.println("Failed to create the archive: " + e.getMessage());
+                return 1;
+            }
+            System.out.printf("Wrote %s (%.1f MB)%n", archive, bytes / (1024.0 * 1024));
+
+            if (runs > 0) {
+                long without = startupArchive.time(false, trainingArgs, runs);
+                long with = startupArchive.time(true, trainingArgs, runs);
+                System.out.printf("Startup and training run: %d ms without the archive, %d ms with it%n", without, with);
+            }
+            if (output != null) {
+                System.out.println("Use it with: JINFER_CDS_ARCHIVE=" + archive + " jinfer ...");
+            }
+            return 0;
+        }
+
+        /**
+         * Load what a CLI run loads: the parsing and help of every command,
+         * generation with a mock engine, the backend classes, and the given
+         * model if any.
+         */
+        private int train() throws Exception {
+            for (CommandLine command : commandLine(null).getSubcommands().values()) {
+                command.getUsageMessage();
+            }
+            ClassLoader loader = WarmupCommand.class.getClassLoader();
+            for (String name : TRAINING_CLASSES) {
+                try {
+                    Class.forName(name, false, loader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    System.err.println("Not archived: " + name);
+                }
+            }
+
+            GenerationConfig genConfig = GenerationConfig.builder().maxNewTokens(8).build();
+            LLMEngine engine = JInferEngine.createMockEngine(1000, 512);
+            if (model != null) {
+                ModelConfig modelConfig = new ModelResolver().resolve(model, false);
+                engine = new JInferEngine();
+                ((JInferEngine) engine).loadModel(modelConfig);
+            }
+            try {
+                engine.generate("Hello", genConfig);
+                Iterator<String> tokens = engine.chatStream(List.of(ChatMessage.user("Hello")), genConfig);
+                while (tokens.hasNext()) {
+                    tokens.next();
+                }
+            } finally {
+                engine.close();
+            }
+            return 0;
+        }
+    }
 }
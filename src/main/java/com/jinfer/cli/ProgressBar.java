@@ -0,0 +1,93 @@
+package com.jinfer.cli;
+
+import com.jinfer.hub.DownloadListener;
+import com.jinfer.hub.DownloadPlan;
+import com.jinfer.hub.DownloadProgress;
+import com.jinfer.hub.DownloadStats;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Single-line download progress bar, redrawn in place with carriage returns.
+ */
+class ProgressBar implements DownloadListener {
+
+    private static final int WIDTH = 30;
+
+    private final PrintStream out;
+    private int lastLength = 0;
+
+    ProgressBar(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public synchronized void onPlanned(String repoId, DownloadPlan plan) {
+        out.printf("Planned %d files, %s%n", plan.getFiles().size(), formatSize(plan.getTotalBytes()));
+    }
+
+    @Override
+    public synchronized void onProgress(DownloadProgress progress) {
+        int filled = (int) (progress.getFraction() * WIDTH);
+        StringBuilder line = new StringBuilder("\r[");
+        for (int i = 0; i < WIDTH; i++) {
+            line.append(i < filled ? '=' : i == filled ? '>' : ' ');
+        }
+        line.append(String.format("] %3d%%  %s / %s  %s/s  ETA %s  (%d/%d files)",
+                (int) (progress.getFraction() * 100),
+                formatSize(progress.getCompletedBytes()), formatSize(progress.getTotalBytes()),
+                formatSize((long) progress.getBytesPerSecond()), formatEta(progress.getEtaSeconds()),
+                progress.getCompletedFiles(), progress.getTotalFiles()));
+        // Pad over the remains of a longer previous line
+        int length = line.length();
+        while (line.length() < lastLength) {
+            line.append(' ');
+        }
+        lastLength = length;
+        out.print(line);
+        out.flush();
+    }
+
+    @Override
+    public synchronized void onRetry(String repoId, String path, int attempt, int maxRetries, long backoffMillis,
+                                     IOException cause) {
+        clearLine();
+        out.printf("Retrying %s (%d/%d) in %d ms: %s%n", path, attempt, maxRetries, backoffMillis, cause.getMessage());
+    }
+
+    @Override
+    public synchronized void onFileFailed(String repoId, String path, Throwable cause) {
+        clearLine();
+        out.printf("Failed: %s: %s%n", path, cause.getMessage());
+    }
+
+    @Override
+    public synchronized void onCompleted(DownloadStats stats) {
+        clearLine();
+    }
+
+    private void clearLine() {
+        if (lastLength > 0) {
+            out.println();
+            lastLength = 0;
+        }
+    }
+
+    static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        if (bytes < 1024 * 1024 * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    private static String formatEta(long seconds) {
+        if (seconds < 0) {
+            return "--:--";
+        }
+        if (seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+}
@@ -0,0 +1,145 @@
+package com.jinfer.cli;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AppCDS archive of the classes the CLI loads, so later JVMs map them from
+ * the archive instead of loading, parsing and verifying them from the jar.
+ * The archive is dumped by a child JVM running a training workload with
+ * {@code -XX:ArchiveClassesAtExit} and only matches the jar at the path it
+ * was created for; {@code bin/jinfer} uses it while it is newer than the jar.
+ */
+class StartupArchive {
+
+    /** JVM options that would conflict with dumping or measuring an archive. */
+    private static final List<String> ARCHIVE_OPTIONS = List.of(
+            "-XX:SharedArchiveFile", "-XX:ArchiveClassesAtExit", "-Xshare", "-Xlog:cds");
+
+    private final Path jar;
+    private final Path archive;
+    private final List<String> jvmOptions;
+
+    /**
+     * @param jar        Application jar, which must be the only class path entry
+     * @param archive    Archive file to write
+     * @param jvmOptions Options for the child JVMs, e.g. heap size
+     */
+    StartupArchive(Path jar, Path archive, List<String> jvmOptions) {
+        this.jar = jar;
+        this.archive = archive;
+        this.jvmOptions = new ArrayList<>(jvmOptions);
+    }
+
+    /**
+     * The jar this class was loaded from, or null when running from a class
+     * directory, which CDS cannot archive.
+     */
+    static Path applicationJar() {
+        CodeSource source = StartupArchive.class.getProtectionDomain().getCodeSource();
+        if (source == null) {
+            return null;
+        }
+        try {
+            Path path = Path.of(source.getLocation().toURI());
+            return Files.isRegularFile(path) && path.toString().endsWith(".jar") ? path : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** The archive {@code bin/jinfer} looks for: the jar's path with a {@code .jsa} extension. */
+    static Path defaultArchive(Path jar) {
+        String name = jar.getFileName().toString();
+        return jar.resolveSibling(name.substring(0, name.length() - ".jar".length()) + ".jsa");
+    }
+
+    /** Options of the running JVM except those about class data sharing. */
+    static List<String> inheritedJvmOptions() {
+        List<String> options = new ArrayList<>();
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (ARCHIVE_OPTIONS.stream().noneMatch(option::startsWith)) {
+                options.add(option);
+            }
+        }
+        return options;
+    }
+
+    Path getArchive() {
+        return archive;
+    }
+
+    /**
+     * Command running the CLI with arguments, with or without the archive.
+     */
+    List<String> command(boolean useArchive, List<String> args) {
+        return command(useArchive ? "-XX:SharedArchiveFile=" + archive : null, args);
+    }
+
+    /**
+     * Command dumping the classes loaded while running the CLI with arguments.
+     */
+    List<String> dumpCommand(List<String> args) {
+        return command("-XX:ArchiveClassesAtExit=" + archive, args);
+    }
+
+    private List<String> command(String archiveOption, List<String> args) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        if (archiveOption != null) {
+            command.add(archiveOption);
+        }
+        command.add("-jar");
+        command.add(jar.toString());
+        command.addAll(args);
+        return command;
+    }
+
+    /**
+     * Write the archive by running the CLI with the training arguments.
+     *
+     * @return Size of the archive in bytes
+     */
+    long create(List<String> trainingArgs) throws IOException, InterruptedException {
+        Path parent = archive.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Replaced rather than rewritten in place, as running JVMs may have it mapped
+        Files.deleteIfExists(archive);
+        run(dumpCommand(trainingArgs), true);
+        if (!Files.isRegularFile(archive)) {
+            throw new IOException("The JVM did not write " + archive);
+        }
+        return Files.size(archive);
+    }
+
+    /**
+     * Fastest of several runs of the CLI with arguments, in milliseconds.
+     */
+    long time(boolean useArchive, List<String> args, int runs) throws IOException, InterruptedException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            run(command(useArchive, args), false);
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+        }
+        return best;
+    }
+
+    private static void run(List<String> command, boolean showOutput) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.redirectOutput(showOutput ? ProcessBuilder.Redirect.INHERIT : ProcessBuilder.Redirect.DISCARD);
+        int exitCode = builder.start().waitFor();
+        if (exitCode != 0) {
+            throw new IOException("Exit code " + exitCode + " from: " + String.join(" ", command));
+        }
+    }
+}
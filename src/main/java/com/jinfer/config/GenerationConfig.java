@@ -11,6 +11,7 @@ public class GenerationConfig {
     private String stopSequence = null;
     private boolean doSample = true;
     private long seed = -1;
+    private TruncationStrategy truncation = TruncationStrategy.NONE;
 
     public GenerationConfig() {}
 
@@ -26,6 +27,7 @@ public class GenerationConfig {
     public String getStopSequence() { return stopSequence; }
     public boolean isDoSample() { return doSample; }
     public long getSeed() { return seed; }
+    public TruncationStrategy getTruncation() { return truncation; }
 
     // Setters
     public void setMaxNewTokens(int maxNewTokens) { this.maxNewTokens = maxNewTokens; }
@@ -35,6 +37,7 @@ public class GenerationConfig {
     public void setStopSequence(String stopSequence) { this.stopSequence = stopSequence; }
     public void setDoSample(boolean doSample) { this.doSample = doSample; }
     public void setSeed(long seed) { this.seed = seed; }
+    public void setTruncation(TruncationStrategy truncation) { this.truncation = truncation; }
 
     public static class Builder {
         private final GenerationConfig config = new GenerationConfig();
@@ -74,6 +77,11 @@ public class GenerationConfig {
             return this;
         }
 
+        public Builder truncation(TruncationStrategy truncation) {
+            config.truncation = truncation;
+            return this;
+        }
+
         public GenerationConfig build() {
             return config;
         }
@@ -89,6 +97,7 @@ public class GenerationConfig {
                 ", stopSequence='" + stopSequence + '\'' +
                 ", doSample=" + doSample +
                 ", seed=" + seed +
+                ", truncation=" + truncation +
                 '}';
     }
 }
@@ -1,17 +1,30 @@
 package com.jinfer.config;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Configuration for model loading and initialization.
  */
 public class ModelConfig {
+    /** Prompt lengths warmed up by default: decode steps, a short and a medium prompt. */
+    public static final List<Integer> DEFAULT_WARMUP_SEQUENCE_LENGTHS = List.of(1, 16, 128);
+
     private Path modelPath;
     private Path tokenizerPath;
     private String modelFormat = "onnx";
     private int contextLength = 2048;
     private boolean useGpu = false;
     private int gpuDeviceId = 0;
+    private List<Path> weightFiles = new ArrayList<>();
+    private int warmupRuns = 0;
+    private SessionTuning sessionTuning = new SessionTuning();
+    private boolean cacheOptimizedModel = false;
+    private WeightQuantization weightQuantization = WeightQuantization.NONE;
+    private List<Integer> warmupSequenceLengths = new ArrayList<>(DEFAULT_WARMUP_SEQUENCE_LENGTHS);
+    private ModelMetadata metadata;
 
     public ModelConfig() {}
 
@@ -32,6 +45,42 @@ public class ModelConfig {
     public boolean isUseGpu() { return useGpu; }
     public int getGpuDeviceId() { return gpuDeviceId; }
 
+    /**
+     * Files holding the weights when they are not stored in the model file
+     * itself: the shards of a sharded checkpoint (the model path is then the
+     * index), or an ONNX graph's external data. Empty for single-file models.
+     */
+    public List<Path> getWeightFiles() { return weightFiles; }
+
+    /**
+     * Dummy forward passes per warmup sequence length run while loading, so the
+     * first request does not pay for kernel initialization and JIT compilation.
+     * 0 (the default) disables warmup.
+     */
+    public int getWarmupRuns() { return warmupRuns; }
+
+    /** Sequence lengths of the warmup passes, capped at the context length. */
+    public List<Integer> getWarmupSequenceLengths() { return warmupSequenceLengths; }
+
+    /** ONNX Runtime threads, execution mode, graph optimization and memory settings. */
+    public SessionTuning getSessionTuning() { return sessionTuning; }
+
+    /**
+     * Whether ONNX Runtime's optimized graph is saved next to the model and
+     * loaded directly on later runs, skipping graph optimization.
+     */
+    public boolean isCacheOptimizedModel() { return cacheOptimizedModel; }
+
+    /**
+     * Quantization applied to float weights when the Java backend loads them.
+     * Checkpoints quantized ahead of time by {@code jinfer quantize} load as
+     * stored regardless.
+     */
+    public WeightQuantization getWeightQuantization() { return weightQuantization; }
+
+    /** What the model's config files declare, or null if it was not resolved from a directory. */
+    public ModelMetadata getMetadata() { return metadata; }
+
     // Setters
     public void setModelPath(Path modelPath) { this.modelPath = modelPath; }
     public void setTokenizerPath(Path tokenizerPath) { this.tokenizerPath = tokenizerPath; }
@@ -39,6 +88,20 @@ public class ModelConfig {
     public void setContextLength(int contextLength) { this.contextLength = contextLength; }
     public void setUseGpu(boolean useGpu) { this.useGpu = useGpu; }
     public void setGpuDeviceId(int gpuDeviceId) { this.gpuDeviceId = gpuDeviceId; }
+    public void setWeightFiles(List<Path> weightFiles) { this.weightFiles = new ArrayList<>(weightFiles); }
+    public void setWarmupRuns(int warmupRuns) { this.warmupRuns = warmupRuns; }
+    public void setWarmupSequenceLengths(List<Integer> lengths) { this.warmupSequenceLengths = new ArrayList<>(lengths); }
+    public void setSessionTuning(SessionTuning sessionTuning) { this.sessionTuning = sessionTuning; }
+    public void setCacheOptimizedModel(boolean cacheOptimizedModel) { this.cacheOptimizedModel = cacheOptimizedModel; }
+    public void setWeightQuantization(WeightQuantization weightQuantization) { this.weightQuantization = weightQuantization; }
+    public void setMetadata(ModelMetadata metadata) { this.metadata = metadata; }
+
+    /**
+     * Use the session tuning of a profile written by {@code jinfer tune}.
+     */
+    public void loadTuningProfile(Path profile) throws IOException {
+        this.sessionTuning = TuningProfile.load(profile).getSessionTuning();
+    }
 
     public static class Builder {
         private final ModelConfig config = new ModelConfig();
@@ -73,6 +136,41 @@ public class ModelConfig {
             return this;
         }
 
+        public Builder weightFiles(List<Path> weightFiles) {
+            config.weightFiles = new ArrayList<>(weightFiles);
+            return this;
+        }
+
+        public Builder warmupRuns(int warmupRuns) {
+            config.warmupRuns = warmupRuns;
+            return this;
+        }
+
+        public Builder warmupSequenceLengths(List<Integer> lengths) {
+            config.warmupSequenceLengths = new ArrayList<>(lengths);
+            return this;
+        }
+
+        public Builder sessionTuning(SessionTuning sessionTuning) {
+            config.sessionTuning = sessionTuning;
+            return this;
+        }
+
+        public Builder cacheOptimizedModel(boolean cacheOptimizedModel) {
+            config.cacheOptimizedModel = cacheOptimizedModel;
+            return this;
+        }
+
+        public Builder weightQuantization(WeightQuantization weightQuantization) {
+            config.weightQuantization = weightQuantization;
+            return this;
+        }
+
+        public Builder metadata(ModelMetadata metadata) {
+            config.metadata = metadata;
+            return this;
+        }
+
         public ModelConfig build() {
             return config;
         }
@@ -87,6 +185,11 @@ public class ModelConfig {
                 ", contextLength=" + contextLength +
                 ", useGpu=" + useGpu +
                 ", gpuDeviceId=" + gpuDeviceId +
+                ", weightFiles=" + weightFiles.size() +
+                ", warmupRuns=" + warmupRuns +
+                ", sessionTuning=" + sessionTuning +
+                ", cacheOptimizedModel=" + cacheOptimizedModel +
+                ", weightQuantization=" + weightQuantization +
                 '}';
     }
 }
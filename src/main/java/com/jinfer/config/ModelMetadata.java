@@ -0,0 +1,225 @@
+package com.jinfer.config;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * What a model directory's {@code config.json}, {@code generation_config.json}
+ * and {@code tokenizer_config.json} say about the model: architecture, context
+ * length, vocabulary size, special token ids and default generation
+ * parameters. Fields the files do not set are null, or 0 for sizes.
+ */
+public class ModelMetadata {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelMetadata.class);
+
+    public static final String CONFIG_FILE = "config.json";
+    public static final String GENERATION_CONFIG_FILE = "generation_config.json";
+    public static final String TOKENIZER_CONFIG_FILE = "tokenizer_config.json";
+
+    /** Context length keys of {@code config.json}, in order of precedence. */
+    private static final String[] CONTEXT_LENGTH_KEYS = {"max_position_embeddings", "n_positions", "max_seq_len", "n_ctx"};
+
+    /** Tokenizers without a limit declare a huge {@code model_max_length}. */
+    private static final long MAX_PLAUSIBLE_CONTEXT = 1L << 24;
+
+    private String architecture;
+    private String modelType;
+    private int contextLength;
+    private int vocabSize;
+    private Long bosTokenId;
+    private Long eosTokenId;
+    private Long padTokenId;
+    private Float temperature;
+    private Integer topK;
+    private Float topP;
+    private Float repetitionPenalty;
+    private Integer maxNewTokens;
+    private Boolean doSample;
+
+    public ModelMetadata() {}
+
+    /**
+     * Parse the config files of a model directory. Missing or malformed files
+     * are skipped.
+     */
+    public static ModelMetadata read(Path modelDir) {
+        ModelMetadata metadata = new ModelMetadata();
+
+        JsonObject config = readJson(modelDir.resolve(CONFIG_FILE));
+        if (config != null) {
+            metadata.modelType = string(config, "model_type");
+            JsonArray architectures = config.has("architectures") && config.get("architectures").isJsonArray()
+                    ? config.getAsJsonArray("architectures") : null;
+            metadata.architecture = architectures != null && architectures.size() > 0
+                    ? architectures.get(0).getAsString() : metadata.modelType;
+            for (String key : CONTEXT_LENGTH_KEYS) {
+                Long value = number(config, key);
+                if (value != null && value > 0) {
+                    metadata.contextLength = value.intValue();
+                    break;
+                }
+            }
+            Long vocabSize = number(config, "vocab_size");
+            metadata.vocabSize = vocabSize != null ? vocabSize.intValue() : 0;
+            metadata.bosTokenId = number(config, "bos_token_id");
+            metadata.eosTokenId = number(config, "eos_token_id");
+            metadata.padTokenId = number(config, "pad_token_id");
+        }
+
+        // Generation settings take precedence over the model config's token ids
+        JsonObject generation = readJson(modelDir.resolve(GENERATION_CONFIG_FILE));
+        if (generation != null) {
+            metadata.bosTokenId = orElse(number(generation, "bos_token_id"), metadata.bosTokenId);
+            metadata.eosTokenId = orElse(number(generation, "eos_token_id"), metadata.eosTokenId);
+            metadata.padTokenId = orElse(number(generation, "pad_token_id"), metadata.padTokenId);
+            metadata.temperature = decimal(generation, "temperature");
+            metadata.topP = decimal(generation, "top_p");
+            metadata.repetitionPenalty = decimal(generation, "repetition_penalty");
+            Long topK = number(generation, "top_k");
+            metadata.topK = topK != null ? topK.intValue() : null;
+            Long maxNewTokens = number(generation, "max_new_tokens");
+            metadata.maxNewTokens = maxNewTokens != null ? maxNewTokens.intValue() : null;
+            metadata.doSample = generation.has("do_sample") && generation.get("do_sample").isJsonPrimitive()
+                    ? generation.get("do_sample").getAsBoolean() : null;
+        }
+
+        JsonObject tokenizer = readJson(modelDir.resolve(TOKENIZER_CONFIG_FILE));
+        if (tokenizer != null) {
+            Long maxLength = number(tokenizer, "model_max_length");
+            if (metadata.contextLength == 0 && maxLength != null && maxLength > 0
+                    && maxLength < MAX_PLAUSIBLE_CONTEXT) {
+                metadata.contextLength = maxLength.intValue();
+            }
+            metadata.bosTokenId = orElse(metadata.bosTokenId, tokenId(tokenizer, "bos_token"));
+            metadata.eosTokenId = orElse(metadata.eosTokenId, tokenId(tokenizer, "eos_token"));
+            metadata.padTokenId = orElse(metadata.padTokenId, tokenId(tokenizer, "pad_token"));
+        }
+        return metadata;
+    }
+
+    private static JsonObject readJson(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            JsonElement json = JsonParser.parseString(Files.readString(file));
+            return json.isJsonObject() ? json.getAsJsonObject() : null;
+        } catch (IOException | JsonParseException e) {
+            logger.debug("Could not read {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String string(JsonObject json, String key) {
+        JsonElement value = json.get(key);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+
+    /** An integer, or the first of an array of them as some models list several EOS ids. */
+    private static Long number(JsonObject json, String key) {
+        JsonElement value = json.get(key);
+        if (value != null && value.isJsonArray() && value.getAsJsonArray().size() > 0) {
+            value = value.getAsJsonArray().get(0);
+        }
+        if (value == null || !value.isJsonPrimitive() || !value.getAsJsonPrimitive().isNumber()) {
+            return null;
+        }
+        double number = value.getAsDouble();
+        return number == Math.rint(number) && Math.abs(number) < Long.MAX_VALUE ? (long) number : null;
+    }
+
+    private static Float decimal(JsonObject json, String key) {
+        JsonElement value = json.get(key);
+        return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber()
+                ? value.getAsFloat() : null;
+    }
+
+    /**
+     * The id of a special token named by content in {@code tokenizer_config.json},
+     * looked up in its {@code added_tokens_decoder}.
+     */
+    private static Long tokenId(JsonObject tokenizer, String key) {
+        JsonElement token = tokenizer.get(key);
+        if (token != null && token.isJsonObject()) {
+            token = token.getAsJsonObject().get("content");
+        }
+        JsonElement decoder = tokenizer.get("added_tokens_decoder");
+        if (token == null || !token.isJsonPrimitive() || decoder == null || !decoder.isJsonObject()) {
+            return null;
+        }
+        String content = token.getAsString();
+        for (Map.Entry<String, JsonElement> entry : decoder.getAsJsonObject().entrySet()) {
+            JsonElement added = entry.getValue();
+            if (added.isJsonObject() && content.equals(string(added.getAsJsonObject(), "content"))) {
+                try {
+                    return Long.parseLong(entry.getKey());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static <T> T orElse(T value, T fallback) {
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * Generation settings with the model's defaults applied where it has them.
+     */
+    public GenerationConfig.Builder generationDefaults() {
+        GenerationConfig.Builder builder = GenerationConfig.builder();
+        if (maxNewTokens != null) builder.maxNewTokens(maxNewTokens);
+        if (temperature != null) builder.temperature(temperature);
+        if (topP != null) builder.topP(topP);
+        if (topK != null) builder.topK(topK);
+        if (doSample != null) builder.doSample(doSample);
+        return builder;
+    }
+
+    /** First entry of {@code architectures}, e.g. {@code GPT2LMHeadModel}, else the model type. */
+    public String getArchitecture() { return architecture; }
+
+    /** {@code model_type}, e.g. {@code gpt2} or {@code llama}. */
+    public String getModelType() { return modelType; }
+
+    /** Trained context length, or 0 if unknown. */
+    public int getContextLength() { return contextLength; }
+
+    /** Vocabulary size, or 0 if unknown. */
+    public int getVocabSize() { return vocabSize; }
+
+    public Long getBosTokenId() { return bosTokenId; }
+    public Long getEosTokenId() { return eosTokenId; }
+    public Long getPadTokenId() { return padTokenId; }
+    public Float getTemperature() { return temperature; }
+    public Integer getTopK() { return topK; }
+    public Float getTopP() { return topP; }
+    public Float getRepetitionPenalty() { return repetitionPenalty; }
+    public Integer getMaxNewTokens() { return maxNewTokens; }
+    public Boolean getDoSample() { return doSample; }
+
+    @Override
+    public String toString() {
+        return "ModelMetadata{" +
+                "architecture='" + architecture + '\'' +
+                ", contextLength=" + contextLength +
+                ", vocabSize=" + vocabSize +
+                ", bos=" + bosTokenId +
+                ", eos=" + eosTokenId +
+                ", pad=" + padTokenId +
+                '}';
+    }
+}
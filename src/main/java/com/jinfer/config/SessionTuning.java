@@ -0,0 +1,171 @@
+package com.jinfer.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ONNX Runtime session settings: thread pools, execution mode, graph
+ * optimization and memory allocation. The defaults leave every setting to
+ * ONNX Runtime, which sizes its thread pool to all cores; engines sharing a
+ * host should each get their own thread count or core set.
+ */
+public class SessionTuning {
+    private int intraOpThreads = 0;
+    private int interOpThreads = 0;
+    private String executionMode = "SEQUENTIAL";
+    private String graphOptimizationLevel = "ALL_OPT";
+    private boolean cpuArena = true;
+    private boolean memoryPattern = true;
+    private boolean allowSpinning = true;
+    private List<Integer> cpuCores = new ArrayList<>();
+
+    public SessionTuning() {}
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Threads of the intra-op pool that parallelizes single operators; 0 for the ONNX Runtime default. */
+    public int getIntraOpThreads() { return intraOpThreads; }
+
+    /** Threads of the inter-op pool, used in PARALLEL execution mode; 0 for the ONNX Runtime default. */
+    public int getInterOpThreads() { return interOpThreads; }
+
+    /** {@code SEQUENTIAL} (default) or {@code PARALLEL} execution of independent graph branches. */
+    public String getExecutionMode() { return executionMode; }
+
+    /**
+     * Graph optimization level: {@code NO_OPT}, {@code BASIC_OPT},
+     * {@code EXTENDED_OPT} or {@code ALL_OPT} (the default).
+     */
+    public String getGraphOptimizationLevel() { return graphOptimizationLevel; }
+
+    /** Whether CPU allocations come from ONNX Runtime's growing memory arena. */
+    public boolean isCpuArena() { return cpuArena; }
+
+    /** Whether allocations are planned ahead from the first run's memory pattern. */
+    public boolean isMemoryPattern() { return memoryPattern; }
+
+    /**
+     * Whether idle intra-op threads spin waiting for work. Spinning lowers
+     * latency but burns cores other engines on the host could use.
+     */
+    public boolean isAllowSpinning() { return allowSpinning; }
+
+    /**
+     * Logical CPUs (0-based) the intra-op threads are pinned to, one thread
+     * per core. Sets the intra-op thread count unless it is given explicitly.
+     */
+    public List<Integer> getCpuCores() { return Collections.unmodifiableList(cpuCores); }
+
+    public void setIntraOpThreads(int intraOpThreads) { this.intraOpThreads = intraOpThreads; }
+    public void setInterOpThreads(int interOpThreads) { this.interOpThreads = interOpThreads; }
+    public void setExecutionMode(String executionMode) { this.executionMode = executionMode; }
+    public void setGraphOptimizationLevel(String level) { this.graphOptimizationLevel = level; }
+    public void setCpuArena(boolean cpuArena) { this.cpuArena = cpuArena; }
+    public void setMemoryPattern(boolean memoryPattern) { this.memoryPattern = memoryPattern; }
+    public void setAllowSpinning(boolean allowSpinning) { this.allowSpinning = allowSpinning; }
+    public void setCpuCores(List<Integer> cpuCores) { this.cpuCores = new ArrayList<>(cpuCores); }
+
+    /**
+     * Intra-op thread count to use: the explicit count, else one per pinned
+     * core, else 0 for the ONNX Runtime default.
+     */
+    public int effectiveIntraOpThreads() {
+        return intraOpThreads > 0 ? intraOpThreads : cpuCores.size();
+    }
+
+    /**
+     * Parse a core list such as {@code 0-3,8,10-11}.
+     *
+     * @throws IllegalArgumentException if the list is malformed
+     */
+    public static List<Integer> parseCores(String spec) {
+        List<Integer> cores = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String range = part.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+            try {
+                int dash = range.indexOf('-');
+                int first = Integer.parseInt(dash < 0 ? range : range.substring(0, dash).trim());
+                int last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1).trim());
+                if (first < 0 || last < first) {
+                    throw new IllegalArgumentException("Invalid core range: " + range);
+                }
+                for (int core = first; core <= last; core++) {
+                    if (!cores.contains(core)) {
+                        cores.add(core);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid core list: " + spec, e);
+            }
+        }
+        return cores;
+    }
+
+    public static class Builder {
+        private final SessionTuning tuning = new SessionTuning();
+
+        public Builder intraOpThreads(int intraOpThreads) {
+            tuning.intraOpThreads = intraOpThreads;
+            return this;
+        }
+
+        public Builder interOpThreads(int interOpThreads) {
+            tuning.interOpThreads = interOpThreads;
+            return this;
+        }
+
+        public Builder executionMode(String executionMode) {
+            tuning.executionMode = executionMode;
+            return this;
+        }
+
+        public Builder graphOptimizationLevel(String level) {
+            tuning.graphOptimizationLevel = level;
+            return this;
+        }
+
+        public Builder cpuArena(boolean cpuArena) {
+            tuning.cpuArena = cpuArena;
+            return this;
+        }
+
+        public Builder memoryPattern(boolean memoryPattern) {
+            tuning.memoryPattern = memoryPattern;
+            return this;
+        }
+
+        public Builder allowSpinning(boolean allowSpinning) {
+            tuning.allowSpinning = allowSpinning;
+            return this;
+        }
+
+        public Builder cpuCores(List<Integer> cpuCores) {
+            tuning.cpuCores = new ArrayList<>(cpuCores);
+            return this;
+        }
+
+        public SessionTuning build() {
+            return tuning;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SessionTuning{" +
+                "intraOpThreads=" + intraOpThreads +
+                ", interOpThreads=" + interOpThreads +
+                ", executionMode=" + executionMode +
+                ", graphOptimizationLevel=" + graphOptimizationLevel +
+                ", cpuArena=" + cpuArena +
+                ", memoryPattern=" + memoryPattern +
+                ", allowSpinning=" + allowSpinning +
+                ", cpuCores=" + cpuCores +
+                '}';
+    }
+}
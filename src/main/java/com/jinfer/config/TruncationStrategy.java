@@ -0,0 +1,80 @@
+package com.jinfer.config;
+
+import java.util.Arrays;
+
+/**
+ * Policy for fitting a prompt that is longer than the context window.
+ */
+public enum TruncationStrategy {
+
+    /** Keep the whole prompt; generation stops once the context is full. */
+    NONE,
+
+    /** Keep the beginning of the prompt. */
+    KEEP_HEAD,
+
+    /** Keep the end of the prompt (most recent context). */
+    KEEP_TAIL,
+
+    /** Keep both ends of the prompt and drop the middle. */
+    MIDDLE_OUT;
+
+    /**
+     * Number of tokens kept from the start of the prompt for the given budget.
+     */
+    public int headBudget(int maxTokens) {
+        switch (this) {
+            case KEEP_HEAD:
+                return maxTokens;
+            case KEEP_TAIL:
+                return 0;
+            case MIDDLE_OUT:
+                return maxTokens / 2;
+            default:
+                return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Number of tokens kept from the end of the prompt for the given budget.
+     */
+    public int tailBudget(int maxTokens) {
+        if (this == NONE) {
+            return Integer.MAX_VALUE;
+        }
+        return maxTokens - headBudget(maxTokens);
+    }
+
+    /**
+     * Truncate token IDs to at most {@code maxTokens} according to this policy.
+     *
+     * @param ids Token IDs to truncate
+     * @param maxTokens Maximum number of tokens to keep
+     * @return The original array if it fits, otherwise a truncated copy
+     */
+    public long[] truncate(long[] ids, int maxTokens) {
+        if (this == NONE || ids.length <= maxTokens) {
+            return ids;
+        }
+        int head = headBudget(maxTokens);
+        int tail = maxTokens - head;
+
+        long[] result = new long[maxTokens];
+        System.arraycopy(ids, 0, result, 0, head);
+        System.arraycopy(ids, ids.length - tail, result, head, tail);
+        return result;
+    }
+
+    /**
+     * Truncate separately encoded head and tail segments of the same prompt.
+     * The segments are assumed not to overlap.
+     */
+    public long[] truncate(long[] headIds, long[] tailIds, int maxTokens) {
+        int head = Math.min(headBudget(maxTokens), headIds.length);
+        int tail = Math.min(tailBudget(maxTokens), tailIds.length);
+
+        long[] result = Arrays.copyOf(headIds, head + tail);
+        System.arraycopy(tailIds, tailIds.length - tail, result, head, tail);
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package com.jinfer.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Session tuning found best for a model on a host by {@code jinfer tune},
+ * with the measurements it was chosen on. Stored as JSON and applied with
+ * {@link ModelConfig#loadTuningProfile}.
+ */
+public class TuningProfile {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private String model;
+    private int availableProcessors;
+    private int promptTokens;
+    private int newTokens;
+    private double tokensPerSecond;
+    private double ttftMillis;
+    private long rssBytes;
+    private long createdAt;
+    private SessionTuning sessionTuning = new SessionTuning();
+
+    public TuningProfile() {}
+
+    public TuningProfile(String model, SessionTuning sessionTuning, int promptTokens, int newTokens,
+                         double tokensPerSecond, double ttftMillis, long rssBytes) {
+        this.model = model;
+        this.sessionTuning = sessionTuning;
+        this.availableProcessors = Runtime.getRuntime().availableProcessors();
+        this.promptTokens = promptTokens;
+        this.newTokens = newTokens;
+        this.tokensPerSecond = tokensPerSecond;
+        this.ttftMillis = ttftMillis;
+        this.rssBytes = rssBytes;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public static TuningProfile load(Path file) throws IOException {
+        try {
+            TuningProfile profile = GSON.fromJson(Files.readString(file), TuningProfile.class);
+            if (profile == null || profile.sessionTuning == null) {
+                throw new IOException("No session tuning in " + file);
+            }
+            return profile;
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid tuning profile " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(file, GSON.toJson(this) + "\n");
+    }
+
+    /** Model the profile was measured on. */
+    public String getModel() { return model; }
+
+    /** Processors of the host the profile was measured on. */
+    public int getAvailableProcessors() { return availableProcessors; }
+
+    public int getPromptTokens() { return promptTokens; }
+    public int getNewTokens() { return newTokens; }
+
+    /** Decode throughput, after the first token. */
+    public double getTokensPerSecond() { return tokensPerSecond; }
+
+    /** Time to first token. */
+    public double getTtftMillis() { return ttftMillis; }
+
+    /** Resident memory of the process after the measurement. */
+    public long getRssBytes() { return rssBytes; }
+
+    public long getCreatedAt() { return createdAt; }
+    public SessionTuning getSessionTuning() { return sessionTuning; }
+
+    @Override
+    public String toString() {
+        return "TuningProfile{model='" + model + "', " + sessionTuning +
+               String.format(", tokensPerSecond=%.1f, ttftMillis=%.1f, rssBytes=%d}", tokensPerSecond, ttftMillis,
+                       rssBytes);
+    }
+}
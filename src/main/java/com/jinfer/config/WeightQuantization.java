@@ -0,0 +1,17 @@
+package com.jinfer.config;
+
+/**
+ * Storage of the weight matrices of the Java backend. Quantized weights are
+ * split into blocks of 32 values sharing one float scale.
+ */
+public enum WeightQuantization {
+
+    /** 32-bit floats as loaded. */
+    NONE,
+
+    /** 8-bit integers per value, about 4x smaller than floats. */
+    Q8,
+
+    /** 4-bit integers per value, about 7x smaller than floats. */
+    Q4
+}
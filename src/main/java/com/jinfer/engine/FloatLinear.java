@@ -0,0 +1,102 @@
+package com.jinfer.engine;
+
+/**
+ * {@link Linear} with float weights, stored row-major by output so every
+ * output is a contiguous dot product.
+ */
+final class FloatLinear implements Linear {
+
+    /** Output rows computed per task. */
+    private static final int GRAIN = 16;
+
+    private final float[] weight;
+    private final float[] bias;
+    private final int inputSize;
+    private final int outputSize;
+
+    /**
+     * @param weight {@code outputSize x inputSize} values, row-major
+     * @param bias   {@code outputSize} values, or null
+     */
+    FloatLinear(float[] weight, float[] bias, int inputSize, int outputSize) {
+        if (weight.length != (long) inputSize * outputSize) {
+            throw new IllegalArgumentException("Weight has " + weight.length + " values, expected " +
+                    inputSize + " x " + outputSize);
+        }
+        if (bias != null && bias.length != outputSize) {
+            throw new IllegalArgumentException("Bias has " + bias.length + " values, expected " + outputSize);
+        }
+        this.weight = weight;
+        this.bias = bias;
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+    }
+
+    /**
+     * Transpose a {@code rows x columns} row-major matrix, e.g. a GPT-2
+     * {@code Conv1D} weight, which is stored input-major.
+     */
+    static float[] transpose(float[] matrix, int rows, int columns) {
+        float[] transposed = new float[matrix.length];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                transposed[c * rows + r] = matrix[r * columns + c];
+            }
+        }
+        return transposed;
+    }
+
+    @Override
+    public int inputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int outputSize() {
+        return outputSize;
+    }
+
+    @Override
+    public long weightBytes() {
+        return 4L * (weight.length + (bias != null ? bias.length : 0));
+    }
+
+    @Override
+    public void row(int index, float[] out, int offset) {
+        System.arraycopy(weight, index * inputSize, out, offset, inputSize);
+    }
+
+    @Override
+    public void apply(float[] x, float[] y, int rows, Parallel parallel) {
+        // Split over output rows so each weight row is read once for all tokens
+        parallel.forRange(outputSize, GRAIN, (from, to) -> {
+            for (int o = from; o < to; o++) {
+                int w = o * inputSize;
+                float b = bias != null ? bias[o] : 0f;
+                for (int r = 0; r < rows; r++) {
+                    y[r * outputSize + o] = dot(weight, w, x, r * inputSize, inputSize) + b;
+                }
+            }
+        });
+    }
+
+    /**
+     * Dot product with four independent accumulators, which keeps the
+     * floating point pipelines busy where the JIT cannot vectorize the
+     * reduction.
+     */
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
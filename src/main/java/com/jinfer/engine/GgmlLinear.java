@@ -0,0 +1,170 @@
+package com.jinfer.engine;
+
+import com.jinfer.config.WeightQuantization;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * {@link Linear} computing straight from a GGUF tensor as mapped from the
+ * file, in one of the GGML layouts {@code F32}, {@code F16}, {@code Q8_0}
+ * or {@code Q4_0}. Rows are stored by output; quantized rows are blocks of 32
+ * values led by a half-precision scale, followed by 32 signed bytes
+ * ({@code Q8_0}) or by 16 bytes whose low nibbles hold the first half of the
+ * block and high nibbles the second, offset by 8 ({@code Q4_0}).
+ */
+final class GgmlLinear implements Linear {
+
+    /** Values decoded at a time; the block size of the quantized types. */
+    private static final int BLOCK_SIZE = 32;
+
+    /** Output rows computed per task. */
+    private static final int GRAIN = 16;
+
+    private final GgufReader.TensorType type;
+    private final ByteBuffer data;
+    private final float[] bias;
+    private final int inputSize;
+    private final int outputSize;
+    private final int blocks;
+    private final int rowBytes;
+
+    /**
+     * @param data Tensor data of {@code outputSize} rows of {@code inputSize} values
+     * @param bias {@code outputSize} values, or null
+     */
+    GgmlLinear(GgufReader.TensorType type, ByteBuffer data, float[] bias, int inputSize, int outputSize) {
+        if (!isSupported(type)) {
+            throw new IllegalArgumentException("Unsupported GGML type " + type);
+        }
+        if (inputSize % type.getBlockSize() != 0) {
+            throw new IllegalArgumentException("Rows of " + inputSize + " values do not fill " + type + " blocks");
+        }
+        long rowBytes = (long) inputSize / type.getBlockSize() * type.getBlockBytes();
+        if (data.remaining() != rowBytes * outputSize) {
+            throw new IllegalArgumentException("Weight has " + data.remaining() + " bytes, expected " +
+                    rowBytes * outputSize + " for " + type + " " + outputSize + " x " + inputSize);
+        }
+        if (bias != null && bias.length != outputSize) {
+            throw new IllegalArgumentException("Bias has " + bias.length + " values, expected " + outputSize);
+        }
+        this.type = type;
+        this.data = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.bias = bias;
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.blocks = (inputSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.rowBytes = (int) rowBytes;
+    }
+
+    /** Whether tensors of a type can be computed with. */
+    static boolean isSupported(GgufReader.TensorType type) {
+        return type == GgufReader.TensorType.F32 || type == GgufReader.TensorType.F16
+                || type == GgufReader.TensorType.Q8_0 || type == GgufReader.TensorType.Q4_0;
+    }
+
+    GgufReader.TensorType getType() {
+        return type;
+    }
+
+    /** The closest weight quantization of {@link #getType()}. */
+    WeightQuantization getQuantization() {
+        switch (type) {
+            case Q8_0: return WeightQuantization.Q8;
+            case Q4_0: return WeightQuantization.Q4;
+            default: return WeightQuantization.NONE;
+        }
+    }
+
+    @Override
+    public int inputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int outputSize() {
+        return outputSize;
+    }
+
+    @Override
+    public long weightBytes() {
+        return (long) data.capacity() + (bias != null ? 4L * bias.length : 0);
+    }
+
+    @Override
+    public void row(int index, float[] out, int offset) {
+        float[] block = new float[BLOCK_SIZE];
+        for (int b = 0; b < blocks; b++) {
+            int length = Math.min(BLOCK_SIZE, inputSize - b * BLOCK_SIZE);
+            float scale = decode(index, b, length, block);
+            for (int k = 0; k < length; k++) {
+                out[offset + b * BLOCK_SIZE + k] = block[k] * scale;
+            }
+        }
+    }
+
+    @Override
+    public void apply(float[] x, float[] y, int rows, Parallel parallel) {
+        parallel.forRange(outputSize, GRAIN, (from, to) -> {
+            float[] block = new float[BLOCK_SIZE];
+            float[] sums = new float[rows];
+            for (int o = from; o < to; o++) {
+                Arrays.fill(sums, 0f);
+                for (int b = 0; b < blocks; b++) {
+                    int length = Math.min(BLOCK_SIZE, inputSize - b * BLOCK_SIZE);
+                    // Decode each block once and reuse it for every token
+                    float scale = decode(o, b, length, block);
+                    for (int r = 0; r < rows; r++) {
+                        sums[r] += FloatLinear.dot(block, 0, x, r * inputSize + b * BLOCK_SIZE, length) * scale;
+                    }
+                }
+                float b = bias != null ? bias[o] : 0f;
+                for (int r = 0; r < rows; r++) {
+                    y[r * outputSize + o] = sums[r] + b;
+                }
+            }
+        });
+    }
+
+    /**
+     * Unscaled values of block {@code b} of a row.
+     *
+     * @return The block's scale
+     */
+    private float decode(int row, int b, int length, float[] values) {
+        int rowBase = row * rowBytes;
+        switch (type) {
+            case F32: {
+                int base = rowBase + b * BLOCK_SIZE * 4;
+                for (int k = 0; k < length; k++) {
+                    values[k] = data.getFloat(base + k * 4);
+                }
+                return 1f;
+            }
+            case F16: {
+                int base = rowBase + b * BLOCK_SIZE * 2;
+                for (int k = 0; k < length; k++) {
+                    values[k] = SafetensorsReader.halfToFloat(data.getShort(base + k * 2));
+                }
+                return 1f;
+            }
+            case Q8_0: {
+                int base = rowBase + b * type.getBlockBytes();
+                for (int k = 0; k < BLOCK_SIZE; k++) {
+                    values[k] = data.get(base + 2 + k);
+                }
+                return SafetensorsReader.halfToFloat(data.getShort(base));
+            }
+            default: {
+                int base = rowBase + b * type.getBlockBytes();
+                for (int k = 0; k < BLOCK_SIZE / 2; k++) {
+                    int packed = data.get(base + 2 + k);
+                    values[k] = (packed & 0x0f) - 8;
+                    values[k + BLOCK_SIZE / 2] = ((packed >> 4) & 0x0f) - 8;
+                }
+                return SafetensorsReader.halfToFloat(data.getShort(base));
+            }
+        }
+    }
+}
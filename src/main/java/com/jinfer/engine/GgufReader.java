@@ -0,0 +1,472 @@
+package com.jinfer.engine;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reader of GGUF model files (versions 2 and 3), the single-file format of
+ * llama.cpp. Opening parses the metadata and tensor directory from a mapping
+ * of the file's head; tensor data, quantized blocks included, is
+ * memory-mapped per tensor on first access and handed out as read-only,
+ * little-endian views.
+ */
+public class GgufReader implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GgufReader.class);
+
+    private static final int MAGIC = 0x46554747; // "GGUF" little-endian
+
+    private static final int DEFAULT_ALIGNMENT = 32;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int version;
+    private final Map<String, Object> metadata;
+    private final Map<String, TensorInfo> tensors;
+    private final Map<String, ByteBuffer> mapped = new ConcurrentHashMap<>();
+
+    private GgufReader(Path path, FileChannel channel, int version, Map<String, Object> metadata,
+                       Map<String, TensorInfo> tensors) {
+        this.path = path;
+        this.channel = channel;
+        this.version = version;
+        this.metadata = metadata;
+        this.tensors = tensors;
+    }
+
+    /**
+     * Open a file and parse its metadata and tensor directory.
+     *
+     * @throws IOException if the file cannot be read or is not valid GGUF
+     */
+    public static GgufReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            // The head is parsed from a mapping, which only pages in what is read
+            ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, Integer.MAX_VALUE))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (head.remaining() < 4 || head.getInt() != MAGIC) {
+                throw new IOException("Not a GGUF file: " + path);
+            }
+            int version = head.getInt();
+            if (version != 2 && version != 3) {
+                throw new IOException("Unsupported GGUF version " + version + " in " + path);
+            }
+            long tensorCount = head.getLong();
+            long metadataCount = head.getLong();
+            if (tensorCount < 0 || metadataCount < 0 || tensorCount > Integer.MAX_VALUE) {
+                throw new IOException("Invalid GGUF counts in " + path);
+            }
+
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            for (long i = 0; i < metadataCount; i++) {
+                String key = readString(head);
+                metadata.put(key, readValue(head, head.getInt()));
+            }
+
+            List<TensorInfo> infos = new ArrayList<>();
+            for (long i = 0; i < tensorCount; i++) {
+                String name = readString(head);
+                int dimensions = head.getInt();
+                if (dimensions < 0 || dimensions > 8) {
+                    throw new IOException("Tensor " + name + " has " + dimensions + " dimensions");
+                }
+                long[] shape = new long[dimensions];
+                for (int d = 0; d < dimensions; d++) {
+                    shape[d] = head.getLong();
+                }
+                TensorType type = TensorType.of(head.getInt());
+                long offset = head.getLong();
+                infos.add(new TensorInfo(name, type, shape, offset));
+            }
+
+            Object alignmentValue = metadata.get("general.alignment");
+            long alignment = alignmentValue instanceof Number ? ((Number) alignmentValue).longValue()
+                    : DEFAULT_ALIGNMENT;
+            if (alignment <= 0 || (alignment & (alignment - 1)) != 0) {
+                throw new IOException("Invalid alignment " + alignment + " in " + path);
+            }
+            long dataStart = (head.position() + alignment - 1) / alignment * alignment;
+
+            Map<String, TensorInfo> tensors = new LinkedHashMap<>();
+            for (TensorInfo info : infos) {
+                info.offset += dataStart;
+                info.length = info.type.bytes(info.getElementCount(), info.shape.length > 0 ? info.shape[0] : 1);
+                if (info.offset + info.length > fileSize) {
+                    throw new IOException("Tensor " + info.name + " lies outside " + path);
+                }
+                if (tensors.put(info.name, info) != null) {
+                    throw new IOException("Duplicate tensor " + info.name + " in " + path);
+                }
+            }
+            GgufReader reader = new GgufReader(path, channel, version, metadata, tensors);
+            logger.info("Opened GGUF v{} {} with {} tensors, architecture {}", version, path.getFileName(),
+                    tensors.size(), reader.getArchitecture());
+            return reader;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            channel.close();
+            throw new IOException("Invalid GGUF file " + path + ": " + e, e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        long length = buffer.getLong();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Object readValue(ByteBuffer buffer, int type) throws IOException {
+        switch (type) {
+            case 0: return (long) (buffer.get() & 0xff);
+            case 1: return (long) buffer.get();
+            case 2: return (long) (buffer.getShort() & 0xffff);
+            case 3: return (long) buffer.getShort();
+            case 4: return buffer.getInt() & 0xffffffffL;
+            case 5: return (long) buffer.getInt();
+            case 6: return (double) buffer.getFloat();
+            case 7: return buffer.get() != 0;
+            case 8: return readString(buffer);
+            case 9: {
+                int elementType = buffer.getInt();
+                long count = buffer.getLong();
+                if (count < 0 || count > buffer.remaining()) {
+                    throw new IOException("Invalid array length " + count);
+                }
+                List<Object> values = new ArrayList<>((int) count);
+                for (long i = 0; i < count; i++) {
+                    values.add(readValue(buffer, elementType));
+                }
+                return values;
+            }
+            case 10: return buffer.getLong();
+            case 11: return buffer.getLong();
+            case 12: return buffer.getDouble();
+            default:
+                throw new IOException("Unknown GGUF value type " + type);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * All metadata: integers as {@code Long}, floats as {@code Double},
+     * booleans, strings and arrays as {@code List}.
+     */
+    public Map<String, Object> getMetadata() {
+        return Collections.unmodifiableMap(metadata);
+    }
+
+    public String getString(String key) {
+        Object value = metadata.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Object value = metadata.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        Object value = metadata.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
+
+    /** A string array, empty if the key is missing. */
+    public List<String> getStringList(String key) {
+        Object value = metadata.get(key);
+        List<String> strings = new ArrayList<>();
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                strings.add(String.valueOf(element));
+            }
+        }
+        return strings;
+    }
+
+    /** {@code general.architecture}, e.g. {@code gpt2} or {@code llama}. */
+    public String getArchitecture() {
+        return getString("general.architecture");
+    }
+
+    /** Trained context length of the architecture, or -1 if not given. */
+    public long getContextLength() {
+        return getLong(getArchitecture() + ".context_length", -1);
+    }
+
+    /** Tokenizer vocabulary by id. */
+    public List<String> getTokens() {
+        return getStringList("tokenizer.ggml.tokens");
+    }
+
+    /** BPE merges, as space-separated pairs. */
+    public List<String> getMerges() {
+        return getStringList("tokenizer.ggml.merges");
+    }
+
+    /** Tensor names, in file order. */
+    public Set<String> getTensorNames() {
+        return Collections.unmodifiableSet(tensors.keySet());
+    }
+
+    /**
+     * Metadata of a tensor, or null if there is no such tensor.
+     */
+    public TensorInfo getInfo(String name) {
+        return tensors.get(name);
+    }
+
+    /**
+     * Raw data of a tensor, quantized blocks as stored, as a read-only,
+     * little-endian view of the mapped file. The mapping is created on first
+     * access and reused.
+     *
+     * @throws IOException if the tensor does not exist or is larger than 2 GB
+     */
+    public ByteBuffer getTensorData(String name) throws IOException {
+        TensorInfo info = tensors.get(name);
+        if (info == null) {
+            throw new IOException("No tensor named " + name);
+        }
+        if (info.length > Integer.MAX_VALUE) {
+            throw new IOException("Tensor " + name + " is larger than 2 GB and cannot be mapped as one buffer");
+        }
+        ByteBuffer buffer = mapped.get(name);
+        if (buffer == null) {
+            if (!channel.isOpen()) {
+                throw new IOException("Reader for " + path + " is closed");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, info.offset, info.length);
+            mapped.put(name, buffer);
+        }
+        return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Copy of an {@code F32} or {@code F16} tensor onto the heap.
+     */
+    public float[] toFloatArray(String name) throws IOException {
+        TensorInfo info = tensors.get(name);
+        if (info == null) {
+            throw new IOException("No tensor named " + name);
+        }
+        ByteBuffer data = getTensorData(name);
+        float[] values = new float[(int) info.getElementCount()];
+        if (info.type == TensorType.F32) {
+            data.asFloatBuffer().get(values);
+        } else if (info.type == TensorType.F16) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = SafetensorsReader.halfToFloat(data.getShort(i * 2));
+            }
+        } else {
+            throw new IOException("Tensor " + name + " is " + info.type + ", expected F32 or F16");
+        }
+        return values;
+    }
+
+    /**
+     * Write the embedded byte-level BPE tokenizer ({@code tokenizer.ggml.model}
+     * {@code gpt2}) as a HuggingFace {@code tokenizer.json}.
+     *
+     * @throws IOException if the file has no such tokenizer
+     */
+    public void writeTokenizerJson(Path file) throws IOException {
+        String model = getString("tokenizer.ggml.model");
+        if (!"gpt2".equals(model)) {
+            throw new IOException("No byte-level BPE tokenizer in " + path + " (tokenizer.ggml.model=" + model + ")");
+        }
+        List<String> tokens = getTokens();
+        JsonObject vocab = new JsonObject();
+        for (int id = 0; id < tokens.size(); id++) {
+            vocab.addProperty(tokens.get(id), id);
+        }
+        JsonArray merges = new JsonArray();
+        for (String merge : getMerges()) {
+            merges.add(merge);
+        }
+
+        JsonObject bpe = new JsonObject();
+        bpe.addProperty("type", "BPE");
+        bpe.add("dropout", JsonNull.INSTANCE);
+        bpe.add("unk_token", JsonNull.INSTANCE);
+        bpe.addProperty("continuing_subword_prefix", "");
+        bpe.addProperty("end_of_word_suffix", "");
+        bpe.addProperty("fuse_unk", false);
+        bpe.add("vocab", vocab);
+        bpe.add("merges", merges);
+
+        JsonObject root = new JsonObject();
+        root.addProperty("version", "1.0");
+        root.add("truncation", JsonNull.INSTANCE);
+        root.add("padding", JsonNull.INSTANCE);
+        root.add("added_tokens", new JsonArray());
+        root.add("normalizer", JsonNull.INSTANCE);
+        root.add("pre_tokenizer", byteLevel(false));
+        root.add("post_processor", byteLevel(true));
+        root.add("decoder", byteLevel(true));
+        root.add("model", bpe);
+        Files.writeString(file, new GsonBuilder().serializeNulls().create().toJson(root));
+    }
+
+    private static JsonObject byteLevel(boolean addPrefixSpace) {
+        JsonObject byteLevel = new JsonObject();
+        byteLevel.addProperty("type", "ByteLevel");
+        byteLevel.addProperty("add_prefix_space", addPrefixSpace);
+        byteLevel.addProperty("trim_offsets", true);
+        byteLevel.addProperty("use_regex", true);
+        return byteLevel;
+    }
+
+    /**
+     * Close the file. Views handed out stay readable until they are garbage
+     * collected.
+     */
+    @Override
+    public void close() throws IOException {
+        mapped.clear();
+        channel.close();
+    }
+
+    /**
+     * GGML tensor types with their block size and bytes per block.
+     */
+    public enum TensorType {
+        F32(0, 1, 4),
+        F16(1, 1, 2),
+        Q4_0(2, 32, 18),
+        Q4_1(3, 32, 20),
+        Q5_0(6, 32, 22),
+        Q5_1(7, 32, 24),
+        Q8_0(8, 32, 34),
+        Q8_1(9, 32, 36),
+        Q2_K(10, 256, 84),
+        Q3_K(11, 256, 110),
+        Q4_K(12, 256, 144),
+        Q5_K(13, 256, 176),
+        Q6_K(14, 256, 210),
+        Q8_K(15, 256, 292),
+        I8(24, 1, 1),
+        I16(25, 1, 2),
+        I32(26, 1, 4),
+        I64(27, 1, 8),
+        F64(28, 1, 8),
+        BF16(30, 1, 2);
+
+        private final int id;
+        private final int blockSize;
+        private final int blockBytes;
+
+        TensorType(int id, int blockSize, int blockBytes) {
+            this.id = id;
+            this.blockSize = blockSize;
+            this.blockBytes = blockBytes;
+        }
+
+        static TensorType of(int id) throws IOException {
+            for (TensorType type : values()) {
+                if (type.id == id) {
+                    return type;
+                }
+            }
+            throw new IOException("Unsupported GGML tensor type " + id);
+        }
+
+        public int getId() { return id; }
+
+        /** Values per block; 1 for unquantized types. */
+        public int getBlockSize() { return blockSize; }
+
+        /** Bytes per block. */
+        public int getBlockBytes() { return blockBytes; }
+
+        /**
+         * Bytes of a tensor. Blocks run along the first dimension, which must
+         * be a multiple of the block size.
+         */
+        long bytes(long elements, long rowLength) throws IOException {
+            if (rowLength % blockSize != 0) {
+                throw new IOException("Row of " + rowLength + " values is not a multiple of the " + this +
+                        " block size " + blockSize);
+            }
+            return elements / blockSize * blockBytes;
+        }
+    }
+
+    /**
+     * Name, type, shape and location of one tensor. The shape is in GGML
+     * order: the first dimension is the contiguous one, so a weight matrix
+     * is {@code [inputs, outputs]}, stored row-major by output.
+     */
+    public static class TensorInfo {
+        private final String name;
+        private final TensorType type;
+        private final long[] shape;
+        private long offset;
+        private long length;
+
+        TensorInfo(String name, TensorType type, long[] shape, long offset) {
+            this.name = name;
+            this.type = type;
+            this.shape = shape;
+            this.offset = offset;
+        }
+
+        public String getName() { return name; }
+        public TensorType getType() { return type; }
+        public long[] getShape() { return shape.clone(); }
+
+        /** Absolute offset of the data in the file. */
+        public long getOffset() { return offset; }
+
+        /** Bytes of data. */
+        public long getLength() { return length; }
+
+        public long getElementCount() {
+            long count = 1;
+            for (long dim : shape) {
+                count *= dim;
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + type + " " + Arrays.toString(shape);
+        }
+    }
+}
@@ -0,0 +1,674 @@
+package com.jinfer.engine;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.jinfer.config.ModelConfig;
+import com.jinfer.config.WeightQuantization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Inference session running GPT-2 family decoders directly in Java from
+ * SafeTensors or GGUF weights, without a native runtime.
+ *
+ * <p>Keys and values of every layer are cached across calls: when the input
+ * extends the tokens of the previous call, as it does on every decode step,
+ * only the new tokens go through the network. Matrix products are split over
+ * output rows and attention over heads and tokens on a fork/join pool sized by
+ * the session tuning's intra-op threads.
+ *
+ * <p>Weight matrices are quantized to 8 or 4 bits per value at load time if
+ * the config asks for it. Checkpoints written by {@code jinfer quantize} hold
+ * the matrices quantized already, as {@code <layer>.qweight} ({@code I8} for
+ * Q8, packed {@code U8} for Q4, row-major by output) and
+ * {@code <layer>.scales}; they are used straight from the mapped file.
+ * So are the matrices of GGUF files, in {@code F32}, {@code F16},
+ * {@code Q8_0} or {@code Q4_0}.
+ */
+public class Gpt2InferenceSession implements InferenceSession {
+
+    private static final Logger logger = LoggerFactory.getLogger(Gpt2InferenceSession.class);
+
+    private static final float GELU_SCALE = (float) Math.sqrt(2.0 / Math.PI);
+
+    private final Hyperparameters hp;
+    private final int maxContextLength;
+    private final Parallel parallel;
+
+    private final float[] positionEmbedding;
+    private final Block[] blocks;
+    private final float[] finalNormWeight;
+    private final float[] finalNormBias;
+    /** Looked up by token row; the same layer as {@link #lmHead} when the two are tied. */
+    private final Linear tokenEmbedding;
+    private final Linear lmHead;
+
+    // Per layer keys and values of the cached positions, position-major
+    private final float[][] keyCache;
+    private final float[][] valueCache;
+    private long[] cachedIds = new long[0];
+    private long[] cachedMask = new long[0];
+    private int cachedLength = 0;
+
+    /**
+     * Load the weights of a config's model: a {@code .safetensors} file or a
+     * sharded checkpoint's index, with the {@code config.json} next to it, or
+     * a {@code .gguf} file of the {@code gpt2} architecture.
+     */
+    public Gpt2InferenceSession(ModelConfig config) throws IOException {
+        long start = System.nanoTime();
+        Path modelPath = config.getModelPath();
+        WeightQuantization quantization = config.getWeightQuantization();
+        if (isGguf(modelPath)) {
+            try (GgufReader gguf = GgufReader.open(modelPath)) {
+                this.hp = Hyperparameters.read(gguf);
+                int e = hp.embedding;
+                this.positionEmbedding = tensor(gguf, "position_embd.weight", e, hp.positions);
+                this.blocks = new Block[hp.layers];
+                for (int i = 0; i < hp.layers; i++) {
+                    blocks[i] = new Block(gguf, "blk." + i + ".", e, quantization);
+                }
+                this.finalNormWeight = tensor(gguf, "output_norm.weight", e);
+                this.finalNormBias = tensor(gguf, "output_norm.bias", e);
+                this.tokenEmbedding = tokenEmbedding(gguf, e, quantization);
+                this.lmHead = lmHead(gguf, tokenEmbedding, e, quantization);
+            }
+        } else {
+            this.hp = Hyperparameters.read(modelPath.toAbsolutePath().getParent().resolve("config.json"));
+            try (ShardedSafetensors weights = ShardedSafetensors.open(modelPath)) {
+                String prefix = weights.getInfo("transformer.wpe.weight") != null ? "transformer." : "";
+                int e = hp.embedding;
+                this.positionEmbedding = tensor(weights, prefix + "wpe.weight", hp.positions, e);
+                this.blocks = new Block[hp.layers];
+                for (int i = 0; i < hp.layers; i++) {
+                    blocks[i] = new Block(weights, prefix + "h." + i + ".", e, quantization);
+                }
+                this.finalNormWeight = tensor(weights, prefix + "ln_f.weight", e);
+                this.finalNormBias = tensor(weights, prefix + "ln_f.bias", e);
+                this.lmHead = lmHead(weights, prefix, e, quantization);
+                this.tokenEmbedding = weights.getInfo(prefix + "wte.qweight") != null
+                        ? quantized(weights, prefix + "wte", e, null) : lmHead;
+            }
+        }
+        this.maxContextLength = config.getContextLength() > 0
+                ? Math.min(config.getContextLength(), hp.positions) : hp.positions;
+        this.keyCache = new float[hp.layers][0];
+        this.valueCache = new float[hp.layers][0];
+        this.parallel = new Parallel(config.getSessionTuning().effectiveIntraOpThreads());
+
+        logger.info("Loaded GPT-2 model with {} layers, {} heads, {} embedding, {} vocabulary, {} MB of {} weights " +
+                "in {} ms on {} threads", hp.layers, hp.heads, hp.embedding, getVocabSize(),
+                getWeightBytes() / (1024 * 1024), getWeightQuantization(), (System.nanoTime() - start) / 1_000_000,
+                parallel.getParallelism());
+    }
+
+    static boolean isGguf(Path modelPath) {
+        return modelPath.getFileName().toString().toLowerCase().endsWith(".gguf");
+    }
+
+    /**
+     * The output projection, tied to the token embedding, which is looked up
+     * from its rows unless a quantized checkpoint also stores {@code wte}.
+     */
+    private static Linear lmHead(ShardedSafetensors weights, String prefix, int e, WeightQuantization quantization)
+            throws IOException {
+        if (weights.getInfo(prefix + "lm_head.qweight") != null) {
+            return quantized(weights, prefix + "lm_head", e, null);
+        }
+        SafetensorsReader.TensorInfo info = weights.getInfo(prefix + "wte.weight");
+        if (info == null || info.getShape().length != 2) {
+            throw new IOException("Missing or malformed token embedding " + prefix + "wte.weight");
+        }
+        int vocab = (int) info.getShape()[0];
+        float[] embedding = tensor(weights, prefix + "wte.weight", vocab, e);
+        return quantization == WeightQuantization.NONE
+                ? new FloatLinear(embedding, null, e, vocab)
+                : QuantizedLinear.quantize(quantization, embedding, null, e, vocab);
+    }
+
+    /**
+     * A GPT-2 {@code Conv1D} layer, stored input-major in float checkpoints.
+     */
+    private static Linear conv1d(ShardedSafetensors weights, String name, int in, int out,
+                                 WeightQuantization quantization) throws IOException {
+        float[] bias = tensor(weights, name + ".bias", out);
+        if (weights.getInfo(name + ".qweight") != null) {
+            return quantized(weights, name, in, bias);
+        }
+        float[] weight = FloatLinear.transpose(tensor(weights, name + ".weight", in, out), in, out);
+        return quantization == WeightQuantization.NONE
+                ? new FloatLinear(weight, bias, in, out)
+                : QuantizedLinear.quantize(quantization, weight, bias, in, out);
+    }
+
+    /**
+     * A layer quantized ahead of time, as views of the mapped checkpoint.
+     */
+    private static Linear quantized(ShardedSafetensors weights, String name, int in, float[] bias)
+            throws IOException {
+        SafetensorsReader.TensorInfo info = weights.getInfo(name + ".qweight");
+        WeightQuantization type;
+        if (info.getDtype().equals("I8")) {
+            type = WeightQuantization.Q8;
+        } else if (info.getDtype().equals("U8")) {
+            type = WeightQuantization.Q4;
+        } else {
+            throw new IOException("Quantized weight " + info.getName() + " has unsupported dtype " + info.getDtype());
+        }
+        long[] shape = info.getShape();
+        int blocks = QuantizedLinear.blocks(in);
+        if (shape.length != 2 || shape[1] != (long) blocks * QuantizedLinear.blockBytes(type)) {
+            throw new IOException("Quantized weight " + info.getName() + " has shape " + Arrays.toString(shape) +
+                    " for " + in + " inputs");
+        }
+        int out = (int) shape[0];
+        SafetensorsReader.TensorInfo scaleInfo = weights.getInfo(name + ".scales");
+        if (scaleInfo == null || !Arrays.equals(scaleInfo.getShape(), new long[]{out, blocks})) {
+            throw new IOException("Missing or malformed scales " + name + ".scales");
+        }
+        ByteBuffer data = weights.getTensorData(name + ".qweight");
+        FloatBuffer scales = weights.getReader(name + ".scales").getFloats(name + ".scales");
+        try {
+            return new QuantizedLinear(type, data, scales, bias, in, out);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid quantized layer " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static float[] tensor(ShardedSafetensors weights, String name, long... shape) throws IOException {
+        SafetensorsReader.TensorInfo info = weights.getInfo(name);
+        if (info == null) {
+            throw new IOException("Missing tensor " + name);
+        }
+        if (!Arrays.equals(info.getShape(), shape)) {
+            throw new IOException("Tensor " + name + " has shape " + Arrays.toString(info.getShape()) +
+                    ", expected " + Arrays.toString(shape));
+        }
+        return weights.getReader(name).toFloatArray(name);
+    }
+
+    /**
+     * The token embedding of a GGUF model, looked up by row.
+     */
+    private static Linear tokenEmbedding(GgufReader gguf, int e, WeightQuantization quantization)
+            throws IOException {
+        GgufReader.TensorInfo info = gguf.getInfo("token_embd.weight");
+        if (info == null || info.getShape().length != 2 || info.getShape()[0] != e) {
+            throw new IOException("Missing or malformed token embedding token_embd.weight");
+        }
+        return linear(gguf, "token_embd.weight", null, e, (int) info.getShape()[1], quantization);
+    }
+
+    /**
+     * The output projection of a GGUF model: {@code output.weight}, which
+     * may differ from the embedding or be stored at another type, or else
+     * the tied token embedding.
+     */
+    private static Linear lmHead(GgufReader gguf, Linear tokenEmbedding, int e, WeightQuantization quantization)
+            throws IOException {
+        GgufReader.TensorInfo info = gguf.getInfo("output.weight");
+        if (info == null) {
+            return tokenEmbedding;
+        }
+        int vocab = tokenEmbedding.outputSize();
+        if (!Arrays.equals(info.getShape(), new long[]{e, vocab})) {
+            throw new IOException("Malformed output projection output.weight with shape " +
+                    Arrays.toString(info.getShape()) + ", expected " + Arrays.toString(new long[]{e, vocab}));
+        }
+        return linear(gguf, "output.weight", null, e, vocab, quantization);
+    }
+
+    /**
+     * A GGUF layer with a bias, stored by output as GGUF always does.
+     */
+    private static Linear linear(GgufReader gguf, String name, int in, int out, WeightQuantization quantization)
+            throws IOException {
+        return linear(gguf, name + ".weight", tensor(gguf, name + ".bias", out), in, out, quantization);
+    }
+
+    /**
+     * Float tensors are quantized if the config asks for it; otherwise the
+     * layer computes on the mapped tensor, quantized or not, without a copy.
+     */
+    private static Linear linear(GgufReader gguf, String name, float[] bias, int in, int out,
+                                 WeightQuantization quantization) throws IOException {
+        GgufReader.TensorInfo info = gguf.getInfo(name);
+        if (info == null) {
+            throw new IOException("Missing tensor " + name);
+        }
+        if (!Arrays.equals(info.getShape(), new long[]{in, out})) {
+            throw new IOException("Tensor " + name + " has shape " + Arrays.toString(info.getShape()) +
+                    ", expected " + Arrays.toString(new long[]{in, out}));
+        }
+        GgufReader.TensorType type = info.getType();
+        if (!GgmlLinear.isSupported(type)) {
+            throw new IOException("Tensor " + name + " is " + type + "; the Java backend computes with F32, F16, " +
+                    "Q8_0 and Q4_0 tensors");
+        }
+        boolean isFloat = type == GgufReader.TensorType.F32 || type == GgufReader.TensorType.F16;
+        if (isFloat && quantization != WeightQuantization.NONE) {
+            return QuantizedLinear.quantize(quantization, gguf.toFloatArray(name), bias, in, out);
+        }
+        return new GgmlLinear(type, gguf.getTensorData(name), bias, in, out);
+    }
+
+    /**
+     * A float tensor of a GGUF file, with its shape in GGML order.
+     */
+    private static float[] tensor(GgufReader gguf, String name, long... shape) throws IOException {
+        GgufReader.TensorInfo info = gguf.getInfo(name);
+        if (info == null) {
+            throw new IOException("Missing tensor " + name);
+        }
+        if (!Arrays.equals(info.getShape(), shape)) {
+            throw new IOException("Tensor " + name + " has shape " + Arrays.toString(info.getShape()) +
+                    ", expected " + Arrays.toString(shape));
+        }
+        return gguf.toFloatArray(name);
+    }
+
+    @Override
+    public synchronized float[] forward(long[] inputIds, long[] attentionMask) {
+        int length = inputIds.length;
+        if (length == 0) {
+            throw new IllegalArgumentException("No input tokens");
+        }
+        if (length > maxContextLength) {
+            throw new IllegalArgumentException("Input of " + length + " tokens exceeds the context of " +
+                    maxContextLength);
+        }
+        long[] mask = attentionMask != null ? attentionMask : ones(length);
+
+        // Reuse the cached prefix, but always recompute the last token for its logits
+        int past = Math.min(cachedPrefix(inputIds, mask), length - 1);
+        int rows = length - past;
+        int e = hp.embedding;
+        ensureCapacity(length);
+
+        float[] hidden = new float[rows * e];
+        for (int r = 0; r < rows; r++) {
+            long token = inputIds[past + r];
+            if (token < 0 || token >= getVocabSize()) {
+                throw new IllegalArgumentException("Token id " + token + " outside the vocabulary");
+            }
+            tokenEmbedding.row((int) token, hidden, r * e);
+            int p = (past + r) * e;
+            for (int i = 0; i < e; i++) {
+                hidden[r * e + i] += positionEmbedding[p + i];
+            }
+        }
+
+        // Positions from past on are overwritten below
+        cachedLength = past;
+
+        float[] normed = new float[rows * e];
+        float[] qkv = new float[rows * 3 * e];
+        float[] context = new float[rows * e];
+        float[] projected = new float[rows * e];
+        float[] mlp = new float[rows * 4 * e];
+        for (int layer = 0; layer < hp.layers; layer++) {
+            Block block = blocks[layer];
+            layerNorm(hidden, normed, rows, block.norm1Weight, block.norm1Bias);
+            block.attention.apply(normed, qkv, rows, parallel);
+            for (int r = 0; r < rows; r++) {
+                System.arraycopy(qkv, r * 3 * e + e, keyCache[layer], (past + r) * e, e);
+                System.arraycopy(qkv, r * 3 * e + 2 * e, valueCache[layer], (past + r) * e, e);
+            }
+            attend(layer, qkv, context, past, rows, mask);
+            block.attentionProjection.apply(context, projected, rows, parallel);
+            add(hidden, projected);
+
+            layerNorm(hidden, normed, rows, block.norm2Weight, block.norm2Bias);
+            block.feedForward.apply(normed, mlp, rows, parallel);
+            gelu(mlp);
+            block.feedForwardProjection.apply(mlp, projected, rows, parallel);
+            add(hidden, projected);
+        }
+
+        cachedIds = Arrays.copyOf(inputIds, length);
+        cachedMask = Arrays.copyOf(mask, length);
+        cachedLength = length;
+
+        // Only the last position's logits are returned
+        float[] last = Arrays.copyOfRange(hidden, (rows - 1) * e, rows * e);
+        layerNorm(last, last, 1, finalNormWeight, finalNormBias);
+        float[] logits = new float[lmHead.outputSize()];
+        lmHead.apply(last, logits, 1, parallel);
+        return logits;
+    }
+
+    private int cachedPrefix(long[] inputIds, long[] mask) {
+        int limit = Math.min(cachedLength, inputIds.length);
+        int prefix = 0;
+        while (prefix < limit && cachedIds[prefix] == inputIds[prefix] && cachedMask[prefix] == mask[prefix]) {
+            prefix++;
+        }
+        return prefix;
+    }
+
+    private void ensureCapacity(int length) {
+        int needed = length * hp.embedding;
+        if (keyCache[0].length >= needed) {
+            return;
+        }
+        // Grow geometrically up to the context, so short chats do not reserve the full cache
+        int positions = Math.min(maxContextLength, Math.max(length, keyCache[0].length / hp.embedding * 2));
+        for (int layer = 0; layer < hp.layers; layer++) {
+            keyCache[layer] = Arrays.copyOf(keyCache[layer], positions * hp.embedding);
+            valueCache[layer] = Arrays.copyOf(valueCache[layer], positions * hp.embedding);
+        }
+    }
+
+    /**
+     * Causal self-attention of the new rows over all cached positions, with
+     * scores, softmax and the weighted sum of values fused into one pass using
+     * a running maximum.
+     */
+    private void attend(int layer, float[] qkv, float[] context, int past, int rows, long[] mask) {
+        int e = hp.embedding;
+        int headSize = e / hp.heads;
+        float scale = (float) (1.0 / Math.sqrt(headSize));
+        float[] keys = keyCache[layer];
+        float[] values = valueCache[layer];
+        parallel.forRange(rows * hp.heads, 1, (from, to) -> {
+            float[] acc = new float[headSize];
+            for (int task = from; task < to; task++) {
+                int r = task / hp.heads;
+                int head = task % hp.heads;
+                int q = r * 3 * e + head * headSize;
+                Arrays.fill(acc, 0f);
+                float max = Float.NEGATIVE_INFINITY;
+                float sum = 0f;
+                for (int pos = 0; pos <= past + r; pos++) {
+                    if (mask[pos] == 0) {
+                        continue;
+                    }
+                    int k = pos * e + head * headSize;
+                    float score = FloatLinear.dot(qkv, q, keys, k, headSize) * scale;
+                    if (score > max) {
+                        float correction = (float) Math.exp(max - score);
+                        sum *= correction;
+                        for (int d = 0; d < headSize; d++) {
+                            acc[d] *= correction;
+                        }
+                        max = score;
+                    }
+                    float weight = (float) Math.exp(score - max);
+                    sum += weight;
+                    for (int d = 0; d < headSize; d++) {
+                        acc[d] += weight * values[k + d];
+                    }
+                }
+                int out = r * e + head * headSize;
+                for (int d = 0; d < headSize; d++) {
+                    context[out + d] = sum > 0f ? acc[d] / sum : 0f;
+                }
+            }
+        });
+    }
+
+    private void layerNorm(float[] x, float[] y, int rows, float[] weight, float[] bias) {
+        int e = hp.embedding;
+        for (int r = 0; r < rows; r++) {
+            int offset = r * e;
+            float mean = 0f;
+            for (int i = 0; i < e; i++) {
+                mean += x[offset + i];
+            }
+            mean /= e;
+            float variance = 0f;
+            for (int i = 0; i < e; i++) {
+                float centered = x[offset + i] - mean;
+                variance += centered * centered;
+            }
+            float inverse = (float) (1.0 / Math.sqrt(variance / e + hp.epsilon));
+            for (int i = 0; i < e; i++) {
+                y[offset + i] = (x[offset + i] - mean) * inverse * weight[i] + bias[i];
+            }
+        }
+    }
+
+    /** The tanh approximation of GELU used by GPT-2. */
+    private static void gelu(float[] x) {
+        for (int i = 0; i < x.length; i++) {
+            float v = x[i];
+            x[i] = 0.5f * v * (1f + (float) Math.tanh(GELU_SCALE * (v + 0.044715f * v * v * v)));
+        }
+    }
+
+    private static void add(float[] target, float[] values) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += values[i];
+        }
+    }
+
+    private static long[] ones(int length) {
+        long[] mask = new long[length];
+        Arrays.fill(mask, 1L);
+        return mask;
+    }
+
+    /** Drop the cached keys and values, e.g. to release memory between conversations. */
+    public synchronized void resetCache() {
+        cachedIds = new long[0];
+        cachedMask = new long[0];
+        cachedLength = 0;
+        for (int layer = 0; layer < hp.layers; layer++) {
+            keyCache[layer] = new float[0];
+            valueCache[layer] = new float[0];
+        }
+    }
+
+    /** Positions currently held in the key/value cache. */
+    public synchronized int getCachedLength() {
+        return cachedLength;
+    }
+
+    /** Bytes held by the weights, quantized or not. */
+    public long getWeightBytes() {
+        long bytes = 4L * (positionEmbedding.length + finalNormWeight.length + finalNormBias.length);
+        for (Block block : blocks) {
+            bytes += block.weightBytes();
+        }
+        if (tokenEmbedding != lmHead) {
+            bytes += tokenEmbedding.weightBytes();
+        }
+        return bytes + lmHead.weightBytes();
+    }
+
+    /** Weights plus the key/value cache grown to the full context. */
+    @Override
+    public long estimateMemoryBytes() {
+        return getWeightBytes() + 2L * 4 * hp.layers * maxContextLength * hp.embedding;
+    }
+
+    /** Storage of the weight matrices. */
+    public WeightQuantization getWeightQuantization() {
+        if (lmHead instanceof GgmlLinear) {
+            return ((GgmlLinear) lmHead).getQuantization();
+        }
+        return lmHead instanceof QuantizedLinear ? ((QuantizedLinear) lmHead).getType() : WeightQuantization.NONE;
+    }
+
+    /**
+     * Write the weights as a quantized checkpoint, loadable by this class.
+     *
+     * @throws IllegalStateException if the weights were not quantized at load time
+     */
+    void export(SafetensorsWriter writer) {
+        if (!(lmHead instanceof QuantizedLinear) || !(tokenEmbedding instanceof QuantizedLinear)) {
+            throw new IllegalStateException("Weights are not quantized");
+        }
+        WeightQuantization type = getWeightQuantization();
+        writer.putMetadata("format", "pt");
+        writer.putMetadata("quantization", type.name());
+        writer.putMetadata("block_size", String.valueOf(QuantizedLinear.BLOCK_SIZE));
+        int e = hp.embedding;
+        writer.addFloats("wpe.weight", new long[]{hp.positions, e}, positionEmbedding);
+        for (int i = 0; i < blocks.length; i++) {
+            Block block = blocks[i];
+            String prefix = "h." + i + ".";
+            writer.addFloats(prefix + "ln_1.weight", new long[]{e}, block.norm1Weight);
+            writer.addFloats(prefix + "ln_1.bias", new long[]{e}, block.norm1Bias);
+            export(writer, prefix + "attn.c_attn", block.attention);
+            export(writer, prefix + "attn.c_proj", block.attentionProjection);
+            writer.addFloats(prefix + "ln_2.weight", new long[]{e}, block.norm2Weight);
+            writer.addFloats(prefix + "ln_2.bias", new long[]{e}, block.norm2Bias);
+            export(writer, prefix + "mlp.c_fc", block.feedForward);
+            export(writer, prefix + "mlp.c_proj", block.feedForwardProjection);
+        }
+        writer.addFloats("ln_f.weight", new long[]{e}, finalNormWeight);
+        writer.addFloats("ln_f.bias", new long[]{e}, finalNormBias);
+        export(writer, "lm_head", lmHead);
+        if (tokenEmbedding != lmHead) {
+            export(writer, "wte", tokenEmbedding);
+        }
+    }
+
+    private static void export(SafetensorsWriter writer, String name, Linear linear) {
+        QuantizedLinear layer = (QuantizedLinear) linear;
+        int blocks = QuantizedLinear.blocks(layer.inputSize());
+        long out = layer.outputSize();
+        writer.add(name + ".qweight", layer.getType() == WeightQuantization.Q8 ? "I8" : "U8",
+                new long[]{out, (long) blocks * QuantizedLinear.blockBytes(layer.getType())}, layer.getData());
+        writer.addFloats(name + ".scales", new long[]{out, blocks}, layer.getScales());
+        if (layer.getBias() != null) {
+            writer.addFloats(name + ".bias", new long[]{out}, layer.getBias());
+        }
+    }
+
+    @Override
+    public int getVocabSize() {
+        return lmHead.outputSize();
+    }
+
+    @Override
+    public int getMaxContextLength() {
+        return maxContextLength;
+    }
+
+    @Override
+    public void close() {
+        parallel.close();
+    }
+
+    /**
+     * Weights of one decoder block.
+     */
+    private static final class Block {
+        final float[] norm1Weight;
+        final float[] norm1Bias;
+        final Linear attention;
+        final Linear attentionProjection;
+        final float[] norm2Weight;
+        final float[] norm2Bias;
+        final Linear feedForward;
+        final Linear feedForwardProjection;
+
+        Block(ShardedSafetensors weights, String prefix, int e, WeightQuantization quantization)
+                throws IOException {
+            norm1Weight = tensor(weights, prefix + "ln_1.weight", e);
+            norm1Bias = tensor(weights, prefix + "ln_1.bias", e);
+            attention = conv1d(weights, prefix + "attn.c_attn", e, 3 * e, quantization);
+            attentionProjection = conv1d(weights, prefix + "attn.c_proj", e, e, quantization);
+            norm2Weight = tensor(weights, prefix + "ln_2.weight", e);
+            norm2Bias = tensor(weights, prefix + "ln_2.bias", e);
+            feedForward = conv1d(weights, prefix + "mlp.c_fc", e, 4 * e, quantization);
+            feedForwardProjection = conv1d(weights, prefix + "mlp.c_proj", 4 * e, e, quantization);
+        }
+
+        Block(GgufReader gguf, String prefix, int e, WeightQuantization quantization) throws IOException {
+            norm1Weight = tensor(gguf, prefix + "attn_norm.weight", e);
+            norm1Bias = tensor(gguf, prefix + "attn_norm.bias", e);
+            attention = linear(gguf, prefix + "attn_qkv", e, 3 * e, quantization);
+            attentionProjection = linear(gguf, prefix + "attn_output", e, e, quantization);
+            norm2Weight = tensor(gguf, prefix + "ffn_norm.weight", e);
+            norm2Bias = tensor(gguf, prefix + "ffn_norm.bias", e);
+            feedForward = linear(gguf, prefix + "ffn_up", e, 4 * e, quantization);
+            feedForwardProjection = linear(gguf, prefix + "ffn_down", 4 * e, e, quantization);
+        }
+
+        long weightBytes() {
+            return 4L * (norm1Weight.length + norm1Bias.length + norm2Weight.length + norm2Bias.length) +
+                    attention.weightBytes() + attentionProjection.weightBytes() +
+                    feedForward.weightBytes() + feedForwardProjection.weightBytes();
+        }
+    }
+
+    /**
+     * Architecture settings from a model's {@code config.json} or GGUF metadata.
+     */
+    static final class Hyperparameters {
+        final int embedding;
+        final int heads;
+        final int layers;
+        final int positions;
+        final double epsilon;
+
+        Hyperparameters(int embedding, int heads, int layers, int positions, double epsilon) {
+            if (embedding <= 0 || heads <= 0 || embedding % heads != 0 || layers <= 0 || positions <= 0) {
+                throw new IllegalArgumentException("Invalid GPT-2 configuration: n_embd=" + embedding +
+                        ", n_head=" + heads + ", n_layer=" + layers + ", n_positions=" + positions);
+            }
+            this.embedding = embedding;
+            this.heads = heads;
+            this.layers = layers;
+            this.positions = positions;
+            this.epsilon = epsilon;
+        }
+
+        static Hyperparameters read(Path configFile) throws IOException {
+            if (!Files.isRegularFile(configFile)) {
+                throw new IOException("No config.json next to the weights: " + configFile);
+            }
+            try {
+                JsonObject json = JsonParser.parseString(Files.readString(configFile)).getAsJsonObject();
+                String type = json.has("model_type") ? json.get("model_type").getAsString() : "gpt2";
+                if (!type.equals("gpt2")) {
+                    throw new IOException("The Java backend supports GPT-2 models, not " + type);
+                }
+                String activation = json.has("activation_function")
+                        ? json.get("activation_function").getAsString() : "gelu_new";
+                if (!activation.startsWith("gelu")) {
+                    throw new IOException("Unsupported activation function " + activation);
+                }
+                JsonElement positions = json.has("n_positions") ? json.get("n_positions") : json.get("n_ctx");
+                return new Hyperparameters(
+                        json.get("n_embd").getAsInt(),
+                        json.get("n_head").getAsInt(),
+                        json.get("n_layer").getAsInt(),
+                        positions.getAsInt(),
+                        json.has("layer_norm_epsilon") ? json.get("layer_norm_epsilon").getAsDouble() : 1e-5);
+            } catch (JsonParseException | IllegalStateException | IllegalArgumentException
+                     | UnsupportedOperationException | NullPointerException e) {
+                throw new IOException("Invalid GPT-2 config " + configFile + ": " + e.getMessage(), e);
+            }
+        }
+
+        static Hyperparameters read(GgufReader gguf) throws IOException {
+            String architecture = gguf.getArchitecture();
+            if (!"gpt2".equals(architecture)) {
+                throw new IOException("The Java backend supports GPT-2 models, not " + architecture);
+            }
+            try {
+                return new Hyperparameters(
+                        (int) gguf.getLong("gpt2.embedding_length", -1),
+                        (int) gguf.getLong("gpt2.attention.head_count", -1),
+                        (int) gguf.getLong("gpt2.block_count", -1),
+                        (int) gguf.getContextLength(),
+                        gguf.getDouble("gpt2.attention.layer_norm_epsilon", 1e-5));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid GPT-2 metadata in " + gguf.getPath() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}
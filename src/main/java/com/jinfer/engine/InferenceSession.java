@@ -23,4 +23,12 @@ public interface InferenceSession extends AutoCloseable {
      * Get the maximum context length.
      */
     int getMaxContextLength();
+    
+    /**
+     * Estimated memory the session holds on and off the Java heap: its
+     * weights plus caches at their largest. 0 if unknown.
+     */
+    default long estimateMemoryBytes() {
+        return 0;
+    }
 }
@@ -2,17 +2,29 @@ package com.jinfer.engine;
 
 import com.jinfer.config.GenerationConfig;
 import com.jinfer.config.ModelConfig;
+import com.jinfer.config.ModelMetadata;
+import com.jinfer.sampling.GreedySampler;
 import com.jinfer.sampling.SamplerFactory;
 import com.jinfer.sampling.SamplingStrategy;
+import com.jinfer.sampling.TemperatureSampler;
+import com.jinfer.sampling.TopKSampler;
+import com.jinfer.sampling.TopPSampler;
+import com.jinfer.tokenization.ChatEncoder;
+import com.jinfer.tokenization.ChatMessage;
+import com.jinfer.tokenization.ChatTemplate;
+import com.jinfer.tokenization.ChunkedEncoder;
 import com.jinfer.tokenization.HuggingFaceTokenizer;
 import com.jinfer.tokenization.SimpleTokenizer;
 import com.jinfer.tokenization.Tokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Main LLM inference engine implementation.
@@ -24,8 +36,11 @@ public class JInferEngine implements LLMEngine {
     
     private InferenceSession session;
     private Tokenizer tokenizer;
+    private ChunkedEncoder chunkedEncoder;
+    private ChatEncoder chatEncoder;
     private ModelConfig modelConfig;
-    private boolean modelLoaded = false;
+    private LoadStats loadStats;
+    private volatile boolean modelLoaded = false;
 
     public JInferEngine() {
         // Default constructor
@@ -34,20 +49,79 @@ public class JInferEngine implements LLMEngine {
     @Override
     public void loadModel(ModelConfig config) throws Exception {
         this.modelConfig = config;
+        this.modelLoaded = false;
         
         logger.info("Loading model with config: {}", config);
+        long start = System.nanoTime();
         
-        // Load tokenizer
-        loadTokenizer(config.getTokenizerPath());
+        // Load the tokenizer on another thread while the session loads on this one
+        long[] tokenizerNanos = new long[1];
+        CompletableFuture<Tokenizer> tokenizerLoad = CompletableFuture.supplyAsync(() -> {
+            long tokenizerStart = System.nanoTime();
+            try {
+                return loadTokenizer(config);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                tokenizerNanos[0] = System.nanoTime() - tokenizerStart;
+            }
+        });
+        
+        InferenceSession loaded;
+        try {
+            loaded = loadSession(config, tokenizerLoad);
+        } catch (Exception e) {
+            tokenizerLoad.thenAccept(JInferEngine::closeQuietly);
+            throw e;
+        }
+        long sessionNanos = System.nanoTime() - start;
+        try {
+            this.tokenizer = await(tokenizerLoad);
+        } catch (Exception e) {
+            closeQuietly(loaded);
+            throw e;
+        }
+        this.session = loaded;
+        this.chunkedEncoder = null;
+        this.chatEncoder = new ChatEncoder(loadChatTemplate(config.getTokenizerPath()), tokenizer);
+        long loadNanos = System.nanoTime() - start;
+        logger.info("Loaded tokenizer in {} ms and session in {} ms, {} ms total", tokenizerNanos[0] / 1_000_000,
+                sessionNanos / 1_000_000, loadNanos / 1_000_000);
         
-        // Load inference session based on model format
-        loadSession(config);
+        // Warm up before reporting the model as loaded
+        long warmupStart = System.nanoTime();
+        List<LoadStats.WarmupTiming> warmup = warmUp(config);
+        long warmupNanos = warmup.isEmpty() ? 0 : System.nanoTime() - warmupStart;
         
+        this.loadStats = new LoadStats(tokenizerNanos[0] / 1_000_000, sessionNanos / 1_000_000,
+                loadNanos / 1_000_000, warmupNanos / 1_000_000, warmup);
         this.modelLoaded = true;
         logger.info("Model loaded successfully");
     }
 
-    private void loadTokenizer(Path tokenizerPath) throws Exception {
+    private static Tokenizer await(CompletableFuture<Tokenizer> tokenizerLoad) throws Exception {
+        try {
+            return tokenizerLoad.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(Object resource) {
+        if (resource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) resource).close();
+            } catch (Exception e) {
+                logger.debug("Failed to close {}: {}", resource, e.getMessage());
+            }
+        }
+    }
+
+    private Tokenizer loadTokenizer(ModelConfig config) throws Exception {
+        Path tokenizerPath = config.getTokenizerPath();
         if (tokenizerPath != null && Files.exists(tokenizerPath)) {
             Path tokenizerJson = tokenizerPath;
             if (Files.isDirectory(tokenizerPath)) {
@@ -55,42 +129,165 @@ public class JInferEngine implements LLMEngine {
             }
             
             if (Files.exists(tokenizerJson)) {
-                this.tokenizer = new HuggingFaceTokenizer(tokenizerJson);
+                Tokenizer loaded = new HuggingFaceTokenizer(tokenizerJson, specialTokens(config.getMetadata()));
                 logger.info("Loaded HuggingFace tokenizer from: {}", tokenizerJson);
-                return;
+                return loaded;
+            }
+        }
+
+        Path modelPath = config.getModelPath();
+        if (modelPath != null && Files.isRegularFile(modelPath) && Gpt2InferenceSession.isGguf(modelPath)) {
+            try {
+                return ggufTokenizer(modelPath);
+            } catch (IOException e) {
+                logger.warn("Could not load the tokenizer embedded in {}: {}", modelPath, e.getMessage());
             }
         }
         
         // Fallback to simple tokenizer for testing
         logger.warn("Using SimpleTokenizer as fallback");
-        this.tokenizer = new SimpleTokenizer();
+        return new SimpleTokenizer();
+    }
+
+    /**
+     * EOS and padding ids declared by the model's config files, if it was resolved from a directory.
+     */
+    private static Map<String, Long> specialTokens(ModelMetadata metadata) {
+        Map<String, Long> specialTokens = new HashMap<>();
+        if (metadata != null) {
+            if (metadata.getEosTokenId() != null) {
+                specialTokens.put("eos_token_id", metadata.getEosTokenId());
+            }
+            if (metadata.getPadTokenId() != null) {
+                specialTokens.put("pad_token_id", metadata.getPadTokenId());
+            }
+        }
+        return specialTokens;
+    }
+
+    /**
+     * The byte-level BPE tokenizer embedded in a GGUF file, for models
+     * shipped without a {@code tokenizer.json}.
+     */
+    private static Tokenizer ggufTokenizer(Path modelPath) throws IOException {
+        Path tokenizerJson = Files.createTempFile("jinfer-tokenizer", ".json");
+        try (GgufReader gguf = GgufReader.open(modelPath)) {
+            gguf.writeTokenizerJson(tokenizerJson);
+            Map<String, Long> specialTokens = new HashMap<>();
+            long eos = gguf.getLong("tokenizer.ggml.eos_token_id", -1);
+            if (eos >= 0) {
+                specialTokens.put("eos_token_id", eos);
+            }
+            long pad = gguf.getLong("tokenizer.ggml.padding_token_id", -1);
+            if (pad >= 0) {
+                specialTokens.put("pad_token_id", pad);
+            }
+            Tokenizer loaded = new HuggingFaceTokenizer(tokenizerJson, specialTokens);
+            logger.info("Loaded tokenizer embedded in {}", modelPath);
+            return loaded;
+        } finally {
+            Files.deleteIfExists(tokenizerJson);
+        }
+    }
+
+    private ChatTemplate loadChatTemplate(Path tokenizerPath) {
+        if (tokenizerPath == null) {
+            return ChatTemplate.plain();
+        }
+        Path dir = Files.isDirectory(tokenizerPath) ? tokenizerPath : tokenizerPath.getParent();
+        return dir != null ? ChatTemplate.load(dir.resolve("tokenizer_config.json")) : ChatTemplate.plain();
     }
 
-    private void loadSession(ModelConfig config) throws Exception {
+    private InferenceSession loadSession(ModelConfig config, CompletableFuture<Tokenizer> tokenizerLoad)
+            throws Exception {
         Path modelPath = config.getModelPath();
         
         if (modelPath != null && Files.exists(modelPath)) {
             String format = config.getModelFormat().toLowerCase();
             
             if (format.equals("onnx") || modelPath.toString().endsWith(".onnx")) {
-                this.session = new OnnxInferenceSession(
-                    modelPath, 
-                    tokenizer.getVocabSize(),
-                    config.getContextLength()
+                if (!config.getWeightFiles().isEmpty()) {
+                    // Resolved by ONNX Runtime relative to the graph, not read through the JVM
+                    logger.info("Graph has {} external data files", config.getWeightFiles().size());
+                }
+                // The vocabulary size is only needed once the tokenizer has loaded
+                InferenceSession onnx = new OnnxInferenceSession(
+                    config,
+                    () -> tokenizerLoad.join().getVocabSize()
                 );
                 logger.info("Loaded ONNX model");
-                return;
+                return onnx;
+            }
+            
+            if (format.equals("safetensors") || format.equals("gguf")) {
+                // Runs in Java, no native runtime needed
+                return new Gpt2InferenceSession(config);
             }
         }
         
         // Fallback to mock session for testing
         logger.warn("Using MockInferenceSession for testing");
-        this.session = new MockInferenceSession(
-            tokenizer.getVocabSize(),
+        return new MockInferenceSession(
+            await(tokenizerLoad).getVocabSize(),
             config.getContextLength()
         );
     }
 
+    /**
+     * Run dummy forward passes at each configured sequence length and sample
+     * the logits with every strategy, so ONNX Runtime kernels and the JIT are
+     * warm when the first request arrives.
+     */
+    private List<LoadStats.WarmupTiming> warmUp(ModelConfig config) {
+        int runs = config.getWarmupRuns();
+        if (runs <= 0) {
+            return Collections.emptyList();
+        }
+        List<SamplingStrategy> samplers = Arrays.asList(
+                new GreedySampler(),
+                new TemperatureSampler(0.8f, 0),
+                new TopKSampler(50, 0.8f, 0),
+                new TopPSampler(0.9f, 0.8f, 0));
+        
+        // Real token ids, repeated to the requested length
+        long[] sample = tokenizer.encode("The quick brown fox jumps over the lazy dog.");
+        if (sample.length == 0) {
+            sample = new long[]{0};
+        }
+        Set<Integer> lengths = new TreeSet<>();
+        for (int length : config.getWarmupSequenceLengths()) {
+            lengths.add(Math.max(1, Math.min(length, session.getMaxContextLength() - 1)));
+        }
+        
+        List<LoadStats.WarmupTiming> timings = new ArrayList<>();
+        for (int length : lengths) {
+            long[] ids = new long[length];
+            for (int i = 0; i < length; i++) {
+                ids[i] = sample[i % sample.length];
+            }
+            long[] mask = new long[length];
+            Arrays.fill(mask, 1L);
+            
+            double first = 0;
+            double last = 0;
+            for (int run = 0; run < runs; run++) {
+                long runStart = System.nanoTime();
+                float[] logits = session.forward(ids, mask);
+                for (SamplingStrategy sampler : samplers) {
+                    tokenizer.decode(sampler.sample(logits));
+                }
+                last = (System.nanoTime() - runStart) / 1e6;
+                if (run == 0) {
+                    first = last;
+                }
+            }
+            LoadStats.WarmupTiming timing = new LoadStats.WarmupTiming(length, runs, first, last);
+            logger.info("Warmup {}", timing);
+            timings.add(timing);
+        }
+        return timings;
+    }
+
     /**
      * Create engine with mock components for testing.
      */
@@ -98,6 +295,7 @@ public class JInferEngine implements LLMEngine {
         JInferEngine engine = new JInferEngine();
         engine.tokenizer = new SimpleTokenizer();
         engine.session = new MockInferenceSession(vocabSize, contextLength);
+        engine.chatEncoder = new ChatEncoder(ChatTemplate.plain(), engine.tokenizer);
         engine.modelConfig = ModelConfig.builder()
                 .contextLength(contextLength)
                 .build();
@@ -118,10 +316,23 @@ public class JInferEngine implements LLMEngine {
         
         logger.debug("Generating with config: {}", config);
         
-        // Tokenize input
-        Tokenizer.EncodingResult encoding = tokenizer.encodeWithAttention(prompt);
+        return generate(encodePrompt(prompt, config), config);
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages, GenerationConfig config) {
+        if (!modelLoaded) {
+            throw new IllegalStateException("Model not loaded");
+        }
+        
+        logger.debug("Chat generation with config: {}", config);
+        
+        return generate(encodeChat(messages, config), config);
+    }
+
+    private String generate(long[] promptIds, GenerationConfig config) {
         List<Long> inputIds = new ArrayList<>();
-        for (long id : encoding.getInputIds()) {
+        for (long id : promptIds) {
             inputIds.add(id);
         }
         
@@ -178,13 +389,59 @@ public class JInferEngine implements LLMEngine {
         return generated.toString().trim();
     }
 
+    /**
+     * Encode a prompt, fitting it into the context window according to the
+     * configured truncation policy. Room is reserved for the new tokens.
+     * Prompts longer than one chunk are encoded in parallel.
+     */
+    private long[] encodePrompt(String prompt, GenerationConfig config) {
+        int budget = promptBudget(config);
+
+        if (chunkedEncoder == null) {
+            chunkedEncoder = new ChunkedEncoder(tokenizer);
+        }
+        return checkPromptLength(chunkedEncoder.encode(prompt, config.getTruncation(), budget));
+    }
+
+    /**
+     * Encode a conversation with the model's chat template. Static template
+     * fragments come from the encoder's cache; only message content is tokenized.
+     */
+    private long[] encodeChat(List<ChatMessage> messages, GenerationConfig config) {
+        long[] ids = chatEncoder.encode(messages, true);
+        return checkPromptLength(config.getTruncation().truncate(ids, promptBudget(config)));
+    }
+
+    private int promptBudget(GenerationConfig config) {
+        int contextLength = session.getMaxContextLength();
+        return contextLength - Math.min(config.getMaxNewTokens(), contextLength - 1);
+    }
+
+    private long[] checkPromptLength(long[] ids) {
+        int contextLength = session.getMaxContextLength();
+        if (ids.length >= contextLength) {
+            logger.warn("Prompt has {} tokens and fills the {}-token context; set a truncation strategy",
+                    ids.length, contextLength);
+        }
+        return ids;
+    }
+
     @Override
     public Iterator<String> generateStream(String prompt, GenerationConfig config) {
         if (!modelLoaded) {
             throw new IllegalStateException("Model not loaded");
         }
         
-        return new StreamingIterator(prompt, config);
+        return new StreamingIterator(encodePrompt(prompt, config), config);
+    }
+
+    @Override
+    public Iterator<String> chatStream(List<ChatMessage> messages, GenerationConfig config) {
+        if (!modelLoaded) {
+            throw new IllegalStateException("Model not loaded");
+        }
+        
+        return new StreamingIterator(encodeChat(messages, config), config);
     }
 
     @Override
@@ -209,10 +466,48 @@ public class JInferEngine implements LLMEngine {
         if (tokenizer instanceof AutoCloseable) {
             ((AutoCloseable) tokenizer).close();
         }
+        chunkedEncoder = null;
         modelLoaded = false;
         logger.info("Engine closed");
     }
 
+    /**
+     * Timings of the last {@link #loadModel} call, null if the model was not
+     * loaded through it.
+     */
+    public LoadStats getLoadStats() {
+        return loadStats;
+    }
+
+    /**
+     * Estimated memory of the loaded model on and off the Java heap, 0 if none is loaded.
+     */
+    public long estimateMemoryBytes() {
+        return session != null ? session.estimateMemoryBytes() : 0;
+    }
+
+    /**
+     * Estimated memory of a model before it is loaded: the size of its weight
+     * files, which backends hold in memory or map. 0 for a config without a model file.
+     */
+    public static long estimateMemoryBytes(ModelConfig config) {
+        long bytes = 0;
+        List<Path> files = new ArrayList<>(config.getWeightFiles());
+        if (config.getModelPath() != null) {
+            files.add(config.getModelPath());
+        }
+        for (Path file : files) {
+            try {
+                if (Files.isRegularFile(file)) {
+                    bytes += Files.size(file);
+                }
+            } catch (IOException e) {
+                logger.debug("Could not size {}: {}", file, e.getMessage());
+            }
+        }
+        return bytes;
+    }
+
     /**
      * Get the tokenizer for direct access.
      */
@@ -220,6 +515,20 @@ public class JInferEngine implements LLMEngine {
         return tokenizer;
     }
 
+    /**
+     * Get the chat template used by {@link #chat}.
+     */
+    public ChatTemplate getChatTemplate() {
+        return chatEncoder != null ? chatEncoder.getTemplate() : null;
+    }
+
+    /**
+     * Override the chat template detected from the model's tokenizer config.
+     */
+    public void setChatTemplate(ChatTemplate template) {
+        this.chatEncoder = new ChatEncoder(template, tokenizer);
+    }
+
     /**
      * Iterator for streaming token generation.
      */
@@ -234,15 +543,14 @@ public class JInferEngine implements LLMEngine {
         private boolean finished = false;
         private String nextToken = null;
 
-        public StreamingIterator(String prompt, GenerationConfig config) {
+        public StreamingIterator(long[] promptIds, GenerationConfig config) {
             this.config = config;
             this.sampler = SamplerFactory.create(config);
             this.eosToken = tokenizer.getEosTokenId();
             this.generated = new StringBuilder();
             
-            Tokenizer.EncodingResult encoding = tokenizer.encodeWithAttention(prompt);
             this.inputIds = new ArrayList<>();
-            for (long id : encoding.getInputIds()) {
+            for (long id : promptIds) {
                 inputIds.add(id);
             }
             
@@ -2,8 +2,10 @@ package com.jinfer.engine;
 
 import com.jinfer.config.GenerationConfig;
 import com.jinfer.config.ModelConfig;
+import com.jinfer.tokenization.ChatMessage;
 
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Interface for LLM inference engine.
@@ -38,6 +40,24 @@ public interface LLMEngine extends AutoCloseable {
      */
     Iterator<String> generateStream(String prompt, GenerationConfig config);
     
+    /**
+     * Generate a reply to a conversation using the model's chat template.
+     *
+     * @param messages Conversation messages (system, user, assistant)
+     * @param config Generation configuration
+     * @return The generated reply
+     */
+    String chat(List<ChatMessage> messages, GenerationConfig config);
+    
+    /**
+     * Generate a reply to a conversation with streaming output.
+     *
+     * @param messages Conversation messages (system, user, assistant)
+     * @param config Generation configuration
+     * @return Iterator of generated tokens
+     */
+    Iterator<String> chatStream(List<ChatMessage> messages, GenerationConfig config);
+    
     /**
      * Get information about the loaded model.
      */
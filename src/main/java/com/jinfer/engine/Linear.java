@@ -0,0 +1,27 @@
+package com.jinfer.engine;
+
+/**
+ * Fully connected layer {@code y = W x + b} of the Java backend, applied to a
+ * batch of token rows.
+ */
+interface Linear {
+
+    int inputSize();
+
+    int outputSize();
+
+    /**
+     * Apply the layer to {@code rows} input rows of {@link #inputSize()}
+     * values each, writing rows of {@link #outputSize()} values.
+     */
+    void apply(float[] x, float[] y, int rows, Parallel parallel);
+
+    /**
+     * Copy the weights of one output, {@link #inputSize()} values, e.g. to
+     * look up a tied embedding.
+     */
+    void row(int index, float[] out, int offset);
+
+    /** Bytes of memory held by the weights. */
+    long weightBytes();
+}
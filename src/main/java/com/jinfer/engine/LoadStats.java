@@ -0,0 +1,75 @@
+package com.jinfer.engine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Timings of one {@link JInferEngine#loadModel} call.
+ */
+public class LoadStats {
+
+    private final long tokenizerMillis;
+    private final long sessionMillis;
+    private final long loadMillis;
+    private final long warmupMillis;
+    private final List<WarmupTiming> warmup;
+
+    LoadStats(long tokenizerMillis, long sessionMillis, long loadMillis, long warmupMillis,
+              List<WarmupTiming> warmup) {
+        this.tokenizerMillis = tokenizerMillis;
+        this.sessionMillis = sessionMillis;
+        this.loadMillis = loadMillis;
+        this.warmupMillis = warmupMillis;
+        this.warmup = Collections.unmodifiableList(warmup);
+    }
+
+    /** Time to load the tokenizer. */
+    public long getTokenizerMillis() { return tokenizerMillis; }
+
+    /** Time to load the inference session. */
+    public long getSessionMillis() { return sessionMillis; }
+
+    /** Wall time of the concurrent tokenizer and session load. */
+    public long getLoadMillis() { return loadMillis; }
+
+    /** Wall time of the warmup, 0 if disabled. */
+    public long getWarmupMillis() { return warmupMillis; }
+
+    /** Per sequence length timings of the warmup passes. */
+    public List<WarmupTiming> getWarmup() { return warmup; }
+
+    @Override
+    public String toString() {
+        return "LoadStats{tokenizerMillis=" + tokenizerMillis + ", sessionMillis=" + sessionMillis +
+               ", loadMillis=" + loadMillis + ", warmupMillis=" + warmupMillis + ", warmup=" + warmup + "}";
+    }
+
+    /**
+     * Forward pass and sampling latency at one sequence length, for the first
+     * (cold) and last warmup run.
+     */
+    public static class WarmupTiming {
+        private final int sequenceLength;
+        private final int runs;
+        private final double firstMillis;
+        private final double lastMillis;
+
+        WarmupTiming(int sequenceLength, int runs, double firstMillis, double lastMillis) {
+            this.sequenceLength = sequenceLength;
+            this.runs = runs;
+            this.firstMillis = firstMillis;
+            this.lastMillis = lastMillis;
+        }
+
+        public int getSequenceLength() { return sequenceLength; }
+        public int getRuns() { return runs; }
+        public double getFirstMillis() { return firstMillis; }
+        public double getLastMillis() { return lastMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("%d tokens: %.1f ms first, %.1f ms last of %d", sequenceLength, firstMillis,
+                    lastMillis, runs);
+        }
+    }
+}
@@ -56,6 +56,12 @@ public class MockInferenceSession implements InferenceSession {
         return maxContextLength;
     }
 
+    @Override
+    public long estimateMemoryBytes() {
+        // Only the logits of a call
+        return 4L * vocabSize;
+    }
+
     @Override
     public void close() {
         // Nothing to close for mock
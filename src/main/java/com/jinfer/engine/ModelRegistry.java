@@ -0,0 +1,373 @@
+package com.jinfer.engine;
+
+import com.jinfer.config.ModelConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Several loaded models in one process, keyed by model id, within a memory
+ * budget. A model is loaded on its first {@link #acquire}; concurrent requests
+ * for a model that is still loading wait for the same load. Each model's
+ * footprint is estimated from its weight files before loading and from the
+ * loaded session afterwards, and least recently used models are unloaded when
+ * the total would exceed the budget. Models in use are never unloaded, so
+ * the budget can be exceeded while every loaded model is busy.
+ * <p>
+ * An engine is not thread-safe, as its session and encoders keep state
+ * between calls, so a {@link Lease} gives its holder exclusive use of the
+ * engine. Concurrent requests for the same model wait for the previous lease
+ * to be closed; register a model under several ids to serve it concurrently.
+ */
+public class ModelRegistry implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRegistry.class);
+
+    /**
+     * Resolves a model id, e.g. a repository id or path, to the config to load it with.
+     */
+    @FunctionalInterface
+    public interface ConfigSource {
+        ModelConfig resolve(String modelId) throws Exception;
+    }
+
+    /**
+     * Loads an engine for a config.
+     */
+    @FunctionalInterface
+    interface EngineLoader {
+        JInferEngine load(ModelConfig config) throws Exception;
+    }
+
+    private final long memoryBudgetBytes;
+    private final EngineLoader loader;
+    private final Map<String, ModelConfig> configs = new ConcurrentHashMap<>();
+    private volatile ConfigSource configSource;
+
+    // Access order, so iteration starts at the least recently used model
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes = 0;
+    private long evictions = 0;
+    private boolean closed = false;
+
+    /**
+     * @param memoryBudgetBytes Estimated bytes all loaded models may use together; 0 for no limit
+     */
+    public ModelRegistry(long memoryBudgetBytes) {
+        this(memoryBudgetBytes, config -> {
+            JInferEngine engine = new JInferEngine();
+            try {
+                engine.loadModel(config);
+            } catch (Exception e) {
+                engine.close();
+                throw e;
+            }
+            return engine;
+        });
+    }
+
+    ModelRegistry(long memoryBudgetBytes, EngineLoader loader) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.loader = loader;
+    }
+
+    /**
+     * Register the config a model id loads with. Takes effect the next time
+     * the model is loaded.
+     */
+    public void register(String modelId, ModelConfig config) {
+        configs.put(modelId, config);
+    }
+
+    /**
+     * Resolve ids that were not registered, e.g. with {@code ModelResolver::resolve}.
+     */
+    public void setConfigSource(ConfigSource configSource) {
+        this.configSource = configSource;
+    }
+
+    /**
+     * Get exclusive use of a model, loading it if needed and waiting while
+     * another lease of it is open. The model stays loaded at least until the
+     * lease is closed.
+     *
+     * @throws Exception if the model cannot be resolved or fails to load
+     */
+    public Lease acquire(String modelId) throws Exception {
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Model registry is closed");
+            }
+            entry = entries.get(modelId);
+            if (entry == null) {
+                entry = new Entry(modelId);
+                entries.put(modelId, entry);
+                load = true;
+            }
+            entry.leases++;
+        }
+        if (load) {
+            load(entry);
+        }
+        JInferEngine engine;
+        try {
+            engine = entry.engine.join();
+        } catch (CompletionException e) {
+            release(entry);
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        try {
+            entry.access.acquire();
+        } catch (InterruptedException e) {
+            release(entry);
+            throw e;
+        }
+        return new Lease(entry, engine);
+    }
+
+    /**
+     * Load a new entry on the calling thread, making room for its estimated
+     * footprint first.
+     */
+    private void load(Entry entry) {
+        List<JInferEngine> evicted = new ArrayList<>();
+        try {
+            ModelConfig config = configFor(entry.modelId);
+            long estimate = JInferEngine.estimateMemoryBytes(config);
+            synchronized (this) {
+                checkOpen(entry);
+                entry.bytes = estimate;
+                usedBytes += estimate;
+                evictOverBudget(evicted);
+            }
+            closeAll(evicted);
+            evicted.clear();
+
+            long start = System.nanoTime();
+            JInferEngine engine = loader.load(config);
+            long bytes = Math.max(engine.estimateMemoryBytes(), estimate);
+            try {
+                synchronized (this) {
+                    // close() may have run during the load and no longer tracks the entry
+                    checkOpen(entry);
+                    usedBytes += bytes - entry.bytes;
+                    entry.bytes = bytes;
+                    entry.engine.complete(engine);
+                    evictOverBudget(evicted);
+                }
+            } catch (IllegalStateException e) {
+                closeAll(List.of(engine));
+                throw e;
+            }
+            logger.info("Loaded model '{}' in {} ms, about {} MB; {} MB of {} MB in use", entry.modelId,
+                    (System.nanoTime() - start) / 1_000_000, bytes / (1024 * 1024), getUsedBytes() / (1024 * 1024),
+                    memoryBudgetBytes / (1024 * 1024));
+        } catch (Exception e) {
+            synchronized (this) {
+                if (entries.remove(entry.modelId, entry)) {
+                    usedBytes -= entry.bytes;
+                }
+            }
+            entry.engine.completeExceptionally(e);
+        } finally {
+            closeAll(evicted);
+        }
+    }
+
+    /**
+     * Fail a load whose entry was removed by {@link #close()}. Callers hold the lock.
+     */
+    private void checkOpen(Entry entry) {
+        if (closed || entries.get(entry.modelId) != entry) {
+            throw new IllegalStateException("Model registry was closed while loading '" + entry.modelId + "'");
+        }
+    }
+
+    private ModelConfig configFor(String modelId) throws Exception {
+        ModelConfig config = configs.get(modelId);
+        if (config != null) {
+            return config;
+        }
+        ConfigSource source = configSource;
+        if (source == null) {
+            throw new IllegalArgumentException("Unknown model '" + modelId + "'");
+        }
+        return source.resolve(modelId);
+    }
+
+    /**
+     * Remove least recently used models that are loaded and not in use until
+     * the total fits the budget. Callers hold the lock and close the removed
+     * engines after releasing it.
+     */
+    private void evictOverBudget(List<JInferEngine> evicted) {
+        if (memoryBudgetBytes <= 0) {
+            return;
+        }
+        var iterator = entries.values().iterator();
+        while (usedBytes > memoryBudgetBytes && iterator.hasNext()) {
+            Entry candidate = iterator.next();
+            if (candidate.leases > 0 || !candidate.engine.isDone() || candidate.engine.isCompletedExceptionally()) {
+                continue;
+            }
+            iterator.remove();
+            usedBytes -= candidate.bytes;
+            evictions++;
+            evicted.add(candidate.engine.join());
+            logger.info("Unloading model '{}' ({} MB) to stay within the memory budget", candidate.modelId,
+                    candidate.bytes / (1024 * 1024));
+        }
+        if (usedBytes > memoryBudgetBytes) {
+            logger.warn("Models in use need {} MB, over the budget of {} MB", usedBytes / (1024 * 1024),
+                    memoryBudgetBytes / (1024 * 1024));
+        }
+    }
+
+    private void release(Entry entry) {
+        List<JInferEngine> evicted = new ArrayList<>();
+        synchronized (this) {
+            entry.leases--;
+            // Models kept over the budget while busy can go now
+            evictOverBudget(evicted);
+        }
+        closeAll(evicted);
+    }
+
+    private static void closeAll(List<JInferEngine> engines) {
+        for (JInferEngine engine : engines) {
+            try {
+                engine.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close engine: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Unload a model now if it is loaded and not in use.
+     *
+     * @return Whether the model was unloaded
+     */
+    public boolean unload(String modelId) {
+        JInferEngine engine;
+        synchronized (this) {
+            Entry entry = entries.get(modelId);
+            if (entry == null || entry.leases > 0 || !entry.engine.isDone()
+                    || entry.engine.isCompletedExceptionally()) {
+                return false;
+            }
+            entries.remove(modelId);
+            usedBytes -= entry.bytes;
+            engine = entry.engine.join();
+        }
+        closeAll(List.of(engine));
+        return true;
+    }
+
+    /**
+     * Ids of the loaded and loading models, least recently used first.
+     */
+    public synchronized List<String> getLoadedModels() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    public synchronized boolean isLoaded(String modelId) {
+        Entry entry = entries.get(modelId);
+        return entry != null && entry.engine.isDone() && !entry.engine.isCompletedExceptionally();
+    }
+
+    /** Estimated bytes of the loaded and loading models. */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    /** Models unloaded to stay within the budget so far. */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Unload all models. Models still in use are closed as well.
+     */
+    @Override
+    public void close() {
+        List<JInferEngine> engines = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Entry entry : entries.values()) {
+                if (entry.engine.isDone() && !entry.engine.isCompletedExceptionally()) {
+                    engines.add(entry.engine.join());
+                }
+            }
+            entries.clear();
+            usedBytes = 0;
+        }
+        closeAll(engines);
+    }
+
+    /**
+     * A model being loaded or loaded.
+     */
+    private static final class Entry {
+        final String modelId;
+        final CompletableFuture<JInferEngine> engine = new CompletableFuture<>();
+        /** Held by the open lease, as the engine serves one caller at a time. */
+        final Semaphore access = new Semaphore(1, true);
+        long bytes;
+        /** Open leases and callers waiting for one. */
+        int leases;
+
+        Entry(String modelId) {
+            this.modelId = modelId;
+        }
+    }
+
+    /**
+     * Exclusive use of a loaded model. Close it when done so other requests
+     * can use the model and it can be unloaded.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final JInferEngine engine;
+        private boolean released = false;
+
+        private Lease(Entry entry, JInferEngine engine) {
+            this.entry = entry;
+            this.engine = engine;
+        }
+
+        public String getModelId() {
+            return entry.modelId;
+        }
+
+        public JInferEngine getEngine() {
+            return engine;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                entry.access.release();
+                release(entry);
+            }
+        }
+    }
+}
@@ -13,11 +13,22 @@ import ai.djl.repository.zoo.ZooModel;
 import ai.djl.translate.TranslateException;
 import ai.djl.translate.Translator;
 import ai.djl.translate.TranslatorContext;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession.SessionOptions;
+import ai.onnxruntime.OrtSession.SessionOptions.ExecutionMode;
+import ai.onnxruntime.OrtSession.SessionOptions.OptLevel;
+import com.jinfer.config.ModelConfig;
+import com.jinfer.config.SessionTuning;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.IntSupplier;
 
 /**
  * ONNX Runtime based inference session using DJL.
@@ -26,31 +37,178 @@ public class OnnxInferenceSession implements InferenceSession {
     
     private static final Logger logger = LoggerFactory.getLogger(OnnxInferenceSession.class);
     
+    private final SessionOptions sessionOptions;
     private ZooModel<long[], float[]> model;
     private Predictor<long[], float[]> predictor;
     private NDManager manager;
-    private final int vocabSize;
+    private final IntSupplier vocabSize;
     private final int maxContextLength;
+    private final long weightBytes;
 
     public OnnxInferenceSession(Path modelPath, int vocabSize, int maxContextLength) 
             throws ModelNotFoundException, MalformedModelException, IOException {
+        this(modelPath, () -> vocabSize, maxContextLength);
+    }
+
+    /**
+     * Load a model whose vocabulary size is not known yet, e.g. while the
+     * tokenizer is still loading. The supplier is called when the size is needed.
+     */
+    public OnnxInferenceSession(Path modelPath, IntSupplier vocabSize, int maxContextLength) 
+            throws ModelNotFoundException, MalformedModelException, IOException {
+        this(ModelConfig.builder().modelPath(modelPath).contextLength(maxContextLength).build(), vocabSize);
+    }
+
+    /**
+     * Load the model of a config, using its graph optimization level and,
+     * if enabled, the optimized graph cache.
+     */
+    public OnnxInferenceSession(ModelConfig config, IntSupplier vocabSize) 
+            throws ModelNotFoundException, MalformedModelException, IOException {
         this.vocabSize = vocabSize;
-        this.maxContextLength = maxContextLength;
+        this.maxContextLength = config.getContextLength();
+        
+        Path modelPath = config.getModelPath();
+        SessionTuning tuning = config.getSessionTuning();
+        OptLevel optLevel = optLevel(tuning.getGraphOptimizationLevel());
+        long start = System.nanoTime();
+        
+        OptimizedModelCache cache = null;
+        if (config.isCacheOptimizedModel()) {
+            if (config.getWeightFiles().isEmpty()) {
+                cache = OptimizedModelCache.forModel(modelPath, optLevel.name());
+            } else {
+                logger.info("Not caching the optimized graph of a model with external data");
+            }
+        }
+        
+        this.sessionOptions = new SessionOptions();
+        try {
+            applyTuning(sessionOptions, tuning);
+        } catch (OrtException e) {
+            sessionOptions.close();
+            throw new IOException("Invalid ONNX Runtime session options: " + e.getMessage(), e);
+        }
+        
+        // ONNX Runtime holds the graph's initializers in native memory
+        this.weightBytes = JInferEngine.estimateMemoryBytes(config);
         this.manager = NDManager.newBaseManager();
         
-        logger.info("Loading ONNX model from: {}", modelPath);
+        String mode = "uncached";
+        try {
+            if (cache != null) {
+                mode = cache.load((graph, optimize, saveTo) ->
+                        loadGraph(graph, optimize ? optLevel : OptLevel.NO_OPT, saveTo));
+            } else {
+                loadGraph(modelPath, optLevel, null);
+            }
+        } catch (ModelNotFoundException | MalformedModelException | IOException | RuntimeException e) {
+            close();
+            throw e;
+        } catch (Exception e) {
+            close();
+            throw new IOException("Failed to load " + modelPath + ": " + e.getMessage(), e);
+        }
+        
+        logger.info("ONNX model loaded in {} ms ({}, {})", (System.nanoTime() - start) / 1_000_000, mode,
+                optLevel);
+    }
+
+    /**
+     * Load a graph file with an optimization level, writing the optimized
+     * graph to {@code saveTo} if not null. A failed load leaves no model open.
+     */
+    private void loadGraph(Path graph, OptLevel level, Path saveTo)
+            throws ModelNotFoundException, MalformedModelException, IOException {
+        try {
+            sessionOptions.setOptimizationLevel(level);
+            if (saveTo != null) {
+                sessionOptions.setOptimizedModelFilePath(saveTo.toString());
+            }
+        } catch (OrtException e) {
+            throw new IOException("Invalid ONNX Runtime session options: " + e.getMessage(), e);
+        }
         
+        logger.info("Loading ONNX model from: {}", graph);
         Criteria<long[], float[]> criteria = Criteria.builder()
                 .setTypes(long[].class, float[].class)
-                .optModelPath(modelPath)
+                .optModelPath(graph)
                 .optEngine("OnnxRuntime")
+                .optArgument("sessionOptions", sessionOptions)
                 .optTranslator(new LLMTranslator())
                 .build();
         
-        this.model = criteria.loadModel();
-        this.predictor = model.newPredictor();
-        
-        logger.info("ONNX model loaded successfully");
+        try {
+            this.model = criteria.loadModel();
+            this.predictor = model.newPredictor();
+        } catch (ModelNotFoundException | MalformedModelException | IOException | RuntimeException e) {
+            if (model != null) {
+                model.close();
+                model = null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Apply thread, execution and memory settings to session options. The graph
+     * optimization level is set separately, as it depends on the graph cache.
+     */
+    static void applyTuning(SessionOptions options, SessionTuning tuning) throws OrtException, IOException {
+        int intraOpThreads = tuning.effectiveIntraOpThreads();
+        if (intraOpThreads > 0) {
+            options.setIntraOpNumThreads(intraOpThreads);
+        }
+        if (tuning.getInterOpThreads() > 0) {
+            options.setInterOpNumThreads(tuning.getInterOpThreads());
+        }
+        try {
+            options.setExecutionMode(ExecutionMode.valueOf(tuning.getExecutionMode().toUpperCase()));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Unknown execution mode '" + tuning.getExecutionMode() + "', expected one of " +
+                    Arrays.toString(ExecutionMode.values()));
+        }
+        options.setCPUArenaAllocator(tuning.isCpuArena());
+        options.setMemoryPatternOptimization(tuning.isMemoryPattern());
+        if (!tuning.isAllowSpinning()) {
+            options.addConfigEntry("session.intra_op.allow_spinning", "0");
+        }
+        String affinities = threadAffinities(tuning.getCpuCores(), intraOpThreads);
+        if (affinities != null) {
+            options.addConfigEntry("session.intra_op_thread_affinities", affinities);
+        }
+        logger.info("Session tuning: {}", tuning);
+    }
+
+    /**
+     * ONNX Runtime affinity string pinning the intra-op pool to the given cores:
+     * one 1-based processor id per pool thread, separated by semicolons. The
+     * pool's first thread is the calling thread, which ONNX Runtime does not pin,
+     * so the first core is left to it.
+     *
+     * @return The affinity string, or null if no cores are set or only one thread is used
+     */
+    static String threadAffinities(List<Integer> cores, int threads) {
+        if (cores.isEmpty() || threads < 2) {
+            return null;
+        }
+        StringJoiner affinities = new StringJoiner(";");
+        for (int i = 1; i < threads; i++) {
+            affinities.add(String.valueOf(cores.get(i % cores.size()) + 1));
+        }
+        return affinities.toString();
+    }
+
+    /**
+     * Parse an ONNX Runtime graph optimization level name.
+     */
+    static OptLevel optLevel(String name) throws IOException {
+        try {
+            return OptLevel.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Unknown graph optimization level '" + name + "', expected one of " +
+                    Arrays.toString(OptLevel.values()));
+        }
     }
 
     @Override
@@ -65,7 +223,7 @@ public class OnnxInferenceSession implements InferenceSession {
 
     @Override
     public int getVocabSize() {
-        return vocabSize;
+        return vocabSize.getAsInt();
     }
 
     @Override
@@ -73,6 +231,11 @@ public class OnnxInferenceSession implements InferenceSession {
         return maxContextLength;
     }
 
+    @Override
+    public long estimateMemoryBytes() {
+        return weightBytes;
+    }
+
     @Override
     public void close() {
         if (predictor != null) {
@@ -84,6 +247,7 @@ public class OnnxInferenceSession implements InferenceSession {
         if (manager != null) {
             manager.close();
         }
+        sessionOptions.close();
     }
 
     /**
@@ -0,0 +1,220 @@
+package com.jinfer.engine;
+
+import ai.onnxruntime.OrtEnvironment;
+import com.jinfer.hub.Checksums;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Location of the ONNX Runtime optimized graph of a model, saved next to the
+ * model so later loads skip graph optimization. The file name carries the
+ * model's content hash, the ONNX Runtime version and the optimization level,
+ * so a changed model, runtime upgrade or different level misses the cache.
+ * Without a known runtime version the graph is not cached, and a cached graph
+ * that fails to load is deleted and the model optimized again.
+ */
+final class OptimizedModelCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OptimizedModelCache.class);
+
+    static final String CACHE_DIR = ".jinfer_ort";
+
+    private static final Pattern JAR_VERSION = Pattern.compile("onnxruntime(?:_gpu)?-(\\d[\\w.-]*)\\.jar");
+
+    private final Path modelPath;
+    private final Path optimizedPath;
+
+    private OptimizedModelCache(Path modelPath, Path optimizedPath) {
+        this.modelPath = modelPath;
+        this.optimizedPath = optimizedPath;
+    }
+
+    /**
+     * Loads a graph file into a session.
+     */
+    @FunctionalInterface
+    interface GraphLoader {
+        /**
+         * @param graph    Graph file to load
+         * @param optimize Whether ONNX Runtime should optimize the graph
+         * @param saveTo   Where ONNX Runtime should write the optimized graph, or null
+         */
+        void load(Path graph, boolean optimize, Path saveTo) throws Exception;
+    }
+
+    /**
+     * Cache entry for a model at an optimization level, or null if the ONNX
+     * Runtime version is unknown, as a runtime upgrade would then reuse a
+     * graph optimized by the old runtime.
+     *
+     * @param optLevel ONNX Runtime optimization level, e.g. {@code ALL_OPT}
+     */
+    static OptimizedModelCache forModel(Path modelPath, String optLevel) throws IOException {
+        return forModel(modelPath, optLevel, runtimeVersion());
+    }
+
+    static OptimizedModelCache forModel(Path modelPath, String optLevel, String runtimeVersion) throws IOException {
+        if (runtimeVersion == null) {
+            logger.warn("ONNX Runtime version unknown, not caching the optimized graph of {}", modelPath.getFileName());
+            return null;
+        }
+        Path dir = modelPath.toAbsolutePath().getParent().resolve(CACHE_DIR);
+        String stem = stem(modelPath.getFileName().toString());
+        String key = modelHash(modelPath, dir.resolve(stem + ".sha256")).substring(0, 16) +
+                "-ort" + runtimeVersion + "-" + optLevel.toLowerCase();
+        return new OptimizedModelCache(modelPath, dir.resolve(stem + "-" + key + ".onnx"));
+    }
+
+    /**
+     * Load the cached optimized graph, or optimize the model and save its
+     * optimized graph. A cached graph that fails to load, e.g. a truncated
+     * file, is deleted and the model is optimized again.
+     *
+     * @return How the graph was loaded, for logging
+     */
+    String load(GraphLoader loader) throws Exception {
+        if (isFresh()) {
+            try {
+                // Already optimized; optimizing it again would only repeat the work
+                loader.load(optimizedPath, false, null);
+                return "warm, cached optimized graph";
+            } catch (Exception e) {
+                logger.warn("Could not load the cached optimized graph {}, optimizing {} again: {}",
+                        optimizedPath, modelPath.getFileName(), e.getMessage());
+                Files.deleteIfExists(optimizedPath);
+            }
+        }
+
+        Path written = prepare();
+        try {
+            loader.load(modelPath, true, written);
+        } catch (Exception e) {
+            Files.deleteIfExists(written);
+            throw e;
+        }
+        try {
+            commit(written);
+        } catch (IOException e) {
+            // The cache is an optimization; the session itself loaded fine
+            logger.warn("Could not save the optimized graph: {}", e.getMessage());
+            Files.deleteIfExists(written);
+        }
+        return "cold, saving optimized graph";
+    }
+
+    /** The optimized graph, whether or not it exists yet. */
+    Path getOptimizedPath() {
+        return optimizedPath;
+    }
+
+    /**
+     * Whether an optimized graph was saved for the current model, runtime and level.
+     */
+    boolean isFresh() {
+        return Files.isRegularFile(optimizedPath) && optimizedPath.toFile().length() > 0;
+    }
+
+    /**
+     * Where ONNX Runtime should write the optimized graph during a cold load.
+     * It is moved into place by {@link #commit} once the session loaded.
+     */
+    Path prepare() throws IOException {
+        Files.createDirectories(optimizedPath.getParent());
+        return optimizedPath.resolveSibling(optimizedPath.getFileName() + ".tmp");
+    }
+
+    void commit(Path written) throws IOException {
+        if (!Files.isRegularFile(written)) {
+            throw new IOException("ONNX Runtime did not write " + written);
+        }
+        try {
+            Files.move(written, optimizedPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(written, optimizedPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        logger.info("Saved optimized graph of {} to {}", modelPath.getFileName(), optimizedPath);
+        
+        // Entries of older model versions, runtimes or levels would never be read again
+        Pattern entryName = Pattern.compile(Pattern.quote(stem()) + "-[0-9a-f]{16}-ort.+\\.onnx");
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(optimizedPath.getParent())) {
+            for (Path entry : entries) {
+                if (!entry.equals(optimizedPath) && entryName.matcher(entry.getFileName().toString()).matches()) {
+                    Files.deleteIfExists(entry);
+                }
+            }
+        }
+    }
+
+    private String stem() {
+        return stem(modelPath.getFileName().toString());
+    }
+
+    private static String stem(String name) {
+        return name.endsWith(".onnx") ? name.substring(0, name.length() - ".onnx".length()) : name;
+    }
+
+    /**
+     * SHA-256 of the model, memoized in a sidecar file that is reused while
+     * the model's size and modification time are unchanged, so warm loads do
+     * not hash the model again.
+     */
+    static String modelHash(Path modelPath, Path sidecar) throws IOException {
+        String stamp = Files.size(modelPath) + ":" + Files.getLastModifiedTime(modelPath).toMillis();
+        if (Files.isRegularFile(sidecar)) {
+            String[] memo = Files.readString(sidecar, StandardCharsets.UTF_8).trim().split(" ");
+            if (memo.length == 2 && memo[0].equals(stamp)) {
+                return memo[1];
+            }
+        }
+        String hash = Checksums.sha256(modelPath);
+        try {
+            Files.createDirectories(sidecar.getParent());
+            Files.writeString(sidecar, stamp + " " + hash + "\n", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.debug("Could not memoize model hash in {}: {}", sidecar, e.getMessage());
+        }
+        return hash;
+    }
+
+    /**
+     * Version of the ONNX Runtime native library, or of its Java API jar if
+     * the native library cannot report it; null if neither is known.
+     */
+    static String runtimeVersion() {
+        try {
+            String version = OrtEnvironment.getEnvironment().getVersion();
+            if (version != null && !version.isEmpty()) {
+                return version;
+            }
+        } catch (RuntimeException | LinkageError e) {
+            logger.debug("Could not get the ONNX Runtime version from the native library: {}", e.getMessage());
+        }
+        String version = OrtEnvironment.class.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        // Without a manifest version, fall back to the jar name, e.g. onnxruntime-1.17.1.jar
+        try {
+            String jar = Path.of(OrtEnvironment.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .getFileName().toString();
+            Matcher matcher = JAR_VERSION.matcher(jar);
+            if (matcher.matches()) {
+                return matcher.group(1);
+            }
+        } catch (RuntimeException | URISyntaxException e) {
+            logger.debug("Could not determine the ONNX Runtime version: {}", e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.jinfer.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join pool for the data-parallel loops of the Java backend. Ranges are
+ * split in halves down to a minimum chunk, so work stealing balances uneven
+ * rows without a task per element.
+ */
+final class Parallel implements AutoCloseable {
+
+    /** Body of a parallel loop over {@code [from, to)}. */
+    interface RangeBody {
+        void run(int from, int to);
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param threads Worker threads, 0 for one per available processor
+     */
+    Parallel(int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    int getParallelism() {
+        return pool != null ? pool.getParallelism() : 1;
+    }
+
+    /**
+     * Run the body over {@code [0, count)} in chunks of at least {@code grain}.
+     */
+    void forRange(int count, int grain, RangeBody body) {
+        if (pool == null || count <= grain) {
+            body.run(0, count);
+            return;
+        }
+        pool.invoke(new Chunk(0, count, Math.max(1, grain), body));
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static final class Chunk extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final RangeBody body;
+
+        Chunk(int from, int to, int grain, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunk(from, mid, grain, body), new Chunk(mid, to, grain, body));
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.jinfer.engine;
+
+import com.jinfer.config.GenerationConfig;
+import com.jinfer.config.ModelConfig;
+import com.jinfer.config.SessionTuning;
+import com.jinfer.config.TuningProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Time-bounded search for the session tuning with the best decode throughput
+ * for a model on this host. Each candidate loads the model with its settings
+ * and generates from a synthetic prompt, measuring time to first token,
+ * tokens per second and the resident memory it added.
+ * <p>
+ * Only session settings are searched. Decoding is greedy and sampler
+ * settings such as temperature or top-k are not tuned, as they change the
+ * output rather than the cost of producing it.
+ */
+public class PerformanceTuner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PerformanceTuner.class);
+
+    private static final String PROMPT_WORD = "hello ";
+
+    private final ModelConfig modelConfig;
+    private int promptTokens = 128;
+    private int newTokens = 32;
+    private int repetitions = 2;
+    private long budgetMillis = 60_000;
+    private List<Integer> cpuCores = new ArrayList<>();
+
+    public PerformanceTuner(ModelConfig modelConfig) {
+        this.modelConfig = modelConfig;
+    }
+
+    /** Approximate length of the synthetic prompt in tokens. */
+    public void setPromptTokens(int promptTokens) {
+        this.promptTokens = Math.max(1, promptTokens);
+    }
+
+    /** Tokens generated per measurement. */
+    public void setNewTokens(int newTokens) {
+        this.newTokens = Math.max(2, newTokens);
+    }
+
+    /** Measured generations per candidate; the median is kept. */
+    public void setRepetitions(int repetitions) {
+        this.repetitions = Math.max(1, repetitions);
+    }
+
+    /**
+     * Wall-time budget of the search. Candidates that would not finish within
+     * it are skipped; the first candidate always runs.
+     */
+    public void setBudgetMillis(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    /** Restrict the search to these logical CPUs; by default all are used. */
+    public void setCpuCores(List<Integer> cpuCores) {
+        this.cpuCores = new ArrayList<>(cpuCores);
+    }
+
+    /**
+     * Candidate tunings, most promising first so a short budget still covers
+     * them: intra-op thread counts from all available cores down by halves,
+     * each with and without spinning.
+     */
+    public List<SessionTuning> candidates() {
+        int cores = cpuCores.isEmpty() ? Runtime.getRuntime().availableProcessors() : cpuCores.size();
+        TreeSet<Integer> threads = new TreeSet<>();
+        for (int count = cores; count >= 1; count /= 2) {
+            threads.add(count);
+        }
+        SessionTuning base = modelConfig.getSessionTuning();
+        List<SessionTuning> candidates = new ArrayList<>();
+        for (int count : threads.descendingSet()) {
+            for (boolean spinning : new boolean[]{true, false}) {
+                candidates.add(SessionTuning.builder()
+                        .intraOpThreads(count)
+                        .interOpThreads(base.getInterOpThreads())
+                        .executionMode(base.getExecutionMode())
+                        .graphOptimizationLevel(base.getGraphOptimizationLevel())
+                        .cpuArena(base.isCpuArena())
+                        .memoryPattern(base.isMemoryPattern())
+                        .allowSpinning(spinning)
+                        .cpuCores(cpuCores.isEmpty() ? cpuCores : cpuCores.subList(0, count))
+                        .build());
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Measure the candidates within the budget.
+     *
+     * @return Results in measurement order; the best has the highest throughput
+     */
+    public List<Result> run() throws Exception {
+        SessionTuning original = modelConfig.getSessionTuning();
+        List<SessionTuning> candidates = candidates();
+        List<Result> results = new ArrayList<>();
+        long start = System.nanoTime();
+        long slowestTrialNanos = 0;
+        try {
+            for (SessionTuning candidate : candidates) {
+                long elapsed = System.nanoTime() - start;
+                if (!results.isEmpty() && elapsed + slowestTrialNanos > budgetMillis * 1_000_000) {
+                    logger.info("Budget reached after {} of {} candidates", results.size(), candidates.size());
+                    break;
+                }
+                long trialStart = System.nanoTime();
+                modelConfig.setSessionTuning(candidate);
+                Result result = measure(candidate);
+                slowestTrialNanos = Math.max(slowestTrialNanos, System.nanoTime() - trialStart);
+                logger.info("Tuning {}", result);
+                results.add(result);
+            }
+        } finally {
+            modelConfig.setSessionTuning(original);
+        }
+        return results;
+    }
+
+    /**
+     * The candidate with the highest throughput, ties broken by time to first token.
+     */
+    public static Result best(List<Result> results) {
+        Result best = null;
+        for (Result result : results) {
+            if (best == null || result.tokensPerSecond > best.tokensPerSecond
+                    || (result.tokensPerSecond == best.tokensPerSecond && result.ttftMillis < best.ttftMillis)) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Profile of a result, to be saved and loaded into a {@link ModelConfig}.
+     */
+    public TuningProfile toProfile(String model, Result result) {
+        return new TuningProfile(model, result.tuning, promptTokens, newTokens, result.tokensPerSecond,
+                result.ttftMillis, result.rssBytes);
+    }
+
+    private Result measure(SessionTuning tuning) throws Exception {
+        // Earlier candidates leave heap and allocator pages resident, so only
+        // the growth from here is attributed to this one
+        long baselineRss = residentBytes();
+        try (JInferEngine engine = new JInferEngine()) {
+            engine.loadModel(modelConfig);
+            GenerationConfig generation = GenerationConfig.builder()
+                    .maxNewTokens(newTokens)
+                    .doSample(false)
+                    .build();
+
+            // One unmeasured generation so every candidate is measured warm
+            drain(engine.generateStream(syntheticPrompt(engine, 0), generation));
+
+            List<double[]> runs = new ArrayList<>();
+            for (int i = 0; i < repetitions; i++) {
+                // A different prompt per run, so no run reuses the previous one's cached prefix
+                String prompt = syntheticPrompt(engine, i + 1);
+                // The stream computes its first token before it is returned
+                long runStart = System.nanoTime();
+                Iterator<String> tokens = engine.generateStream(prompt, generation);
+                long firstToken = System.nanoTime();
+                int decoded = drain(tokens) - 1;
+                long end = System.nanoTime();
+                double ttft = (firstToken - runStart) / 1e6;
+                double tokensPerSecond = decoded > 0 ? decoded * 1e9 / (end - firstToken) : 0;
+                runs.add(new double[]{tokensPerSecond, ttft});
+            }
+            runs.sort((a, b) -> Double.compare(a[0], b[0]));
+            double[] median = runs.get(runs.size() / 2);
+            return new Result(tuning, median[0], median[1], Math.max(0, residentBytes() - baselineRss),
+                    engine.getLoadStats().getLoadMillis());
+        }
+    }
+
+    /**
+     * A prompt of about {@link #promptTokens} tokens for the engine's tokenizer,
+     * starting with the run number so prompts of different runs share no prefix.
+     */
+    String syntheticPrompt(JInferEngine engine, int run) {
+        int perWord = Math.max(1, engine.getTokenizer().encode(PROMPT_WORD.repeat(8)).length / 8);
+        return (run + " " + PROMPT_WORD.repeat(Math.max(1, promptTokens / perWord - 1))).trim();
+    }
+
+    private static int drain(Iterator<String> tokens) {
+        int count = 0;
+        while (tokens.hasNext()) {
+            tokens.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Resident set size of the process, which includes ONNX Runtime's native
+     * allocations; the JVM heap in use where /proc is not available.
+     */
+    static long residentBytes() {
+        Path status = Paths.get("/proc/self/status");
+        if (Files.isReadable(status)) {
+            try {
+                for (String line : Files.readAllLines(status)) {
+                    if (line.startsWith("VmRSS:")) {
+                        String[] parts = line.trim().split("\\s+");
+                        return Long.parseLong(parts[1]) * 1024;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Could not read {}: {}", status, e.getMessage());
+            }
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Measurements of one candidate.
+     */
+    public static class Result {
+        private final SessionTuning tuning;
+        private final double tokensPerSecond;
+        private final double ttftMillis;
+        /** Resident memory added while loading and running the candidate. */
+        private final long rssBytes;
+        private final long loadMillis;
+
+        Result(SessionTuning tuning, double tokensPerSecond, double ttftMillis, long rssBytes, long loadMillis) {
+            this.tuning = tuning;
+            this.tokensPerSecond = tokensPerSecond;
+            this.ttftMillis = ttftMillis;
+            this.rssBytes = rssBytes;
+            this.loadMillis = loadMillis;
+        }
+
+        public SessionTuning getTuning() { return tuning; }
+        public double getTokensPerSecond() { return tokensPerSecond; }
+        public double getTtftMillis() { return ttftMillis; }
+        public long getRssBytes() { return rssBytes; }
+        public long getLoadMillis() { return loadMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("threads=%d spinning=%s: %.1f tokens/s, TTFT %.1f ms, RSS +%d MB, load %d ms",
+                    tuning.effectiveIntraOpThreads(), tuning.isAllowSpinning(), tokensPerSecond, ttftMillis,
+                    rssBytes / (1024 * 1024), loadMillis);
+        }
+    }
+}
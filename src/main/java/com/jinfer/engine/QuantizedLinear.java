@@ -0,0 +1,214 @@
+package com.jinfer.engine;
+
+import com.jinfer.config.WeightQuantization;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * {@link Linear} with block-quantized weights held off the Java heap. Each
+ * output row is split into blocks of {@link #BLOCK_SIZE} values that share a
+ * float scale; values are stored as signed 8-bit integers ({@code Q8}) or
+ * as two 4-bit integers offset by 8 per byte ({@code Q4}). Blocks are
+ * dequantized on the fly inside the dot products, so only the compact
+ * form is read from memory.
+ */
+final class QuantizedLinear implements Linear {
+
+    static final int BLOCK_SIZE = 32;
+
+    /** Output rows computed per task. */
+    private static final int GRAIN = 16;
+
+    private final WeightQuantization type;
+    private final ByteBuffer data;
+    private final FloatBuffer scales;
+    private final float[] bias;
+    private final int inputSize;
+    private final int outputSize;
+    private final int blocks;
+
+    /**
+     * @param data   Quantized values, {@code outputSize x blockBytes(type) * blocks(inputSize)} bytes
+     * @param scales Scale of each block, {@code outputSize x blocks(inputSize)} values
+     * @param bias   {@code outputSize} values, or null
+     */
+    QuantizedLinear(WeightQuantization type, ByteBuffer data, FloatBuffer scales, float[] bias,
+                    int inputSize, int outputSize) {
+        int blocks = blocks(inputSize);
+        if (type == WeightQuantization.NONE) {
+            throw new IllegalArgumentException("No quantization type given");
+        }
+        if (data.remaining() != (long) outputSize * blocks * blockBytes(type)) {
+            throw new IllegalArgumentException("Quantized weight has " + data.remaining() + " bytes, expected " +
+                    (long) outputSize * blocks * blockBytes(type) + " for " + type + " " + outputSize + " x " +
+                    inputSize);
+        }
+        if (scales.remaining() != (long) outputSize * blocks) {
+            throw new IllegalArgumentException("Expected " + (long) outputSize * blocks + " scales, got " +
+                    scales.remaining());
+        }
+        if (bias != null && bias.length != outputSize) {
+            throw new IllegalArgumentException("Bias has " + bias.length + " values, expected " + outputSize);
+        }
+        this.type = type;
+        this.data = data.slice();
+        this.scales = scales.slice();
+        this.bias = bias;
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Quantize float weights stored row-major by output into direct buffers.
+     */
+    static QuantizedLinear quantize(WeightQuantization type, float[] weight, float[] bias,
+                                    int inputSize, int outputSize) {
+        if (weight.length != (long) inputSize * outputSize) {
+            throw new IllegalArgumentException("Weight has " + weight.length + " values, expected " +
+                    inputSize + " x " + outputSize);
+        }
+        int blocks = blocks(inputSize);
+        int blockBytes = blockBytes(type);
+        int maxLevel = type == WeightQuantization.Q8 ? 127 : 7;
+        ByteBuffer data = ByteBuffer.allocateDirect(outputSize * blocks * blockBytes);
+        FloatBuffer scales = ByteBuffer.allocateDirect(outputSize * blocks * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        for (int o = 0; o < outputSize; o++) {
+            for (int b = 0; b < blocks; b++) {
+                int start = o * inputSize + b * BLOCK_SIZE;
+                int length = Math.min(BLOCK_SIZE, inputSize - b * BLOCK_SIZE);
+                float maxAbs = 0f;
+                for (int k = 0; k < length; k++) {
+                    maxAbs = Math.max(maxAbs, Math.abs(weight[start + k]));
+                }
+                float scale = maxAbs / maxLevel;
+                float inverse = scale > 0f ? 1f / scale : 0f;
+                int block = o * blocks + b;
+                scales.put(block, scale);
+                // Values past the end of a partial block stay zero
+                for (int k = 0; k < length; k++) {
+                    int q = Math.max(-maxLevel, Math.min(maxLevel, Math.round(weight[start + k] * inverse)));
+                    if (type == WeightQuantization.Q8) {
+                        data.put(block * blockBytes + k, (byte) q);
+                    } else {
+                        int index = block * blockBytes + (k >> 1);
+                        int nibble = (q + 8) << ((k & 1) * 4);
+                        data.put(index, (byte) (data.get(index) | nibble));
+                    }
+                }
+                if (type == WeightQuantization.Q4) {
+                    // Zero is stored as 8 in the padding too
+                    for (int k = length; k < BLOCK_SIZE; k++) {
+                        int index = block * blockBytes + (k >> 1);
+                        data.put(index, (byte) (data.get(index) | (8 << ((k & 1) * 4))));
+                    }
+                }
+            }
+        }
+        return new QuantizedLinear(type, data, scales, bias, inputSize, outputSize);
+    }
+
+    /** Blocks per row of {@code inputSize} values. */
+    static int blocks(int inputSize) {
+        return (inputSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /** Bytes of one block of quantized values. */
+    static int blockBytes(WeightQuantization type) {
+        return type == WeightQuantization.Q8 ? BLOCK_SIZE : BLOCK_SIZE / 2;
+    }
+
+    WeightQuantization getType() {
+        return type;
+    }
+
+    /** The quantized values, for writing a checkpoint. */
+    ByteBuffer getData() {
+        return data.duplicate();
+    }
+
+    /** The block scales, for writing a checkpoint. */
+    FloatBuffer getScales() {
+        return scales.duplicate();
+    }
+
+    float[] getBias() {
+        return bias;
+    }
+
+    @Override
+    public int inputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int outputSize() {
+        return outputSize;
+    }
+
+    @Override
+    public long weightBytes() {
+        return data.capacity() + 4L * scales.capacity() + (bias != null ? 4L * bias.length : 0);
+    }
+
+    @Override
+    public void row(int index, float[] out, int offset) {
+        float[] block = new float[BLOCK_SIZE];
+        for (int b = 0; b < blocks; b++) {
+            int length = Math.min(BLOCK_SIZE, inputSize - b * BLOCK_SIZE);
+            float scale = scales.get(index * blocks + b);
+            decode(index * blocks + b, block);
+            for (int k = 0; k < length; k++) {
+                out[offset + b * BLOCK_SIZE + k] = block[k] * scale;
+            }
+        }
+    }
+
+    @Override
+    public void apply(float[] x, float[] y, int rows, Parallel parallel) {
+        parallel.forRange(outputSize, GRAIN, (from, to) -> {
+            float[] block = new float[BLOCK_SIZE];
+            float[] sums = new float[rows];
+            for (int o = from; o < to; o++) {
+                Arrays.fill(sums, 0f);
+                for (int b = 0; b < blocks; b++) {
+                    int length = Math.min(BLOCK_SIZE, inputSize - b * BLOCK_SIZE);
+                    float scale = scales.get(o * blocks + b);
+                    // Decode each block once and reuse it for every token
+                    decode(o * blocks + b, block);
+                    for (int r = 0; r < rows; r++) {
+                        sums[r] += FloatLinear.dot(block, 0, x, r * inputSize + b * BLOCK_SIZE, length) * scale;
+                    }
+                }
+                float b = bias != null ? bias[o] : 0f;
+                for (int r = 0; r < rows; r++) {
+                    y[r * outputSize + o] = sums[r] + b;
+                }
+            }
+        });
+    }
+
+    /**
+     * Unscaled values of a block.
+     */
+    private void decode(int block, float[] values) {
+        if (type == WeightQuantization.Q8) {
+            int base = block * BLOCK_SIZE;
+            for (int k = 0; k < BLOCK_SIZE; k++) {
+                values[k] = data.get(base + k);
+            }
+        } else {
+            int base = block * (BLOCK_SIZE / 2);
+            for (int k = 0; k < BLOCK_SIZE; k += 2) {
+                int packed = data.get(base + (k >> 1));
+                values[k] = (packed & 0x0f) - 8;
+                values[k + 1] = ((packed >> 4) & 0x0f) - 8;
+            }
+        }
+    }
+}
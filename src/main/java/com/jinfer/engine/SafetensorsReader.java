@@ -0,0 +1,378 @@
+package com.jinfer.engine;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reader of a single {@code .safetensors} file. Opening reads only the JSON
+ * header; tensor data is memory-mapped on first access and handed out as
+ * read-only, little-endian views, so weights are paged in by the OS and shared
+ * with the page cache instead of being copied onto the heap.
+ *
+ * <p>Files may be larger than 2 GB since every tensor is mapped on its own. A
+ * single tensor over 2 GB cannot be one buffer; read it in ranges with
+ * {@link #getTensorData(String, long, int)}.
+ */
+public class SafetensorsReader implements AutoCloseable {
+
+    /** Upper bound of a header, as in the reference implementation. */
+    private static final long MAX_HEADER_SIZE = 100L * 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, TensorInfo> tensors;
+    private final Map<String, String> metadata;
+    private final Map<String, ByteBuffer> mapped = new ConcurrentHashMap<>();
+
+    private SafetensorsReader(Path path, FileChannel channel, Map<String, TensorInfo> tensors,
+                              Map<String, String> metadata) {
+        this.path = path;
+        this.channel = channel;
+        this.tensors = tensors;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Open a file and parse its header.
+     *
+     * @throws IOException if the file cannot be read or is not valid SafeTensors
+     */
+    public static SafetensorsReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            Map<String, TensorInfo> tensors = new LinkedHashMap<>();
+            Map<String, String> metadata = new LinkedHashMap<>();
+            readHeader(path, channel, tensors, metadata);
+            return new SafetensorsReader(path, channel, tensors, metadata);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void readHeader(Path path, FileChannel channel, Map<String, TensorInfo> tensors,
+                                   Map<String, String> metadata) throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer length = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, length, 0);
+        long headerSize = length.flip().getLong();
+        if (headerSize <= 0 || headerSize > MAX_HEADER_SIZE || 8 + headerSize > fileSize) {
+            throw new IOException("Invalid SafeTensors header size " + headerSize + " in " + path);
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) headerSize);
+        readFully(channel, header, 8);
+        long dataStart = 8 + headerSize;
+
+        try {
+            JsonObject root = JsonParser.parseString(
+                    new String(header.array(), StandardCharsets.UTF_8)).getAsJsonObject();
+            for (Map.Entry<String, JsonElement> entry : root.entrySet()) {
+                if (entry.getKey().equals("__metadata__")) {
+                    for (Map.Entry<String, JsonElement> meta : entry.getValue().getAsJsonObject().entrySet()) {
+                        metadata.put(meta.getKey(), meta.getValue().getAsString());
+                    }
+                    continue;
+                }
+                JsonObject tensor = entry.getValue().getAsJsonObject();
+                JsonArray shapeJson = tensor.getAsJsonArray("shape");
+                long[] shape = new long[shapeJson.size()];
+                for (int i = 0; i < shape.length; i++) {
+                    shape[i] = shapeJson.get(i).getAsLong();
+                }
+                JsonArray offsets = tensor.getAsJsonArray("data_offsets");
+                long begin = offsets.get(0).getAsLong();
+                long end = offsets.get(1).getAsLong();
+                if (begin < 0 || end < begin || dataStart + end > fileSize) {
+                    throw new IOException("Tensor " + entry.getKey() + " lies outside " + path);
+                }
+                TensorInfo info = new TensorInfo(entry.getKey(), tensor.get("dtype").getAsString(), shape,
+                        path, dataStart + begin, end - begin);
+                int elementSize = elementSize(info.dtype);
+                if (elementSize > 0 && info.getElementCount() * elementSize != info.length) {
+                    throw new IOException("Tensor " + info.name + " has " + info.length + " bytes, expected " +
+                            info.getElementCount() * elementSize + " for " + info.dtype + " " +
+                            Arrays.toString(shape));
+                }
+                tensors.put(info.name, info);
+            }
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException
+                 | NullPointerException | IndexOutOfBoundsException e) {
+            throw new IOException("Invalid SafeTensors header in " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Bytes per element of a SafeTensors dtype, or 0 if it is not known.
+     */
+    public static int elementSize(String dtype) {
+        switch (dtype) {
+            case "F64":
+            case "I64":
+            case "U64":
+                return 8;
+            case "F32":
+            case "I32":
+            case "U32":
+                return 4;
+            case "F16":
+            case "BF16":
+            case "I16":
+            case "U16":
+                return 2;
+            case "I8":
+            case "U8":
+            case "BOOL":
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /** Tensor names, in header order. */
+    public Set<String> getTensorNames() {
+        return Collections.unmodifiableSet(tensors.keySet());
+    }
+
+    /**
+     * Metadata of a tensor, or null if there is no such tensor.
+     */
+    public TensorInfo getInfo(String name) {
+        return tensors.get(name);
+    }
+
+    /** The free-form {@code __metadata__} of the header. */
+    public Map<String, String> getMetadata() {
+        return Collections.unmodifiableMap(metadata);
+    }
+
+    /** Bytes of tensor data in the file. */
+    public long getTotalBytes() {
+        long total = 0;
+        for (TensorInfo info : tensors.values()) {
+            total += info.length;
+        }
+        return total;
+    }
+
+    /**
+     * Raw data of a tensor as a read-only, little-endian view of the mapped
+     * file. The mapping is created on first access and reused.
+     *
+     * @throws IOException if the tensor does not exist or is larger than 2 GB
+     */
+    public ByteBuffer getTensorData(String name) throws IOException {
+        TensorInfo info = require(name);
+        if (info.length > Integer.MAX_VALUE) {
+            throw new IOException("Tensor " + name + " is larger than 2 GB and cannot be mapped as one buffer");
+        }
+        ByteBuffer buffer = mapped.get(name);
+        if (buffer == null) {
+            buffer = map(info.offset, info.length);
+            mapped.put(name, buffer);
+        }
+        return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * A byte range of a tensor's data, for tensors too large for one buffer.
+     * The range is mapped on every call and not cached.
+     */
+    public ByteBuffer getTensorData(String name, long byteOffset, int byteLength) throws IOException {
+        TensorInfo info = require(name);
+        if (byteOffset < 0 || byteLength < 0 || byteOffset + byteLength > info.length) {
+            throw new IOException("Range " + byteOffset + "+" + byteLength + " lies outside tensor " + name +
+                    " of " + info.length + " bytes");
+        }
+        return map(info.offset + byteOffset, byteLength).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Zero-copy view of an {@code F32} tensor.
+     */
+    public FloatBuffer getFloats(String name) throws IOException {
+        checkDtype(name, "F32");
+        return getTensorData(name).asFloatBuffer();
+    }
+
+    /**
+     * Zero-copy view of an {@code F16} or {@code BF16} tensor as raw 16-bit
+     * values; convert with {@link #halfToFloat} or {@link #bfloat16ToFloat}.
+     */
+    public ShortBuffer getShorts(String name) throws IOException {
+        checkDtype(name, "F16", "BF16");
+        return getTensorData(name).asShortBuffer();
+    }
+
+    /**
+     * Copy of a floating point tensor onto the heap, widened to float.
+     */
+    public float[] toFloatArray(String name) throws IOException {
+        TensorInfo info = checkDtype(name, "F32", "F16", "BF16");
+        if (info.getElementCount() > Integer.MAX_VALUE - 8) {
+            throw new IOException("Tensor " + name + " has too many elements for an array");
+        }
+        float[] values = new float[(int) info.getElementCount()];
+        switch (info.dtype) {
+            case "F32":
+                getFloats(name).get(values);
+                break;
+            case "F16": {
+                ShortBuffer halves = getShorts(name);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = halfToFloat(halves.get(i));
+                }
+                break;
+            }
+            default: {
+                ShortBuffer bfloats = getShorts(name);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = bfloat16ToFloat(bfloats.get(i));
+                }
+                break;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * IEEE 754 half precision to float.
+     */
+    public static float halfToFloat(short half) {
+        int bits = half & 0xffff;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+        if (exponent == 0x1f) {
+            // Infinity or NaN
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // Subnormal: mantissa * 2^-24
+            float value = mantissa * 0x1p-24f;
+            return sign != 0 ? -value : value;
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+
+    /**
+     * bfloat16, the upper half of a float, to float.
+     */
+    public static float bfloat16ToFloat(short bfloat16) {
+        return Float.intBitsToFloat((bfloat16 & 0xffff) << 16);
+    }
+
+    private TensorInfo require(String name) throws IOException {
+        TensorInfo info = tensors.get(name);
+        if (info == null) {
+            throw new IOException("No tensor named " + name);
+        }
+        return info;
+    }
+
+    private TensorInfo checkDtype(String name, String... dtypes) throws IOException {
+        TensorInfo info = require(name);
+        for (String dtype : dtypes) {
+            if (dtype.equals(info.dtype)) {
+                return info;
+            }
+        }
+        throw new IOException("Tensor " + name + " is " + info.dtype + ", expected " + String.join(" or ", dtypes));
+    }
+
+    private ByteBuffer map(long offset, long length) throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("Reader for " + path + " is closed");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    /**
+     * Close the file. Views handed out stay readable until they are garbage
+     * collected.
+     */
+    @Override
+    public void close() throws IOException {
+        mapped.clear();
+        channel.close();
+    }
+
+    /**
+     * Name, type, shape and location of one tensor.
+     */
+    public static class TensorInfo {
+        private final String name;
+        private final String dtype;
+        private final long[] shape;
+        private final Path file;
+        private final long offset;
+        private final long length;
+
+        TensorInfo(String name, String dtype, long[] shape, Path file, long offset, long length) {
+            this.name = name;
+            this.dtype = dtype;
+            this.shape = shape;
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getName() { return name; }
+
+        /** SafeTensors dtype, e.g. {@code F32}, {@code F16} or {@code BF16}. */
+        public String getDtype() { return dtype; }
+
+        public long[] getShape() { return shape.clone(); }
+
+        /** File holding the data. */
+        public Path getFile() { return file; }
+
+        /** Absolute offset of the data in the file. */
+        public long getOffset() { return offset; }
+
+        /** Bytes of data. */
+        public long getLength() { return length; }
+
+        public long getElementCount() {
+            long count = 1;
+            for (long dim : shape) {
+                count *= dim;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.jinfer.engine;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer of a single {@code .safetensors} file. Tensors are collected and
+ * written in insertion order after the header.
+ */
+final class SafetensorsWriter {
+
+    private final Map<String, String> metadata = new LinkedHashMap<>();
+    private final List<Entry> entries = new ArrayList<>();
+
+    void putMetadata(String key, String value) {
+        metadata.put(key, value);
+    }
+
+    /**
+     * Add a tensor with its raw little-endian data.
+     */
+    void add(String name, String dtype, long[] shape, ByteBuffer data) {
+        entries.add(new Entry(name, dtype, shape, data.duplicate()));
+    }
+
+    void addFloats(String name, long[] shape, float[] values) {
+        ByteBuffer data = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        data.asFloatBuffer().put(values);
+        add(name, "F32", shape, data);
+    }
+
+    void addFloats(String name, long[] shape, FloatBuffer values) {
+        FloatBuffer source = values.duplicate();
+        ByteBuffer data = ByteBuffer.allocate(source.remaining() * 4).order(ByteOrder.LITTLE_ENDIAN);
+        data.asFloatBuffer().put(source);
+        add(name, "F32", shape, data);
+    }
+
+    void write(Path file) throws IOException {
+        JsonObject header = new JsonObject();
+        if (!metadata.isEmpty()) {
+            JsonObject meta = new JsonObject();
+            metadata.forEach(meta::addProperty);
+            header.add("__metadata__", meta);
+        }
+        long offset = 0;
+        for (Entry entry : entries) {
+            JsonObject tensor = new JsonObject();
+            tensor.addProperty("dtype", entry.dtype);
+            JsonArray shape = new JsonArray();
+            for (long dim : entry.shape) {
+                shape.add(dim);
+            }
+            tensor.add("shape", shape);
+            JsonArray offsets = new JsonArray();
+            offsets.add(offset);
+            offsets.add(offset + entry.data.remaining());
+            tensor.add("data_offsets", offsets);
+            header.add(entry.name, tensor);
+            offset += entry.data.remaining();
+        }
+
+        // Pad the header with spaces so the data starts 8-byte aligned
+        StringBuilder json = new StringBuilder(header.toString());
+        while (json.toString().getBytes(StandardCharsets.UTF_8).length % 8 != 0) {
+            json.append(' ');
+        }
+        byte[] headerBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer prefix = ByteBuffer.allocate(8 + headerBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            prefix.putLong(headerBytes.length).put(headerBytes).flip();
+            writeFully(channel, prefix);
+            for (Entry entry : entries) {
+                writeFully(channel, entry.data.duplicate());
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static final class Entry {
+        final String name;
+        final String dtype;
+        final long[] shape;
+        final ByteBuffer data;
+
+        Entry(String name, String dtype, long[] shape, ByteBuffer data) {
+            this.name = name;
+            this.dtype = dtype;
+            this.shape = shape;
+            this.data = data;
+        }
+    }
+}
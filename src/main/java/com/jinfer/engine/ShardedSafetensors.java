@@ -0,0 +1,179 @@
+package com.jinfer.engine;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only view of the tensors of a SafeTensors checkpoint, single-file or
+ * sharded, over one {@link SafetensorsReader} per shard. Only the JSON headers
+ * are read when opening; tensor data is memory-mapped on first access.
+ */
+public class ShardedSafetensors implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedSafetensors.class);
+
+    private static final String INDEX_SUFFIX = ".index.json";
+
+    private final Map<String, SafetensorsReader> readers;
+    private final List<SafetensorsReader> shards;
+    private final long totalBytes;
+
+    private ShardedSafetensors(Map<String, SafetensorsReader> readers, List<SafetensorsReader> shards) {
+        this.readers = readers;
+        this.shards = shards;
+        long total = 0;
+        for (SafetensorsReader shard : shards) {
+            total += shard.getTotalBytes();
+        }
+        this.totalBytes = total;
+    }
+
+    /**
+     * Open a {@code .safetensors} file, or a sharded checkpoint by its
+     * {@code *.safetensors.index.json}.
+     */
+    public static ShardedSafetensors open(Path path) throws IOException {
+        if (!path.getFileName().toString().endsWith(INDEX_SUFFIX)) {
+            return open(Collections.singletonList(path));
+        }
+        Map<String, String> weightMap = readWeightMap(path);
+        Set<Path> shards = new LinkedHashSet<>();
+        for (String shard : weightMap.values()) {
+            shards.add(path.resolveSibling(shard));
+        }
+        ShardedSafetensors weights = open(new ArrayList<>(shards));
+        for (Map.Entry<String, String> entry : weightMap.entrySet()) {
+            SafetensorsReader.TensorInfo info = weights.getInfo(entry.getKey());
+            if (info == null || !info.getFile().equals(path.resolveSibling(entry.getValue()))) {
+                weights.close();
+                throw new IOException("Tensor " + entry.getKey() + " not found in " + entry.getValue() +
+                        " as listed in " + path);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Open the given shard files. Tensor names must be unique across shards.
+     */
+    public static ShardedSafetensors open(List<Path> shards) throws IOException {
+        Map<String, SafetensorsReader> readers = new LinkedHashMap<>();
+        List<SafetensorsReader> opened = new ArrayList<>();
+        try {
+            for (Path shard : shards) {
+                SafetensorsReader reader = SafetensorsReader.open(shard);
+                opened.add(reader);
+                for (String name : reader.getTensorNames()) {
+                    if (readers.put(name, reader) != null) {
+                        throw new IOException("Tensor " + name + " appears in more than one shard");
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeAll(opened);
+            throw e;
+        }
+        ShardedSafetensors weights = new ShardedSafetensors(readers, opened);
+        logger.info("Opened {} tensors in {} shards ({} MB)", readers.size(), shards.size(),
+                weights.totalBytes / (1024 * 1024));
+        return weights;
+    }
+
+    private static Map<String, String> readWeightMap(Path index) throws IOException {
+        Map<String, String> weightMap = new LinkedHashMap<>();
+        try {
+            JsonObject root = JsonParser.parseString(Files.readString(index)).getAsJsonObject();
+            JsonElement map = root.get("weight_map");
+            if (map == null || !map.isJsonObject()) {
+                throw new IOException("No weight_map in " + index);
+            }
+            for (Map.Entry<String, JsonElement> entry : map.getAsJsonObject().entrySet()) {
+                weightMap.put(entry.getKey(), entry.getValue().getAsString());
+            }
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            throw new IOException("Invalid weight index " + index + ": " + e.getMessage(), e);
+        }
+        return weightMap;
+    }
+
+    /** Tensor names, in shard and header order. */
+    public Set<String> getTensorNames() {
+        return Collections.unmodifiableSet(readers.keySet());
+    }
+
+    /**
+     * Metadata of a tensor, or null if there is no such tensor.
+     */
+    public SafetensorsReader.TensorInfo getInfo(String name) {
+        SafetensorsReader reader = readers.get(name);
+        return reader != null ? reader.getInfo(name) : null;
+    }
+
+    /** Bytes of tensor data across all shards. */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Reader of the shard holding a tensor, for typed views such as
+     * {@link SafetensorsReader#getFloats}.
+     *
+     * @throws IOException if the tensor does not exist
+     */
+    public SafetensorsReader getReader(String name) throws IOException {
+        SafetensorsReader reader = readers.get(name);
+        if (reader == null) {
+            throw new IOException("No tensor named " + name);
+        }
+        return reader;
+    }
+
+    /**
+     * Raw data of a tensor as a read-only, little-endian view of the mapped
+     * shard. The mapping is created on first access and reused.
+     *
+     * @throws IOException if the tensor does not exist or is larger than 2 GB
+     */
+    public ByteBuffer getTensorData(String name) throws IOException {
+        return getReader(name).getTensorData(name);
+    }
+
+    /**
+     * Close the shard files. Views handed out stay readable until they are
+     * garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        closeAll(shards);
+    }
+
+    private static void closeAll(Iterable<SafetensorsReader> readers) throws IOException {
+        IOException failure = null;
+        for (SafetensorsReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.jinfer.engine;
+
+import com.jinfer.config.ModelConfig;
+import com.jinfer.config.WeightQuantization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Ahead-of-time quantization of SafeTensors checkpoints for the Java backend,
+ * and a benchmark comparing weight memory and decode throughput.
+ */
+public final class WeightQuantizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(WeightQuantizer.class);
+
+    /** File name of the quantized weights in the output directory. */
+    public static final String QUANTIZED_FILE = "model.safetensors";
+
+    private WeightQuantizer() {}
+
+    /**
+     * Quantize a model's weights into {@code outputDir}, with the config,
+     * tokenizer and other non-weight files of the model directory copied
+     * alongside, so the directory can be loaded like the original.
+     *
+     * @return The written weights file
+     */
+    public static Path quantize(ModelConfig config, WeightQuantization type, Path outputDir) throws IOException {
+        if (type == WeightQuantization.NONE) {
+            throw new IllegalArgumentException("No quantization type given");
+        }
+        Path modelDir = config.getModelPath().toAbsolutePath().getParent();
+        if (Files.isDirectory(outputDir) && Files.isSameFile(modelDir, outputDir)) {
+            throw new IOException("Output directory must differ from the model directory " + modelDir);
+        }
+        Files.createDirectories(outputDir);
+
+        WeightQuantization original = config.getWeightQuantization();
+        config.setWeightQuantization(type);
+        Path output = outputDir.resolve(QUANTIZED_FILE);
+        try (Gpt2InferenceSession session = new Gpt2InferenceSession(config)) {
+            SafetensorsWriter writer = new SafetensorsWriter();
+            session.export(writer);
+            Path temporary = outputDir.resolve(QUANTIZED_FILE + ".tmp");
+            writer.write(temporary);
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            config.setWeightQuantization(original);
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(modelDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (Files.isRegularFile(file) && !name.startsWith(".") && !isWeightFile(name)) {
+                    Files.copy(file, outputDir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        logger.info("Wrote {} weights of {} to {} ({} MB)", type, config.getModelPath(), output,
+                Files.size(output) / (1024 * 1024));
+        return output;
+    }
+
+    private static boolean isWeightFile(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".safetensors") || lower.endsWith(".index.json") || lower.endsWith(".bin") ||
+               lower.endsWith(".pt") || lower.endsWith(".pth") || lower.endsWith(".onnx") ||
+               lower.endsWith(".onnx_data") || lower.endsWith(".h5") || lower.endsWith(".msgpack");
+    }
+
+    /**
+     * Load a model with the config's quantization and measure greedy decoding
+     * from a synthetic prompt.
+     */
+    public static Benchmark benchmark(ModelConfig config, int promptTokens, int newTokens) throws IOException {
+        long start = System.nanoTime();
+        try (Gpt2InferenceSession session = new Gpt2InferenceSession(config)) {
+            long loadNanos = System.nanoTime() - start;
+            int length = Math.max(1, Math.min(promptTokens, session.getMaxContextLength() - newTokens));
+            long[] ids = new long[length + newTokens];
+            for (int i = 0; i < length; i++) {
+                ids[i] = (i * 31L + 7) % session.getVocabSize();
+            }
+
+            long prefillStart = System.nanoTime();
+            int next = argmax(session.forward(Arrays.copyOf(ids, length), null));
+            long decodeStart = System.nanoTime();
+            int decoded = 0;
+            for (int step = 1; step < newTokens && length + step <= session.getMaxContextLength(); step++) {
+                ids[length + step - 1] = next;
+                next = argmax(session.forward(Arrays.copyOf(ids, length + step), null));
+                decoded++;
+            }
+            long end = System.nanoTime();
+            return new Benchmark(session.getWeightQuantization(), session.getWeightBytes(), loadNanos / 1_000_000,
+                    (decodeStart - prefillStart) / 1e6, decoded > 0 ? decoded * 1e9 / (end - decodeStart) : 0);
+        }
+    }
+
+    private static int argmax(float[] logits) {
+        int best = 0;
+        for (int i = 1; i < logits.length; i++) {
+            if (logits[i] > logits[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Weight memory, load time and speed of one model load.
+     */
+    public static class Benchmark {
+        private final WeightQuantization quantization;
+        private final long weightBytes;
+        private final long loadMillis;
+        private final double prefillMillis;
+        private final double tokensPerSecond;
+
+        Benchmark(WeightQuantization quantization, long weightBytes, long loadMillis, double prefillMillis,
+                  double tokensPerSecond) {
+            this.quantization = quantization;
+            this.weightBytes = weightBytes;
+            this.loadMillis = loadMillis;
+            this.prefillMillis = prefillMillis;
+            this.tokensPerSecond = tokensPerSecond;
+        }
+
+        public WeightQuantization getQuantization() { return quantization; }
+        public long getWeightBytes() { return weightBytes; }
+        public long getLoadMillis() { return loadMillis; }
+        public double getPrefillMillis() { return prefillMillis; }
+        public double getTokensPerSecond() { return tokensPerSecond; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d MB of weights, loaded in %d ms, prefill %.1f ms, %.1f tokens/s",
+                    quantization, weightBytes / (1024 * 1024), loadMillis, prefillMillis, tokensPerSecond);
+        }
+    }
+}
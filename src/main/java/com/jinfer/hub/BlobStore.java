@@ -0,0 +1,154 @@
+package com.jinfer.hub;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content-addressed file store shared by all cached models.
+ *
+ * Every downloaded file lives once under {@code blobs/<sha256>}; model
+ * directories hold hard links to the blobs (symbolic links, or copies as a
+ * last resort, where the file system has no hard links). Blobs are reference
+ * counted through the checksum manifests of the model directories.
+ */
+class BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStore.class);
+
+    static final String BLOBS_DIR = "blobs";
+
+    private final Path cacheDir;
+    private final Path blobsDir;
+
+    BlobStore(Path cacheDir) {
+        this.cacheDir = cacheDir;
+        this.blobsDir = cacheDir.resolve(BLOBS_DIR);
+    }
+
+    Path blobPath(String sha256) {
+        return blobsDir.resolve(sha256.toLowerCase());
+    }
+
+    /**
+     * Link an existing blob to {@code target}, replacing whatever is there.
+     *
+     * @return false if no blob with this hash and size is stored
+     */
+    boolean link(String sha256, long size, Path target) throws IOException {
+        Path blob = blobPath(sha256);
+        if (!Files.exists(blob) || (size >= 0 && Files.size(blob) != size)) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+        createLink(target, blob);
+        return true;
+    }
+
+    /**
+     * Move a verified file into the store and replace it with a link to its blob.
+     * If the content is already stored, the new copy is dropped.
+     */
+    void store(Path file, String sha256) throws IOException {
+        Path blob = blobPath(sha256);
+        if (Files.isSymbolicLink(file) || isSameFile(file, blob)) {
+            return;
+        }
+        Files.createDirectories(blobsDir);
+        if (Files.exists(blob) && Files.size(blob) == Files.size(file)) {
+            Files.delete(file);
+        } else {
+            // New content, or a blob that was modified in place through another link
+            PartialDownload.moveAtomically(file, blob);
+        }
+        createLink(file, blob);
+    }
+
+    private static boolean isSameFile(Path file, Path blob) {
+        try {
+            return Files.exists(blob) && Files.isSameFile(file, blob);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void createLink(Path link, Path blob) throws IOException {
+        try {
+            Files.createLink(link, blob);
+            return;
+        } catch (UnsupportedOperationException | IOException e) {
+            logger.debug("Hard link failed for {}: {}", link, e.getMessage());
+        }
+        try {
+            Files.createSymbolicLink(link, link.getParent().relativize(blob));
+            return;
+        } catch (UnsupportedOperationException | IOException e) {
+            logger.debug("Symbolic link failed for {}: {}", link, e.getMessage());
+        }
+        Files.copy(blob, link, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Number of cached models referencing each blob.
+     */
+    Map<String, Integer> referenceCounts() throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        if (!Files.exists(cacheDir)) {
+            return counts;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+            for (Path dir : stream) {
+                if (!Files.isDirectory(dir) || dir.equals(blobsDir) || !CacheManifest.exists(dir)) {
+                    continue;
+                }
+                for (String sha256 : CacheManifest.load(dir).getChecksums()) {
+                    counts.merge(sha256.toLowerCase(), 1, Integer::sum);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Delete the given blobs unless a cached model still references them.
+     *
+     * @return Bytes freed
+     */
+    long deleteUnreferenced(Set<String> candidates) throws IOException {
+        Map<String, Integer> counts = referenceCounts();
+        long freed = 0;
+        for (String sha256 : candidates) {
+            Path blob = blobPath(sha256);
+            if (counts.containsKey(sha256.toLowerCase()) || !Files.exists(blob)) {
+                continue;
+            }
+            long size = Files.size(blob);
+            Files.delete(blob);
+            freed += size;
+        }
+        return freed;
+    }
+
+    /**
+     * Total size of the given blobs.
+     */
+    long sizeOf(Set<String> blobs) throws IOException {
+        long total = 0;
+        for (String sha256 : blobs) {
+            Path blob = blobPath(sha256);
+            if (Files.exists(blob)) {
+                total += Files.size(blob);
+            }
+        }
+        return total;
+    }
+}
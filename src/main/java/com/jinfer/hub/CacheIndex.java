@@ -0,0 +1,70 @@
+package com.jinfer.hub;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persistent index of the cached models, stored as {@code .jinfer_index.json}
+ * in the cache directory. It is replaced atomically on every change, so
+ * concurrent readers always see a complete index.
+ */
+class CacheIndex {
+
+    static final String FILE_NAME = ".jinfer_index.json";
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private Map<String, CachedModel> models = new TreeMap<>();
+
+    /**
+     * Load the index, or null if it does not exist or cannot be read.
+     */
+    static CacheIndex load(Path cacheDir) {
+        Path file = cacheDir.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            CacheIndex index = GSON.fromJson(Files.readString(file), CacheIndex.class);
+            return index != null && index.models != null ? index : null;
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    void save(Path cacheDir) throws IOException {
+        Path file = cacheDir.resolve(FILE_NAME);
+        Path temp = Files.createTempFile(cacheDir, FILE_NAME, ".tmp");
+        try {
+            Files.writeString(temp, GSON.toJson(this));
+            PartialDownload.moveAtomically(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    CachedModel get(String repoId) {
+        return models.get(repoId);
+    }
+
+    void put(CachedModel model) {
+        models.put(model.getRepoId(), model);
+    }
+
+    CachedModel remove(String repoId) {
+        return models.remove(repoId);
+    }
+
+    List<CachedModel> getModels() {
+        return new ArrayList<>(models.values());
+    }
+}
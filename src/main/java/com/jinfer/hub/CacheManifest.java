@@ -0,0 +1,163 @@
+package com.jinfer.hub;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Per-model record of verified files: size, modification time, SHA-256 and
+ * the server's entity tag. Lets startup validation compare file stats instead
+ * of re-reading the weights, and forced refreshes revalidate with the ETag.
+ */
+class CacheManifest {
+
+    static final String FILE_NAME = ".jinfer_manifest.json";
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private Map<String, Entry> files = new TreeMap<>();
+
+    static class Entry {
+        long size;
+        long mtime;
+        String sha256;
+        String etag;
+
+        Entry(long size, long mtime, String sha256, String etag) {
+            this.size = size;
+            this.mtime = mtime;
+            this.sha256 = sha256;
+            this.etag = etag;
+        }
+    }
+
+    static boolean exists(Path modelDir) {
+        return Files.exists(modelDir.resolve(FILE_NAME));
+    }
+
+    /**
+     * Load the manifest of a model directory; empty if missing or unreadable.
+     */
+    static CacheManifest load(Path modelDir) {
+        Path file = modelDir.resolve(FILE_NAME);
+        if (Files.exists(file)) {
+            try {
+                CacheManifest manifest = GSON.fromJson(Files.readString(file), CacheManifest.class);
+                if (manifest != null && manifest.files != null) {
+                    return manifest;
+                }
+            } catch (IOException | JsonParseException e) {
+                // Fall through to an empty manifest
+            }
+        }
+        return new CacheManifest();
+    }
+
+    /**
+     * Record a verified file using its current size and modification time.
+     */
+    synchronized void record(String path, Path file, String sha256) throws IOException {
+        record(path, file, sha256, null);
+    }
+
+    /**
+     * Record a verified file together with the entity tag it was served with.
+     */
+    synchronized void record(String path, Path file, String sha256, String etag) throws IOException {
+        files.put(path, new Entry(Files.size(file), Files.getLastModifiedTime(file).toMillis(), sha256, etag));
+    }
+
+    synchronized Entry get(String path) {
+        return files.get(path);
+    }
+
+    /**
+     * Whether the file on disk still has the recorded size and modification time.
+     */
+    synchronized boolean matches(String path, Path file) {
+        Entry entry = files.get(path);
+        if (entry == null || !Files.exists(file)) {
+            return false;
+        }
+        try {
+            return Files.size(file) == entry.size && Files.getLastModifiedTime(file).toMillis() == entry.mtime;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Paths whose files are missing or changed since they were verified.
+     */
+    synchronized List<String> findStale(Path modelDir) {
+        List<String> stale = new ArrayList<>();
+        for (String path : files.keySet()) {
+            if (!matches(path, modelDir.resolve(path))) {
+                stale.add(path);
+            }
+        }
+        return stale;
+    }
+
+    synchronized List<String> getPaths() {
+        return new ArrayList<>(files.keySet());
+    }
+
+    /**
+     * Total size of the recorded files.
+     */
+    synchronized long totalSize() {
+        long total = 0;
+        for (Entry entry : files.values()) {
+            total += entry.size;
+        }
+        return total;
+    }
+
+    /**
+     * Size of each distinct content hash.
+     */
+    synchronized Map<String, Long> blobSizes() {
+        Map<String, Long> sizes = new HashMap<>();
+        for (Entry entry : files.values()) {
+            if (entry.sha256 != null) {
+                sizes.put(entry.sha256.toLowerCase(), entry.size);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Content hashes of all recorded files.
+     */
+    synchronized Set<String> getChecksums() {
+        Set<String> checksums = new HashSet<>();
+        for (Entry entry : files.values()) {
+            if (entry.sha256 != null) {
+                checksums.add(entry.sha256.toLowerCase());
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Atomically persist the manifest into the model directory.
+     */
+    synchronized void save(Path modelDir) throws IOException {
+        Path file = modelDir.resolve(FILE_NAME);
+        Path temp = modelDir.resolve(FILE_NAME + ".tmp");
+        Files.writeString(temp, GSON.toJson(this));
+        PartialDownload.moveAtomically(temp, file);
+    }
+}
@@ -0,0 +1,54 @@
+package com.jinfer.hub;
+
+/**
+ * Cache index entry for a downloaded model.
+ */
+public class CachedModel {
+
+    private String repoId;
+    private long sizeBytes;
+    private String revision;
+    private String etag;
+    private long downloadedAt;
+    private long lastAccess;
+    private boolean pinned;
+
+    CachedModel(String repoId, long sizeBytes, String revision, String etag, long downloadedAt) {
+        this.repoId = repoId;
+        this.sizeBytes = sizeBytes;
+        this.revision = revision;
+        this.etag = etag;
+        this.downloadedAt = downloadedAt;
+        this.lastAccess = downloadedAt;
+    }
+
+    /** Repository ID, e.g. "microsoft/DialoGPT-small". */
+    public String getRepoId() { return repoId; }
+
+    /** Total size of the model's files in bytes (shared files counted in full). */
+    public long getSizeBytes() { return sizeBytes; }
+
+    /** Commit hash of the downloaded snapshot, or null if unknown. */
+    public String getRevision() { return revision; }
+
+    /** ETag of the model info response, or null if unknown. */
+    public String getEtag() { return etag; }
+
+    /** Download time in epoch milliseconds. */
+    public long getDownloadedAt() { return downloadedAt; }
+
+    /** Last time the model was resolved from the cache, in epoch milliseconds. */
+    public long getLastAccess() { return lastAccess; }
+
+    /** Pinned models are never evicted by the cache quota. */
+    public boolean isPinned() { return pinned; }
+
+    void setLastAccess(long lastAccess) { this.lastAccess = lastAccess; }
+    void setPinned(boolean pinned) { this.pinned = pinned; }
+
+    @Override
+    public String toString() {
+        return "CachedModel{repoId='" + repoId + "', sizeBytes=" + sizeBytes +
+               ", revision='" + revision + "', pinned=" + pinned + "}";
+    }
+}
@@ -0,0 +1,116 @@
+package com.jinfer.hub;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers for verifying downloaded files, also used to key caches by
+ * model content.
+ */
+public final class Checksums {
+
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    private Checksums() {}
+
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String hex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Hash a file through memory-mapped windows, so large files are not copied onto the heap.
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_WINDOW) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)));
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Incremental SHA-256 over a file that is written out of order.
+     *
+     * Bytes written exactly at the hash frontier are digested straight from the
+     * download buffer. Ranges that complete ahead of the frontier are digested
+     * once the gap closes, by reading them back through the channel (normally
+     * still in the page cache).
+     */
+    static class Frontier {
+        private final MessageDigest digest = newSha256();
+        private final FileChannel channel;
+        private long position = 0;
+
+        Frontier(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Offer bytes that were just written at {@code offset}.
+         */
+        synchronized void update(long offset, ByteBuffer data) {
+            int len = data.remaining();
+            if (offset <= position && offset + len > position) {
+                data.position(data.position() + (int) (position - offset));
+                digest.update(data);
+                position = offset + len;
+            }
+        }
+
+        /**
+         * Digest bytes up to {@code limit} that are already on disk.
+         */
+        synchronized void catchUp(long limit) throws IOException {
+            if (position >= limit) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            while (position < limit) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), limit - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    throw new IOException("Unexpected end of file at offset " + position);
+                }
+                buffer.flip();
+                digest.update(buffer);
+                position += read;
+            }
+        }
+
+        /**
+         * Advance over the checkpointed range that contains the frontier.
+         */
+        synchronized void advance(PartialDownload partial) throws IOException {
+            catchUp(partial.completedEnd(position));
+        }
+
+        synchronized long getPosition() {
+            return position;
+        }
+
+        synchronized String finish() {
+            return hex(digest.digest());
+        }
+    }
+}
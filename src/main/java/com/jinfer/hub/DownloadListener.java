@@ -0,0 +1,51 @@
+package com.jinfer.hub;
+
+import java.io.IOException;
+
+/**
+ * Receives progress events from {@link HuggingFaceHub} downloads.
+ *
+ * Files are downloaded in parallel, so methods are called from several
+ * download threads and implementations must be thread-safe. All methods
+ * have empty defaults; exceptions thrown by a listener are logged and ignored.
+ */
+public interface DownloadListener {
+
+    /**
+     * The files to fetch have been selected; called before any transfer starts.
+     */
+    default void onPlanned(String repoId, DownloadPlan plan) {}
+
+    /**
+     * A file transfer starts (cached, linked and unmodified files are not transferred).
+     */
+    default void onFileStarted(String repoId, String path, long size) {}
+
+    /**
+     * Bytes arrived. Called at most a few times per second.
+     */
+    default void onProgress(DownloadProgress progress) {}
+
+    /**
+     * A file is complete and verified.
+     *
+     * @param bytesTransferred Bytes fetched over the network, 0 if the file was reused
+     */
+    default void onFileFinished(String repoId, String path, long bytesTransferred) {}
+
+    /**
+     * A failed file transfer will be retried after {@code backoffMillis}.
+     */
+    default void onRetry(String repoId, String path, int attempt, int maxRetries, long backoffMillis,
+                         IOException cause) {}
+
+    /**
+     * A file failed for good; the download of the model fails once the other files finish.
+     */
+    default void onFileFailed(String repoId, String path, Throwable cause) {}
+
+    /**
+     * Every planned file is in place.
+     */
+    default void onCompleted(DownloadStats stats) {}
+}
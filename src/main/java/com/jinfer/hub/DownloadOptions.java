@@ -0,0 +1,91 @@
+package com.jinfer.hub;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects which files of a repository are downloaded.
+ */
+public class DownloadOptions {
+
+    /** Pick the first available format in the order ONNX, SafeTensors, PyTorch, GGUF. */
+    public static final String FORMAT_AUTO = "auto";
+
+    private String format = FORMAT_AUTO;
+    private String variant;
+    private List<String> include = new ArrayList<>();
+    private List<String> exclude = new ArrayList<>();
+
+    public DownloadOptions() {}
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Getters
+    public String getFormat() { return format; }
+    public String getVariant() { return variant; }
+    public List<String> getInclude() { return include; }
+    public List<String> getExclude() { return exclude; }
+
+    // Setters
+    public void setFormat(String format) { this.format = format; }
+    public void setVariant(String variant) { this.variant = variant; }
+    public void setInclude(List<String> include) { this.include = include; }
+    public void setExclude(List<String> exclude) { this.exclude = exclude; }
+
+    /**
+     * Whether these options differ from the defaults, i.e. the cached files
+     * may not cover them.
+     */
+    boolean isCustom() {
+        return !FORMAT_AUTO.equals(format) || variant != null || !include.isEmpty();
+    }
+
+    public static class Builder {
+        private final DownloadOptions options = new DownloadOptions();
+
+        /**
+         * Weight format: {@code auto}, {@code onnx}, {@code safetensors}, {@code pytorch} or {@code gguf}.
+         */
+        public Builder format(String format) {
+            options.format = format;
+            return this;
+        }
+
+        /**
+         * Weight variant, e.g. {@code quantized}, {@code fp16} or {@code q4}.
+         * Null selects the unsuffixed (full precision) weights.
+         */
+        public Builder variant(String variant) {
+            options.variant = variant;
+            return this;
+        }
+
+        /**
+         * Also download files matching this glob, e.g. {@code *.md}.
+         */
+        public Builder include(String pattern) {
+            options.include.add(pattern);
+            return this;
+        }
+
+        /**
+         * Never download files matching this glob.
+         */
+        public Builder exclude(String pattern) {
+            options.exclude.add(pattern);
+            return this;
+        }
+
+        public DownloadOptions build() {
+            return options;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadOptions{format='" + format + "', variant='" + variant +
+               "', include=" + include + ", exclude=" + exclude + "}";
+    }
+}
@@ -0,0 +1,59 @@
+package com.jinfer.hub;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Files selected for download from a repository, with their total size.
+ */
+public class DownloadPlan {
+
+    private final List<RepoFile> files;
+    private final long totalBytes;
+    private final int repoFileCount;
+    private final long repoBytes;
+
+    DownloadPlan(List<RepoFile> files, List<RepoFile> repoFiles) {
+        this.files = files;
+        this.totalBytes = sumSizes(files);
+        this.repoFileCount = repoFiles.size();
+        this.repoBytes = sumSizes(repoFiles);
+    }
+
+    private static long sumSizes(List<RepoFile> files) {
+        long total = 0;
+        for (RepoFile file : files) {
+            total += Math.max(0, file.getSize());
+        }
+        return total;
+    }
+
+    List<RepoFile> getRepoFiles() {
+        return files;
+    }
+
+    /** Repository paths of the planned files. */
+    public List<String> getFiles() {
+        List<String> paths = new ArrayList<>(files.size());
+        for (RepoFile file : files) {
+            paths.add(file.getPath());
+        }
+        return Collections.unmodifiableList(paths);
+    }
+
+    /** Bytes of the planned files (files of unknown size count as 0). */
+    public long getTotalBytes() { return totalBytes; }
+
+    /** Number of files in the repository. */
+    public int getRepoFileCount() { return repoFileCount; }
+
+    /** Bytes of all files in the repository. */
+    public long getRepoBytes() { return repoBytes; }
+
+    @Override
+    public String toString() {
+        return "DownloadPlan{files=" + files.size() + "/" + repoFileCount +
+               ", totalBytes=" + totalBytes + "/" + repoBytes + "}";
+    }
+}
@@ -0,0 +1,343 @@
+package com.jinfer.hub;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the files of a repository the engine will actually load: the
+ * tokenizer and config files plus the weights of one format and variant.
+ */
+final class DownloadPlanner {
+
+    private static final List<String> FORMATS = Arrays.asList("onnx", "safetensors", "pytorch", "gguf");
+
+    /** Suffixes that mark a weight variant, e.g. {@code model_quantized.onnx} or {@code model.fp16.safetensors}. */
+    private static final Set<String> VARIANTS = new LinkedHashSet<>(Arrays.asList(
+            "fp32", "fp16", "bf16", "quantized", "int8", "uint8", "q8", "q4", "q4f16", "int4", "bnb4"));
+
+    private static final String INDEX_SUFFIX = ".index.json";
+
+    private static final Pattern SHARD_SUFFIX = Pattern.compile("-\\d+-of-\\d+$");
+
+    /** GGML type in a GGUF file name, e.g. {@code Q4_K_M} in {@code model.Q4_K_M.gguf}. */
+    private static final Pattern GGUF_VARIANT = Pattern.compile("(?:^|[._-])(i?q\\d(?:_[a-z0-9]+)*|f16|f32|bf16)$");
+
+    /** Preferred GGUF types when none is requested: those the Java backend computes with. */
+    private static final List<String> GGUF_PRIMARY = Arrays.asList("q8_0", "q4_0", "f16", "f32");
+
+    /** Preferred ONNX graph names, for repos exporting several graphs. */
+    private static final List<String> ONNX_PRIMARY = Arrays.asList("model", "decoder_model_merged", "decoder_model");
+
+    private DownloadPlanner() {}
+
+    /**
+     * Plan the download of a repository listing.
+     *
+     * @throws IOException if the repository has weights, but none in the requested format and variant
+     */
+    static DownloadPlan plan(List<RepoFile> files, DownloadOptions options) throws IOException {
+        List<String> paths = new ArrayList<>(files.size());
+        for (RepoFile file : files) {
+            paths.add(file.getPath());
+        }
+
+        Set<String> selected = new LinkedHashSet<>();
+        for (String path : paths) {
+            if (isSupportFile(path)) {
+                selected.add(path);
+            }
+        }
+
+        List<String> weights = selectWeights(paths, options.getFormat(), options.getVariant());
+        if (weights.isEmpty()) {
+            List<String> available = new ArrayList<>();
+            for (String path : paths) {
+                if (formatOf(path) != null) {
+                    available.add(path);
+                }
+            }
+            if (!available.isEmpty()) {
+                throw new IOException("No " + describe(options) + " weights in repository; available: " +
+                        String.join(", ", available));
+            }
+        }
+        selected.addAll(weights);
+
+        for (String path : paths) {
+            if (matchesAny(path, options.getInclude())) {
+                selected.add(path);
+            }
+        }
+        selected.removeIf(path -> matchesAny(path, options.getExclude()));
+
+        List<RepoFile> planned = new ArrayList<>();
+        for (RepoFile file : files) {
+            if (selected.contains(file.getPath())) {
+                planned.add(file);
+            }
+        }
+        return new DownloadPlan(planned, files);
+    }
+
+    /**
+     * Select the weight files for a format and variant from repository-relative
+     * paths. For ONNX this is one graph plus its external data files; for
+     * SafeTensors and PyTorch all shards and their index; for GGUF one file.
+     *
+     * @param format Weight format, or {@link DownloadOptions#FORMAT_AUTO}
+     * @param variant Variant suffix, or null for the unsuffixed weights
+     * @return Selected paths, empty if none match
+     */
+    static List<String> selectWeights(List<String> paths, String format, String variant) {
+        List<String> formats = format == null || DownloadOptions.FORMAT_AUTO.equals(format)
+                ? FORMATS : Arrays.asList(format.toLowerCase());
+
+        for (String candidate : formats) {
+            List<String> weights = new ArrayList<>();
+            for (String path : paths) {
+                if (candidate.equals(formatOf(path))) {
+                    weights.add(path);
+                }
+            }
+            if (weights.isEmpty()) {
+                continue;
+            }
+
+            List<String> matching = new ArrayList<>();
+            for (String path : weights) {
+                if (sameVariant(variantOf(path), variant)) {
+                    matching.add(path);
+                }
+            }
+            if (matching.isEmpty()) {
+                if (variant != null) {
+                    continue;
+                }
+                // Only variants are published: take whatever is there
+                matching = weights;
+            }
+
+            if ("onnx".equals(candidate)) {
+                return withExternalData(primaryOnnx(matching), paths);
+            }
+            if ("gguf".equals(candidate)) {
+                return new ArrayList<>(Arrays.asList(primaryGguf(matching)));
+            }
+            for (String path : paths) {
+                if (isWeightIndex(path) && candidate.equals(formatOf(indexedPath(path)))
+                        && sameVariant(variantOf(indexedPath(path)), variant)) {
+                    matching.add(path);
+                }
+            }
+            return matching;
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Whether a path is the index of a sharded checkpoint, e.g.
+     * {@code model.safetensors.index.json}.
+     */
+    static boolean isWeightIndex(String path) {
+        return path.toLowerCase().endsWith(INDEX_SUFFIX) && formatOf(indexedPath(path)) != null;
+    }
+
+    /**
+     * Replace the planned shards of a sharded checkpoint with the ones its
+     * index references. Shards in the index's directory with the same format
+     * and variant that the weight map does not list are dropped.
+     *
+     * @param shards Repository paths listed in the index's weight map
+     * @throws IOException if the index references a file the repository does not contain
+     */
+    static DownloadPlan applyWeightIndex(DownloadPlan plan, List<RepoFile> repoFiles, String indexPath,
+                                         Set<String> shards) throws IOException {
+        String indexed = indexedPath(indexPath);
+        String format = formatOf(indexed);
+        String variant = variantOf(indexed);
+        String dir = directory(indexPath);
+
+        Set<String> selected = new LinkedHashSet<>();
+        for (RepoFile file : plan.getRepoFiles()) {
+            String path = file.getPath();
+            boolean sibling = format.equals(formatOf(path)) && dir.equals(directory(path))
+                    && sameVariant(variantOf(path), variant);
+            if (!sibling || shards.contains(path)) {
+                selected.add(path);
+            }
+        }
+        Set<String> missing = new LinkedHashSet<>(shards);
+        for (RepoFile file : repoFiles) {
+            missing.remove(file.getPath());
+        }
+        if (!missing.isEmpty()) {
+            throw new IOException(indexPath + " references files not in the repository: " +
+                    String.join(", ", missing));
+        }
+        selected.addAll(shards);
+
+        List<RepoFile> planned = new ArrayList<>();
+        for (RepoFile file : repoFiles) {
+            if (selected.contains(file.getPath())) {
+                planned.add(file);
+            }
+        }
+        return new DownloadPlan(planned, repoFiles);
+    }
+
+    /**
+     * Weight format of a path, or null if it is not a weight file.
+     */
+    static String formatOf(String path) {
+        String name = fileName(path).toLowerCase();
+        if (name.contains("tokenizer") || name.contains("optimizer") || name.startsWith("training_args")) {
+            return null;
+        }
+        if (name.endsWith(".onnx")) return "onnx";
+        if (name.endsWith(".safetensors")) return "safetensors";
+        if (name.endsWith(".bin") || name.endsWith(".pt") || name.endsWith(".pth")) return "pytorch";
+        if (name.endsWith(".gguf")) return "gguf";
+        return null;
+    }
+
+    /**
+     * Variant suffix of a weight file name, or null for unsuffixed weights.
+     */
+    static String variantOf(String path) {
+        // Shards carry the variant before the shard number: model.fp16-00001-of-00002.safetensors
+        String stem = SHARD_SUFFIX.matcher(stem(fileName(path)).toLowerCase()).replaceFirst("");
+        if ("gguf".equals(formatOf(path))) {
+            Matcher matcher = GGUF_VARIANT.matcher(stem);
+            return matcher.find() ? matcher.group(1) : null;
+        }
+        int separator = Math.max(stem.lastIndexOf('_'), stem.lastIndexOf('.'));
+        if (separator > 0 && VARIANTS.contains(stem.substring(separator + 1))) {
+            return stem.substring(separator + 1);
+        }
+        return null;
+    }
+
+    private static String primaryOnnx(List<String> candidates) {
+        List<String> sorted = new ArrayList<>(candidates);
+        // Shallowest first, so a root model.onnx wins over onnx/model.onnx
+        sorted.sort(Comparator.comparingInt((String path) -> path.split("/").length).thenComparing(path -> path));
+        for (String base : ONNX_PRIMARY) {
+            for (String path : sorted) {
+                String stem = stem(fileName(path));
+                String variant = variantOf(path);
+                String pathBase = variant != null ? stem.substring(0, stem.length() - variant.length() - 1) : stem;
+                if (pathBase.equals(base)) {
+                    return path;
+                }
+            }
+        }
+        return sorted.get(0);
+    }
+
+    /**
+     * One GGUF file: the preferred type if there is a choice, files split
+     * into parts last.
+     */
+    private static String primaryGguf(List<String> candidates) {
+        List<String> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparing((String path) -> SHARD_SUFFIX.matcher(stem(fileName(path))).find())
+                .thenComparingInt(path -> path.split("/").length)
+                .thenComparing(path -> path));
+        for (String type : GGUF_PRIMARY) {
+            for (String path : sorted) {
+                if (type.equals(variantOf(path))) {
+                    return path;
+                }
+            }
+        }
+        return sorted.get(0);
+    }
+
+    /**
+     * The ONNX graph plus external data files stored next to it
+     * ({@code model.onnx_data}, {@code model.onnx.data}, ...).
+     */
+    private static List<String> withExternalData(String graph, List<String> paths) {
+        List<String> files = new ArrayList<>();
+        files.add(graph);
+        for (String path : paths) {
+            if (!path.equals(graph) && path.startsWith(graph) && formatOf(path) == null) {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Tokenizer and config files every model needs.
+     */
+    static boolean isSupportFile(String path) {
+        String lower = path.toLowerCase();
+        if (formatOf(path) != null) {
+            return false;
+        }
+        return lower.contains("tokenizer") ||
+               lower.equals("vocab.json") ||
+               lower.equals("merges.txt") ||
+               lower.equals("special_tokens_map.json") ||
+               lower.equals("config.json") ||
+               lower.equals("generation_config.json") ||
+               lower.equals("model_index.json");
+    }
+
+    /**
+     * Glob match against the full repository path or just the file name,
+     * so {@code *.onnx} also matches {@code onnx/model.onnx}.
+     */
+    static boolean matchesAny(String path, List<String> patterns) {
+        for (String pattern : patterns) {
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            Path repoPath = Paths.get(path);
+            if (matcher.matches(repoPath) || matcher.matches(repoPath.getFileName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sameVariant(String actual, String requested) {
+        return requested == null ? actual == null : requested.equalsIgnoreCase(actual);
+    }
+
+    private static String describe(DownloadOptions options) {
+        String format = options.getFormat() == null ? DownloadOptions.FORMAT_AUTO : options.getFormat();
+        String description = DownloadOptions.FORMAT_AUTO.equals(format) ? "supported" : format;
+        return options.getVariant() != null ? description + " '" + options.getVariant() + "'" : description;
+    }
+
+    /** The weight file name an index stands for: {@code model.safetensors} for {@code model.safetensors.index.json}. */
+    private static String indexedPath(String indexPath) {
+        return indexPath.substring(0, indexPath.length() - INDEX_SUFFIX.length());
+    }
+
+    private static String directory(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash >= 0 ? path.substring(0, slash) : "";
+    }
+
+    private static String fileName(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash >= 0 ? path.substring(slash + 1) : path;
+    }
+
+    private static String stem(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,67 @@
+package com.jinfer.hub;
+
+/**
+ * Snapshot of a model download in progress.
+ */
+public class DownloadProgress {
+
+    private final String repoId;
+    private final long completedBytes;
+    private final long totalBytes;
+    private final int completedFiles;
+    private final int totalFiles;
+    private final double bytesPerSecond;
+    private final double averageBytesPerSecond;
+
+    DownloadProgress(String repoId, long completedBytes, long totalBytes, int completedFiles, int totalFiles,
+                     double bytesPerSecond, double averageBytesPerSecond) {
+        this.repoId = repoId;
+        this.completedBytes = completedBytes;
+        this.totalBytes = totalBytes;
+        this.completedFiles = completedFiles;
+        this.totalFiles = totalFiles;
+        this.bytesPerSecond = bytesPerSecond;
+        this.averageBytesPerSecond = averageBytesPerSecond;
+    }
+
+    public String getRepoId() { return repoId; }
+
+    /** Planned bytes already in place: transferred, resumed or reused from the cache. */
+    public long getCompletedBytes() { return completedBytes; }
+
+    /** Planned bytes of the download (files of unknown size count as 0). */
+    public long getTotalBytes() { return totalBytes; }
+
+    public int getCompletedFiles() { return completedFiles; }
+    public int getTotalFiles() { return totalFiles; }
+
+    /** Transfer rate since the previous progress event. */
+    public double getBytesPerSecond() { return bytesPerSecond; }
+
+    /** Transfer rate since the download started. */
+    public double getAverageBytesPerSecond() { return averageBytesPerSecond; }
+
+    /**
+     * Completed fraction between 0 and 1.
+     */
+    public double getFraction() {
+        return totalBytes > 0 ? Math.min(1.0, (double) completedBytes / totalBytes) : 0;
+    }
+
+    /**
+     * Estimated seconds until the download completes at the average rate, or -1 if unknown.
+     */
+    public long getEtaSeconds() {
+        if (averageBytesPerSecond <= 0 || totalBytes <= 0) {
+            return -1;
+        }
+        return (long) Math.ceil(Math.max(0, totalBytes - completedBytes) / averageBytesPerSecond);
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadProgress{repoId='" + repoId + "', bytes=" + completedBytes + "/" + totalBytes +
+               ", files=" + completedFiles + "/" + totalFiles + ", bytesPerSecond=" + (long) bytesPerSecond +
+               ", eta=" + getEtaSeconds() + "s}";
+    }
+}
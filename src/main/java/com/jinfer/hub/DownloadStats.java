@@ -0,0 +1,85 @@
+package com.jinfer.hub;
+
+import java.nio.file.Path;
+
+/**
+ * Summary of one {@link HuggingFaceHub#getModelWithStats} call.
+ */
+public class DownloadStats {
+
+    private final String repoId;
+    private final Path modelDir;
+    private final boolean cached;
+    private final int plannedFiles;
+    private final int transferredFiles;
+    private final int reusedFiles;
+    private final long plannedBytes;
+    private final long transferredBytes;
+    private final int retries;
+    private final long elapsedMillis;
+    private final long lockWaitMillis;
+
+    DownloadStats(String repoId, Path modelDir, boolean cached, int plannedFiles, int transferredFiles,
+                  int reusedFiles, long plannedBytes, long transferredBytes, int retries, long elapsedMillis,
+                  long lockWaitMillis) {
+        this.repoId = repoId;
+        this.modelDir = modelDir;
+        this.cached = cached;
+        this.plannedFiles = plannedFiles;
+        this.transferredFiles = transferredFiles;
+        this.reusedFiles = reusedFiles;
+        this.plannedBytes = plannedBytes;
+        this.transferredBytes = transferredBytes;
+        this.retries = retries;
+        this.elapsedMillis = elapsedMillis;
+        this.lockWaitMillis = lockWaitMillis;
+    }
+
+    /**
+     * Stats for a model that was already cached, or completed by another
+     * thread or process while this caller waited.
+     */
+    static DownloadStats cached(String repoId, Path modelDir, long lockWaitMillis) {
+        return new DownloadStats(repoId, modelDir, true, 0, 0, 0, 0, 0, 0, 0, lockWaitMillis);
+    }
+
+    public String getRepoId() { return repoId; }
+
+    /** Local model directory. */
+    public Path getModelDir() { return modelDir; }
+
+    /** Whether the model was served from the cache without downloading. */
+    public boolean isCached() { return cached; }
+
+    public int getPlannedFiles() { return plannedFiles; }
+
+    /** Files fetched over the network. */
+    public int getTransferredFiles() { return transferredFiles; }
+
+    /** Planned files already present, linked from the blob store or not modified on the server. */
+    public int getReusedFiles() { return reusedFiles; }
+
+    public long getPlannedBytes() { return plannedBytes; }
+
+    /** Bytes fetched over the network, including retried transfers. */
+    public long getTransferredBytes() { return transferredBytes; }
+
+    public int getRetries() { return retries; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public long getLockWaitMillis() { return lockWaitMillis; }
+
+    /**
+     * Average transfer rate, 0 if nothing was transferred.
+     */
+    public double getBytesPerSecond() {
+        return elapsedMillis > 0 ? transferredBytes * 1000.0 / elapsedMillis : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadStats{repoId='" + repoId + "', cached=" + cached +
+               ", files=" + transferredFiles + "+" + reusedFiles + "/" + plannedFiles +
+               ", transferredBytes=" + transferredBytes + "/" + plannedBytes + ", retries=" + retries +
+               ", elapsedMillis=" + elapsedMillis + ", lockWaitMillis=" + lockWaitMillis + "}";
+    }
+}
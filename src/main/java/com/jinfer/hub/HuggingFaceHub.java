@@ -4,15 +4,48 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.lang.management.ManagementFactory;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Downloads and caches models from HuggingFace Hub.
@@ -20,23 +53,84 @@ import java.util.List;
 public class HuggingFaceHub {
     
     private static final Logger logger = LoggerFactory.getLogger(HuggingFaceHub.class);
-    private static final String HF_API_URL = "https://huggingface.co/api/models/";
-    private static final String HF_DOWNLOAD_URL = "https://huggingface.co/%s/resolve/main/%s";
-    private static final int BUFFER_SIZE = 8192;
+    private static final String HF_ENDPOINT = "https://huggingface.co";
+    /** Environment variable overriding the endpoint, e.g. an in-cluster mirror. */
+    public static final String ENDPOINT_ENV = "HF_ENDPOINT";
+    private static final String MODEL_INFO_FILE = ".jinfer_model_info.json";
+    private static final String HF_API_PATH = "/api/models/";
+    private static final String HF_DOWNLOAD_PATH = "/%s/resolve/main/%s";
+    private static final String USER_AGENT = "JInfer/1.0";
+    private static final int DIRECT_BUFFER_SIZE = 1024 * 1024;
     private static final int CONNECT_TIMEOUT = 30000;
     private static final int READ_TIMEOUT = 60000;
+    /** Lock file name of the cache index under {@code .locks}; repo names cannot start with a dot. */
+    private static final String INDEX_LOCK_NAME = ".index";
+    
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final long DEFAULT_RETRY_BACKOFF_MS = 1000;
+    private static final long DEFAULT_RANGE_CHUNK_SIZE = 16L * 1024 * 1024;
+    private static final int DEFAULT_RANGE_PARALLELISM = 4;
     
     private final Path cacheDir;
+    private final BlobStore blobStore;
+    private volatile String endpoint;
     private final Gson gson;
+    private final HttpClient httpClient;
+    /** Downloads running in this process, by model lock file. */
+    private static final Map<Path, CompletableFuture<Path>> IN_FLIGHT = new ConcurrentHashMap<>();
+    
+    private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
     private String authToken;
+    private long readTimeoutMillis = READ_TIMEOUT;
+    private long cacheQuotaBytes = 0;
+    private int maxConcurrentDownloads = DEFAULT_CONCURRENCY;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MS;
+    private long rangeChunkSize = DEFAULT_RANGE_CHUNK_SIZE;
+    private int rangeParallelism = DEFAULT_RANGE_PARALLELISM;
+    private DownloadOptions downloadOptions = new DownloadOptions();
+    private final List<DownloadListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong lockWaits = new AtomicLong();
+    private final AtomicLong lockWaitNanos = new AtomicLong();
 
     public HuggingFaceHub() {
         this(getDefaultCacheDir());
     }
 
     public HuggingFaceHub(Path cacheDir) {
+        this(cacheDir, defaultEndpoint());
+    }
+
+    /**
+     * The Hub endpoint from the {@code HF_ENDPOINT} environment variable, or huggingface.co.
+     */
+    public static String defaultEndpoint() {
+        String endpoint = System.getenv(ENDPOINT_ENV);
+        return endpoint != null && !endpoint.isEmpty() ? endpoint : HF_ENDPOINT;
+    }
+
+    /**
+     * Create a hub client against a specific endpoint (e.g. a mirror).
+     *
+     * @param cacheDir Local model cache directory
+     * @param endpoint Base URL serving the HuggingFace API and file downloads
+     */
+    public HuggingFaceHub(Path cacheDir, String endpoint) {
         this.cacheDir = cacheDir;
+        this.blobStore = new BlobStore(cacheDir);
+        setEndpoint(endpoint);
         this.gson = new Gson();
+        // One client for all requests: pooled connections, HTTP/2 where the server offers it
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(CONNECT_TIMEOUT))
+                .build();
+        String quota = System.getenv("JINFER_CACHE_QUOTA");
+        if (quota != null && !quota.isEmpty()) {
+            this.cacheQuotaBytes = parseSize(quota);
+        }
         ensureCacheDir();
     }
 
@@ -54,6 +148,20 @@ public class HuggingFaceHub {
         }
     }
 
+    /**
+     * Set the base URL serving the HuggingFace API and file downloads.
+     */
+    public void setEndpoint(String endpoint) {
+        if (endpoint == null || endpoint.isEmpty()) {
+            throw new IllegalArgumentException("Endpoint cannot be null or empty");
+        }
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
     /**
      * Set HuggingFace auth token for private/gated models.
      */
@@ -61,6 +169,125 @@ public class HuggingFaceHub {
         this.authToken = token;
     }
 
+    /**
+     * Set how long a request may wait for response headers, or a download for
+     * more data, before it fails (and is retried).
+     */
+    public void setReadTimeoutMillis(long readTimeoutMillis) {
+        if (readTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Read timeout must be positive");
+        }
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Set the disk quota for the model cache. After a download, least recently
+     * used unpinned models are evicted until the cache fits. 0 disables the quota.
+     */
+    public void setCacheQuotaBytes(long cacheQuotaBytes) {
+        if (cacheQuotaBytes < 0) {
+            throw new IllegalArgumentException("Cache quota cannot be negative");
+        }
+        this.cacheQuotaBytes = cacheQuotaBytes;
+    }
+
+    /**
+     * Parse a size such as {@code 500M}, {@code 50G} or a plain byte count.
+     */
+    public static long parseSize(String size) {
+        String value = size.trim().toUpperCase();
+        if (value.endsWith("B")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        long multiplier = 1;
+        if (value.endsWith("K")) {
+            multiplier = 1024L;
+        } else if (value.endsWith("M")) {
+            multiplier = 1024L * 1024;
+        } else if (value.endsWith("G")) {
+            multiplier = 1024L * 1024 * 1024;
+        } else if (value.endsWith("T")) {
+            multiplier = 1024L * 1024 * 1024 * 1024;
+        }
+        if (multiplier > 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            return (long) (Double.parseDouble(value.trim()) * multiplier);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+    }
+
+    /**
+     * Set the maximum number of files downloaded at the same time.
+     */
+    public void setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+        if (maxConcurrentDownloads <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        this.maxConcurrentDownloads = maxConcurrentDownloads;
+    }
+
+    /**
+     * Set how many times a failed file download is retried.
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Retries cannot be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Set the initial retry delay; it doubles after each failed attempt.
+     */
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    /**
+     * Set the byte range size used when a large file is fetched in parallel ranges.
+     */
+    public void setRangeChunkSize(long rangeChunkSize) {
+        if (rangeChunkSize <= 0) {
+            throw new IllegalArgumentException("Range chunk size must be positive");
+        }
+        this.rangeChunkSize = rangeChunkSize;
+    }
+
+    /**
+     * Set the number of parallel range requests per file. With 1, each file is
+     * fetched over a single connection (still resumable if the server supports ranges).
+     */
+    public void setRangeParallelism(int rangeParallelism) {
+        if (rangeParallelism <= 0) {
+            throw new IllegalArgumentException("Range parallelism must be positive");
+        }
+        this.rangeParallelism = rangeParallelism;
+    }
+
+    /**
+     * Set which format, variant and extra files of a repository are downloaded.
+     */
+    public void setDownloadOptions(DownloadOptions downloadOptions) {
+        this.downloadOptions = downloadOptions != null ? downloadOptions : new DownloadOptions();
+    }
+
+    public DownloadOptions getDownloadOptions() {
+        return downloadOptions;
+    }
+
+    /**
+     * List the files that would be downloaded for a model with the current
+     * download options, without downloading anything.
+     */
+    public DownloadPlan planDownload(String repoId) throws IOException {
+        validateRepoId(repoId);
+        List<RepoFile> files = getModelFiles(repoId).files;
+        return resolveShardIndexes(repoId, DownloadPlanner.plan(files, downloadOptions), files);
+    }
+
     /**
      * Get local path for a model. Downloads if not cached.
      *
@@ -79,19 +306,128 @@ public class HuggingFaceHub {
      * @return Path to the local model directory
      */
     public Path getModel(String repoId, boolean forceDownload) throws IOException {
+        return getModelWithStats(repoId, forceDownload).getModelDir();
+    }
+
+    /**
+     * Get a model like {@link #getModel(String, boolean)}, and report what it took:
+     * files and bytes transferred or reused, retries, elapsed time and lock waits.
+     *
+     * @param repoId Model repository ID
+     * @param forceDownload Revalidate every file even if cached
+     * @return Download summary, including the local model directory
+     */
+    public DownloadStats getModelWithStats(String repoId, boolean forceDownload) throws IOException {
         validateRepoId(repoId);
         
         Path modelDir = getModelCachePath(repoId);
         
-        if (!forceDownload && isModelCached(modelDir)) {
+        if (!forceDownload && isModelCached(modelDir) && coversOptions(modelDir)) {
             logger.info("Model '{}' found in cache: {}", repoId, modelDir);
-            return modelDir;
+            touch(repoId);
+            return DownloadStats.cached(repoId, modelDir, 0);
         }
         
-        logger.info("Downloading model '{}' from HuggingFace...", repoId);
-        downloadModel(repoId, modelDir);
+        // One download per model: threads of this process share the running
+        // download, other processes wait on the model's lock file
+        Path lockFile = lockPath(repoId);
+        CompletableFuture<Path> flight = new CompletableFuture<>();
+        CompletableFuture<Path> running = IN_FLIGHT.putIfAbsent(lockFile, flight);
+        if (running != null) {
+            return awaitDownload(repoId, running);
+        }
+        try {
+            DownloadStats stats = downloadLocked(repoId, modelDir, lockFile, forceDownload);
+            flight.complete(modelDir);
+            return stats;
+        } catch (IOException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(lockFile, flight);
+        }
+    }
+
+    /**
+     * Wait for a download of the same model started by another thread and reuse its result.
+     */
+    private DownloadStats awaitDownload(String repoId, CompletableFuture<Path> running) throws IOException {
+        logger.info("Waiting for the download of '{}' already in progress", repoId);
+        long start = System.nanoTime();
+        Path modelDir;
+        try {
+            modelDir = running.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Download of " + repoId + " failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + repoId);
+        } finally {
+            recordLockWait(System.nanoTime() - start);
+        }
         
-        return modelDir;
+        if (isModelCached(modelDir) && coversOptions(modelDir)) {
+            touch(repoId);
+            return DownloadStats.cached(repoId, modelDir, (System.nanoTime() - start) / 1_000_000);
+        }
+        // The other download used different options (e.g. another variant)
+        return getModelWithStats(repoId, false);
+    }
+
+    /**
+     * Download a model while holding its lock file. If another process held the
+     * lock and completed the model meanwhile, its files are used as they are.
+     */
+    private DownloadStats downloadLocked(String repoId, Path modelDir, Path lockFile,
+                                         boolean forceDownload) throws IOException {
+        try (ModelLock lock = ModelLock.acquire(lockFile)) {
+            long waitMillis = 0;
+            if (lock.wasContended()) {
+                recordLockWait(lock.getWaitNanos());
+                waitMillis = lock.getWaitNanos() / 1_000_000;
+                logger.info("Waited {} ms for the download lock of '{}'", waitMillis, repoId);
+                if (isModelCached(modelDir) && coversOptions(modelDir)) {
+                    logger.info("Model '{}' was downloaded by another process: {}", repoId, modelDir);
+                    touch(repoId);
+                    return DownloadStats.cached(repoId, modelDir, waitMillis);
+                }
+            }
+            
+            logger.info("Downloading model '{}' from HuggingFace...", repoId);
+            return downloadModel(repoId, modelDir, forceDownload, waitMillis);
+        }
+    }
+
+    /**
+     * Register a listener for progress events of downloads started by this hub.
+     */
+    public void addDownloadListener(DownloadListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeDownloadListener(DownloadListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void recordLockWait(long nanos) {
+        lockWaits.incrementAndGet();
+        lockWaitNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Number of times a download waited for another thread or process
+     * downloading the same model.
+     */
+    public long getLockWaitCount() {
+        return lockWaits.get();
+    }
+
+    /**
+     * Total time downloads spent waiting for other threads or processes
+     * downloading the same model.
+     */
+    public long getLockWaitMillis() {
+        return lockWaitNanos.get() / 1_000_000;
     }
 
     /**
@@ -109,7 +445,90 @@ public class HuggingFaceHub {
         
         // Check for essential files
         Path markerFile = modelDir.resolve(".jinfer_downloaded");
-        return Files.exists(markerFile);
+        if (!Files.exists(markerFile)) {
+            return false;
+        }
+        
+        // Cheap validation: verified files must still have their recorded size and mtime
+        if (CacheManifest.exists(modelDir)) {
+            List<String> stale = CacheManifest.load(modelDir).findStale(modelDir);
+            if (!stale.isEmpty()) {
+                logger.warn("Cached files changed since download: {}", String.join(", ", stale));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a cached model holds the files selected by non-default download
+     * options, e.g. a quantized variant next to the full precision weights.
+     */
+    private boolean coversOptions(Path modelDir) {
+        if (!downloadOptions.isCustom() || !CacheManifest.exists(modelDir)) {
+            return true;
+        }
+        List<String> paths = CacheManifest.load(modelDir).getPaths();
+        if (DownloadPlanner.selectWeights(paths, downloadOptions.getFormat(), downloadOptions.getVariant()).isEmpty()) {
+            return false;
+        }
+        for (String pattern : downloadOptions.getInclude()) {
+            if (paths.stream().noneMatch(path -> DownloadPlanner.matchesAny(path, List.of(pattern)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verify a cached model against the checksums recorded when it was downloaded.
+     *
+     * @param repoId Model repository ID
+     * @param rehash Re-hash every file (in parallel, through memory-mapped reads)
+     *               instead of only comparing sizes and modification times
+     * @return Paths of files that are missing, modified or corrupt
+     */
+    public List<String> verifyModel(String repoId, boolean rehash) throws IOException {
+        Path modelDir = getModelCachePath(repoId);
+        if (!CacheManifest.exists(modelDir)) {
+            throw new IOException("No checksum manifest for '" + repoId + "', download it again to create one");
+        }
+        
+        CacheManifest manifest = CacheManifest.load(modelDir);
+        List<String> invalid = manifest.findStale(modelDir);
+        if (!rehash) {
+            return invalid;
+        }
+        
+        List<String> paths = manifest.getPaths();
+        paths.removeAll(invalid);
+        if (paths.isEmpty()) {
+            return invalid;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(Runtime.getRuntime().availableProcessors(), paths.size()), downloadThreadFactory());
+        try {
+            List<Future<String>> hashes = new ArrayList<>();
+            for (String path : paths) {
+                hashes.add(executor.submit(() -> Checksums.sha256(modelDir.resolve(path))));
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                String expected = manifest.get(paths.get(i)).sha256;
+                if (!hashes.get(i).get().equalsIgnoreCase(expected)) {
+                    invalid.add(paths.get(i));
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Verification interrupted: " + repoId);
+        } finally {
+            executor.shutdownNow();
+        }
+        return invalid;
     }
 
     /**
@@ -130,177 +549,826 @@ public class HuggingFaceHub {
         }
     }
 
-    private void downloadModel(String repoId, Path modelDir) throws IOException {
+    private DownloadStats downloadModel(String repoId, Path modelDir, boolean forceDownload,
+                                        long lockWaitMillis) throws IOException {
         // Create model directory
         Files.createDirectories(modelDir);
         
         // Get list of files from HF API
-        List<String> files = getModelFiles(repoId);
+        RepoListing listing = getModelFiles(repoId);
+        List<RepoFile> files = listing.files;
         
         if (files.isEmpty()) {
             throw new IOException("No files found in repository: " + repoId);
         }
         
-        // Filter for essential files
-        List<String> filesToDownload = filterEssentialFiles(files);
+        // Only the format and variant the engine loads, plus tokenizer and config files
+        DownloadPlan plan = resolveShardIndexes(repoId, DownloadPlanner.plan(files, downloadOptions), files);
+        List<RepoFile> filesToDownload = plan.getRepoFiles();
+        if (filesToDownload.isEmpty()) {
+            throw new IOException("No files selected for download from " + repoId + " (" + downloadOptions + ")");
+        }
+        CacheManifest manifest = CacheManifest.load(modelDir);
         
-        logger.info("Found {} files to download", filesToDownload.size());
+        logger.info("Planned {} of {} files: {} of {} ({} concurrent)", filesToDownload.size(), files.size(),
+                formatSize(plan.getTotalBytes()), formatSize(plan.getRepoBytes()),
+                Math.min(maxConcurrentDownloads, filesToDownload.size()));
+        ProgressTracker tracker = new ProgressTracker(repoId, plan, listeners);
+        long startTime = System.nanoTime();
+        long startCpu = processCpuNanos();
         
-        // Download each file
-        int downloaded = 0;
-        for (String file : filesToDownload) {
-            try {
-                downloadFile(repoId, file, modelDir);
-                downloaded++;
-                logger.info("Downloaded ({}/{}) {}", downloaded, filesToDownload.size(), file);
-            } catch (IOException e) {
-                logger.warn("Failed to download {}: {}", file, e.getMessage());
-            }
-        }
+        long[] totals = downloadFiles(repoId, modelDir, filesToDownload, manifest, forceDownload, tracker);
         
-        if (downloaded == 0) {
-            throw new IOException("Failed to download any files from: " + repoId);
+        // External data an ONNX graph references under a name the planner did not recognize
+        List<RepoFile> externalData = missingExternalData(modelDir, filesToDownload, files);
+        if (!externalData.isEmpty()) {
+            logger.info("Graph references {} more external data files", externalData.size());
+            tracker.planned(externalData);
+            long[] more = downloadFiles(repoId, modelDir, externalData, manifest, forceDownload, tracker);
+            totals[0] += more[0];
+            totals[1] += more[1];
         }
+        int downloaded = (int) totals[0];
+        long totalBytes = totals[1];
+        
+        double seconds = Math.max((System.nanoTime() - startTime) / 1e9, 0.001);
+        logger.info("Downloaded {} files ({}) in {}s at {}/s, {}s process CPU", downloaded, formatSize(totalBytes),
+                String.format("%.1f", seconds), formatSize((long) (totalBytes / seconds)),
+                String.format("%.2f", (processCpuNanos() - startCpu) / 1e9));
         
         // Create marker file
         Path markerFile = modelDir.resolve(".jinfer_downloaded");
         Files.writeString(markerFile, repoId + "\n" + System.currentTimeMillis());
         
+        CachedModel entry = new CachedModel(repoId, manifest.totalSize(), listing.revision, listing.etag,
+                System.currentTimeMillis());
+        updateIndex(index -> {
+            CachedModel previous = index.get(repoId);
+            entry.setPinned(previous != null && previous.isPinned());
+            index.put(entry);
+        });
+        
         logger.info("Model downloaded successfully to: {}", modelDir);
+        DownloadStats stats = tracker.finish(modelDir, lockWaitMillis);
+        enforceQuota(repoId);
+        return stats;
     }
 
-    private List<String> getModelFiles(String repoId) throws IOException {
-        List<String> files = new ArrayList<>();
+    /**
+     * Download a batch of files concurrently on a bounded pool.
+     *
+     * @return Number of files completed and bytes transferred
+     */
+    private long[] downloadFiles(String repoId, Path modelDir, List<RepoFile> filesToDownload,
+                                 CacheManifest manifest, boolean forceDownload,
+                                 ProgressTracker tracker) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(maxConcurrentDownloads, filesToDownload.size()), downloadThreadFactory());
+        AtomicInteger completed = new AtomicInteger();
+        List<Future<Long>> futures = new ArrayList<>();
         
-        String apiUrl = HF_API_URL + repoId;
-        HttpURLConnection conn = createConnection(apiUrl);
+        for (RepoFile file : filesToDownload) {
+            futures.add(executor.submit(() -> {
+                if (!forceDownload && isVerified(manifest, file, modelDir)) {
+                    logger.info("Already downloaded ({}/{}) {}", completed.incrementAndGet(), filesToDownload.size(), file);
+                    tracker.fileReused(file);
+                    return 0L;
+                }
+                Path target = modelDir.resolve(file.getPath());
+                if (!forceDownload && file.getSha256() != null
+                        && blobStore.link(file.getSha256(), file.getSize(), target)) {
+                    // Same content already cached for another model
+                    manifest.record(file.getPath(), target, file.getSha256());
+                    manifest.save(modelDir);
+                    logger.info("Linked from cache ({}/{}) {}", completed.incrementAndGet(), filesToDownload.size(), file);
+                    tracker.fileReused(file);
+                    return 0L;
+                }
+                // A forced refresh revalidates intact files instead of fetching them again
+                String ifNoneMatch = forceDownload ? revalidationTag(manifest, file, target) : null;
+                tracker.fileStarted(file);
+                FileDownload result = downloadWithRetry(repoId, file, modelDir, ifNoneMatch, tracker);
+                if (result.notModified) {
+                    logger.info("Not modified ({}/{}) {}", completed.incrementAndGet(), filesToDownload.size(), file);
+                    tracker.fileReused(file);
+                    return 0L;
+                }
+                blobStore.store(target, result.sha256);
+                manifest.record(file.getPath(), target, result.sha256, result.etag);
+                manifest.save(modelDir);
+                logger.info("Downloaded ({}/{}) {}", completed.incrementAndGet(), filesToDownload.size(), file);
+                tracker.fileTransferred(file, result.bytes);
+                return result.bytes;
+            }));
+        }
         
+        long downloaded = 0;
+        long totalBytes = 0;
+        List<String> failed = new ArrayList<>();
         try {
-            int responseCode = conn.getResponseCode();
-            if (responseCode != 200) {
-                throw new IOException("Failed to get model info: HTTP " + responseCode);
-            }
-            
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-                JsonObject response = gson.fromJson(reader, JsonObject.class);
-                
-                if (response.has("siblings")) {
-                    JsonArray siblings = response.getAsJsonArray("siblings");
-                    for (JsonElement elem : siblings) {
-                        JsonObject file = elem.getAsJsonObject();
-                        if (file.has("rfilename")) {
-                            files.add(file.get("rfilename").getAsString());
-                        }
-                    }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    totalBytes += futures.get(i).get();
+                    downloaded++;
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to download {}: {}", filesToDownload.get(i), e.getCause().getMessage());
+                    tracker.fileFailed(filesToDownload.get(i), e.getCause());
+                    failed.add(filesToDownload.get(i).getPath());
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted: " + repoId);
         } finally {
-            conn.disconnect();
+            executor.shutdownNow();
         }
         
-        return files;
+        if (!failed.isEmpty()) {
+            // No marker: the next attempt resumes from the completed and partial files
+            throw new IOException("Failed to download " + failed.size() + " of " + filesToDownload.size() +
+                    " files from " + repoId + ": " + String.join(", ", failed));
+        }
+        return new long[] {downloaded, totalBytes};
     }
 
-    private List<String> filterEssentialFiles(List<String> files) {
-        List<String> essential = new ArrayList<>();
-        
-        for (String file : files) {
-            String lower = file.toLowerCase();
-            
-            // Include model files
-            if (lower.endsWith(".onnx") ||
-                lower.endsWith(".bin") ||
-                lower.endsWith(".safetensors") ||
-                lower.endsWith(".pt") ||
-                lower.endsWith(".pth")) {
-                essential.add(file);
+    /**
+     * Narrow the shards of each planned sharded checkpoint to those its
+     * {@code *.index.json} weight map references, so stale or unrelated shards
+     * with a matching name are not fetched and missing ones are added.
+     */
+    private DownloadPlan resolveShardIndexes(String repoId, DownloadPlan plan,
+                                             List<RepoFile> repoFiles) throws IOException {
+        DownloadPlan resolved = plan;
+        for (RepoFile file : plan.getRepoFiles()) {
+            if (!DownloadPlanner.isWeightIndex(file.getPath())) {
                 continue;
             }
-            
-            // Include tokenizer files
-            if (lower.contains("tokenizer") ||
-                lower.equals("vocab.json") ||
-                lower.equals("merges.txt") ||
-                lower.equals("special_tokens_map.json")) {
-                essential.add(file);
+            Set<String> shards = WeightManifests.parseWeightMap(file.getPath(), fetchText(repoId, file.getPath()));
+            resolved = DownloadPlanner.applyWeightIndex(resolved, repoFiles, file.getPath(), shards);
+        }
+        return resolved;
+    }
+
+    /**
+     * Files referenced as external data by the downloaded ONNX graphs that are
+     * not already part of the plan.
+     */
+    private List<RepoFile> missingExternalData(Path modelDir, List<RepoFile> planned,
+                                               List<RepoFile> repoFiles) throws IOException {
+        Set<String> plannedPaths = new HashSet<>();
+        for (RepoFile file : planned) {
+            plannedPaths.add(file.getPath());
+        }
+        Map<String, RepoFile> byPath = new HashMap<>();
+        for (RepoFile file : repoFiles) {
+            byPath.put(file.getPath(), file);
+        }
+        Map<String, RepoFile> missing = new LinkedHashMap<>();
+        for (RepoFile file : planned) {
+            if (!file.getPath().endsWith(".onnx")) {
                 continue;
             }
+            for (String location : WeightManifests.onnxExternalData(modelDir.resolve(file.getPath()))) {
+                String path = WeightManifests.resolveSibling(file.getPath(), location);
+                if (plannedPaths.contains(path) || missing.containsKey(path)) {
+                    continue;
+                }
+                RepoFile data = byPath.get(path);
+                if (data == null) {
+                    throw new IOException(file.getPath() + " references external data " + location +
+                            " which is not in the repository");
+                }
+                missing.put(path, data);
+            }
+        }
+        return new ArrayList<>(missing.values());
+    }
+
+    /**
+     * Fetch a small repository file into memory.
+     */
+    private String fetchText(String repoId, String path) throws IOException {
+        String url = endpoint + String.format(HF_DOWNLOAD_PATH, repoId, path);
+        HttpResponse<InputStream> response = send(url, null, null);
+        try (InputStream in = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("Failed to fetch " + path + ": HTTP " + response.statusCode());
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Whether an existing local file can be kept. Files recorded in the manifest
+     * are checked by size and mtime; others (e.g. left by an interrupted run)
+     * are hashed once and compared with the expected checksum.
+     */
+    private boolean isVerified(CacheManifest manifest, RepoFile file, Path modelDir) throws IOException {
+        Path target = modelDir.resolve(file.getPath());
+        if (!Files.exists(target)) {
+            return false;
+        }
+        if (manifest.matches(file.getPath(), target)) {
+            return file.getSha256() == null || file.getSha256().equalsIgnoreCase(manifest.get(file.getPath()).sha256);
+        }
+        if (file.getSize() >= 0 && Files.size(target) != file.getSize()) {
+            return false;
+        }
+        String actual = Checksums.sha256(target);
+        if (file.getSha256() != null && !file.getSha256().equalsIgnoreCase(actual)) {
+            return false;
+        }
+        blobStore.store(target, actual);
+        manifest.record(file.getPath(), target, actual);
+        manifest.save(modelDir);
+        return true;
+    }
+
+    /**
+     * Entity tag to revalidate a previously downloaded file with, or null if
+     * the local copy changed or the listing reports different content.
+     */
+    private static String revalidationTag(CacheManifest manifest, RepoFile file, Path target) {
+        CacheManifest.Entry entry = manifest.get(file.getPath());
+        if (entry == null || entry.etag == null || !manifest.matches(file.getPath(), target)) {
+            return null;
+        }
+        if (file.getSha256() != null && !file.getSha256().equalsIgnoreCase(entry.sha256)) {
+            return null;
+        }
+        return entry.etag;
+    }
+
+    private RepoListing getModelFiles(String repoId) throws IOException {
+        RepoListing listing = new RepoListing();
+        List<RepoFile> files = listing.files;
+        
+        // Revalidate the cached listing; an unchanged repo answers 304 without a body
+        Path modelDir = getModelCachePath(repoId);
+        Path cachedInfo = modelDir.resolve(MODEL_INFO_FILE);
+        String cachedEtag = null;
+        if (Files.exists(cachedInfo)) {
+            try (ModelLock lock = lockIndex()) {
+                CachedModel model = readIndex().get(repoId);
+                cachedEtag = model != null ? model.getEtag() : null;
+            }
+        }
+        
+        // blobs=true adds sizes and LFS checksums to the file listing
+        String apiUrl = endpoint + HF_API_PATH + repoId + "?blobs=true";
+        HttpResponse<InputStream> response = send(apiUrl, null, null, cachedEtag);
+        
+        String json;
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 304 && cachedEtag != null) {
+                logger.info("Model info for '{}' not modified", repoId);
+                json = Files.readString(cachedInfo);
+                listing.etag = cachedEtag;
+            } else if (response.statusCode() != 200) {
+                throw new IOException("Failed to get model info: HTTP " + response.statusCode());
+            } else {
+                json = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                listing.etag = response.headers().firstValue("ETag").orElse(null);
+                if (listing.etag != null && Files.isDirectory(modelDir)) {
+                    Files.writeString(cachedInfo, json);
+                }
+            }
+        }
+        
+        try {
+            JsonObject info = gson.fromJson(json, JsonObject.class);
+            if (info == null) {
+                throw new JsonParseException("empty response");
+            }
+            listing.revision = info.has("sha") ? info.get("sha").getAsString() : null;
             
-            // Include config files
-            if (lower.equals("config.json") ||
-                lower.equals("generation_config.json") ||
-                lower.equals("model_index.json")) {
-                essential.add(file);
+            if (info.has("siblings")) {
+                JsonArray siblings = info.getAsJsonArray("siblings");
+                for (JsonElement elem : siblings) {
+                    JsonObject file = elem.getAsJsonObject();
+                    if (file.has("rfilename")) {
+                        files.add(parseRepoFile(file));
+                    }
+                }
             }
+        } catch (JsonParseException | IllegalStateException e) {
+            Files.deleteIfExists(cachedInfo);
+            throw new IOException("Invalid model info for " + repoId + ": " + e.getMessage(), e);
         }
         
-        return essential;
+        return listing;
+    }
+
+    private static RepoFile parseRepoFile(JsonObject file) {
+        long size = file.has("size") ? file.get("size").getAsLong() : -1;
+        String sha256 = null;
+        if (file.has("lfs") && file.get("lfs").isJsonObject()) {
+            JsonObject lfs = file.getAsJsonObject("lfs");
+            // The model info API calls it "sha256", the tree API "oid"
+            String oid = lfs.has("sha256") ? lfs.get("sha256").getAsString()
+                    : lfs.has("oid") ? lfs.get("oid").getAsString() : null;
+            if (oid != null) {
+                sha256 = oid.startsWith("sha256:") ? oid.substring("sha256:".length()) : oid;
+            }
+            if (lfs.has("size")) {
+                size = lfs.get("size").getAsLong();
+            }
+        }
+        return new RepoFile(file.get("rfilename").getAsString(), size, sha256);
+    }
+
+    /**
+     * Download a file, retrying transient failures with exponential backoff.
+     * Client errors (4xx other than 429) are not retried.
+     */
+    private FileDownload downloadWithRetry(String repoId, RepoFile file, Path modelDir, String ifNoneMatch,
+                                           ProgressTracker tracker) throws IOException {
+        long backoff = retryBackoffMillis;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return downloadFile(repoId, file, modelDir, ifNoneMatch, tracker);
+            } catch (IOException e) {
+                if (attempt >= maxRetries || !isRetryable(e)) {
+                    throw e;
+                }
+                logger.warn("Download of {} failed ({}), retrying in {} ms ({}/{})",
+                        file, e.getMessage(), backoff, attempt + 1, maxRetries);
+                tracker.retry(file, attempt + 1, maxRetries, backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Download interrupted: " + file);
+                }
+                backoff *= 2;
+            }
+        }
+    }
+
+    private boolean isRetryable(IOException e) {
+        if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+            return false;
+        }
+        if (e instanceof HttpStatusException) {
+            int status = ((HttpStatusException) e).getStatus();
+            return status == 429 || status >= 500;
+        }
+        return true;
+    }
+
+    /**
+     * CPU time used by this process so far, or 0 where the JVM does not report it.
+     */
+    private static long processCpuNanos() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0;
     }
 
-    private void downloadFile(String repoId, String filename, Path modelDir) throws IOException {
-        String fileUrl = String.format(HF_DOWNLOAD_URL, repoId, filename);
+    private static ThreadFactory downloadThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "jinfer-download-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Download a file into {@code <name>.partial} and rename it into place once
+     * complete. Progress is checkpointed so an interrupted download resumes
+     * with Range requests, as long as the server's ETag and size still match.
+     * The SHA-256 is computed while the bytes arrive and checked against the
+     * LFS checksum before the file is renamed.
+     *
+     * @param ifNoneMatch ETag of the local copy; a 304 reply keeps it
+     */
+    private FileDownload downloadFile(String repoId, RepoFile file, Path modelDir, String ifNoneMatch,
+                                      ProgressTracker tracker) throws IOException {
+        String filename = file.getPath();
+        String fileUrl = endpoint + String.format(HF_DOWNLOAD_PATH, repoId, filename);
         Path targetPath = modelDir.resolve(filename);
         
         // Create parent directories for nested files
         Files.createDirectories(targetPath.getParent());
         
-        HttpURLConnection conn = createConnection(fileUrl);
+        PartialDownload partial = PartialDownload.load(targetPath);
+        if (partial != null && partial.isComplete()) {
+            // Interrupted between the last checkpoint and the rename
+            Path partialPath = PartialDownload.partialPath(targetPath);
+            String sha256 = verifyChecksum(file, Checksums.sha256(partialPath), targetPath);
+            PartialDownload.moveAtomically(partialPath, targetPath);
+            Files.deleteIfExists(PartialDownload.statePath(targetPath));
+            return new FileDownload(0, sha256, partial.getEtag());
+        }
+        
+        String range;
+        String ifRange = null;
+        if (partial == null) {
+            // A partial file without a checkpoint cannot be trusted
+            PartialDownload.discard(targetPath);
+            range = rangeHeader(0, rangeParallelism > 1 ? rangeChunkSize - 1 : -1);
+        } else {
+            long[] first = partial.missing().get(0);
+            long end = rangeParallelism > 1 ? Math.min(first[0] + rangeChunkSize, first[1]) : first[1];
+            range = rangeHeader(first[0], end - 1);
+            if (partial.getEtag() != null && !partial.getEtag().startsWith("W/")) {
+                ifRange = partial.getEtag();
+            }
+            logger.info("Resuming {} at {} of {}", filename,
+                    formatSize(partial.completedBytes()), formatSize(partial.getSize()));
+        }
+        
+        // A 206 reply confirms range support; 200 means a full body follows
+        HttpResponse<InputStream> response = send(fileUrl, range, ifRange, partial == null ? ifNoneMatch : null);
         
         try {
-            int responseCode = conn.getResponseCode();
+            int responseCode = response.statusCode();
+            
+            if (responseCode == 304) {
+                return FileDownload.NOT_MODIFIED;
+            }
             
-            // Handle redirects
-            if (responseCode == 302 || responseCode == 301) {
-                String redirectUrl = conn.getHeaderField("Location");
-                conn.disconnect();
-                conn = createConnection(redirectUrl);
-                responseCode = conn.getResponseCode();
+            if (responseCode == 206) {
+                String contentRange = response.headers().firstValue("Content-Range").orElse(null);
+                long totalSize = parseContentRangeTotal(contentRange);
+                String etag = response.headers().firstValue("ETag").orElse(null);
+                
+                if (totalSize >= 0 && partial != null && !partial.matches(etag, totalSize)) {
+                    logger.info("{} changed on the server, restarting download", filename);
+                    response.body().close();
+                    PartialDownload.discard(targetPath);
+                    return downloadFile(repoId, file, modelDir, null, tracker);
+                }
+                if (totalSize >= 0) {
+                    boolean fresh = partial == null;
+                    if (fresh) {
+                        partial = new PartialDownload(etag, totalSize);
+                    }
+                    return downloadRanges(response, contentRange, partial, fresh, file, targetPath, tracker);
+                }
+                // Unknown total size: fall back to a single full request
+                response.body().close();
+                response = send(fileUrl, null, null);
+                responseCode = response.statusCode();
+            } else if (responseCode == 416) {
+                // Nothing to resume (e.g. an empty file or a shrunk one): fetch it whole
+                response.body().close();
+                response = send(fileUrl, null, null);
+                responseCode = response.statusCode();
             }
             
             if (responseCode != 200) {
-                throw new IOException("HTTP " + responseCode);
+                throw new HttpStatusException(responseCode);
             }
             
-            long totalSize = conn.getContentLengthLong();
+            PartialDownload.discard(targetPath);
+            return downloadStream(response, file, targetPath, tracker);
+        } finally {
+            response.body().close();
+        }
+    }
+
+    /**
+     * Stream a full response body over a single connection into the partial
+     * file, through a pooled direct buffer.
+     */
+    private FileDownload downloadStream(HttpResponse<InputStream> response, RepoFile file,
+                                        Path targetPath, ProgressTracker tracker) throws IOException {
+        Path partialPath = PartialDownload.partialPath(targetPath);
+        long totalSize = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        long downloaded = 0;
+        MessageDigest digest = Checksums.newSha256();
+        ByteBuffer buffer = acquireBuffer();
+        
+        try (ReadableByteChannel in = new IdleTimeoutChannel(response.body(), readTimeoutMillis);
+             FileChannel out = FileChannel.open(partialPath, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
             
-            try (InputStream in = conn.getInputStream();
-                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(targetPath))) {
-                
-                byte[] buffer = new byte[BUFFER_SIZE];
-                long downloaded = 0;
-                int bytesRead;
-                int lastProgress = 0;
+            int bytesRead;
+            int lastProgress = 0;
+            
+            while ((bytesRead = fill(in, buffer, Long.MAX_VALUE)) != -1) {
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                downloaded += bytesRead;
+                tracker.transferred(bytesRead);
                 
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                    downloaded += bytesRead;
-                    
-                    if (totalSize > 0) {
-                        int progress = (int) (downloaded * 100 / totalSize);
-                        if (progress >= lastProgress + 10) {
-                            logger.debug("  {}% ({}/{})", progress, formatSize(downloaded), formatSize(totalSize));
-                            lastProgress = progress;
-                        }
+                if (totalSize > 0) {
+                    int progress = (int) (downloaded * 100 / totalSize);
+                    if (progress >= lastProgress + 10) {
+                        logger.debug("  {}% ({}/{})", progress, formatSize(downloaded), formatSize(totalSize));
+                        lastProgress = progress;
                     }
                 }
             }
         } finally {
-            conn.disconnect();
+            releaseBuffer(buffer);
+        }
+        
+        if (totalSize > 0 && downloaded != totalSize) {
+            throw new IOException("Incomplete download: " + downloaded + " of " + totalSize + " bytes");
+        }
+        String sha256 = verifyChecksum(file, Checksums.hex(digest.digest()), targetPath);
+        PartialDownload.moveAtomically(partialPath, targetPath);
+        return new FileDownload(downloaded, sha256, response.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * Compare a computed checksum with the expected LFS checksum, discarding the
+     * partial file on mismatch so a retry starts over.
+     */
+    private String verifyChecksum(RepoFile file, String actual, Path targetPath) throws IOException {
+        if (file.getSha256() != null && !file.getSha256().equalsIgnoreCase(actual)) {
+            PartialDownload.discard(targetPath);
+            throw new IOException("Checksum mismatch for " + file + ": expected " + file.getSha256() + ", got " + actual);
         }
+        return actual;
     }
 
-    private HttpURLConnection createConnection(String urlStr) throws IOException {
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setConnectTimeout(CONNECT_TIMEOUT);
-        conn.setReadTimeout(READ_TIMEOUT);
-        conn.setRequestProperty("User-Agent", "JInfer/1.0");
+    /**
+     * Fetch the missing byte ranges of a file in parallel, writing each to its
+     * offset in the preallocated partial file. The first range is read from
+     * the body of {@code first}, the response that served
+     * {@code contentRange}. Returns the bytes transferred in this attempt,
+     * the verified SHA-256 and the ETag the partial file was fetched at.
+     *
+     * Bytes arriving at the hash frontier are digested on the fly; ranges that
+     * finish ahead of it are digested from the page cache once the gap closes.
+     */
+    private FileDownload downloadRanges(HttpResponse<InputStream> first, String contentRange, PartialDownload partial,
+                                        boolean fresh, RepoFile file, Path targetPath,
+                                        ProgressTracker tracker) throws IOException {
+        // Range requests go straight to the resolved (post-redirect) URL
+        String resolvedUrl = first.uri().toString();
+        Path partialPath = PartialDownload.partialPath(targetPath);
+        long totalSize = partial.getSize();
+        long alreadyCompleted = partial.completedBytes();
+        tracker.resumed(alreadyCompleted);
+        
+        long[] served = parseContentRange(contentRange);
+        List<long[]> ranges = new ArrayList<>();
+        for (long[] missing : partial.missing()) {
+            // Everything outside the first response, split into chunk-sized ranges
+            for (long[] piece : subtract(missing, served[0], served[1] + 1)) {
+                for (long start = piece[0]; start < piece[1]; start += rangeChunkSize) {
+                    ranges.add(new long[]{start, Math.min(start + rangeChunkSize, piece[1])});
+                }
+            }
+        }
+        
+        if (!ranges.isEmpty()) {
+            logger.debug("  Fetching {} in {} ranges", formatSize(totalSize - alreadyCompleted), ranges.size() + 1);
+        }
+        
+        ExecutorService executor = ranges.isEmpty() ? null : Executors.newFixedThreadPool(
+                Math.min(rangeParallelism, ranges.size()), downloadThreadFactory());
+        
+        Set<StandardOpenOption> options = fresh
+                ? EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)
+                : EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        String sha256;
+        try (FileChannel channel = FileChannel.open(partialPath, options)) {
+            Checksums.Frontier frontier = new Checksums.Frontier(channel);
+            if (fresh) {
+                if (totalSize > 0) {
+                    // Preallocate so every range can be written at its final offset
+                    channel.write(ByteBuffer.wrap(new byte[1]), totalSize - 1);
+                }
+                partial.save(targetPath);
+            } else {
+                // Digest the prefix completed by an earlier run before new bytes arrive
+                frontier.advance(partial);
+            }
+            
+            List<Future<Void>> futures = new ArrayList<>();
+            if (rangeParallelism > 1) {
+                for (long[] range : ranges) {
+                    futures.add(executor.submit(() -> {
+                        downloadRange(resolvedUrl, channel, range[0], range[1], partial, frontier, targetPath, tracker);
+                        return null;
+                    }));
+                }
+            }
+            
+            try (ReadableByteChannel in = new IdleTimeoutChannel(first.body(), readTimeoutMillis)) {
+                writeRange(in, channel, served[0], served[1] - served[0] + 1, partial, frontier, targetPath, tracker);
+            }
+            
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            if (rangeParallelism == 1) {
+                for (long[] range : ranges) {
+                    downloadRange(resolvedUrl, channel, range[0], range[1], partial, frontier, targetPath, tracker);
+                }
+            }
+            
+            if (!partial.isComplete()) {
+                throw new IOException("Incomplete download: " + partial.completedBytes() + " of " + totalSize + " bytes");
+            }
+            channel.force(true);
+            frontier.catchUp(totalSize);
+            sha256 = frontier.finish();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted: " + targetPath);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        
+        verifyChecksum(file, sha256, targetPath);
+        PartialDownload.moveAtomically(partialPath, targetPath);
+        Files.deleteIfExists(PartialDownload.statePath(targetPath));
+        return new FileDownload(totalSize - alreadyCompleted, sha256, partial.getEtag());
+    }
+
+    private void downloadRange(String url, FileChannel channel, long start, long endExclusive,
+                               PartialDownload partial, Checksums.Frontier frontier,
+                               Path targetPath, ProgressTracker tracker) throws IOException {
+        HttpResponse<InputStream> response = send(url, rangeHeader(start, endExclusive - 1), null);
+        try (ReadableByteChannel in = new IdleTimeoutChannel(response.body(), readTimeoutMillis)) {
+            if (response.statusCode() != 206) {
+                throw new HttpStatusException(response.statusCode());
+            }
+            String contentRange = response.headers().firstValue("Content-Range").orElse(null);
+            if (contentRange == null || !contentRange.startsWith("bytes " + start + "-")) {
+                throw new IOException("Unexpected Content-Range for bytes " + start + "-" + (endExclusive - 1) +
+                        ": " + contentRange);
+            }
+            writeRange(in, channel, start, endExclusive - start, partial, frontier, targetPath, tracker);
+        }
+    }
+
+    /**
+     * Copy exactly {@code length} bytes from the body to the channel at
+     * {@code position}, checkpointing every chunk once it is flushed to disk.
+     */
+    private void writeRange(ReadableByteChannel in, FileChannel channel, long position, long length,
+                            PartialDownload partial, Checksums.Frontier frontier,
+                            Path targetPath, ProgressTracker tracker) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+        long written = 0;
+        long checkpoint = 0;
+        
+        try {
+            while (written < length) {
+                // Never read past the next checkpoint, so it lands exactly on the chunk boundary
+                int bytesRead = fill(in, buffer, Math.min(length, checkpoint + rangeChunkSize) - written);
+                if (bytesRead == -1) {
+                    throw new IOException("Incomplete range at offset " + position + ": " + written + " of " + length + " bytes");
+                }
+                ByteBuffer data = buffer.duplicate();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, position + written + buffer.position());
+                }
+                frontier.update(position + written, data);
+                written += bytesRead;
+                tracker.transferred(bytesRead);
+                
+                if (written - checkpoint >= rangeChunkSize || written == length) {
+                    channel.force(false);
+                    partial.markComplete(position + checkpoint, position + written);
+                    partial.save(targetPath);
+                    frontier.advance(partial);
+                    checkpoint = written;
+                }
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Read until the buffer is full, {@code limit} bytes were read or the body
+     * ends, so the file is written in large blocks. Leaves the buffer flipped.
+     *
+     * @return Bytes read, or -1 at the end of the body
+     */
+    private static int fill(ReadableByteChannel in, ByteBuffer buffer, long limit) throws IOException {
+        buffer.clear();
+        if (limit < buffer.capacity()) {
+            buffer.limit((int) limit);
+        }
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) == -1) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.hasRemaining() ? buffer.remaining() : -1;
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        bufferPool.offer(buffer);
+    }
+
+    /**
+     * Range header for {@code start..end} inclusive; a negative end means "to the end of the file".
+     */
+    private static String rangeHeader(long start, long end) {
+        return "bytes=" + start + "-" + (end >= 0 ? String.valueOf(end) : "");
+    }
+
+    /**
+     * Parse the served byte range {start, end} (inclusive) from a Content-Range header.
+     */
+    private static long[] parseContentRange(String contentRange) throws IOException {
+        try {
+            String spec = contentRange.substring("bytes ".length(), contentRange.indexOf('/'));
+            int dash = spec.indexOf('-');
+            return new long[]{Long.parseLong(spec.substring(0, dash).trim()), Long.parseLong(spec.substring(dash + 1).trim())};
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed Content-Range: " + contentRange);
+        }
+    }
+
+    /**
+     * Parts of {@code [range[0], range[1])} outside {@code [start, end)}.
+     */
+    private static List<long[]> subtract(long[] range, long start, long end) {
+        List<long[]> result = new ArrayList<>(2);
+        if (start > range[0]) {
+            result.add(new long[]{range[0], Math.min(start, range[1])});
+        }
+        if (end < range[1]) {
+            result.add(new long[]{Math.max(end, range[0]), range[1]});
+        }
+        return result;
+    }
+
+    /**
+     * Parse the total size from a {@code Content-Range: bytes a-b/total} header, or -1 if unknown.
+     */
+    static long parseContentRangeTotal(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private HttpResponse<InputStream> send(String url, String range, String ifRange) throws IOException {
+        return send(url, range, ifRange, null);
+    }
+
+    /**
+     * Send a GET request with optional Range / If-Range / If-None-Match headers.
+     * Redirects (e.g. to the LFS CDN) are followed by the client with the same headers.
+     */
+    private HttpResponse<InputStream> send(String url, String range, String ifRange,
+                                           String ifNoneMatch) throws IOException {
+        HttpRequest.Builder request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+        request.timeout(Duration.ofMillis(readTimeoutMillis))
+               .header("User-Agent", USER_AGENT);
         
         if (authToken != null && !authToken.isEmpty()) {
-            conn.setRequestProperty("Authorization", "Bearer " + authToken);
+            request.header("Authorization", "Bearer " + authToken);
+        }
+        if (range != null) {
+            request.header("Range", range);
+            if (ifRange != null) {
+                request.header("If-Range", ifRange);
+            }
+        }
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
         }
         
-        return conn;
+        try {
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request interrupted: " + url);
+        }
     }
 
     private String formatSize(long bytes) {
@@ -315,33 +1383,212 @@ public class HuggingFaceHub {
      */
     public List<String> listCachedModels() throws IOException {
         List<String> models = new ArrayList<>();
+        for (CachedModel model : listCachedModelInfo()) {
+            models.add(model.getRepoId());
+        }
+        return models;
+    }
+
+    /**
+     * List all cached models with their size, revision, last access and pin
+     * status, read from the cache index without walking the model directories.
+     */
+    public List<CachedModel> listCachedModelInfo() throws IOException {
+        try (ModelLock lock = lockIndex()) {
+            return readIndex().getModels();
+        }
+    }
+
+    /**
+     * Pin or unpin a cached model. Pinned models are never evicted by the cache quota.
+     *
+     * @return false if the model is not cached
+     */
+    public boolean setPinned(String repoId, boolean pinned) throws IOException {
+        boolean[] found = {false};
+        updateIndex(index -> {
+            CachedModel model = index.get(repoId);
+            if (model != null) {
+                model.setPinned(pinned);
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Read the cache index, rebuilding it from the model directories if it is
+     * missing or unreadable. Callers hold {@link #lockIndex()}.
+     */
+    private CacheIndex readIndex() throws IOException {
+        CacheIndex index = CacheIndex.load(cacheDir);
+        if (index != null) {
+            return index;
+        }
+        
+        index = new CacheIndex();
+        if (Files.exists(cacheDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+                for (Path path : stream) {
+                    Path marker = path.resolve(".jinfer_downloaded");
+                    if (Files.isDirectory(path) && Files.exists(marker)) {
+                        String name = path.getFileName().toString().replace("--", "/");
+                        long downloadedAt = Files.getLastModifiedTime(marker).toMillis();
+                        index.put(new CachedModel(name, directorySize(path), null, null, downloadedAt));
+                    }
+                }
+            }
+        }
+        index.save(cacheDir);
+        return index;
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        if (CacheManifest.exists(dir)) {
+            return CacheManifest.load(dir).totalSize();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    /**
+     * Lock the cache index against other threads and processes. Every read
+     * and read-modify-save of the index holds it, so concurrent downloads in
+     * different JVMs do not save over each other's entries.
+     */
+    private ModelLock lockIndex() throws IOException {
+        return ModelLock.acquire(ModelLock.lockPath(cacheDir, INDEX_LOCK_NAME));
+    }
+
+    private void updateIndex(Consumer<CacheIndex> update) throws IOException {
+        try (ModelLock lock = lockIndex()) {
+            // Re-read under the lock so changes made by other processes are kept
+            CacheIndex index = readIndex();
+            update.accept(index);
+            index.save(cacheDir);
+        }
+    }
+
+    private void touch(String repoId) {
+        try {
+            updateIndex(index -> {
+                CachedModel model = index.get(repoId);
+                if (model != null) {
+                    model.setLastAccess(System.currentTimeMillis());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Could not update cache index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Evict least recently used, unpinned models until the cache fits the quota.
+     * The model that was just downloaded is never evicted.
+     */
+    private void enforceQuota(String keepRepoId) throws IOException {
+        if (cacheQuotaBytes <= 0) {
+            return;
+        }
         
-        if (!Files.exists(cacheDir)) {
-            return models;
+        List<CachedModel> candidates;
+        try (ModelLock lock = lockIndex()) {
+            candidates = readIndex().getModels();
         }
+        long usage = diskUsage(candidates);
+        candidates.removeIf(model -> model.isPinned() || model.getRepoId().equals(keepRepoId));
+        candidates.sort(Comparator.comparingLong(CachedModel::getLastAccess));
         
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
-            for (Path path : stream) {
-                if (Files.isDirectory(path) && Files.exists(path.resolve(".jinfer_downloaded"))) {
-                    String name = path.getFileName().toString().replace("--", "/");
-                    models.add(name);
+        for (CachedModel model : candidates) {
+            if (usage <= cacheQuotaBytes) {
+                break;
+            }
+            // Models being downloaded or deleted elsewhere are skipped, not waited for
+            try (ModelLock lock = ModelLock.tryAcquire(lockPath(model.getRepoId()))) {
+                if (lock == null) {
+                    continue;
                 }
+                logger.info("Evicting '{}' (last used {}) to stay within the {} cache quota",
+                        model.getRepoId(), Instant.ofEpochMilli(model.getLastAccess()), formatSize(cacheQuotaBytes));
+                deleteModelFiles(model.getRepoId());
+            }
+            try (ModelLock lock = lockIndex()) {
+                usage = diskUsage(readIndex().getModels());
             }
         }
         
-        return models;
+        if (usage > cacheQuotaBytes) {
+            logger.warn("Model cache uses {}, over the {} quota; the remaining models are pinned or in use",
+                    formatSize(usage), formatSize(cacheQuotaBytes));
+        }
+    }
+
+    /**
+     * Bytes on disk used by the given models, counting shared blobs once.
+     */
+    private long diskUsage(List<CachedModel> models) {
+        Map<String, Long> blobs = new HashMap<>();
+        long unshared = 0;
+        for (CachedModel model : models) {
+            Path modelDir = getModelCachePath(model.getRepoId());
+            if (CacheManifest.exists(modelDir)) {
+                blobs.putAll(CacheManifest.load(modelDir).blobSizes());
+            } else {
+                unshared += model.getSizeBytes();
+            }
+        }
+        for (long size : blobs.values()) {
+            unshared += size;
+        }
+        return unshared;
+    }
+
+    /**
+     * Bytes that deleting a cached model would free: the blobs no other cached
+     * model links to.
+     */
+    public long getReclaimableBytes(String repoId) throws IOException {
+        Path modelDir = getModelCachePath(repoId);
+        if (!CacheManifest.exists(modelDir)) {
+            return 0;
+        }
+        Map<String, Integer> references = blobStore.referenceCounts();
+        Set<String> exclusive = new HashSet<>();
+        for (String sha256 : CacheManifest.load(modelDir).getChecksums()) {
+            if (references.getOrDefault(sha256, 0) <= 1) {
+                exclusive.add(sha256);
+            }
+        }
+        return blobStore.sizeOf(exclusive);
     }
 
     /**
-     * Delete a cached model.
+     * Delete a cached model. Shared blobs are kept while another cached model
+     * still links to them.
      */
     public boolean deleteModel(String repoId) throws IOException {
+        try (ModelLock lock = ModelLock.acquire(lockPath(repoId))) {
+            return deleteModelFiles(repoId);
+        }
+    }
+
+    private Path lockPath(String repoId) {
+        return ModelLock.lockPath(cacheDir, getModelCachePath(repoId).getFileName().toString());
+    }
+
+    /**
+     * Delete a model's directory and unshared blobs. Callers hold the model lock.
+     */
+    private boolean deleteModelFiles(String repoId) throws IOException {
         Path modelDir = getModelCachePath(repoId);
         
         if (!Files.exists(modelDir)) {
             return false;
         }
         
+        Set<String> blobs = CacheManifest.load(modelDir).getChecksums();
+        
         // Recursively delete
         Files.walk(modelDir)
              .sorted((a, b) -> b.compareTo(a))
@@ -353,9 +1600,61 @@ public class HuggingFaceHub {
                  }
              });
         
+        updateIndex(index -> index.remove(repoId));
+        long freed = blobStore.deleteUnreferenced(blobs);
+        logger.info("Deleted {} ({} freed)", repoId, formatSize(freed));
         return true;
     }
 
+    /**
+     * Files and snapshot metadata from the model info API.
+     */
+    private static class RepoListing {
+        final List<RepoFile> files = new ArrayList<>();
+        String revision;
+        String etag;
+    }
+
+    /**
+     * Result of a single file download.
+     */
+    private static class FileDownload {
+        /** The server confirmed the local copy is current. */
+        static final FileDownload NOT_MODIFIED = new FileDownload(0, null, null, true);
+
+        final long bytes;
+        final String sha256;
+        final String etag;
+        final boolean notModified;
+
+        FileDownload(long bytes, String sha256, String etag) {
+            this(bytes, sha256, etag, false);
+        }
+
+        private FileDownload(long bytes, String sha256, String etag, boolean notModified) {
+            this.bytes = bytes;
+            this.sha256 = sha256;
+            this.etag = etag;
+            this.notModified = notModified;
+        }
+    }
+
+    /**
+     * Non-success HTTP response.
+     */
+    static class HttpStatusException extends IOException {
+        private final int status;
+
+        HttpStatusException(int status) {
+            super("HTTP " + status);
+            this.status = status;
+        }
+
+        int getStatus() {
+            return status;
+        }
+    }
+
     /**
      * Get the cache directory path.
      */
@@ -0,0 +1,77 @@
+package com.jinfer.hub;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channel over a response body that is closed when no data arrives for a while.
+ *
+ * {@code java.net.http} request timeouts only cover the wait for the response
+ * headers; this bounds stalls while the body is being streamed.
+ */
+final class IdleTimeoutChannel implements ReadableByteChannel {
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jinfer-idle-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReadableByteChannel delegate;
+    private final long timeoutMillis;
+    private final ScheduledFuture<?> check;
+    private volatile long lastProgress = System.nanoTime();
+    private volatile boolean expired;
+
+    IdleTimeoutChannel(InputStream in, long timeoutMillis) {
+        this.delegate = Channels.newChannel(in);
+        this.timeoutMillis = timeoutMillis;
+        long period = Math.max(10, timeoutMillis / 4);
+        this.check = WATCHDOG.scheduleAtFixedRate(this::checkIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkIdle() {
+        if (!expired && System.nanoTime() - lastProgress > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+            expired = true;
+            try {
+                // Unblocks the reading thread
+                delegate.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        try {
+            int read = delegate.read(dst);
+            lastProgress = System.nanoTime();
+            return read;
+        } catch (IOException e) {
+            if (expired) {
+                throw new HttpTimeoutException("No data received for " + timeoutMillis + " ms");
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        check.cancel(false);
+        delegate.close();
+    }
+}
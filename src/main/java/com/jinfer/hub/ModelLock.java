@@ -0,0 +1,134 @@
+package com.jinfer.hub;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Exclusive lock on one cached model, held across threads and processes.
+ *
+ * File locks are owned by the whole JVM, so threads of one process are
+ * serialized on a semaphore per lock file first; the OS lock on
+ * {@code .locks/<org>--<repo>.lock} then excludes other processes.
+ * Lock files are never deleted, since removing one while another process
+ * waits on it would let two holders in.
+ */
+class ModelLock implements AutoCloseable {
+
+    static final String LOCKS_DIR = ".locks";
+
+    private static final Map<Path, Semaphore> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final Semaphore localLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final long waitNanos;
+    private final boolean contended;
+
+    private ModelLock(Semaphore localLock, FileChannel channel, FileLock fileLock, long waitNanos, boolean contended) {
+        this.localLock = localLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+        this.waitNanos = waitNanos;
+        this.contended = contended;
+    }
+
+    static Path lockPath(Path cacheDir, String safeName) {
+        return cacheDir.resolve(LOCKS_DIR).resolve(safeName + ".lock").toAbsolutePath().normalize();
+    }
+
+    /**
+     * Block until the lock is held.
+     */
+    static ModelLock acquire(Path lockFile) throws IOException {
+        long start = System.nanoTime();
+        Semaphore local = LOCAL_LOCKS.computeIfAbsent(lockFile, k -> new Semaphore(1));
+        boolean contended = !local.tryAcquire();
+        if (contended) {
+            try {
+                local.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for " + lockFile);
+            }
+        }
+
+        FileChannel channel = null;
+        try {
+            channel = open(lockFile);
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                contended = true;
+                lock = channel.lock();
+            }
+            return new ModelLock(local, channel, lock, System.nanoTime() - start, contended);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            local.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Take the lock if nobody holds it.
+     *
+     * @return null if another thread or process holds the lock
+     */
+    static ModelLock tryAcquire(Path lockFile) throws IOException {
+        Semaphore local = LOCAL_LOCKS.computeIfAbsent(lockFile, k -> new Semaphore(1));
+        if (!local.tryAcquire()) {
+            return null;
+        }
+        FileChannel channel = null;
+        try {
+            channel = open(lockFile);
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return new ModelLock(local, channel, lock, 0, false);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            local.release();
+            throw e;
+        }
+        channel.close();
+        local.release();
+        return null;
+    }
+
+    private static FileChannel open(Path lockFile) throws IOException {
+        Files.createDirectories(lockFile.getParent());
+        return FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /** Time spent waiting for the lock. */
+    long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /** Whether another thread or process held the lock when it was requested. */
+    boolean wasContended() {
+        return contended;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            fileLock.release();
+            channel.close();
+        } finally {
+            localLock.release();
+        }
+    }
+}
@@ -1,20 +1,34 @@
 package com.jinfer.hub;
 
 import com.jinfer.config.ModelConfig;
+import com.jinfer.config.ModelMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Resolves model paths - handles local paths and HuggingFace repo IDs.
+ * How a model directory resolved is kept in the cache directory, so later
+ * runs skip scanning and parsing it until its files change.
  */
 public class ModelResolver {
     
     private static final Logger logger = LoggerFactory.getLogger(ModelResolver.class);
     
+    private static final int DEFAULT_CONTEXT_LENGTH = 2048;
+
+    private static final String TOKENIZER_FILE = "tokenizer.json";
+
     private final HuggingFaceHub hub;
 
     public ModelResolver() {
@@ -32,6 +46,21 @@ public class ModelResolver {
         hub.setAuthToken(token);
     }
 
+    /**
+     * Set the HuggingFace endpoint, e.g. a local mirror. Defaults to the
+     * {@code HF_ENDPOINT} environment variable, or huggingface.co.
+     */
+    public void setEndpoint(String endpoint) {
+        hub.setEndpoint(endpoint);
+    }
+
+    /**
+     * Set which format and variant of a repository is downloaded and loaded.
+     */
+    public void setDownloadOptions(DownloadOptions options) {
+        hub.setDownloadOptions(options);
+    }
+
     /**
      * Resolve a model identifier to a ModelConfig.
      * Supports:
@@ -117,26 +146,25 @@ public class ModelResolver {
         ModelConfig.Builder builder = ModelConfig.builder();
         
         if (Files.isDirectory(modelDir)) {
-            // Find model file
-            Optional<Path> modelFile = findModelFile(modelDir);
-            if (modelFile.isPresent()) {
-                builder.modelPath(modelFile.get());
-                builder.modelFormat(detectFormat(modelFile.get()));
+            ResolveCache.Entry resolved = resolveDirectory(modelDir);
+            if (resolved.getModelFile() != null) {
+                builder.modelPath(modelDir.resolve(resolved.getModelFile()));
+                builder.modelFormat(resolved.getModelFormat());
+                List<Path> weightFiles = new ArrayList<>();
+                for (String file : resolved.getWeightFiles()) {
+                    weightFiles.add(modelDir.resolve(file));
+                }
+                builder.weightFiles(weightFiles);
             } else {
                 builder.modelPath(modelDir);
             }
+            builder.tokenizerPath(resolved.getTokenizerFile() != null
+                    ? modelDir.resolve(resolved.getTokenizerFile()) : modelDir);
             
-            // Find tokenizer
-            Path tokenizerJson = modelDir.resolve("tokenizer.json");
-            if (Files.exists(tokenizerJson)) {
-                builder.tokenizerPath(tokenizerJson);
-            } else {
-                builder.tokenizerPath(modelDir);
-            }
-            
-            // Read context length from config if available
-            int contextLength = readContextLength(modelDir);
-            builder.contextLength(contextLength);
+            ModelMetadata metadata = resolved.getMetadata();
+            builder.contextLength(metadata.getContextLength() > 0
+                    ? metadata.getContextLength() : DEFAULT_CONTEXT_LENGTH);
+            builder.metadata(metadata);
             
         } else {
             // Single file
@@ -148,73 +176,135 @@ public class ModelResolver {
         return builder.build();
     }
 
-    private Optional<Path> findModelFile(Path dir) throws IOException {
-        // Priority: ONNX > SafeTensors > PyTorch
-        String[] patterns = {"*.onnx", "*.safetensors", "*.bin", "*.pt", "*.pth"};
+    /**
+     * Select the weights of a model directory and parse its config files, or
+     * reuse the result of an earlier run if none of the files and directories
+     * it was derived from has changed.
+     */
+    private ResolveCache.Entry resolveDirectory(Path modelDir) throws IOException {
+        DownloadOptions options = hub.getDownloadOptions();
+        String optionsKey = options.getFormat() + "/" + options.getVariant();
+        Path cacheDir = hub.getCacheDir();
+        ResolveCache cache = ResolveCache.load(cacheDir);
+        ResolveCache.Entry cached = cache.get(modelDir, optionsKey);
+        if (cached != null) {
+            logger.debug("Resolved {} from the resolve cache", modelDir);
+            return cached;
+        }
         
-        for (String pattern : patterns) {
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, pattern)) {
-                for (Path path : stream) {
-                    // Skip if it's a tokenizer or optimizer file
-                    String name = path.getFileName().toString().toLowerCase();
-                    if (name.contains("tokenizer") || name.contains("optimizer")) {
-                        continue;
-                    }
-                    return Optional.of(path);
-                }
+        // Taken before reading, so a change made meanwhile invalidates the entry
+        List<String> stamped = new ArrayList<>(Arrays.asList("", ModelMetadata.CONFIG_FILE,
+                ModelMetadata.GENERATION_CONFIG_FILE, ModelMetadata.TOKENIZER_CONFIG_FILE, TOKENIZER_FILE));
+        Map<String, Long> stamps = ResolveCache.stamp(modelDir, stamped);
+        
+        // Find model file: a single weight file, an ONNX graph with external data,
+        // or the index of a sharded checkpoint
+        List<String> paths = listFiles(modelDir);
+        List<String> weights = findWeightFiles(paths);
+        Optional<String> modelFile = weights.stream().filter(DownloadPlanner::isWeightIndex).findFirst();
+        if (modelFile.isEmpty()) {
+            modelFile = weights.stream().filter(path -> DownloadPlanner.formatOf(path) != null).findFirst();
+        }
+        List<String> weightFiles = new ArrayList<>();
+        String format = null;
+        if (modelFile.isPresent()) {
+            format = detectFormat(modelDir.resolve(modelFile.get()));
+            weightFiles = weightFiles(modelDir, modelFile.get(), weights);
+        }
+        String tokenizerFile = Files.exists(modelDir.resolve(TOKENIZER_FILE)) ? TOKENIZER_FILE : null;
+        ModelMetadata metadata = ModelMetadata.read(modelDir);
+        
+        // Subdirectories were walked; the model file is read for its index or external data
+        List<String> scanned = new ArrayList<>();
+        for (String path : paths) {
+            int slash = path.indexOf('/');
+            if (slash > 0 && !scanned.contains(path.substring(0, slash))) {
+                scanned.add(path.substring(0, slash));
             }
         }
+        modelFile.ifPresent(scanned::add);
+        stamps.putAll(ResolveCache.stamp(modelDir, scanned));
         
-        return Optional.empty();
+        ResolveCache.Entry entry = new ResolveCache.Entry(optionsKey, stamps, modelFile.orElse(null), format,
+                weightFiles, tokenizerFile, metadata);
+        cache.put(modelDir, entry);
+        try {
+            cache.save(cacheDir);
+        } catch (IOException e) {
+            logger.debug("Could not save the resolve cache: {}", e.getMessage());
+        }
+        return entry;
     }
 
-    private String detectFormat(Path modelFile) {
-        String name = modelFile.getFileName().toString().toLowerCase();
-        
-        if (name.endsWith(".onnx")) return "onnx";
-        if (name.endsWith(".safetensors")) return "safetensors";
-        if (name.endsWith(".pt") || name.endsWith(".pth")) return "pytorch";
-        if (name.endsWith(".bin")) return "pytorch";
-        
-        return "onnx"; // default
+    /**
+     * Files of a model directory, relative and sorted. Depth 2 covers repos
+     * exporting to a subdirectory such as onnx/model_quantized.onnx.
+     */
+    private static List<String> listFiles(Path dir) throws IOException {
+        List<String> paths = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(dir, 2)) {
+            files.filter(Files::isRegularFile)
+                 .map(path -> dir.relativize(path).toString().replace('\\', '/'))
+                 .filter(path -> !path.startsWith("."))
+                 .sorted()
+                 .forEach(paths::add);
+        }
+        return paths;
     }
 
-    private int readContextLength(Path modelDir) {
-        Path configFile = modelDir.resolve("config.json");
-        
-        if (Files.exists(configFile)) {
-            try {
-                String content = Files.readString(configFile);
-                
-                // Simple parsing for common fields
-                if (content.contains("\"max_position_embeddings\"")) {
-                    return extractInt(content, "max_position_embeddings", 2048);
-                }
-                if (content.contains("\"n_positions\"")) {
-                    return extractInt(content, "n_positions", 2048);
+    private List<String> findWeightFiles(List<String> paths) {
+        // Same selection as the download: ONNX > SafeTensors > PyTorch > GGUF, in the configured variant
+        DownloadOptions options = hub.getDownloadOptions();
+        List<String> weights = DownloadPlanner.selectWeights(paths, options.getFormat(), options.getVariant());
+        if (weights.isEmpty()) {
+            weights = DownloadPlanner.selectWeights(paths, DownloadOptions.FORMAT_AUTO, null);
+        }
+        return weights;
+    }
+
+    /**
+     * Files the weights of a model file are stored in: the shards of a sharded
+     * checkpoint as listed in its index, or the external data of an ONNX graph.
+     */
+    private List<String> weightFiles(Path dir, String modelFile, List<String> selected) throws IOException {
+        Set<String> files = new LinkedHashSet<>();
+        if (DownloadPlanner.isWeightIndex(modelFile)) {
+            files.addAll(WeightManifests.parseWeightMap(modelFile, Files.readString(dir.resolve(modelFile))));
+        } else {
+            for (String path : selected) {
+                if (!path.equals(modelFile) && !DownloadPlanner.isWeightIndex(path)) {
+                    files.add(path);
                 }
-                if (content.contains("\"max_seq_len\"")) {
-                    return extractInt(content, "max_seq_len", 2048);
+            }
+            if (modelFile.endsWith(".onnx")) {
+                for (String location : WeightManifests.onnxExternalData(dir.resolve(modelFile))) {
+                    files.add(WeightManifests.resolveSibling(modelFile, location));
                 }
-            } catch (IOException e) {
-                logger.debug("Could not read config.json: {}", e.getMessage());
             }
         }
         
-        return 2048; // default
+        for (String file : files) {
+            Path path = dir.resolve(file);
+            if (!Files.isRegularFile(path)) {
+                throw new IOException(modelFile + " references missing weight file: " + path);
+            }
+        }
+        return new ArrayList<>(files);
     }
 
-    private int extractInt(String json, String key, int defaultValue) {
-        try {
-            String pattern = "\"" + key + "\"\\s*:\\s*(\\d+)";
-            java.util.regex.Matcher matcher = java.util.regex.Pattern.compile(pattern).matcher(json);
-            if (matcher.find()) {
-                return Integer.parseInt(matcher.group(1));
-            }
-        } catch (Exception e) {
-            // ignore
+    private String detectFormat(Path modelFile) {
+        String name = modelFile.getFileName().toString().toLowerCase();
+        if (name.endsWith(".index.json")) {
+            name = name.substring(0, name.length() - ".index.json".length());
         }
-        return defaultValue;
+        
+        if (name.endsWith(".onnx")) return "onnx";
+        if (name.endsWith(".safetensors")) return "safetensors";
+        if (name.endsWith(".pt") || name.endsWith(".pth")) return "pytorch";
+        if (name.endsWith(".bin")) return "pytorch";
+        if (name.endsWith(".gguf")) return "gguf";
+        
+        return "onnx"; // default
     }
 
     /**
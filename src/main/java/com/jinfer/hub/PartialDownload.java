@@ -0,0 +1,174 @@
+package com.jinfer.hub;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checkpoint of an in-progress file download, stored as a small JSON sidecar
+ * next to the {@code .partial} file. Records the entity tag and total size the
+ * bytes belong to, plus the byte ranges already written and flushed to disk.
+ */
+class PartialDownload {
+
+    static final String PARTIAL_SUFFIX = ".partial";
+    static final String STATE_SUFFIX = ".partial.json";
+
+    private static final Gson GSON = new Gson();
+
+    private String etag;
+    private long size;
+    /** Sorted, non-overlapping [start, endExclusive) ranges. */
+    private List<long[]> completed = new ArrayList<>();
+
+    PartialDownload(String etag, long size) {
+        this.etag = etag;
+        this.size = size;
+    }
+
+    static Path partialPath(Path target) {
+        return target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+    }
+
+    static Path statePath(Path target) {
+        return target.resolveSibling(target.getFileName() + STATE_SUFFIX);
+    }
+
+    /**
+     * Load the checkpoint for a target file, or null if there is no usable one.
+     */
+    static PartialDownload load(Path target) {
+        Path state = statePath(target);
+        if (!Files.exists(state) || !Files.exists(partialPath(target))) {
+            return null;
+        }
+        try {
+            PartialDownload partial = GSON.fromJson(Files.readString(state), PartialDownload.class);
+            if (partial == null || partial.completed == null || partial.size < 0) {
+                return null;
+            }
+            return partial;
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remove the partial file and its checkpoint.
+     */
+    static void discard(Path target) throws IOException {
+        Files.deleteIfExists(partialPath(target));
+        Files.deleteIfExists(statePath(target));
+    }
+
+    /**
+     * Atomically persist the checkpoint.
+     */
+    synchronized void save(Path target) throws IOException {
+        Path state = statePath(target);
+        Path temp = state.resolveSibling(state.getFileName() + ".tmp");
+        Files.writeString(temp, GSON.toJson(this));
+        moveAtomically(temp, state);
+    }
+
+    /**
+     * Record {@code [start, endExclusive)} as written, merging adjacent ranges.
+     */
+    synchronized void markComplete(long start, long endExclusive) {
+        List<long[]> merged = new ArrayList<>(completed.size() + 1);
+        long[] range = {start, endExclusive};
+        boolean inserted = false;
+
+        for (long[] existing : completed) {
+            if (existing[1] < range[0]) {
+                merged.add(existing);
+            } else if (existing[0] > range[1]) {
+                if (!inserted) {
+                    merged.add(range);
+                    inserted = true;
+                }
+                merged.add(existing);
+            } else {
+                range[0] = Math.min(range[0], existing[0]);
+                range[1] = Math.max(range[1], existing[1]);
+            }
+        }
+        if (!inserted) {
+            merged.add(range);
+        }
+        completed = merged;
+    }
+
+    /**
+     * Ranges of the file that still have to be fetched, as [start, endExclusive).
+     */
+    synchronized List<long[]> missing() {
+        List<long[]> missing = new ArrayList<>();
+        long position = 0;
+        for (long[] range : completed) {
+            if (range[0] > position) {
+                missing.add(new long[]{position, range[0]});
+            }
+            position = Math.max(position, range[1]);
+        }
+        if (position < size) {
+            missing.add(new long[]{position, size});
+        }
+        return missing;
+    }
+
+    /**
+     * End of the completed range containing {@code position}, or {@code position} if none does.
+     */
+    synchronized long completedEnd(long position) {
+        for (long[] range : completed) {
+            if (range[0] <= position && position < range[1]) {
+                return range[1];
+            }
+        }
+        return position;
+    }
+
+    synchronized long completedBytes() {
+        long total = 0;
+        for (long[] range : completed) {
+            total += range[1] - range[0];
+        }
+        return total;
+    }
+
+    synchronized boolean isComplete() {
+        return completedBytes() >= size;
+    }
+
+    String getEtag() { return etag; }
+    long getSize() { return size; }
+
+    /**
+     * Whether a server response with the given entity tag and size continues this download.
+     */
+    boolean matches(String responseEtag, long responseSize) {
+        if (responseSize != size) {
+            return false;
+        }
+        return etag == null || responseEtag == null || etag.equals(responseEtag);
+    }
+
+    /**
+     * Move a file into place atomically where the file system allows it.
+     */
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.jinfer.hub;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes and files of one model download and forwards events to
+ * the hub's listeners, rate-limiting progress events.
+ */
+class ProgressTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressTracker.class);
+
+    private static final long PROGRESS_INTERVAL_NANOS = 250_000_000L;
+
+    private final String repoId;
+    private final List<DownloadListener> listeners;
+    private final AtomicInteger plannedFiles = new AtomicInteger();
+    private final AtomicLong plannedBytes = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicLong transferredBytes = new AtomicLong();
+    private final AtomicLong skippedBytes = new AtomicLong();
+    private final AtomicInteger transferredFiles = new AtomicInteger();
+    private final AtomicInteger reusedFiles = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+
+    // Guarded by this: last progress event, for the recent transfer rate
+    private long lastEmitNanos = startNanos;
+    private long lastEmitBytes = 0;
+
+    ProgressTracker(String repoId, DownloadPlan plan, List<DownloadListener> listeners) {
+        this.repoId = repoId;
+        this.listeners = listeners;
+        this.plannedFiles.set(plan.getFiles().size());
+        this.plannedBytes.set(plan.getTotalBytes());
+        for (DownloadListener listener : listeners) {
+            dispatch(() -> listener.onPlanned(repoId, plan));
+        }
+    }
+
+    /**
+     * Files added to the download after it started, e.g. external data found in a graph.
+     */
+    void planned(List<RepoFile> files) {
+        for (RepoFile file : files) {
+            plannedFiles.incrementAndGet();
+            plannedBytes.addAndGet(Math.max(0, file.getSize()));
+        }
+    }
+
+    void fileStarted(RepoFile file) {
+        for (DownloadListener listener : listeners) {
+            dispatch(() -> listener.onFileStarted(repoId, file.getPath(), file.getSize()));
+        }
+    }
+
+    /**
+     * Bytes received from the network.
+     */
+    void transferred(long bytes) {
+        transferredBytes.addAndGet(bytes);
+        emitProgress(false);
+    }
+
+    /**
+     * Bytes of a file found on disk from an earlier, interrupted run.
+     */
+    void resumed(long bytes) {
+        skippedBytes.addAndGet(bytes);
+    }
+
+    void fileReused(RepoFile file) {
+        reusedFiles.incrementAndGet();
+        skippedBytes.addAndGet(Math.max(0, file.getSize()));
+        fileFinished(file, 0);
+    }
+
+    void fileTransferred(RepoFile file, long bytes) {
+        transferredFiles.incrementAndGet();
+        fileFinished(file, bytes);
+    }
+
+    private void fileFinished(RepoFile file, long bytes) {
+        for (DownloadListener listener : listeners) {
+            dispatch(() -> listener.onFileFinished(repoId, file.getPath(), bytes));
+        }
+        emitProgress(true);
+    }
+
+    void retry(RepoFile file, int attempt, int maxRetries, long backoffMillis, IOException cause) {
+        retries.incrementAndGet();
+        for (DownloadListener listener : listeners) {
+            dispatch(() -> listener.onRetry(repoId, file.getPath(), attempt, maxRetries, backoffMillis, cause));
+        }
+    }
+
+    void fileFailed(RepoFile file, Throwable cause) {
+        for (DownloadListener listener : listeners) {
+            dispatch(() -> listener.onFileFailed(repoId, file.getPath(), cause));
+        }
+    }
+
+    long getTransferredBytes() {
+        return transferredBytes.get();
+    }
+
+    /**
+     * Summarize the download and notify listeners of its completion.
+     */
+    DownloadStats finish(Path modelDir, long lockWaitMillis) {
+        DownloadStats stats = new DownloadStats(repoId, modelDir, false, plannedFiles.get(), transferredFiles.get(),
+                reusedFiles.get(), plannedBytes.get(), transferredBytes.get(), retries.get(),
+                (System.nanoTime() - startNanos) / 1_000_000, lockWaitMillis);
+        for (DownloadListener listener : listeners) {
+            dispatch(() -> listener.onCompleted(stats));
+        }
+        return stats;
+    }
+
+    private void emitProgress(boolean force) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        // Delivered under the lock so listeners see completed bytes in order
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (!force && now - lastEmitNanos < PROGRESS_INTERVAL_NANOS) {
+                return;
+            }
+            long transferred = transferredBytes.get();
+            double recent = (transferred - lastEmitBytes) * 1e9 / Math.max(1, now - lastEmitNanos);
+            double average = transferred * 1e9 / Math.max(1, now - startNanos);
+            lastEmitNanos = now;
+            lastEmitBytes = transferred;
+            // Retried transfers count twice, so clamp to the plan
+            long total = plannedBytes.get();
+            long completed = Math.min(total, transferred + skippedBytes.get());
+            DownloadProgress progress = new DownloadProgress(repoId, completed, total,
+                    transferredFiles.get() + reusedFiles.get(), plannedFiles.get(), recent, average);
+            for (DownloadListener listener : listeners) {
+                dispatch(() -> listener.onProgress(progress));
+            }
+        }
+    }
+
+    private static void dispatch(Runnable event) {
+        try {
+            event.run();
+        } catch (RuntimeException e) {
+            logger.warn("Download listener failed: {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.jinfer.hub;
+
+/**
+ * A file in a HuggingFace repository as listed by the Hub API.
+ */
+class RepoFile {
+    private final String path;
+    private final long size;
+    private final String sha256;
+
+    RepoFile(String path, long size, String sha256) {
+        this.path = path;
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    /** Repository-relative path. */
+    String getPath() { return path; }
+
+    /** Size in bytes, or -1 if the API did not report it. */
+    long getSize() { return size; }
+
+    /** SHA-256 of the content (the LFS oid), or null for non-LFS files. */
+    String getSha256() { return sha256; }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,146 @@
+package com.jinfer.hub;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.jinfer.config.ModelMetadata;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of resolved model directories, stored as
+ * {@code .jinfer_resolve.json} in the cache directory: the selected weight
+ * files and the parsed {@link ModelMetadata} of each directory. An entry
+ * holds the modification times of the files it was derived from and of the
+ * directories that were scanned, so adding, removing or editing any of them
+ * invalidates it, and checking an entry takes a few {@code stat} calls instead
+ * of a directory walk and JSON parsing.
+ */
+class ResolveCache {
+
+    static final String FILE_NAME = ".jinfer_resolve.json";
+
+    private static final Gson GSON = new Gson();
+
+    /** Marks a file that did not exist when the entry was made. */
+    private static final long MISSING = -1;
+
+    private Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Load the cache, or an empty one if it does not exist or cannot be read.
+     */
+    static ResolveCache load(Path cacheDir) {
+        Path file = cacheDir.resolve(FILE_NAME);
+        if (Files.exists(file)) {
+            try {
+                ResolveCache cache = GSON.fromJson(Files.readString(file), ResolveCache.class);
+                if (cache != null && cache.entries != null) {
+                    return cache;
+                }
+            } catch (IOException | JsonParseException e) {
+                // Rebuilt as directories are resolved again
+            }
+        }
+        return new ResolveCache();
+    }
+
+    /**
+     * Write the cache atomically, dropping entries of directories that no longer exist.
+     */
+    void save(Path cacheDir) throws IOException {
+        entries.keySet().removeIf(dir -> !Files.isDirectory(Path.of(dir)));
+        Path file = cacheDir.resolve(FILE_NAME);
+        Path temp = Files.createTempFile(cacheDir, FILE_NAME, ".tmp");
+        try {
+            Files.writeString(temp, GSON.toJson(this));
+            PartialDownload.moveAtomically(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * The entry of a directory, if it was resolved with the same options and
+     * nothing it depends on has changed since.
+     */
+    Entry get(Path modelDir, String options) {
+        Entry entry = entries.get(key(modelDir));
+        if (entry == null || !options.equals(entry.options) || entry.stamps == null) {
+            return null;
+        }
+        return entry.stamps.equals(stamp(modelDir, entry.stamps.keySet())) ? entry : null;
+    }
+
+    void put(Path modelDir, Entry entry) {
+        entries.put(key(modelDir), entry);
+    }
+
+    private static String key(Path modelDir) {
+        return modelDir.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Modification times of paths relative to a directory; the empty path
+     * stands for the directory itself.
+     */
+    static Map<String, Long> stamp(Path modelDir, Collection<String> paths) {
+        Map<String, Long> stamps = new LinkedHashMap<>();
+        for (String path : paths) {
+            Path file = path.isEmpty() ? modelDir : modelDir.resolve(path);
+            long modified;
+            try {
+                modified = Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS);
+            } catch (IOException e) {
+                modified = MISSING;
+            }
+            stamps.put(path, modified);
+        }
+        return stamps;
+    }
+
+    /**
+     * How a model directory resolved.
+     */
+    static class Entry {
+        private String options;
+        private Map<String, Long> stamps;
+        private String modelFile;
+        private String modelFormat;
+        private List<String> weightFiles = new ArrayList<>();
+        private String tokenizerFile;
+        private ModelMetadata metadata;
+
+        Entry() {}
+
+        /**
+         * @param options   Format and variant the weights were selected for
+         * @param stamps    Modification times taken before anything was read
+         * @param modelFile Model file relative to the directory, or null if it has none
+         */
+        Entry(String options, Map<String, Long> stamps, String modelFile, String modelFormat,
+              List<String> weightFiles, String tokenizerFile, ModelMetadata metadata) {
+            this.options = options;
+            this.stamps = stamps;
+            this.modelFile = modelFile;
+            this.modelFormat = modelFormat;
+            this.weightFiles = new ArrayList<>(weightFiles);
+            this.tokenizerFile = tokenizerFile;
+            this.metadata = metadata;
+        }
+
+        String getModelFile() { return modelFile; }
+        String getModelFormat() { return modelFormat; }
+        List<String> getWeightFiles() { return weightFiles; }
+        String getTokenizerFile() { return tokenizerFile; }
+        ModelMetadata getMetadata() { return metadata; }
+    }
+}
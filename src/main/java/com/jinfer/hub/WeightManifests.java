@@ -0,0 +1,132 @@
+package com.jinfer.hub;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the files a model's weights are split across: the shards listed in a
+ * {@code *.safetensors.index.json} weight map, and the external data files an
+ * ONNX graph references for its initializers.
+ */
+final class WeightManifests {
+
+    /**
+     * Graphs above this size keep their initializers inline (external data is
+     * only needed past the 2 GB protobuf limit), so they are not scanned.
+     */
+    static final long MAX_SCANNED_GRAPH_SIZE = 256L * 1024 * 1024;
+
+    /** Serialized {@code StringStringEntryProto}: field 1 "location", then field 2 (the value). */
+    private static final byte[] LOCATION_ENTRY = locationEntry();
+
+    private static final int MAX_LOCATION_LENGTH = 4096;
+
+    private WeightManifests() {}
+
+    private static byte[] locationEntry() {
+        byte[] key = "location".getBytes(StandardCharsets.US_ASCII);
+        byte[] entry = new byte[key.length + 3];
+        entry[0] = 0x0A;
+        entry[1] = (byte) key.length;
+        System.arraycopy(key, 0, entry, 2, key.length);
+        entry[entry.length - 1] = 0x12;
+        return entry;
+    }
+
+    /**
+     * Shard files referenced by a sharded checkpoint index, as repository paths.
+     *
+     * @param indexPath Repository path of the index; shards are relative to its directory
+     * @param json Content of the index
+     */
+    static Set<String> parseWeightMap(String indexPath, String json) throws IOException {
+        Set<String> shards = new LinkedHashSet<>();
+        try {
+            JsonObject index = JsonParser.parseString(json).getAsJsonObject();
+            if (!index.has("weight_map") || !index.get("weight_map").isJsonObject()) {
+                throw new IOException("No weight_map in " + indexPath);
+            }
+            for (Map.Entry<String, JsonElement> entry : index.getAsJsonObject("weight_map").entrySet()) {
+                shards.add(resolveSibling(indexPath, entry.getValue().getAsString()));
+            }
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            throw new IOException("Invalid weight index " + indexPath + ": " + e.getMessage(), e);
+        }
+        return shards;
+    }
+
+    /**
+     * External data files referenced by an ONNX graph, relative to the graph's
+     * directory. The protobuf is not decoded; the serialized
+     * {@code location} entries of tensor external data are searched for instead.
+     */
+    static Set<String> onnxExternalData(Path graph) throws IOException {
+        Set<String> locations = new LinkedHashSet<>();
+        long size = Files.size(graph);
+        if (size > MAX_SCANNED_GRAPH_SIZE) {
+            return locations;
+        }
+        try (FileChannel channel = FileChannel.open(graph, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int limit = (int) size - LOCATION_ENTRY.length;
+            for (int i = 0; i < limit; i++) {
+                if (!matchesAt(data, i)) {
+                    continue;
+                }
+                int position = i + LOCATION_ENTRY.length;
+                // Varint length of the value
+                int length = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    if (position >= size || shift > 28) {
+                        length = -1;
+                        break;
+                    }
+                    b = data.get(position++);
+                    length |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                if (length <= 0 || length > MAX_LOCATION_LENGTH || position + length > size) {
+                    continue;
+                }
+                byte[] value = new byte[length];
+                data.get(position, value);
+                locations.add(new String(value, StandardCharsets.UTF_8));
+                i = position + length - 1;
+            }
+        }
+        return locations;
+    }
+
+    private static boolean matchesAt(MappedByteBuffer data, int offset) {
+        for (int j = 0; j < LOCATION_ENTRY.length; j++) {
+            if (data.get(offset + j) != LOCATION_ENTRY[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolve a file name relative to the directory of a repository path.
+     */
+    static String resolveSibling(String path, String name) {
+        int slash = path.lastIndexOf('/');
+        String resolved = slash >= 0 ? path.substring(0, slash + 1) + name : name;
+        return resolved.startsWith("./") ? resolved.substring(2) : resolved;
+    }
+}
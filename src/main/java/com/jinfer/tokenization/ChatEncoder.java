@@ -0,0 +1,190 @@
+package com.jinfer.tokenization;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes chat conversations by splicing cached token IDs of the static
+ * template fragments with freshly encoded message content.
+ *
+ * Splicing is only exact where tokenization does not depend on the text
+ * across the boundary, which fails for fragments ending in a space such as
+ * {@code "[INST] "} or {@code "User: "}: byte-level BPE makes the space part of
+ * the next word's token and SentencePiece adds its own dummy-prefix
+ * space to the content. So the first time a fragment is used, the join with
+ * message content is checked against tokenizing the joined text for a few
+ * probe words, and the first way that reproduces it is kept:
+ * splicing the IDs, moving the trailing space into the content, dropping the
+ * space, or, if none match, tokenizing fragment and content together.
+ */
+public class ChatEncoder {
+
+    /** Sample content the joins are checked with. */
+    private static final String[] PROBES = {"hello", "Hello, world 42", "x"};
+
+    private final ChatTemplate template;
+    private final Tokenizer tokenizer;
+    private final Map<String, long[]> fragmentCache = new ConcurrentHashMap<>();
+    private final Map<String, Join> prefixJoins = new ConcurrentHashMap<>();
+    private final Map<String, Join> suffixJoins = new ConcurrentHashMap<>();
+
+    public ChatEncoder(ChatTemplate template, Tokenizer tokenizer) {
+        this.template = template;
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * Encode a conversation to token IDs.
+     *
+     * @param messages Conversation messages in order
+     * @param addGenerationPrompt Append the assistant turn header
+     * @return Token IDs of the rendered conversation
+     */
+    public long[] encode(List<ChatMessage> messages, boolean addGenerationPrompt) {
+        IdBuffer ids = new IdBuffer();
+
+        ids.append(fragment(template.getBos()));
+        for (ChatMessage message : template.prepare(messages)) {
+            String prefix = template.prefix(message.getRole());
+            String suffix = template.suffix(message.getRole());
+            Join before = prefixJoins.computeIfAbsent(prefix, this::prefixJoin);
+            Join after = suffixJoins.computeIfAbsent(suffix, this::suffixJoin);
+
+            String text = before.text + message.getContent();
+            if (after.ids == null) {
+                text += suffix;
+            }
+            ids.append(before.ids);
+            ids.append(tokenizer.encode(text, false));
+            if (after.ids != null) {
+                ids.append(after.ids);
+            }
+        }
+        if (addGenerationPrompt) {
+            ids.append(fragment(template.getGenerationPrompt()));
+        }
+
+        return ids.toArray();
+    }
+
+    /**
+     * How content joins the fragment before it.
+     */
+    private Join prefixJoin(String prefix) {
+        if (prefix.isEmpty() || joins(fragment(prefix), "", prefix, "")) {
+            return new Join(fragment(prefix), "");
+        }
+        if (prefix.endsWith(" ")) {
+            String trimmed = prefix.substring(0, prefix.length() - 1);
+            if (joins(fragment(trimmed), " ", prefix, "")) {
+                return new Join(fragment(trimmed), " ");
+            }
+            if (joins(fragment(trimmed), "", prefix, "")) {
+                return new Join(fragment(trimmed), "");
+            }
+        }
+        return new Join(new long[0], prefix);
+    }
+
+    /**
+     * How the fragment after content joins it. Null IDs mean the fragment
+     * is tokenized together with the content.
+     */
+    private Join suffixJoin(String suffix) {
+        if (suffix.isEmpty() || joins(new long[0], "", "", suffix)) {
+            return new Join(fragment(suffix), "");
+        }
+        // IDs the suffix gets after content, e.g. without a dummy-prefix space
+        long[] probe = tokenizer.encode(PROBES[0], false);
+        long[] joined = tokenizer.encode(PROBES[0] + suffix, false);
+        if (startsWith(joined, probe)) {
+            long[] contextual = Arrays.copyOfRange(joined, probe.length, joined.length);
+            for (String content : PROBES) {
+                if (!Arrays.equals(concat(tokenizer.encode(content, false), contextual),
+                        tokenizer.encode(content + suffix, false))) {
+                    return new Join(null, "");
+                }
+            }
+            return new Join(contextual, "");
+        }
+        return new Join(null, "");
+    }
+
+    /**
+     * Whether splicing {@code head} with the encoded {@code lead + content} and
+     * the suffix fragment reproduces tokenizing {@code prefix + content + suffix}.
+     */
+    private boolean joins(long[] head, String lead, String prefix, String suffix) {
+        for (String content : PROBES) {
+            long[] spliced = concat(concat(head, tokenizer.encode(lead + content, false)), fragment(suffix));
+            if (!Arrays.equals(spliced, tokenizer.encode(prefix + content + suffix, false))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] fragment(String text) {
+        if (text.isEmpty()) {
+            return new long[0];
+        }
+        return fragmentCache.computeIfAbsent(text, key -> tokenizer.encode(key, false));
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static boolean startsWith(long[] ids, long[] prefix) {
+        return ids.length >= prefix.length
+                && Arrays.equals(ids, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    /**
+     * Number of distinct fragments tokenized so far.
+     */
+    public int getCachedFragmentCount() {
+        return fragmentCache.size();
+    }
+
+    public ChatTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Cached IDs for a fragment and the text to tokenize with the content in its place.
+     */
+    private static final class Join {
+        final long[] ids;
+        final String text;
+
+        Join(long[] ids, String text) {
+            this.ids = ids;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Growable primitive buffer to avoid boxing while splicing.
+     */
+    private static class IdBuffer {
+        private long[] data = new long[256];
+        private int size = 0;
+
+        void append(long[] ids) {
+            if (size + ids.length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + ids.length));
+            }
+            System.arraycopy(ids, 0, data, size, ids.length);
+            size += ids.length;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
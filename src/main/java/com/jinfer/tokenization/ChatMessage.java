@@ -0,0 +1,37 @@
+package com.jinfer.tokenization;
+
+/**
+ * A single message in a chat conversation.
+ */
+public class ChatMessage {
+    private final String role;
+    private final String content;
+
+    public ChatMessage(String role, String content) {
+        if (role == null || role.isEmpty()) {
+            throw new IllegalArgumentException("Role cannot be null or empty");
+        }
+        this.role = role;
+        this.content = content != null ? content : "";
+    }
+
+    public static ChatMessage system(String content) {
+        return new ChatMessage("system", content);
+    }
+
+    public static ChatMessage user(String content) {
+        return new ChatMessage("user", content);
+    }
+
+    public static ChatMessage assistant(String content) {
+        return new ChatMessage("assistant", content);
+    }
+
+    public String getRole() { return role; }
+    public String getContent() { return content; }
+
+    @Override
+    public String toString() {
+        return "ChatMessage{role='" + role + "', content='" + content + "'}";
+    }
+}
@@ -0,0 +1,289 @@
+package com.jinfer.tokenization;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chat prompt format made of static fragments around variable message content.
+ *
+ * The Jinja {@code chat_template} from {@code tokenizer_config.json} is not
+ * executed; instead the template family is detected from its markers and
+ * mapped to an equivalent fragment layout. Keeping the fragments static lets
+ * {@link ChatEncoder} tokenize them once and reuse the IDs.
+ */
+public class ChatTemplate {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatTemplate.class);
+
+    private final String name;
+    private final String bos;
+    private final Map<String, String> prefixes;
+    private final Map<String, String> suffixes;
+    private final String defaultPrefix;
+    private final String defaultSuffix;
+    private final String generationPrompt;
+    /** Format of the first user message with the system prompt folded in, or null to keep it separate. */
+    private final String systemFormat;
+
+    private ChatTemplate(String name, String bos, Map<String, String> prefixes, Map<String, String> suffixes,
+                         String defaultPrefix, String defaultSuffix, String generationPrompt,
+                         String systemFormat) {
+        this.name = name;
+        this.bos = bos;
+        this.prefixes = prefixes;
+        this.suffixes = suffixes;
+        this.defaultPrefix = defaultPrefix;
+        this.defaultSuffix = defaultSuffix;
+        this.generationPrompt = generationPrompt;
+        this.systemFormat = systemFormat;
+    }
+
+    /**
+     * ChatML: {@code <|im_start|>role\ncontent<|im_end|>\n} (Qwen, Phi-3.5, SmolLM, ...).
+     */
+    public static ChatTemplate chatml() {
+        return new ChatTemplate("chatml", "", new HashMap<>(), new HashMap<>(),
+                "<|im_start|>%s\n", "<|im_end|>\n", "<|im_start|>assistant\n", null);
+    }
+
+    /**
+     * Llama 3 header format.
+     */
+    public static ChatTemplate llama3() {
+        return new ChatTemplate("llama3", "<|begin_of_text|>", new HashMap<>(), new HashMap<>(),
+                "<|start_header_id|>%s<|end_header_id|>\n\n", "<|eot_id|>",
+                "<|start_header_id|>assistant<|end_header_id|>\n\n", null);
+    }
+
+    /**
+     * Zephyr / TinyLlama-chat format: {@code <|role|>\ncontent</s>\n}.
+     */
+    public static ChatTemplate zephyr(String eos) {
+        return new ChatTemplate("zephyr", "", new HashMap<>(), new HashMap<>(),
+                "<|%s|>\n", eos + "\n", "<|assistant|>\n", null);
+    }
+
+    /**
+     * Phi-3 format: {@code <|role|>\ncontent<|end|>\n}.
+     */
+    public static ChatTemplate phi3() {
+        return new ChatTemplate("phi3", "", new HashMap<>(), new HashMap<>(),
+                "<|%s|>\n", "<|end|>\n", "<|assistant|>\n", null);
+    }
+
+    /**
+     * Gemma turn format. The system prompt is folded into the first user turn.
+     */
+    public static ChatTemplate gemma() {
+        Map<String, String> prefixes = new HashMap<>();
+        prefixes.put("assistant", "<start_of_turn>model\n");
+        return new ChatTemplate("gemma", "<bos>", prefixes, new HashMap<>(),
+                "<start_of_turn>%s\n", "<end_of_turn>\n", "<start_of_turn>model\n", "%s\n\n%s");
+    }
+
+    /**
+     * Mistral instruction format. The system prompt is folded into the first user turn.
+     */
+    public static ChatTemplate inst(String bos, String eos) {
+        return inst("inst", bos, eos, "%s\n\n%s");
+    }
+
+    /**
+     * Llama 2 instruction format, with the system prompt in a {@code <<SYS>>}
+     * block at the start of the first user turn.
+     */
+    public static ChatTemplate llama2(String bos, String eos) {
+        return inst("llama2", bos, eos, "<<SYS>>\n%s\n<</SYS>>\n\n%s");
+    }
+
+    private static ChatTemplate inst(String name, String bos, String eos, String systemFormat) {
+        Map<String, String> prefixes = new HashMap<>();
+        Map<String, String> suffixes = new HashMap<>();
+        prefixes.put("user", "[INST] ");
+        suffixes.put("user", " [/INST]");
+        prefixes.put("assistant", "");
+        suffixes.put("assistant", eos);
+        return new ChatTemplate(name, bos, prefixes, suffixes, "", "", "", systemFormat);
+    }
+
+    /**
+     * Plain-text fallback for models without a chat template.
+     */
+    public static ChatTemplate plain() {
+        Map<String, String> prefixes = new HashMap<>();
+        prefixes.put("system", "System: ");
+        prefixes.put("user", "User: ");
+        prefixes.put("assistant", "Assistant: ");
+        return new ChatTemplate("plain", "", prefixes, new HashMap<>(),
+                "%s: ", "\n", "Assistant:", null);
+    }
+
+    /**
+     * Load the chat template for a model from its {@code tokenizer_config.json}.
+     * Falls back to {@link #plain()} if the file or template is missing.
+     */
+    public static ChatTemplate load(Path tokenizerConfig) {
+        if (tokenizerConfig == null || !Files.exists(tokenizerConfig)) {
+            return fallback("no tokenizer_config.json");
+        }
+
+        try (Reader reader = Files.newBufferedReader(tokenizerConfig)) {
+            JsonObject config = new Gson().fromJson(reader, JsonObject.class);
+            if (config == null) {
+                return fallback("empty " + tokenizerConfig);
+            }
+            ChatTemplate template = detect(
+                    readTemplate(config.get("chat_template")),
+                    readToken(config.get("bos_token"), "<s>"),
+                    readToken(config.get("eos_token"), "</s>"));
+            logger.info("Using '{}' chat template from: {}", template.getName(), tokenizerConfig);
+            return template;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read chat template from {}: {}", tokenizerConfig, e.getMessage());
+            return fallback("unreadable " + tokenizerConfig);
+        }
+    }
+
+    /**
+     * Map a Jinja chat template to the matching fragment layout by its markers.
+     */
+    public static ChatTemplate detect(String chatTemplate, String bos, String eos) {
+        if (chatTemplate == null || chatTemplate.isEmpty()) {
+            return fallback("the model has no chat template");
+        }
+        if (chatTemplate.contains("<|im_start|>")) {
+            return chatml();
+        }
+        if (chatTemplate.contains("<|start_header_id|>")) {
+            return llama3();
+        }
+        if (chatTemplate.contains("<start_of_turn>")) {
+            return gemma();
+        }
+        if (chatTemplate.contains("[INST]")) {
+            return chatTemplate.contains("<<SYS>>") ? llama2(bos, eos) : inst(bos, eos);
+        }
+        if (chatTemplate.contains("<|user|>") || chatTemplate.contains("<|assistant|>")) {
+            // Phi-3 closes turns with <|end|>, Zephyr with the EOS token
+            return chatTemplate.contains("<|end|>") ? phi3() : zephyr(eos);
+        }
+        return fallback("the chat template is not a known layout");
+    }
+
+    /**
+     * The plain layout, with a warning since the model was trained on another prompt format or none.
+     */
+    private static ChatTemplate fallback(String reason) {
+        logger.warn("Using plain 'Role: content' chat prompts: {}", reason);
+        return plain();
+    }
+
+    private static String readTemplate(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        if (element.isJsonPrimitive()) {
+            return element.getAsString();
+        }
+        if (element.isJsonArray()) {
+            // Named templates: [{"name": "default", "template": "..."}, ...]
+            JsonArray templates = element.getAsJsonArray();
+            for (JsonElement entry : templates) {
+                JsonObject named = entry.getAsJsonObject();
+                if (named.has("name") && "default".equals(named.get("name").getAsString())) {
+                    return named.get("template").getAsString();
+                }
+            }
+            if (templates.size() > 0) {
+                return templates.get(0).getAsJsonObject().get("template").getAsString();
+            }
+        }
+        return null;
+    }
+
+    private static String readToken(JsonElement element, String defaultValue) {
+        if (element == null || element.isJsonNull()) {
+            return defaultValue;
+        }
+        if (element.isJsonObject()) {
+            JsonObject token = element.getAsJsonObject();
+            return token.has("content") ? token.get("content").getAsString() : defaultValue;
+        }
+        return element.getAsString();
+    }
+
+    /**
+     * Apply template-specific message rewrites, such as folding the system
+     * prompt into the first user message.
+     */
+    public List<ChatMessage> prepare(List<ChatMessage> messages) {
+        if (systemFormat == null || messages.isEmpty() || !"system".equals(messages.get(0).getRole())) {
+            return messages;
+        }
+
+        List<ChatMessage> merged = new ArrayList<>(messages.size());
+        String system = messages.get(0).getContent();
+        if (messages.size() > 1 && "user".equals(messages.get(1).getRole())) {
+            merged.add(ChatMessage.user(String.format(systemFormat, system, messages.get(1).getContent())));
+            merged.addAll(messages.subList(2, messages.size()));
+        } else {
+            merged.add(ChatMessage.user(String.format(systemFormat, system, "").stripTrailing()));
+            merged.addAll(messages.subList(1, messages.size()));
+        }
+        return merged;
+    }
+
+    /**
+     * Render messages to a prompt string.
+     */
+    public String render(List<ChatMessage> messages, boolean addGenerationPrompt) {
+        StringBuilder sb = new StringBuilder(bos);
+        for (ChatMessage message : prepare(messages)) {
+            sb.append(prefix(message.getRole()))
+              .append(message.getContent())
+              .append(suffix(message.getRole()));
+        }
+        if (addGenerationPrompt) {
+            sb.append(generationPrompt);
+        }
+        return sb.toString();
+    }
+
+    public String getName() { return name; }
+    public String getBos() { return bos; }
+    public String getGenerationPrompt() { return generationPrompt; }
+
+    /**
+     * Static text emitted before a message with the given role.
+     */
+    public String prefix(String role) {
+        String prefix = prefixes.get(role);
+        return prefix != null ? prefix : String.format(defaultPrefix, role);
+    }
+
+    /**
+     * Static text emitted after a message with the given role.
+     */
+    public String suffix(String role) {
+        String suffix = suffixes.get(role);
+        return suffix != null ? suffix : defaultSuffix;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatTemplate{name='" + name + "'}";
+    }
+}
@@ -0,0 +1,355 @@
+package com.jinfer.tokenization;
+
+import com.jinfer.config.TruncationStrategy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Encodes very long inputs by splitting them into chunks at whitespace
+ * boundaries, encoding the chunks in parallel and stitching the IDs back together.
+ *
+ * With {@link TruncationStrategy#NONE} the whole text is encoded in one call,
+ * exactly as the tokenizer would. When a truncation policy is given, only the
+ * chunks needed to fill the token budget from the kept end(s) of the text are
+ * encoded; with tokenizers whose pieces can span whitespace, such as
+ * SentencePiece, the IDs at chunk boundaries may then differ from encoding
+ * the whole text.
+ * Chunks are encoded without special tokens; the tokens the tokenizer adds
+ * around a whole input (e.g. BOS, or [SEP] and EOS at the end) are kept at
+ * their ends of the result.
+ */
+public class ChunkedEncoder {
+
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+    private final Tokenizer tokenizer;
+    private final int chunkSize;
+    private final int parallelism;
+    private final Executor executor;
+
+    public ChunkedEncoder(Tokenizer tokenizer) {
+        this(tokenizer, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool());
+    }
+
+    public ChunkedEncoder(Tokenizer tokenizer, int chunkSize, int parallelism, Executor executor) {
+        if (chunkSize < 2) {
+            throw new IllegalArgumentException("Chunk size must be at least 2");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.tokenizer = tokenizer;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.executor = executor;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Encode text without truncation.
+     */
+    public long[] encode(CharSequence text) {
+        return encode(text, TruncationStrategy.NONE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Encode text and fit it into {@code maxTokens} using the given policy.
+     */
+    public long[] encode(CharSequence text, TruncationStrategy strategy, int maxTokens) {
+        if (strategy == TruncationStrategy.NONE || text.length() <= chunkSize) {
+            long[] ids = tokenizer.encode(text.toString());
+            if (strategy == TruncationStrategy.NONE || ids.length <= maxTokens) {
+                return ids;
+            }
+        }
+
+        SpecialTokens specials = specialTokens();
+        int budget = specials.budget(maxTokens);
+        int[] bounds = split(text);
+        int chunks = bounds.length - 1;
+
+        Segment head = encodeForward(text, bounds, 0, chunks, strategy.headBudget(budget));
+        Segment tail = encodeBackward(text, bounds, head.next, chunks, strategy.tailBudget(budget));
+
+        if (tail.next == head.next) {
+            // Every chunk was encoded, so truncate the stitched sequence as a whole
+            return specials.wrap(strategy.truncate(concat(head.ids, tail.ids), budget));
+        }
+        return specials.wrap(strategy.truncate(head.ids, tail.ids, budget));
+    }
+
+    /**
+     * Encode text from a reader, submitting each chunk as soon as it has been read.
+     * When only the head of the text is kept, reading stops once the chunks
+     * encoded so far fill the budget. Without truncation the text is read
+     * whole and encoded in one call.
+     */
+    public long[] encode(Reader reader, TruncationStrategy strategy, int maxTokens) throws IOException {
+        if (strategy == TruncationStrategy.NONE) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[chunkSize];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+            return tokenizer.encode(text.toString());
+        }
+
+        SpecialTokens specials = specialTokens();
+        int budget = specials.budget(maxTokens);
+        boolean headOnly = strategy.tailBudget(budget) == 0;
+
+        List<CompletableFuture<long[]>> parts = new ArrayList<>();
+        List<long[]> ids = new ArrayList<>();
+        int tokens = 0;
+        StringBuilder pending = new StringBuilder();
+        char[] buffer = new char[chunkSize];
+        int read;
+
+        while ((read = reader.read(buffer)) != -1) {
+            pending.append(buffer, 0, read);
+            while (pending.length() > chunkSize) {
+                int cut = findBoundary(pending, 0, pending.length());
+                parts.add(submit(pending.substring(0, cut)));
+                pending.delete(0, cut);
+            }
+            if (headOnly) {
+                // Count the chunks encoded so far, in order, without waiting for the rest
+                while (ids.size() < parts.size() && parts.get(ids.size()).isDone()) {
+                    long[] part = parts.get(ids.size()).join();
+                    ids.add(part);
+                    tokens += part.length;
+                }
+                if (tokens >= budget) {
+                    pending.setLength(0);
+                    break;
+                }
+            }
+        }
+        if (pending.length() > 0) {
+            parts.add(submit(pending.toString()));
+        }
+
+        for (int i = ids.size(); i < parts.size(); i++) {
+            ids.add(parts.get(i).join());
+        }
+        return specials.wrap(strategy.truncate(concat(ids), budget));
+    }
+
+    /**
+     * Encode a UTF-8 text file through a memory-mapped view of its contents.
+     */
+    public long[] encode(Path file, TruncationStrategy strategy, int maxTokens) throws IOException {
+        CharBuffer text;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            text = StandardCharsets.UTF_8.newDecoder().decode(mapped);
+        }
+        return encode(text, strategy, maxTokens);
+    }
+
+    private Segment encodeForward(CharSequence text, int[] bounds, int from, int to, int budget) {
+        List<long[]> parts = new ArrayList<>();
+        int tokens = 0;
+        int next = from;
+
+        while (next < to && tokens < budget) {
+            int end = Math.min(to, next + parallelism);
+            for (CompletableFuture<long[]> part : submitRange(text, bounds, next, end)) {
+                long[] ids = part.join();
+                parts.add(ids);
+                tokens += ids.length;
+            }
+            next = end;
+        }
+
+        return new Segment(concat(parts), next);
+    }
+
+    private Segment encodeBackward(CharSequence text, int[] bounds, int from, int to, int budget) {
+        List<long[]> parts = new ArrayList<>();
+        int tokens = 0;
+        int next = to;
+
+        while (next > from && tokens < budget) {
+            int start = Math.max(from, next - parallelism);
+            List<CompletableFuture<long[]>> wave = submitRange(text, bounds, start, next);
+            for (int i = 0; i < wave.size(); i++) {
+                long[] ids = wave.get(i).join();
+                parts.add(i, ids);
+                tokens += ids.length;
+            }
+            next = start;
+        }
+
+        return new Segment(concat(parts), next);
+    }
+
+    private List<CompletableFuture<long[]>> submitRange(CharSequence text, int[] bounds, int from, int to) {
+        List<CompletableFuture<long[]>> wave = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            wave.add(submit(text.subSequence(bounds[i], bounds[i + 1]).toString()));
+        }
+        return wave;
+    }
+
+    /**
+     * Special tokens the tokenizer adds before and after an input, found by
+     * encoding a sample with and without them.
+     */
+    private SpecialTokens specialTokens() {
+        long[] with = tokenizer.encode("x", true);
+        long[] without = tokenizer.encode("x", false);
+        for (int start = 0; start + without.length <= with.length; start++) {
+            int end = start + without.length;
+            if (Arrays.equals(with, start, end, without, 0, without.length)) {
+                return new SpecialTokens(Arrays.copyOfRange(with, 0, start),
+                        Arrays.copyOfRange(with, end, with.length));
+            }
+        }
+        return new SpecialTokens(new long[0], new long[0]);
+    }
+
+    private CompletableFuture<long[]> submit(String chunk) {
+        return CompletableFuture.supplyAsync(() -> tokenizer.encode(chunk, false), executor);
+    }
+
+    /**
+     * Compute chunk start offsets, terminated by the text length.
+     */
+    int[] split(CharSequence text) {
+        List<Integer> offsets = new ArrayList<>();
+        int start = 0;
+        int length = text.length();
+
+        while (start < length) {
+            offsets.add(start);
+            start = findBoundary(text, start, length);
+        }
+        offsets.add(length);
+
+        return offsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Find the end of the chunk starting at {@code start}. Prefers a line break,
+     * then any whitespace, in the second half of the chunk. The cut is placed
+     * before the whole whitespace run so the next chunk starts with it intact.
+     */
+    private int findBoundary(CharSequence text, int start, int end) {
+        if (end - start <= chunkSize) {
+            return end;
+        }
+
+        int target = start + chunkSize;
+        int floor = start + chunkSize / 2;
+
+        int cut = -1;
+        for (int i = target; i > floor; i--) {
+            if (text.charAt(i) == '\n') {
+                cut = i;
+                break;
+            }
+        }
+        if (cut < 0) {
+            for (int i = target; i > floor; i--) {
+                if (Character.isWhitespace(text.charAt(i))) {
+                    cut = i;
+                    break;
+                }
+            }
+        }
+
+        if (cut < 0) {
+            // No whitespace nearby: hard cut, but never inside a surrogate pair
+            cut = target;
+            if (Character.isHighSurrogate(text.charAt(cut - 1))) {
+                cut--;
+            }
+            return cut;
+        }
+
+        while (cut - 1 > start && Character.isWhitespace(text.charAt(cut - 1))) {
+            cut--;
+        }
+        return cut;
+    }
+
+    private static long[] concat(List<long[]> parts) {
+        int total = 0;
+        for (long[] part : parts) {
+            total += part.length;
+        }
+        long[] result = new long[total];
+        int offset = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    private static long[] concat(long[] first, long[] second) {
+        if (first.length == 0) {
+            return second;
+        }
+        if (second.length == 0) {
+            return first;
+        }
+        long[] result = new long[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * Special tokens placed before and after the encoded text.
+     */
+    private static class SpecialTokens {
+        final long[] prefix;
+        final long[] suffix;
+
+        SpecialTokens(long[] prefix, long[] suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        /** Tokens left for the text within {@code maxTokens}. */
+        int budget(int maxTokens) {
+            return Math.max(0, maxTokens - prefix.length - suffix.length);
+        }
+
+        long[] wrap(long[] ids) {
+            return concat(concat(prefix, ids), suffix);
+        }
+    }
+
+    /**
+     * Encoded IDs of a contiguous run of chunks plus the index where the run stopped.
+     */
+    private static class Segment {
+        final long[] ids;
+        final int next;
+
+        Segment(long[] ids, int next) {
+            this.ids = ids;
+            this.next = next;
+        }
+    }
+}
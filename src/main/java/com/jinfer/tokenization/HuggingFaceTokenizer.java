@@ -47,6 +47,12 @@ public class HuggingFaceTokenizer implements Tokenizer, AutoCloseable {
         return encoding.getIds();
     }
 
+    @Override
+    public long[] encode(String text, boolean addSpecialTokens) {
+        Encoding encoding = tokenizer.encode(text, addSpecialTokens, false);
+        return encoding.getIds();
+    }
+
     @Override
     public EncodingResult encodeWithAttention(String text) {
         Encoding encoding = tokenizer.encode(text);
@@ -5,6 +5,7 @@ import java.util.*;
 /**
  * Simple word-based tokenizer for testing and fallback.
  * Not suitable for production LLM use.
+ * Methods are synchronized since encoding grows the vocabulary.
  */
 public class SimpleTokenizer implements Tokenizer {
     
@@ -36,7 +37,7 @@ public class SimpleTokenizer implements Tokenizer {
     }
 
     @Override
-    public long[] encode(String text) {
+    public synchronized long[] encode(String text) {
         if (text == null || text.trim().isEmpty()) {
             return new long[0];
         }
@@ -60,7 +61,7 @@ public class SimpleTokenizer implements Tokenizer {
     }
 
     @Override
-    public EncodingResult encodeWithAttention(String text) {
+    public synchronized EncodingResult encodeWithAttention(String text) {
         long[] ids = encode(text);
         long[] attention = new long[ids.length];
         Arrays.fill(attention, 1L);
@@ -68,7 +69,7 @@ public class SimpleTokenizer implements Tokenizer {
     }
 
     @Override
-    public String decode(long[] tokenIds) {
+    public synchronized String decode(long[] tokenIds) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < tokenIds.length; i++) {
             if (i > 0) sb.append(" ");
@@ -78,12 +79,12 @@ public class SimpleTokenizer implements Tokenizer {
     }
 
     @Override
-    public String decode(long tokenId) {
+    public synchronized String decode(long tokenId) {
         return reverseVocab.getOrDefault(tokenId, "<unk>");
     }
 
     @Override
-    public int getVocabSize() {
+    public synchronized int getVocabSize() {
         return vocab.size();
     }
 
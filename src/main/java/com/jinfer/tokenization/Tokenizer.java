@@ -10,6 +10,14 @@ public interface Tokenizer {
      */
     long[] encode(String text);
     
+    /**
+     * Encode text to token IDs, optionally without special tokens.
+     * Used when a long input is encoded in pieces and stitched together.
+     */
+    default long[] encode(String text, boolean addSpecialTokens) {
+        return encode(text);
+    }
+    
     /**
      * Encode text with attention mask.
      */
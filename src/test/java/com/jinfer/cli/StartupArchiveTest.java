@@ -0,0 +1,51 @@
+package com.jinfer.cli;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StartupArchiveTest {
+
+    private final Path jar = Path.of("/opt/jinfer/lib/jinfer.jar");
+
+    @Test
+    public void testDefaultArchiveIsNextToJar() {
+        assertEquals(Path.of("/opt/jinfer/lib/jinfer.jsa"), StartupArchive.defaultArchive(jar));
+    }
+
+    @Test
+    public void testDumpAndRunCommands() {
+        Path archive = Path.of("/tmp/app.jsa");
+        StartupArchive startupArchive = new StartupArchive(jar, archive, List.of("-Xmx1g"));
+        List<String> args = List.of("warmup", "--training");
+
+        List<String> dump = startupArchive.dumpCommand(args);
+        assertEquals(List.of("-Xmx1g", "-XX:ArchiveClassesAtExit=" + archive, "-jar", jar.toString(),
+                "warmup", "--training"), dump.subList(1, dump.size()));
+        assertTrue(dump.get(0).endsWith("java"));
+
+        assertEquals(List.of("-Xmx1g", "-XX:SharedArchiveFile=" + archive, "-jar", jar.toString(),
+                "warmup", "--training"), startupArchive.command(true, args).subList(1, 7));
+        assertFalse(String.join(" ", startupArchive.command(false, args)).contains("-XX:"));
+    }
+
+    @Test
+    public void testInheritedOptionsDropArchiveOptions() {
+        for (String option : StartupArchive.inheritedJvmOptions()) {
+            assertFalse(option.startsWith("-XX:SharedArchiveFile"));
+            assertFalse(option.startsWith("-Xshare"));
+        }
+    }
+
+    @Test
+    public void testOnlyRegisteredCommandIsCreated() {
+        // Every name in the usage help has a command behind it
+        for (String name : JInferCLI.COMMANDS) {
+            assertNotNull(JInferCLI.commandLine(name));
+        }
+        assertNotNull(JInferCLI.commandLine("--help"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.jinfer.config;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class ModelMetadataTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadsAllConfigFiles() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        Files.writeString(dir.resolve("config.json"), "{\"architectures\": [\"GPT2LMHeadModel\"], " +
+                "\"model_type\": \"gpt2\", \"n_positions\": 1024, \"vocab_size\": 50257, " +
+                "\"bos_token_id\": 50256, \"eos_token_id\": 50256}");
+        Files.writeString(dir.resolve("generation_config.json"), "{\"eos_token_id\": [7, 8], " +
+                "\"temperature\": 0.6, \"top_p\": 0.9, \"top_k\": 20, \"do_sample\": true, " +
+                "\"max_new_tokens\": 64, \"repetition_penalty\": 1.1}");
+        Files.writeString(dir.resolve("tokenizer_config.json"), "{\"pad_token\": \"<pad>\", " +
+                "\"model_max_length\": 1000000000000000019884624838656, " +
+                "\"added_tokens_decoder\": {\"3\": {\"content\": \"<pad>\"}}}");
+
+        ModelMetadata metadata = ModelMetadata.read(dir);
+
+        assertEquals("GPT2LMHeadModel", metadata.getArchitecture());
+        assertEquals("gpt2", metadata.getModelType());
+        assertEquals(1024, metadata.getContextLength());
+        assertEquals(50257, metadata.getVocabSize());
+        assertEquals(Long.valueOf(50256), metadata.getBosTokenId());
+        // The generation config wins, and the first of several EOS ids is taken
+        assertEquals(Long.valueOf(7), metadata.getEosTokenId());
+        // Resolved by content from the tokenizer config
+        assertEquals(Long.valueOf(3), metadata.getPadTokenId());
+        assertEquals(1.1f, metadata.getRepetitionPenalty(), 1e-6f);
+
+        GenerationConfig defaults = metadata.generationDefaults().build();
+        assertEquals(0.6f, defaults.getTemperature(), 1e-6f);
+        assertEquals(0.9f, defaults.getTopP(), 1e-6f);
+        assertEquals(20, defaults.getTopK());
+        assertEquals(64, defaults.getMaxNewTokens());
+        assertTrue(defaults.isDoSample());
+    }
+
+    @Test
+    public void testTokenizerMaxLengthIsFallbackContextLength() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        Files.writeString(dir.resolve("tokenizer_config.json"), "{\"model_max_length\": 512}");
+
+        assertEquals(512, ModelMetadata.read(dir).getContextLength());
+    }
+
+    @Test
+    public void testMissingOrMalformedFilesLeaveFieldsUnset() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        Files.writeString(dir.resolve("config.json"), "not json");
+
+        ModelMetadata metadata = ModelMetadata.read(dir);
+
+        assertNull(metadata.getArchitecture());
+        assertEquals(0, metadata.getContextLength());
+        assertNull(metadata.getEosTokenId());
+        assertEquals(256, metadata.generationDefaults().build().getMaxNewTokens());
+    }
+}
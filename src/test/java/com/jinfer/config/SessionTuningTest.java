@@ -0,0 +1,52 @@
+package com.jinfer.config;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SessionTuningTest {
+
+    @Test
+    public void testDefaultsLeaveRuntimeDefaults() {
+        SessionTuning tuning = new SessionTuning();
+
+        assertEquals(0, tuning.effectiveIntraOpThreads());
+        assertEquals("SEQUENTIAL", tuning.getExecutionMode());
+        assertEquals("ALL_OPT", tuning.getGraphOptimizationLevel());
+        assertTrue(tuning.isCpuArena());
+        assertTrue(tuning.isAllowSpinning());
+        assertTrue(tuning.getCpuCores().isEmpty());
+    }
+
+    @Test
+    public void testParseCores() {
+        assertEquals(List.of(0, 1, 2, 3, 8), SessionTuning.parseCores("0-3, 8"));
+        assertEquals(List.of(4, 5), SessionTuning.parseCores("4,5,4"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseCoresRejectsReversedRange() {
+        SessionTuning.parseCores("3-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseCoresRejectsGarbage() {
+        SessionTuning.parseCores("all");
+    }
+
+    @Test
+    public void testCoresSetThreadCount() {
+        SessionTuning pinned = SessionTuning.builder().cpuCores(List.of(4, 5, 6, 7)).build();
+        assertEquals(4, pinned.effectiveIntraOpThreads());
+
+        pinned.setIntraOpThreads(2);
+        assertEquals(2, pinned.effectiveIntraOpThreads());
+    }
+
+    @Test
+    public void testModelConfigHasDefaultTuning() {
+        assertNotNull(new ModelConfig().getSessionTuning());
+    }
+}
@@ -0,0 +1,44 @@
+package com.jinfer.config;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TruncationStrategyTest {
+
+    private final long[] ids = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+    @Test
+    public void testNoneKeepsEverything() {
+        assertSame(ids, TruncationStrategy.NONE.truncate(ids, 4));
+    }
+
+    @Test
+    public void testFittingPromptUnchanged() {
+        assertSame(ids, TruncationStrategy.KEEP_TAIL.truncate(ids, 10));
+    }
+
+    @Test
+    public void testKeepHead() {
+        assertArrayEquals(new long[]{1, 2, 3, 4}, TruncationStrategy.KEEP_HEAD.truncate(ids, 4));
+    }
+
+    @Test
+    public void testKeepTail() {
+        assertArrayEquals(new long[]{7, 8, 9, 10}, TruncationStrategy.KEEP_TAIL.truncate(ids, 4));
+    }
+
+    @Test
+    public void testMiddleOut() {
+        assertArrayEquals(new long[]{1, 2, 9, 10}, TruncationStrategy.MIDDLE_OUT.truncate(ids, 4));
+        assertArrayEquals(new long[]{1, 2, 8, 9, 10}, TruncationStrategy.MIDDLE_OUT.truncate(ids, 5));
+    }
+
+    @Test
+    public void testSegmentTruncation() {
+        long[] head = {1, 2, 3};
+        long[] tail = {8, 9, 10};
+
+        assertArrayEquals(new long[]{1, 9, 10}, TruncationStrategy.MIDDLE_OUT.truncate(head, tail, 3));
+        assertArrayEquals(new long[]{1, 2, 3}, TruncationStrategy.KEEP_HEAD.truncate(head, new long[0], 3));
+    }
+}
@@ -0,0 +1,60 @@
+package com.jinfer.config;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TuningProfileTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        SessionTuning tuning = SessionTuning.builder()
+                .intraOpThreads(4)
+                .allowSpinning(false)
+                .cpuCores(List.of(0, 1, 2, 3))
+                .build();
+        Path file = tempFolder.getRoot().toPath().resolve("profiles/gpt2.json");
+
+        new TuningProfile("gpt2", tuning, 128, 32, 42.5, 18.0, 1L << 30).save(file);
+        TuningProfile loaded = TuningProfile.load(file);
+
+        assertEquals("gpt2", loaded.getModel());
+        assertEquals(128, loaded.getPromptTokens());
+        assertEquals(42.5, loaded.getTokensPerSecond(), 1e-9);
+        assertEquals(1L << 30, loaded.getRssBytes());
+        assertEquals(4, loaded.getSessionTuning().getIntraOpThreads());
+        assertFalse(loaded.getSessionTuning().isAllowSpinning());
+        assertEquals(List.of(0, 1, 2, 3), loaded.getSessionTuning().getCpuCores());
+    }
+
+    @Test
+    public void testModelConfigLoadsProfile() throws Exception {
+        Path file = tempFolder.newFile("profile.json").toPath();
+        Files.writeString(file, "{\"sessionTuning\": {\"intraOpThreads\": 2}}");
+        ModelConfig config = new ModelConfig();
+
+        config.loadTuningProfile(file);
+
+        assertEquals(2, config.getSessionTuning().getIntraOpThreads());
+        // Settings missing from the file keep their defaults
+        assertTrue(config.getSessionTuning().isCpuArena());
+    }
+
+    @Test(expected = IOException.class)
+    public void testProfileWithoutTuningFails() throws Exception {
+        Path file = tempFolder.newFile("empty.json").toPath();
+        Files.writeString(file, "{\"model\": \"gpt2\", \"sessionTuning\": null}");
+
+        TuningProfile.load(file);
+    }
+}
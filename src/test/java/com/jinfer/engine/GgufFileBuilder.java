@@ -0,0 +1,178 @@
+package com.jinfer.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes small GGUF v3 files for tests, with tensors in F32, Q8_0 or Q4_0.
+ */
+class GgufFileBuilder {
+
+    private static final int ALIGNMENT = 32;
+
+    private final Map<String, Object> metadata = new LinkedHashMap<>();
+    private final List<Tensor> tensors = new ArrayList<>();
+
+    /**
+     * Add a metadata value: a String, Integer (u32), Long (u64), Float,
+     * Boolean, or a List of Strings.
+     */
+    GgufFileBuilder put(String key, Object value) {
+        metadata.put(key, value);
+        return this;
+    }
+
+    /** Add an F32 tensor; the shape is in GGML order, contiguous dimension first. */
+    GgufFileBuilder addFloats(String name, float[] values, long... shape) {
+        ByteBuffer data = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : values) {
+            data.putFloat(value);
+        }
+        return add(name, GgufReader.TensorType.F32, shape, data.array());
+    }
+
+    /** Add a matrix stored by output, quantized to Q8_0. */
+    GgufFileBuilder addQ8_0(String name, float[] weight, int in, int out) {
+        ByteBuffer data = ByteBuffer.allocate(out * in / 32 * 34).order(ByteOrder.LITTLE_ENDIAN);
+        for (int start = 0; start < weight.length; start += 32) {
+            float scale = halfScale(weight, start, 127);
+            data.putShort(floatToHalf(scale));
+            for (int k = 0; k < 32; k++) {
+                data.put((byte) quantize(weight[start + k], scale, 127));
+            }
+        }
+        return add(name, GgufReader.TensorType.Q8_0, new long[]{in, out}, data.array());
+    }
+
+    /** Add a matrix stored by output, quantized to Q4_0. */
+    GgufFileBuilder addQ4_0(String name, float[] weight, int in, int out) {
+        ByteBuffer data = ByteBuffer.allocate(out * in / 32 * 18).order(ByteOrder.LITTLE_ENDIAN);
+        for (int start = 0; start < weight.length; start += 32) {
+            float scale = halfScale(weight, start, 7);
+            data.putShort(floatToHalf(scale));
+            for (int k = 0; k < 16; k++) {
+                int low = quantize(weight[start + k], scale, 7) + 8;
+                int high = quantize(weight[start + k + 16], scale, 7) + 8;
+                data.put((byte) (low | high << 4));
+            }
+        }
+        return add(name, GgufReader.TensorType.Q4_0, new long[]{in, out}, data.array());
+    }
+
+    GgufFileBuilder add(String name, GgufReader.TensorType type, long[] shape, byte[] data) {
+        tensors.add(new Tensor(name, type, shape, data));
+        return this;
+    }
+
+    Path write(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("GGUF".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(3);
+        buffer.putLong(tensors.size());
+        buffer.putLong(metadata.size());
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            putString(buffer, entry.getKey());
+            putValue(buffer, entry.getValue());
+        }
+        long offset = 0;
+        for (Tensor tensor : tensors) {
+            putString(buffer, tensor.name);
+            buffer.putInt(tensor.shape.length);
+            for (long dim : tensor.shape) {
+                buffer.putLong(dim);
+            }
+            buffer.putInt(tensor.type.getId());
+            buffer.putLong(offset);
+            offset = align(offset + tensor.data.length);
+        }
+        buffer.position((int) align(buffer.position()));
+        int dataStart = buffer.position();
+        offset = 0;
+        for (Tensor tensor : tensors) {
+            buffer.position(dataStart + (int) offset);
+            buffer.put(tensor.data);
+            offset = align(offset + tensor.data.length);
+        }
+        Files.write(file, Arrays.copyOf(buffer.array(), buffer.position()));
+        return file;
+    }
+
+    private static void putValue(ByteBuffer buffer, Object value) {
+        if (value instanceof String) {
+            buffer.putInt(8);
+            putString(buffer, (String) value);
+        } else if (value instanceof Integer) {
+            buffer.putInt(4).putInt((Integer) value);
+        } else if (value instanceof Long) {
+            buffer.putInt(10).putLong((Long) value);
+        } else if (value instanceof Float) {
+            buffer.putInt(6).putFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            buffer.putInt(7).put((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            buffer.putInt(9).putInt(8).putLong(list.size());
+            for (Object element : list) {
+                putString(buffer, (String) element);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported metadata value " + value);
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putLong(bytes.length).put(bytes);
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /** Block scale rounded to half precision, as GGUF stores it. */
+    private static float halfScale(float[] weight, int start, int maxLevel) {
+        float maxAbs = 0f;
+        for (int k = 0; k < 32; k++) {
+            maxAbs = Math.max(maxAbs, Math.abs(weight[start + k]));
+        }
+        return SafetensorsReader.halfToFloat(floatToHalf(maxAbs / maxLevel));
+    }
+
+    private static int quantize(float value, float scale, int maxLevel) {
+        return scale > 0f ? Math.max(-maxLevel, Math.min(maxLevel, Math.round(value / scale))) : 0;
+    }
+
+    /** Truncating conversion for the normal half-precision range, which is all test scales need. */
+    static short floatToHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xff) - 127 + 15;
+        if (exponent <= 0) {
+            return (short) sign;
+        }
+        return (short) (sign | exponent << 10 | (bits >>> 13) & 0x3ff);
+    }
+
+    private static final class Tensor {
+        final String name;
+        final GgufReader.TensorType type;
+        final long[] shape;
+        final byte[] data;
+
+        Tensor(String name, GgufReader.TensorType type, long[] shape, byte[] data) {
+            this.name = name;
+            this.type = type;
+            this.shape = shape;
+            this.data = data;
+        }
+    }
+}
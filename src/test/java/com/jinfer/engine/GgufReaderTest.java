@@ -0,0 +1,170 @@
+package com.jinfer.engine;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GgufReaderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path file(String name) {
+        return tempFolder.getRoot().toPath().resolve(name);
+    }
+
+    private static float[] random(int count, long seed) {
+        Random random = new Random(seed);
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+
+    @Test
+    public void testReadsMetadataAndTensorDirectory() throws IOException {
+        Path path = new GgufFileBuilder()
+                .put("general.architecture", "gpt2")
+                .put("gpt2.context_length", 1024)
+                .put("gpt2.attention.layer_norm_epsilon", 1e-5f)
+                .put("general.file_type", 7L)
+                .put("tokenizer.ggml.add_bos_token", false)
+                .put("tokenizer.ggml.tokens", Arrays.asList("a", "b", "ab"))
+                .put("tokenizer.ggml.merges", Arrays.asList("a b"))
+                .addFloats("norm.weight", new float[]{1f, 2f, 3f}, 3)
+                .addFloats("embd.weight", new float[]{1f, 2f, 3f, 4f, 5f, 6f}, 3, 2)
+                .write(file("model.gguf"));
+
+        try (GgufReader reader = GgufReader.open(path)) {
+            assertEquals(3, reader.getVersion());
+            assertEquals("gpt2", reader.getArchitecture());
+            assertEquals(1024, reader.getContextLength());
+            assertEquals(1e-5, reader.getDouble("gpt2.attention.layer_norm_epsilon", 0), 1e-9);
+            assertEquals(7L, reader.getLong("general.file_type", -1));
+            assertEquals(Boolean.FALSE, reader.getMetadata().get("tokenizer.ggml.add_bos_token"));
+            assertEquals(-1, reader.getLong("missing", -1));
+            assertEquals(Arrays.asList("a", "b", "ab"), reader.getTokens());
+            assertEquals(Arrays.asList("a b"), reader.getMerges());
+
+            assertEquals(Arrays.asList("norm.weight", "embd.weight"), Arrays.asList(
+                    reader.getTensorNames().toArray(new String[0])));
+            GgufReader.TensorInfo info = reader.getInfo("embd.weight");
+            assertEquals(GgufReader.TensorType.F32, info.getType());
+            assertArrayEquals(new long[]{3, 2}, info.getShape());
+            assertEquals(24, info.getLength());
+            assertEquals(0, info.getOffset() % 32);
+            assertArrayEquals(new float[]{1f, 2f, 3f, 4f, 5f, 6f}, reader.toFloatArray("embd.weight"), 0f);
+            assertNull(reader.getInfo("missing"));
+        }
+    }
+
+    @Test
+    public void testTensorDataIsMappedReadOnly() throws IOException {
+        Path path = new GgufFileBuilder()
+                .addFloats("w", new float[]{0.5f, -1f}, 2)
+                .write(file("model.gguf"));
+        try (GgufReader reader = GgufReader.open(path)) {
+            ByteBuffer data = reader.getTensorData("w");
+            assertTrue(data.isDirect());
+            assertTrue(data.isReadOnly());
+            assertEquals(-1f, data.getFloat(4), 0f);
+        }
+    }
+
+    @Test
+    public void testGgmlLinearComputesOnMappedQuantizedBlocks() throws IOException {
+        int in = 64;
+        int out = 5;
+        float[] weight = random(in * out, 3);
+        Path path = new GgufFileBuilder()
+                .addQ8_0("q8", weight, in, out)
+                .addQ4_0("q4", weight, in, out)
+                .addFloats("f32", weight, in, out)
+                .write(file("model.gguf"));
+
+        float[] x = random(2 * in, 4);
+        try (GgufReader reader = GgufReader.open(path); Parallel parallel = new Parallel(2)) {
+            assertEquals(out * in / 32 * 34, reader.getInfo("q8").getLength());
+            assertEquals(out * in / 32 * 18, reader.getInfo("q4").getLength());
+            float[] tolerances = {0.02f, 0.3f, 0f};
+            String[] names = {"q8", "q4", "f32"};
+            for (int t = 0; t < names.length; t++) {
+                GgufReader.TensorInfo info = reader.getInfo(names[t]);
+                GgmlLinear linear = new GgmlLinear(info.getType(), reader.getTensorData(names[t]), null, in, out);
+
+                float[] decoded = new float[in * out];
+                for (int o = 0; o < out; o++) {
+                    linear.row(o, decoded, o * in);
+                }
+                assertArrayEquals(weight, decoded, tolerances[t]);
+
+                float[] y = new float[2 * out];
+                linear.apply(x, y, 2, parallel);
+                for (int r = 0; r < 2; r++) {
+                    for (int o = 0; o < out; o++) {
+                        float expected = 0f;
+                        for (int i = 0; i < in; i++) {
+                            expected += x[r * in + i] * decoded[o * in + i];
+                        }
+                        assertEquals(expected, y[r * out + o], 1e-4f);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWritesEmbeddedBpeTokenizer() throws IOException {
+        Path path = new GgufFileBuilder()
+                .put("tokenizer.ggml.model", "gpt2")
+                .put("tokenizer.ggml.tokens", Arrays.asList("h", "i", "hi"))
+                .put("tokenizer.ggml.merges", Arrays.asList("h i"))
+                .write(file("model.gguf"));
+        Path json = file("tokenizer.json");
+        try (GgufReader reader = GgufReader.open(path)) {
+            reader.writeTokenizerJson(json);
+        }
+        JsonObject model = JsonParser.parseString(Files.readString(json)).getAsJsonObject()
+                .getAsJsonObject("model");
+        assertEquals("BPE", model.get("type").getAsString());
+        assertEquals(2, model.getAsJsonObject("vocab").get("hi").getAsInt());
+        assertEquals("h i", model.getAsJsonArray("merges").get(0).getAsString());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTokenizerRequiresBpeModel() throws IOException {
+        Path path = new GgufFileBuilder().put("tokenizer.ggml.model", "llama").write(file("model.gguf"));
+        try (GgufReader reader = GgufReader.open(path)) {
+            reader.writeTokenizerJson(file("tokenizer.json"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        Path path = file("model.gguf");
+        Files.writeString(path, "{\"not\": \"gguf\"}");
+        GgufReader.open(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTruncatedFile() throws IOException {
+        Path path = new GgufFileBuilder()
+                .addFloats("w", random(64, 1), 64)
+                .write(file("model.gguf"));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 16));
+        GgufReader.open(path);
+    }
+}
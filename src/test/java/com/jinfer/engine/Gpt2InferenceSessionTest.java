@@ -0,0 +1,468 @@
+package com.jinfer.engine;
+
+import com.jinfer.config.GenerationConfig;
+import com.jinfer.config.ModelConfig;
+import com.jinfer.config.SessionTuning;
+import com.jinfer.config.WeightQuantization;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Gpt2InferenceSessionTest {
+
+    private static final int VOCAB = 16;
+    private static final int EMBD = 8;
+    private static final int HEADS = 2;
+    private static final int LAYERS = 2;
+    private static final int POSITIONS = 12;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Map<String, float[]> weights = new LinkedHashMap<>();
+    private final Map<String, long[]> shapes = new LinkedHashMap<>();
+    private Path modelFile;
+
+    @Before
+    public void writeTinyModel() throws IOException {
+        Random random = new Random(7);
+        put("transformer.wte.weight", random, VOCAB, EMBD);
+        put("transformer.wpe.weight", random, POSITIONS, EMBD);
+        for (int i = 0; i < LAYERS; i++) {
+            String h = "transformer.h." + i + ".";
+            put(h + "ln_1.weight", random, EMBD);
+            put(h + "ln_1.bias", random, EMBD);
+            put(h + "attn.c_attn.weight", random, EMBD, 3 * EMBD);
+            put(h + "attn.c_attn.bias", random, 3 * EMBD);
+            put(h + "attn.c_proj.weight", random, EMBD, EMBD);
+            put(h + "attn.c_proj.bias", random, EMBD);
+            put(h + "ln_2.weight", random, EMBD);
+            put(h + "ln_2.bias", random, EMBD);
+            put(h + "mlp.c_fc.weight", random, EMBD, 4 * EMBD);
+            put(h + "mlp.c_fc.bias", random, 4 * EMBD);
+            put(h + "mlp.c_proj.weight", random, 4 * EMBD, EMBD);
+            put(h + "mlp.c_proj.bias", random, EMBD);
+        }
+        put("transformer.ln_f.weight", random, EMBD);
+        put("transformer.ln_f.bias", random, EMBD);
+
+        Path dir = tempFolder.getRoot().toPath();
+        Files.writeString(dir.resolve("config.json"), "{\"model_type\": \"gpt2\", \"n_embd\": " + EMBD +
+                ", \"n_head\": " + HEADS + ", \"n_layer\": " + LAYERS + ", \"n_positions\": " + POSITIONS +
+                ", \"layer_norm_epsilon\": 1e-5, \"activation_function\": \"gelu_new\"}");
+        modelFile = writeSafetensors(dir.resolve("model.safetensors"));
+    }
+
+    private void put(String name, Random random, long... shape) {
+        int count = 1;
+        for (long dim : shape) {
+            count *= dim;
+        }
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (float) random.nextGaussian() * 0.5f;
+        }
+        weights.put(name, values);
+        shapes.put(name, shape);
+    }
+
+    private Path writeSafetensors(Path file) throws IOException {
+        StringBuilder header = new StringBuilder("{");
+        long offset = 0;
+        for (Map.Entry<String, float[]> entry : weights.entrySet()) {
+            if (header.length() > 1) {
+                header.append(',');
+            }
+            long end = offset + entry.getValue().length * 4L;
+            header.append('"').append(entry.getKey()).append("\":{\"dtype\":\"F32\",\"shape\":")
+                    .append(Arrays.toString(shapes.get(entry.getKey()))).append(",\"data_offsets\":[")
+                    .append(offset).append(',').append(end).append("]}");
+            offset = end;
+        }
+        byte[] headerBytes = header.append('}').toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (8 + headerBytes.length + offset))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(headerBytes.length).put(headerBytes);
+        for (float[] values : weights.values()) {
+            for (float value : values) {
+                buffer.putFloat(value);
+            }
+        }
+        Files.write(file, buffer.array());
+        return file;
+    }
+
+    private Gpt2InferenceSession open(int threads) throws IOException {
+        return new Gpt2InferenceSession(config(modelFile, threads, WeightQuantization.NONE));
+    }
+
+    private static ModelConfig config(Path model, int threads, WeightQuantization quantization) {
+        return ModelConfig.builder()
+                .modelPath(model)
+                .modelFormat("safetensors")
+                .contextLength(POSITIONS)
+                .sessionTuning(SessionTuning.builder().intraOpThreads(threads).build())
+                .weightQuantization(quantization)
+                .build();
+    }
+
+    @Test
+    public void testMatchesReferenceImplementation() throws IOException {
+        long[] ids = {1, 5, 3, 7, 15};
+        try (Gpt2InferenceSession session = open(4)) {
+            assertEquals(VOCAB, session.getVocabSize());
+            assertEquals(POSITIONS, session.getMaxContextLength());
+            assertArrayEquals(reference(ids), session.forward(ids, ones(ids.length)), 1e-4f);
+        }
+    }
+
+    @Test
+    public void testIncrementalDecodeMatchesFullRecompute() throws IOException {
+        long[] ids = {2, 9, 4, 4, 11, 0, 6};
+        try (Gpt2InferenceSession session = open(1)) {
+            for (int length = 3; length <= ids.length; length++) {
+                long[] prefix = Arrays.copyOf(ids, length);
+                float[] logits = session.forward(prefix, ones(length));
+                assertEquals(length, session.getCachedLength());
+                assertArrayEquals(reference(prefix), logits, 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void testDivergentInputRecomputesSuffix() throws IOException {
+        try (Gpt2InferenceSession session = open(2)) {
+            session.forward(new long[]{1, 2, 3, 4}, ones(4));
+            long[] changed = {1, 2, 8};
+            assertArrayEquals(reference(changed), session.forward(changed, ones(3)), 1e-4f);
+
+            session.resetCache();
+            assertEquals(0, session.getCachedLength());
+            assertArrayEquals(reference(changed), session.forward(changed, ones(3)), 1e-4f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInputBeyondContext() throws IOException {
+        try (Gpt2InferenceSession session = open(1)) {
+            session.forward(new long[POSITIONS + 1], ones(POSITIONS + 1));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherArchitectures() throws IOException {
+        Files.writeString(tempFolder.getRoot().toPath().resolve("config.json"), "{\"model_type\": \"llama\"}");
+        open(1);
+    }
+
+    @Test
+    public void testEngineSelectsJavaBackendForSafetensors() throws Exception {
+        try (JInferEngine engine = new JInferEngine()) {
+            engine.loadModel(ModelConfig.builder()
+                    .modelPath(modelFile)
+                    .modelFormat("safetensors")
+                    .contextLength(POSITIONS)
+                    .build());
+
+            // The fallback tokenizer assigns ids from 4 on, within the tiny vocabulary
+            String output = engine.generate("hello world", GenerationConfig.builder()
+                    .maxNewTokens(3)
+                    .doSample(false)
+                    .build());
+            assertNotNull(output);
+        }
+    }
+
+    @Test
+    public void testQuantizedAtLoadTimeStaysCloseToFloat() throws IOException {
+        long[] ids = {3, 1, 4, 1, 5};
+        float[] expected = reference(ids);
+        try (Gpt2InferenceSession session = new Gpt2InferenceSession(
+                config(modelFile, 2, WeightQuantization.Q8))) {
+            assertEquals(WeightQuantization.Q8, session.getWeightQuantization());
+            assertArrayEquals(expected, session.forward(ids, ones(ids.length)), 0.05f);
+        }
+    }
+
+    @Test
+    public void testQuantizedCheckpointMatchesLoadTimeQuantization() throws IOException {
+        long[] ids = {3, 1, 4, 1, 5};
+        for (WeightQuantization type : new WeightQuantization[]{WeightQuantization.Q8, WeightQuantization.Q4}) {
+            Path outputDir = tempFolder.getRoot().toPath().resolve("out-" + type);
+            Path written = WeightQuantizer.quantize(config(modelFile, 1, WeightQuantization.NONE), type, outputDir);
+            assertTrue(Files.exists(outputDir.resolve("config.json")));
+
+            try (Gpt2InferenceSession loadTime = new Gpt2InferenceSession(config(modelFile, 1, type));
+                 Gpt2InferenceSession ahead = new Gpt2InferenceSession(
+                         config(written, 1, WeightQuantization.NONE))) {
+                assertEquals(type, ahead.getWeightQuantization());
+                assertEquals(loadTime.getWeightBytes(), ahead.getWeightBytes());
+                assertArrayEquals(loadTime.forward(ids, ones(ids.length)), ahead.forward(ids, ones(ids.length)), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testBenchmarkReportsSmallerQuantizedWeights() throws IOException {
+        WeightQuantizer.Benchmark f32 = WeightQuantizer.benchmark(
+                config(modelFile, 1, WeightQuantization.NONE), 4, 4);
+        WeightQuantizer.Benchmark q4 = WeightQuantizer.benchmark(
+                config(modelFile, 1, WeightQuantization.Q4), 4, 4);
+
+        assertEquals(WeightQuantization.NONE, f32.getQuantization());
+        assertTrue(q4.getWeightBytes() < f32.getWeightBytes());
+        assertTrue(f32.getTokensPerSecond() > 0);
+    }
+
+    @Test
+    public void testLoadsGgufMatchingReference() throws IOException {
+        Path gguf = writeGguf(tempFolder.getRoot().toPath().resolve("model-f32.gguf"), false);
+        long[] ids = {1, 5, 3, 7, 15};
+        try (Gpt2InferenceSession session = new Gpt2InferenceSession(config(gguf, 2, WeightQuantization.NONE))) {
+            assertEquals(VOCAB, session.getVocabSize());
+            assertEquals(POSITIONS, session.getMaxContextLength());
+            assertEquals(WeightQuantization.NONE, session.getWeightQuantization());
+            assertArrayEquals(reference(ids), session.forward(ids, ones(ids.length)), 1e-4f);
+        }
+    }
+
+    @Test
+    public void testComputesOnGgufQ8Blocks() throws IOException {
+        Path q8 = writeGguf(tempFolder.getRoot().toPath().resolve("model-q8_0.gguf"), true);
+        Path f32 = writeGguf(tempFolder.getRoot().toPath().resolve("model-f32.gguf"), false);
+        long[] ids = {3, 1, 4, 1, 5};
+        try (Gpt2InferenceSession session = new Gpt2InferenceSession(config(q8, 2, WeightQuantization.NONE));
+             Gpt2InferenceSession full = new Gpt2InferenceSession(config(f32, 2, WeightQuantization.NONE))) {
+            assertTrue(session.getWeightBytes() < full.getWeightBytes());
+            assertArrayEquals(reference(ids), session.forward(ids, ones(ids.length)), 0.05f);
+        }
+    }
+
+    @Test
+    public void testGgufEmbedsFromTokenEmbeddingWithUntiedOutput() throws IOException {
+        float[] output = new float[VOCAB * EMBD];
+        Random random = new Random(11);
+        for (int i = 0; i < output.length; i++) {
+            output[i] = (float) random.nextGaussian() * 0.5f;
+        }
+        Path gguf = writeGguf(tempFolder.getRoot().toPath().resolve("model-untied.gguf"), false, output);
+        long[] ids = {2, 9, 4};
+        try (Gpt2InferenceSession session = new Gpt2InferenceSession(config(gguf, 1, WeightQuantization.NONE))) {
+            assertArrayEquals(reference(ids, output), session.forward(ids, ones(ids.length)), 1e-4f);
+        }
+    }
+
+    @Test
+    public void testMalformedGgufOutputIsNamed() throws IOException {
+        Path gguf = writeGguf(tempFolder.getRoot().toPath().resolve("model-bad.gguf"), false,
+                new float[(VOCAB - 1) * EMBD]);
+        try {
+            new Gpt2InferenceSession(config(gguf, 1, WeightQuantization.NONE)).close();
+            fail("Expected a malformed output projection to fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("output.weight"));
+        }
+    }
+
+    @Test
+    public void testEngineSelectsJavaBackendForGguf() throws Exception {
+        Path gguf = writeGguf(tempFolder.getRoot().toPath().resolve("model.gguf"), false);
+        try (JInferEngine engine = new JInferEngine()) {
+            engine.loadModel(ModelConfig.builder()
+                    .modelPath(gguf)
+                    .modelFormat("gguf")
+                    .contextLength(POSITIONS)
+                    .build());
+            assertNotNull(engine.generate("hello world", GenerationConfig.builder()
+                    .maxNewTokens(3)
+                    .doSample(false)
+                    .build()));
+        }
+    }
+
+    /**
+     * The tiny model in GGUF layout: matrices stored by output, shapes in
+     * GGML order, and optionally the matrices quantized to Q8_0. The
+     * embedding is 8 wide, so only the 32-input projection is Q8_0.
+     */
+    private Path writeGguf(Path file, boolean q8) throws IOException {
+        return writeGguf(file, q8, null);
+    }
+
+    /**
+     * @param output Untied output projection by vocabulary row, or null to tie it to the embedding
+     */
+    private Path writeGguf(Path file, boolean q8, float[] output) throws IOException {
+        GgufFileBuilder builder = new GgufFileBuilder()
+                .put("general.architecture", "gpt2")
+                .put("gpt2.context_length", POSITIONS)
+                .put("gpt2.embedding_length", EMBD)
+                .put("gpt2.feed_forward_length", 4 * EMBD)
+                .put("gpt2.block_count", LAYERS)
+                .put("gpt2.attention.head_count", HEADS)
+                .put("gpt2.attention.layer_norm_epsilon", 1e-5f)
+                .addFloats("token_embd.weight", w("wte.weight"), EMBD, VOCAB)
+                .addFloats("position_embd.weight", w("wpe.weight"), EMBD, POSITIONS);
+        for (int i = 0; i < LAYERS; i++) {
+            String p = "h." + i + ".";
+            String blk = "blk." + i + ".";
+            builder.addFloats(blk + "attn_norm.weight", w(p + "ln_1.weight"), EMBD)
+                    .addFloats(blk + "attn_norm.bias", w(p + "ln_1.bias"), EMBD)
+                    .addFloats(blk + "attn_qkv.weight",
+                            FloatLinear.transpose(w(p + "attn.c_attn.weight"), EMBD, 3 * EMBD), EMBD, 3 * EMBD)
+                    .addFloats(blk + "attn_qkv.bias", w(p + "attn.c_attn.bias"), 3 * EMBD)
+                    .addFloats(blk + "attn_output.weight",
+                            FloatLinear.transpose(w(p + "attn.c_proj.weight"), EMBD, EMBD), EMBD, EMBD)
+                    .addFloats(blk + "attn_output.bias", w(p + "attn.c_proj.bias"), EMBD)
+                    .addFloats(blk + "ffn_norm.weight", w(p + "ln_2.weight"), EMBD)
+                    .addFloats(blk + "ffn_norm.bias", w(p + "ln_2.bias"), EMBD)
+                    .addFloats(blk + "ffn_up.weight",
+                            FloatLinear.transpose(w(p + "mlp.c_fc.weight"), EMBD, 4 * EMBD), EMBD, 4 * EMBD)
+                    .addFloats(blk + "ffn_up.bias", w(p + "mlp.c_fc.bias"), 4 * EMBD);
+            float[] down = FloatLinear.transpose(w(p + "mlp.c_proj.weight"), 4 * EMBD, EMBD);
+            if (q8) {
+                builder.addQ8_0(blk + "ffn_down.weight", down, 4 * EMBD, EMBD);
+            } else {
+                builder.addFloats(blk + "ffn_down.weight", down, 4 * EMBD, EMBD);
+            }
+            builder.addFloats(blk + "ffn_down.bias", w(p + "mlp.c_proj.bias"), EMBD);
+        }
+        builder.addFloats("output_norm.weight", w("ln_f.weight"), EMBD)
+                .addFloats("output_norm.bias", w("ln_f.bias"), EMBD);
+        if (output != null) {
+            builder.addFloats("output.weight", output, EMBD, output.length / EMBD);
+        }
+        return builder.write(file);
+    }
+
+    private static long[] ones(int length) {
+        long[] mask = new long[length];
+        Arrays.fill(mask, 1L);
+        return mask;
+    }
+
+    /**
+     * Straightforward GPT-2 forward pass over the whole sequence, without a
+     * cache, in the checkpoint's input-major weight layout.
+     */
+    private float[] reference(long[] ids) {
+        return reference(ids, w("wte.weight"));
+    }
+
+    /**
+     * @param output Output projection by vocabulary row
+     */
+    private float[] reference(long[] ids, float[] output) {
+        int n = ids.length;
+        int headSize = EMBD / HEADS;
+        float[][] h = new float[n][EMBD];
+        for (int t = 0; t < n; t++) {
+            for (int i = 0; i < EMBD; i++) {
+                h[t][i] = w("wte.weight")[(int) ids[t] * EMBD + i] + w("wpe.weight")[t * EMBD + i];
+            }
+        }
+        for (int l = 0; l < LAYERS; l++) {
+            String p = "h." + l + ".";
+            float[][] qkv = new float[n][];
+            for (int t = 0; t < n; t++) {
+                qkv[t] = matmul(norm(h[t], w(p + "ln_1.weight"), w(p + "ln_1.bias")),
+                        w(p + "attn.c_attn.weight"), w(p + "attn.c_attn.bias"), 3 * EMBD);
+            }
+            for (int t = 0; t < n; t++) {
+                float[] context = new float[EMBD];
+                for (int head = 0; head < HEADS; head++) {
+                    double[] scores = new double[t + 1];
+                    double max = Double.NEGATIVE_INFINITY;
+                    for (int s = 0; s <= t; s++) {
+                        double dot = 0;
+                        for (int d = 0; d < headSize; d++) {
+                            dot += qkv[t][head * headSize + d] * qkv[s][EMBD + head * headSize + d];
+                        }
+                        scores[s] = dot / Math.sqrt(headSize);
+                        max = Math.max(max, scores[s]);
+                    }
+                    double sum = 0;
+                    for (int s = 0; s <= t; s++) {
+                        scores[s] = Math.exp(scores[s] - max);
+                        sum += scores[s];
+                    }
+                    for (int s = 0; s <= t; s++) {
+                        for (int d = 0; d < headSize; d++) {
+                            context[head * headSize + d] += scores[s] / sum * qkv[s][2 * EMBD + head * headSize + d];
+                        }
+                    }
+                }
+                float[] attn = matmul(context, w(p + "attn.c_proj.weight"), w(p + "attn.c_proj.bias"), EMBD);
+                for (int i = 0; i < EMBD; i++) {
+                    h[t][i] += attn[i];
+                }
+            }
+            for (int t = 0; t < n; t++) {
+                float[] fc = matmul(norm(h[t], w(p + "ln_2.weight"), w(p + "ln_2.bias")),
+                        w(p + "mlp.c_fc.weight"), w(p + "mlp.c_fc.bias"), 4 * EMBD);
+                for (int i = 0; i < fc.length; i++) {
+                    double x = fc[i];
+                    fc[i] = (float) (0.5 * x * (1 + Math.tanh(Math.sqrt(2 / Math.PI) * (x + 0.044715 * x * x * x))));
+                }
+                float[] out = matmul(fc, w(p + "mlp.c_proj.weight"), w(p + "mlp.c_proj.bias"), EMBD);
+                for (int i = 0; i < EMBD; i++) {
+                    h[t][i] += out[i];
+                }
+            }
+        }
+        float[] last = norm(h[n - 1], w("ln_f.weight"), w("ln_f.bias"));
+        float[] logits = new float[VOCAB];
+        for (int v = 0; v < VOCAB; v++) {
+            for (int i = 0; i < EMBD; i++) {
+                logits[v] += last[i] * output[v * EMBD + i];
+            }
+        }
+        return logits;
+    }
+
+    private float[] w(String name) {
+        return weights.get("transformer." + name);
+    }
+
+    private static float[] norm(float[] x, float[] weight, float[] bias) {
+        double mean = 0;
+        for (float v : x) {
+            mean += v;
+        }
+        mean /= x.length;
+        double variance = 0;
+        for (float v : x) {
+            variance += (v - mean) * (v - mean);
+        }
+        variance /= x.length;
+        float[] y = new float[x.length];
+        for (int i = 0; i < x.length; i++) {
+            y[i] = (float) ((x[i] - mean) / Math.sqrt(variance + 1e-5) * weight[i] + bias[i]);
+        }
+        return y;
+    }
+
+    private static float[] matmul(float[] x, float[] weight, float[] bias, int out) {
+        float[] y = bias.clone();
+        for (int i = 0; i < x.length; i++) {
+            for (int o = 0; o < out; o++) {
+                y[o] += x[i] * weight[i * out + o];
+            }
+        }
+        return y;
+    }
+}
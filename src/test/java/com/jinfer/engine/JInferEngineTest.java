@@ -1,11 +1,16 @@
 package com.jinfer.engine;
 
 import com.jinfer.config.GenerationConfig;
+import com.jinfer.config.ModelConfig;
+import com.jinfer.config.TruncationStrategy;
+import com.jinfer.tokenization.ChatMessage;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -111,6 +116,41 @@ public class JInferEngineTest {
         assertTrue(count <= 3);
     }
 
+    @Test
+    public void testLongPromptTruncatedToContext() {
+        JInferEngine small = JInferEngine.createMockEngine(1000, 64);
+        StringBuilder prompt = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            prompt.append("token").append(i).append(' ');
+        }
+
+        GenerationConfig config = GenerationConfig.builder()
+                .maxNewTokens(5)
+                .doSample(false)
+                .truncation(TruncationStrategy.KEEP_TAIL)
+                .build();
+
+        assertFalse(small.generate(prompt.toString(), config).isEmpty());
+
+        config.setTruncation(TruncationStrategy.NONE);
+        assertTrue(small.generate(prompt.toString(), config).isEmpty());
+    }
+
+    @Test
+    public void testChat() {
+        GenerationConfig config = GenerationConfig.builder()
+                .maxNewTokens(5)
+                .doSample(false)
+                .build();
+
+        // The mock session may emit EOS first, so only check that generation runs
+        String output = engine.chat(
+                Arrays.asList(ChatMessage.system("Be brief"), ChatMessage.user("Hello")), config);
+
+        assertNotNull(output);
+        assertEquals("plain", engine.getChatTemplate().getName());
+    }
+
     @Test
     public void testGetTokenizer() {
         assertNotNull(engine.getTokenizer());
@@ -133,4 +173,37 @@ public class JInferEngineTest {
         
         assertFalse(engine.isModelLoaded());
     }
+
+    @Test
+    public void testLoadModelRunsWarmup() throws Exception {
+        JInferEngine loaded = new JInferEngine();
+        ModelConfig config = ModelConfig.builder()
+                .contextLength(64)
+                .warmupRuns(2)
+                .warmupSequenceLengths(List.of(8, 1, 4096))
+                .build();
+
+        loaded.loadModel(config);
+
+        assertTrue(loaded.isModelLoaded());
+        LoadStats stats = loaded.getLoadStats();
+        assertEquals(3, stats.getWarmup().size());
+        assertEquals(1, stats.getWarmup().get(0).getSequenceLength());
+        // Capped to leave room for a generated token
+        assertEquals(63, stats.getWarmup().get(2).getSequenceLength());
+        assertEquals(2, stats.getWarmup().get(2).getRuns());
+        loaded.close();
+    }
+
+    @Test
+    public void testWarmupDisabledByDefault() throws Exception {
+        JInferEngine loaded = new JInferEngine();
+        loaded.loadModel(ModelConfig.builder().contextLength(64).build());
+
+        assertTrue(loaded.getLoadStats().getWarmup().isEmpty());
+        assertEquals(0, loaded.getLoadStats().getWarmupMillis());
+        assertNotNull(loaded.generate("Hello", GenerationConfig.builder().maxNewTokens(3).seed(1).build()));
+        loaded.close();
+    }
 }
+
@@ -0,0 +1,231 @@
+package com.jinfer.engine;
+
+import com.jinfer.config.GenerationConfig;
+import com.jinfer.config.ModelConfig;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ModelRegistryTest {
+
+    /** A mock engine with a vocabulary of 1000 is estimated at 4000 bytes. */
+    private static final long MODEL_BYTES = 4000;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private ModelRegistry registry(long budget, String... ids) {
+        ModelRegistry registry = new ModelRegistry(budget, config -> {
+            loads.incrementAndGet();
+            return JInferEngine.createMockEngine(1000, config.getContextLength());
+        });
+        for (String id : ids) {
+            registry.register(id, ModelConfig.builder().contextLength(512).build());
+        }
+        return registry;
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ModelRegistry registry = new ModelRegistry(0, config -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            finish.await();
+            return JInferEngine.createMockEngine(1000, 512);
+        });
+        registry.register("a", new ModelConfig());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JInferEngine>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> {
+                    try (ModelRegistry.Lease lease = registry.acquire("a")) {
+                        return lease.getEngine();
+                    }
+                }));
+            }
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            assertFalse(registry.isLoaded("a"));
+            finish.countDown();
+
+            JInferEngine engine = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<JInferEngine> result : results) {
+                assertSame(engine, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertTrue(registry.isLoaded("a"));
+        } finally {
+            executor.shutdownNow();
+            registry.close();
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedOverBudget() throws Exception {
+        try (ModelRegistry registry = registry(2 * MODEL_BYTES, "a", "b", "c")) {
+            JInferEngine a;
+            try (ModelRegistry.Lease lease = registry.acquire("a")) {
+                a = lease.getEngine();
+            }
+            registry.acquire("b").close();
+            registry.acquire("a").close();
+            assertEquals(2 * MODEL_BYTES, registry.getUsedBytes());
+
+            registry.acquire("c").close();
+            assertEquals(Arrays.asList("a", "c"), registry.getLoadedModels());
+            assertEquals(2 * MODEL_BYTES, registry.getUsedBytes());
+            assertEquals(1, registry.getEvictionCount());
+            assertTrue(a.isModelLoaded());
+
+            registry.acquire("b").close();
+            assertEquals(Arrays.asList("c", "b"), registry.getLoadedModels());
+            assertFalse(a.isModelLoaded());
+            assertEquals(4, loads.get());
+        }
+    }
+
+    @Test
+    public void testLeasedModelIsNotEvicted() throws Exception {
+        try (ModelRegistry registry = registry(MODEL_BYTES, "a", "b")) {
+            ModelRegistry.Lease a = registry.acquire("a");
+            try (ModelRegistry.Lease b = registry.acquire("b")) {
+                assertEquals(Arrays.asList("a", "b"), registry.getLoadedModels());
+                assertEquals(2 * MODEL_BYTES, registry.getUsedBytes());
+                assertTrue(a.getEngine().isModelLoaded());
+                assertFalse(registry.unload("a"));
+            }
+            // Both idle now, so the least recently used one goes
+            assertEquals(Arrays.asList("a"), registry.getLoadedModels());
+            a.close();
+            assertEquals(Arrays.asList("a"), registry.getLoadedModels());
+            assertTrue(registry.unload("a"));
+            assertEquals(0, registry.getUsedBytes());
+        }
+    }
+
+    @Test
+    public void testFailedLoadPropagatesAndCanBeRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        try (ModelRegistry registry = new ModelRegistry(0, config -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IOException("missing weights");
+            }
+            return JInferEngine.createMockEngine(1000, 512);
+        })) {
+            registry.register("a", new ModelConfig());
+            try {
+                registry.acquire("a");
+                fail("Expected the load to fail");
+            } catch (IOException e) {
+                assertEquals("missing weights", e.getMessage());
+            }
+            assertTrue(registry.getLoadedModels().isEmpty());
+            assertEquals(0, registry.getUsedBytes());
+
+            try (ModelRegistry.Lease lease = registry.acquire("a")) {
+                assertTrue(lease.getEngine().isModelLoaded());
+            }
+            assertEquals(2, attempts.get());
+        }
+    }
+
+    @Test
+    public void testLeaseGivesExclusiveUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (ModelRegistry registry = registry(0, "a")) {
+            ModelRegistry.Lease first = registry.acquire("a");
+            Future<ModelRegistry.Lease> second = executor.submit(() -> registry.acquire("a"));
+            Thread.sleep(200);
+            assertFalse(second.isDone());
+            first.close();
+            second.get(5, TimeUnit.SECONDS).close();
+
+            AtomicInteger active = new AtomicInteger();
+            AtomicInteger maxActive = new AtomicInteger();
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> {
+                    for (int r = 0; r < 5; r++) {
+                        try (ModelRegistry.Lease lease = registry.acquire("a")) {
+                            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                            lease.getEngine().generate("hello", GenerationConfig.builder().maxNewTokens(2).build());
+                            active.decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(1, maxActive.get());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseDuringLoadClosesLoadedEngine() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        JInferEngine[] loaded = new JInferEngine[1];
+        ModelRegistry registry = new ModelRegistry(0, config -> {
+            loading.countDown();
+            finish.await();
+            loaded[0] = JInferEngine.createMockEngine(1000, 512);
+            return loaded[0];
+        });
+        registry.register("a", new ModelConfig());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ModelRegistry.Lease> result = executor.submit(() -> registry.acquire("a"));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            registry.close();
+            finish.countDown();
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("Expected the load to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertFalse(loaded[0].isModelLoaded());
+            assertEquals(0, registry.getUsedBytes());
+            assertTrue(registry.getLoadedModels().isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResolvesUnregisteredModelsThroughConfigSource() throws Exception {
+        try (ModelRegistry registry = registry(0)) {
+            try {
+                registry.acquire("unknown");
+                fail("Expected an unknown model to fail");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("unknown"));
+            }
+            registry.setConfigSource(id -> ModelConfig.builder().contextLength(256).build());
+            try (ModelRegistry.Lease lease = registry.acquire("org/model")) {
+                assertEquals("org/model", lease.getModelId());
+                assertEquals(256, lease.getEngine().getModelInfo().getContextLength());
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.jinfer.engine;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OnnxInferenceSessionTest {
+
+    @Test
+    public void testThreadAffinitiesLeaveFirstCoreToCaller() {
+        // Cores 4-7 as 1-based processor ids, for the three pool threads besides the caller
+        assertEquals("6;7;8", OnnxInferenceSession.threadAffinities(List.of(4, 5, 6, 7), 4));
+        assertNull(OnnxInferenceSession.threadAffinities(List.of(4, 5), 1));
+        assertNull(OnnxInferenceSession.threadAffinities(List.of(), 4));
+    }
+
+    @Test
+    public void testThreadAffinitiesWrapAroundFewerCores() {
+        assertEquals("2;1;2", OnnxInferenceSession.threadAffinities(List.of(0, 1), 4));
+    }
+
+    @Test
+    public void testParsesOptimizationLevel() throws IOException {
+        assertEquals("BASIC_OPT", OnnxInferenceSession.optLevel("basic_opt").name());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsUnknownOptimizationLevel() throws IOException {
+        OnnxInferenceSession.optLevel("fast");
+    }
+}
@@ -0,0 +1,116 @@
+package com.jinfer.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OptimizedModelCacheTest {
+
+    private static final String VERSION = "1.17.1";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testKeyTracksModelContentAndLevel() throws IOException {
+        Path model = tempFolder.getRoot().toPath().resolve("model.onnx");
+        Files.writeString(model, "graph v1");
+        OptimizedModelCache first = OptimizedModelCache.forModel(model, "ALL_OPT", VERSION);
+
+        assertEquals(first.getOptimizedPath(), OptimizedModelCache.forModel(model, "ALL_OPT", VERSION).getOptimizedPath());
+        assertNotEquals(first.getOptimizedPath(), OptimizedModelCache.forModel(model, "BASIC_OPT", VERSION).getOptimizedPath());
+        assertTrue(first.getOptimizedPath().startsWith(model.resolveSibling(OptimizedModelCache.CACHE_DIR)));
+
+        Files.writeString(model, "graph v2");
+        Files.setLastModifiedTime(model, FileTime.fromMillis(Files.getLastModifiedTime(model).toMillis() + 2000));
+        assertNotEquals(first.getOptimizedPath(), OptimizedModelCache.forModel(model, "ALL_OPT", VERSION).getOptimizedPath());
+    }
+
+    @Test
+    public void testHashIsMemoizedWhileModelIsUnchanged() throws IOException {
+        Path model = tempFolder.getRoot().toPath().resolve("model.onnx");
+        Files.writeString(model, "graph");
+        Path sidecar = tempFolder.getRoot().toPath().resolve("model.sha256");
+        String hash = OptimizedModelCache.modelHash(model, sidecar);
+
+        // A memo with the current size and mtime is trusted without hashing
+        String stamp = Files.readString(sidecar).split(" ")[0];
+        Files.writeString(sidecar, stamp + " memoized\n");
+        assertEquals("memoized", OptimizedModelCache.modelHash(model, sidecar));
+
+        Files.setLastModifiedTime(model, FileTime.fromMillis(Files.getLastModifiedTime(model).toMillis() + 2000));
+        assertEquals(hash, OptimizedModelCache.modelHash(model, sidecar));
+    }
+
+    @Test
+    public void testCommitReplacesStaleEntries() throws IOException {
+        Path model = tempFolder.getRoot().toPath().resolve("model.onnx");
+        Files.writeString(model, "graph");
+        OptimizedModelCache cache = OptimizedModelCache.forModel(model, "ALL_OPT", VERSION);
+        Path written = cache.prepare();
+        Path stale = written.resolveSibling("model-0000000000000000-ort1.0-all_opt.onnx");
+        Path other = written.resolveSibling("model-fp16-0000000000000000-ort1.0-all_opt.onnx");
+        Files.writeString(stale, "old");
+        Files.writeString(other, "other model");
+        assertFalse(cache.isFresh());
+
+        Files.writeString(written, "optimized");
+        cache.commit(written);
+
+        assertTrue(cache.isFresh());
+        assertEquals("optimized", Files.readString(cache.getOptimizedPath()));
+        assertFalse(Files.exists(written));
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(other));
+    }
+
+    @Test
+    public void testUnknownRuntimeVersionDisablesCache() throws IOException {
+        Path model = tempFolder.getRoot().toPath().resolve("model.onnx");
+        Files.writeString(model, "graph");
+
+        assertNull(OptimizedModelCache.forModel(model, "ALL_OPT", null));
+        assertNotEquals(OptimizedModelCache.forModel(model, "ALL_OPT", VERSION).getOptimizedPath(),
+                OptimizedModelCache.forModel(model, "ALL_OPT", "1.18.0").getOptimizedPath());
+    }
+
+    @Test
+    public void testGarbageCachedGraphIsReplaced() throws Exception {
+        Path model = tempFolder.getRoot().toPath().resolve("model.onnx");
+        Files.writeString(model, "graph");
+        OptimizedModelCache cache = OptimizedModelCache.forModel(model, "ALL_OPT", VERSION);
+        Files.createDirectories(cache.getOptimizedPath().getParent());
+        Files.writeString(cache.getOptimizedPath(), "garbage");
+        List<Path> loaded = new ArrayList<>();
+
+        String mode = cache.load((graph, optimize, saveTo) -> {
+            loaded.add(graph);
+            if (Files.readString(graph).equals("garbage")) {
+                throw new IOException("Protobuf parsing failed");
+            }
+            assertTrue(optimize);
+            Files.writeString(saveTo, "optimized");
+        });
+
+        assertTrue(mode.startsWith("cold"));
+        assertEquals(List.of(cache.getOptimizedPath(), model), loaded);
+        assertEquals("optimized", Files.readString(cache.getOptimizedPath()));
+
+        // The replaced entry loads warm
+        loaded.clear();
+        assertTrue(cache.load((graph, optimize, saveTo) -> {
+            loaded.add(graph);
+            assertFalse(optimize);
+        }).startsWith("warm"));
+        assertEquals(List.of(cache.getOptimizedPath()), loaded);
+    }
+}
@@ -0,0 +1,69 @@
+package com.jinfer.engine;
+
+import com.jinfer.config.ModelConfig;
+import com.jinfer.config.SessionTuning;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PerformanceTunerTest {
+
+    @Test
+    public void testCandidatesHalveThreadsOverCores() {
+        PerformanceTuner tuner = new PerformanceTuner(new ModelConfig());
+        tuner.setCpuCores(List.of(2, 3, 4, 5));
+
+        List<SessionTuning> candidates = tuner.candidates();
+
+        assertEquals(6, candidates.size());
+        assertEquals(4, candidates.get(0).getIntraOpThreads());
+        assertTrue(candidates.get(0).isAllowSpinning());
+        assertFalse(candidates.get(1).isAllowSpinning());
+        assertEquals(List.of(2, 3), candidates.get(2).getCpuCores());
+        assertEquals(1, candidates.get(5).getIntraOpThreads());
+    }
+
+    @Test
+    public void testRunStopsAtBudget() throws Exception {
+        // Without a model path the engine loads the mock session
+        ModelConfig config = ModelConfig.builder().contextLength(128).build();
+        SessionTuning original = config.getSessionTuning();
+        PerformanceTuner tuner = new PerformanceTuner(config);
+        tuner.setPromptTokens(16);
+        tuner.setNewTokens(4);
+        tuner.setBudgetMillis(0);
+
+        List<PerformanceTuner.Result> results = tuner.run();
+
+        assertEquals(1, results.size());
+        assertNotNull(PerformanceTuner.best(results));
+        // Growth since the load started, which a small mock model may not cause
+        assertTrue(results.get(0).getRssBytes() >= 0);
+        assertSame(original, config.getSessionTuning());
+    }
+
+    @Test
+    public void testPromptsOfRunsShareNoPrefix() throws Exception {
+        PerformanceTuner tuner = new PerformanceTuner(new ModelConfig());
+        tuner.setPromptTokens(16);
+        try (JInferEngine engine = JInferEngine.createMockEngine(1000, 128)) {
+            long[] first = engine.getTokenizer().encode(tuner.syntheticPrompt(engine, 1));
+            long[] second = engine.getTokenizer().encode(tuner.syntheticPrompt(engine, 2));
+
+            assertNotEquals(first[0], second[0]);
+            assertEquals(16, first.length);
+        }
+    }
+
+    @Test
+    public void testBestPrefersThroughputThenTtft() {
+        SessionTuning tuning = new SessionTuning();
+        PerformanceTuner.Result slow = new PerformanceTuner.Result(tuning, 10, 5, 0, 0);
+        PerformanceTuner.Result fast = new PerformanceTuner.Result(tuning, 20, 9, 0, 0);
+        PerformanceTuner.Result fastResponsive = new PerformanceTuner.Result(tuning, 20, 4, 0, 0);
+
+        assertSame(fastResponsive, PerformanceTuner.best(List.of(slow, fast, fastResponsive)));
+    }
+}
@@ -0,0 +1,94 @@
+package com.jinfer.engine;
+
+import com.jinfer.config.WeightQuantization;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantizedLinearTest {
+
+    /** Inputs not a multiple of the block size, to cover a partial block. */
+    private static final int IN = 40;
+    private static final int OUT = 5;
+
+    private static float[] random(int count, long seed) {
+        Random random = new Random(seed);
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+
+    private static float maxAbs(float[] values, int from, int to) {
+        float max = 0f;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, Math.abs(values[i]));
+        }
+        return max;
+    }
+
+    private void checkRoundTrip(WeightQuantization type, int levels) {
+        float[] weight = random(IN * OUT, 1);
+        QuantizedLinear layer = QuantizedLinear.quantize(type, weight, null, IN, OUT);
+        float[] row = new float[IN];
+        for (int o = 0; o < OUT; o++) {
+            layer.row(o, row, 0);
+            for (int i = 0; i < IN; i++) {
+                int blockStart = o * IN + i / QuantizedLinear.BLOCK_SIZE * QuantizedLinear.BLOCK_SIZE;
+                int blockEnd = Math.min(blockStart + QuantizedLinear.BLOCK_SIZE, (o + 1) * IN);
+                // Rounding error is at most half a quantization step
+                float step = maxAbs(weight, blockStart, blockEnd) / levels;
+                assertEquals(weight[o * IN + i], row[i], step / 2 + 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void testQ8RoundTrip() {
+        checkRoundTrip(WeightQuantization.Q8, 127);
+    }
+
+    @Test
+    public void testQ4RoundTrip() {
+        checkRoundTrip(WeightQuantization.Q4, 7);
+    }
+
+    @Test
+    public void testApplyMatchesDequantizedWeights() {
+        float[] weight = random(IN * OUT, 2);
+        float[] bias = random(OUT, 3);
+        float[] x = random(2 * IN, 4);
+        try (Parallel parallel = new Parallel(2)) {
+            for (WeightQuantization type : new WeightQuantization[]{WeightQuantization.Q8, WeightQuantization.Q4}) {
+                QuantizedLinear layer = QuantizedLinear.quantize(type, weight, bias, IN, OUT);
+                float[] dequantized = new float[IN * OUT];
+                for (int o = 0; o < OUT; o++) {
+                    layer.row(o, dequantized, o * IN);
+                }
+                float[] expected = new float[2 * OUT];
+                new FloatLinear(dequantized, bias, IN, OUT).apply(x, expected, 2, parallel);
+                float[] actual = new float[2 * OUT];
+                layer.apply(x, actual, 2, parallel);
+                assertArrayEquals(expected, actual, 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void testQuantizedWeightsAreSmaller() {
+        int in = 256;
+        float[] weight = random(in * OUT, 5);
+        long floatBytes = new FloatLinear(weight, null, in, OUT).weightBytes();
+
+        QuantizedLinear q8 = QuantizedLinear.quantize(WeightQuantization.Q8, weight, null, in, OUT);
+        QuantizedLinear q4 = QuantizedLinear.quantize(WeightQuantization.Q4, weight, null, in, OUT);
+
+        assertTrue(q8.getData().isDirect());
+        // 32 values per block: 32 or 16 bytes plus a 4 byte scale, against 128 bytes
+        assertEquals(floatBytes * 36 / 128, q8.weightBytes());
+        assertEquals(floatBytes * 20 / 128, q4.weightBytes());
+    }
+}
@@ -0,0 +1,115 @@
+package com.jinfer.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class SafetensorsReaderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Write a file with an F32, an F16 and a BF16 tensor holding 1, -2 and 0.5.
+     */
+    private Path writeMixed() throws IOException {
+        String header = "{\"__metadata__\":{\"format\":\"pt\"}," +
+                "\"f32\":{\"dtype\":\"F32\",\"shape\":[3],\"data_offsets\":[0,12]}," +
+                "\"f16\":{\"dtype\":\"F16\",\"shape\":[3],\"data_offsets\":[12,18]}," +
+                "\"bf16\":{\"dtype\":\"BF16\",\"shape\":[1,3],\"data_offsets\":[18,24]}}";
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + headerBytes.length + 24).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(headerBytes.length).put(headerBytes);
+        buffer.putFloat(1f).putFloat(-2f).putFloat(0.5f);
+        buffer.putShort((short) 0x3c00).putShort((short) 0xc000).putShort((short) 0x3800);
+        buffer.putShort((short) 0x3f80).putShort((short) 0xc000).putShort((short) 0x3f00);
+        Path file = tempFolder.getRoot().toPath().resolve("model.safetensors");
+        Files.write(file, buffer.array());
+        return file;
+    }
+
+    @Test
+    public void testTypedViews() throws IOException {
+        try (SafetensorsReader reader = SafetensorsReader.open(writeMixed())) {
+            assertEquals("pt", reader.getMetadata().get("format"));
+            assertEquals(24, reader.getTotalBytes());
+
+            FloatBuffer floats = reader.getFloats("f32");
+            assertTrue(floats.isDirect());
+            assertTrue(floats.isReadOnly());
+            assertEquals(3, floats.remaining());
+            assertEquals(-2f, floats.get(1), 0f);
+
+            ShortBuffer halves = reader.getShorts("f16");
+            assertEquals(1f, SafetensorsReader.halfToFloat(halves.get(0)), 0f);
+
+            assertArrayEquals(new float[]{1f, -2f, 0.5f}, reader.toFloatArray("f16"), 0f);
+            assertArrayEquals(new float[]{1f, -2f, 0.5f}, reader.toFloatArray("bf16"), 0f);
+            assertArrayEquals(new float[]{1f, -2f, 0.5f}, reader.toFloatArray("f32"), 0f);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testViewChecksDtype() throws IOException {
+        try (SafetensorsReader reader = SafetensorsReader.open(writeMixed())) {
+            reader.getFloats("bf16");
+        }
+    }
+
+    @Test
+    public void testHalfPrecisionSpecialValues() {
+        assertEquals(Float.POSITIVE_INFINITY, SafetensorsReader.halfToFloat((short) 0x7c00), 0f);
+        assertTrue(Float.isNaN(SafetensorsReader.halfToFloat((short) 0x7e00)));
+        assertEquals(-0f, SafetensorsReader.halfToFloat((short) 0x8000), 0f);
+        // Smallest subnormal
+        assertEquals(0x1p-24f, SafetensorsReader.halfToFloat((short) 0x0001), 0f);
+        assertEquals(65504f, SafetensorsReader.halfToFloat((short) 0x7bff), 0f);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsLengthNotMatchingShape() throws IOException {
+        String header = "{\"w\":{\"dtype\":\"F32\",\"shape\":[4],\"data_offsets\":[0,8]}}";
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + headerBytes.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(headerBytes.length).put(headerBytes);
+        Path file = tempFolder.newFile("bad.safetensors").toPath();
+        Files.write(file, buffer.array());
+
+        SafetensorsReader.open(file);
+    }
+
+    @Test
+    public void testReadsTensorBeyondTwoGigabytes() throws IOException {
+        long offset = 3L * 1024 * 1024 * 1024;
+        String header = "{\"w\":{\"dtype\":\"F32\",\"shape\":[2],\"data_offsets\":[" + offset + "," +
+                (offset + 8) + "]}}";
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        Path file = tempFolder.newFile("large.safetensors").toPath();
+        // Sparse file, so the test does not write gigabytes
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            ByteBuffer prefix = ByteBuffer.allocate(8 + headerBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            prefix.putLong(headerBytes.length).put(headerBytes);
+            raf.write(prefix.array());
+            raf.seek(8 + headerBytes.length + offset);
+            ByteBuffer data = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putFloat(7f).putFloat(8f);
+            raf.write(data.array());
+        }
+
+        try (SafetensorsReader reader = SafetensorsReader.open(file)) {
+            assertArrayEquals(new float[]{7f, 8f}, reader.toFloatArray("w"), 0f);
+            assertEquals(8f, reader.getTensorData("w", 4, 4).getFloat(), 0f);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.jinfer.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ShardedSafetensorsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Write a SafeTensors file with one F32 tensor of the given values.
+     */
+    static Path writeShard(Path file, String name, float... values) throws IOException {
+        String header = "{\"__metadata__\":{\"format\":\"pt\"},\"" + name + "\":{\"dtype\":\"F32\",\"shape\":[" +
+                values.length + "],\"data_offsets\":[0," + values.length * 4 + "]}}";
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + headerBytes.length + values.length * 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(headerBytes.length).put(headerBytes);
+        for (float value : values) {
+            buffer.putFloat(value);
+        }
+        Files.write(file, buffer.array());
+        return file;
+    }
+
+    @Test
+    public void testOpensShardedCheckpointByIndex() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        writeShard(dir.resolve("model-00001-of-00002.safetensors"), "wte", 1f, 2f, 3f);
+        writeShard(dir.resolve("model-00002-of-00002.safetensors"), "lm_head", 4f, 5f);
+        Path index = dir.resolve("model.safetensors.index.json");
+        Files.writeString(index, "{\"weight_map\": {\"wte\": \"model-00001-of-00002.safetensors\", " +
+                "\"lm_head\": \"model-00002-of-00002.safetensors\"}}");
+
+        try (ShardedSafetensors weights = ShardedSafetensors.open(index)) {
+            assertEquals(Set.of("wte", "lm_head"), weights.getTensorNames());
+            assertEquals(20, weights.getTotalBytes());
+
+            SafetensorsReader.TensorInfo info = weights.getInfo("lm_head");
+            assertEquals("F32", info.getDtype());
+            assertArrayEquals(new long[]{2}, info.getShape());
+            assertEquals(dir.resolve("model-00002-of-00002.safetensors"), info.getFile());
+
+            ByteBuffer data = weights.getTensorData("lm_head");
+            assertTrue(data.isReadOnly());
+            assertEquals(4f, data.getFloat(0), 0f);
+            assertEquals(5f, data.getFloat(4), 0f);
+        }
+    }
+
+    @Test
+    public void testOpensShardList() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        Path first = writeShard(dir.resolve("a.safetensors"), "a", 1f);
+        Path second = writeShard(dir.resolve("b.safetensors"), "b", 2f);
+
+        try (ShardedSafetensors weights = ShardedSafetensors.open(List.of(first, second))) {
+            assertEquals(2f, weights.getTensorData("b").getFloat(0), 0f);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTensorMissingFromShard() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        writeShard(dir.resolve("model-00001-of-00001.safetensors"), "wte", 1f);
+        Path index = dir.resolve("model.safetensors.index.json");
+        Files.writeString(index, "{\"weight_map\": {\"lm_head\": \"model-00001-of-00001.safetensors\"}}");
+
+        ShardedSafetensors.open(index);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTruncatedFile() throws IOException {
+        Path file = writeShard(tempFolder.getRoot().toPath().resolve("model.safetensors"), "wte", 1f, 2f);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+
+        ShardedSafetensors.open(file);
+    }
+}
@@ -0,0 +1,172 @@
+package com.jinfer.hub;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DownloadPlannerTest {
+
+    private static final List<String> TRANSFORMERS_JS_REPO = Arrays.asList(
+            "config.json",
+            "tokenizer.json",
+            "tokenizer_config.json",
+            "README.md",
+            "model.safetensors",
+            "pytorch_model.bin",
+            "onnx/model.onnx",
+            "onnx/model_fp16.onnx",
+            "onnx/model_quantized.onnx",
+            "onnx/decoder_model_merged.onnx",
+            "onnx/decoder_model_merged_quantized.onnx");
+
+    private static List<RepoFile> repoFiles(List<String> paths) {
+        List<RepoFile> files = new ArrayList<>();
+        for (String path : paths) {
+            files.add(new RepoFile(path, 100, null));
+        }
+        return files;
+    }
+
+    @Test
+    public void testAutoPrefersUnsuffixedOnnx() {
+        assertEquals(List.of("onnx/model.onnx"),
+                DownloadPlanner.selectWeights(TRANSFORMERS_JS_REPO, DownloadOptions.FORMAT_AUTO, null));
+    }
+
+    @Test
+    public void testSelectsVariant() {
+        assertEquals(List.of("onnx/model_quantized.onnx"),
+                DownloadPlanner.selectWeights(TRANSFORMERS_JS_REPO, DownloadOptions.FORMAT_AUTO, "quantized"));
+        assertEquals(List.of("onnx/model_fp16.onnx"),
+                DownloadPlanner.selectWeights(TRANSFORMERS_JS_REPO, "onnx", "fp16"));
+    }
+
+    @Test
+    public void testSelectsExplicitFormat() {
+        assertEquals(List.of("model.safetensors"),
+                DownloadPlanner.selectWeights(TRANSFORMERS_JS_REPO, "safetensors", null));
+        assertEquals(List.of("pytorch_model.bin"),
+                DownloadPlanner.selectWeights(TRANSFORMERS_JS_REPO, "pytorch", null));
+    }
+
+    @Test
+    public void testIncludesOnnxExternalData() {
+        List<String> paths = Arrays.asList("model.onnx", "model.onnx_data", "model.onnx.data", "other.onnx_data");
+
+        assertEquals(List.of("model.onnx", "model.onnx_data", "model.onnx.data"),
+                DownloadPlanner.selectWeights(paths, "onnx", null));
+    }
+
+    @Test
+    public void testSelectsAllShardsWithIndex() {
+        List<String> paths = Arrays.asList(
+                "model-00001-of-00002.safetensors",
+                "model-00002-of-00002.safetensors",
+                "model.safetensors.index.json",
+                "model.fp16-00001-of-00001.safetensors");
+
+        assertEquals(List.of("model-00001-of-00002.safetensors", "model-00002-of-00002.safetensors",
+                        "model.safetensors.index.json"),
+                DownloadPlanner.selectWeights(paths, DownloadOptions.FORMAT_AUTO, null));
+    }
+
+    @Test
+    public void testFallsBackToVariantsWhenNoFullPrecision() {
+        List<String> paths = Arrays.asList("onnx/model_q4.onnx", "onnx/model_int8.onnx");
+
+        assertEquals(1, DownloadPlanner.selectWeights(paths, DownloadOptions.FORMAT_AUTO, null).size());
+    }
+
+    @Test
+    public void testPlanIncludesSupportFilesAndGlobs() throws IOException {
+        DownloadOptions options = DownloadOptions.builder()
+                .variant("quantized")
+                .include("*.md")
+                .exclude("tokenizer_config.json")
+                .build();
+
+        DownloadPlan plan = DownloadPlanner.plan(repoFiles(TRANSFORMERS_JS_REPO), options);
+
+        assertEquals(List.of("config.json", "tokenizer.json", "README.md", "onnx/model_quantized.onnx"),
+                plan.getFiles());
+        assertEquals(400, plan.getTotalBytes());
+        assertEquals(TRANSFORMERS_JS_REPO.size(), plan.getRepoFileCount());
+        assertEquals(100L * TRANSFORMERS_JS_REPO.size(), plan.getRepoBytes());
+    }
+
+    @Test
+    public void testMissingVariantFails() {
+        DownloadOptions options = DownloadOptions.builder().variant("bnb4").build();
+
+        try {
+            DownloadPlanner.plan(repoFiles(TRANSFORMERS_JS_REPO), options);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("onnx/model_quantized.onnx"));
+        }
+    }
+
+    @Test
+    public void testVariantOf() {
+        assertEquals("quantized", DownloadPlanner.variantOf("onnx/model_quantized.onnx"));
+        assertEquals("fp16", DownloadPlanner.variantOf("model.fp16.safetensors"));
+        assertNull(DownloadPlanner.variantOf("pytorch_model.bin"));
+        assertNull(DownloadPlanner.variantOf("decoder_model_merged.onnx"));
+    }
+
+    @Test
+    public void testGgufVariantIsQuantizationType() {
+        assertEquals("q4_k_m", DownloadPlanner.variantOf("TinyLlama-1.1B-Chat-v1.0.Q4_K_M.gguf"));
+        assertEquals("q8_0", DownloadPlanner.variantOf("ggml-model-q8_0.gguf"));
+        assertEquals("f16", DownloadPlanner.variantOf("gpt2.f16.gguf"));
+        assertEquals("gguf", DownloadPlanner.formatOf("models/gpt2.Q8_0.gguf"));
+    }
+
+    @Test
+    public void testSelectsOneGgufFile() {
+        List<String> paths = Arrays.asList("README.md", "config.json", "gpt2.Q2_K.gguf", "gpt2.Q4_K_M.gguf",
+                "gpt2.Q4_0.gguf", "gpt2.Q8_0.gguf", "gpt2.f16.gguf");
+        // Without a request, the type the Java backend computes with most accurately
+        assertEquals(List.of("gpt2.Q8_0.gguf"),
+                DownloadPlanner.selectWeights(paths, DownloadOptions.FORMAT_AUTO, null));
+        assertEquals(List.of("gpt2.Q4_K_M.gguf"),
+                DownloadPlanner.selectWeights(paths, "gguf", "Q4_K_M"));
+        // Other formats still win in auto mode
+        List<String> mixed = new ArrayList<>(paths);
+        mixed.add("model.safetensors");
+        assertEquals(List.of("model.safetensors"),
+                DownloadPlanner.selectWeights(mixed, DownloadOptions.FORMAT_AUTO, null));
+    }
+
+    @Test
+    public void testWeightIndexDropsUnreferencedShards() throws IOException {
+        List<RepoFile> files = repoFiles(Arrays.asList(
+                "config.json",
+                "model.safetensors.index.json",
+                "model-00001-of-00002.safetensors",
+                "model-00002-of-00002.safetensors",
+                "model-00001-of-00003.safetensors"));
+        DownloadPlan plan = DownloadPlanner.plan(files, new DownloadOptions());
+        assertEquals(5, plan.getFiles().size());
+
+        DownloadPlan resolved = DownloadPlanner.applyWeightIndex(plan, files, "model.safetensors.index.json",
+                Set.of("model-00001-of-00002.safetensors", "model-00002-of-00002.safetensors"));
+
+        assertEquals(List.of("config.json", "model.safetensors.index.json",
+                "model-00001-of-00002.safetensors", "model-00002-of-00002.safetensors"), resolved.getFiles());
+    }
+
+    @Test(expected = IOException.class)
+    public void testWeightIndexRejectsMissingShard() throws IOException {
+        List<RepoFile> files = repoFiles(Arrays.asList("model.safetensors.index.json", "model-00001-of-00002.safetensors"));
+        DownloadPlanner.applyWeightIndex(DownloadPlanner.plan(files, new DownloadOptions()), files,
+                "model.safetensors.index.json",
+                Set.of("model-00001-of-00002.safetensors", "model-00002-of-00002.safetensors"));
+    }
+}
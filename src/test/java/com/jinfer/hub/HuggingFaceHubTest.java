@@ -1,14 +1,27 @@
 package com.jinfer.hub;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -19,6 +32,7 @@ public class HuggingFaceHubTest {
 
     private HuggingFaceHub hub;
     private Path cacheDir;
+    private LocalHubServer server;
 
     @Before
     public void setUp() throws IOException {
@@ -26,6 +40,20 @@ public class HuggingFaceHubTest {
         hub = new HuggingFaceHub(cacheDir);
     }
 
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private HuggingFaceHub localHub() throws IOException {
+        server = new LocalHubServer();
+        HuggingFaceHub local = new HuggingFaceHub(cacheDir, server.getEndpoint());
+        local.setRetryBackoffMillis(10);
+        return local;
+    }
+
     @Test
     public void testGetCacheDir() {
         assertEquals(cacheDir, hub.getCacheDir());
@@ -125,4 +153,667 @@ public class HuggingFaceHubTest {
         assertTrue(defaultCache.toString().contains(".jinfer"));
         assertTrue(defaultCache.toString().contains("models"));
     }
+
+    @Test
+    public void testDownloadModelFromLocalServer() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "config.json", "{\"n_positions\": 1024}");
+        server.addFile("user/model", "tokenizer.json", "{}");
+        server.addFile("user/model", "onnx/model.onnx", "fake onnx weights");
+        server.addFile("user/model", "README.md", "not downloaded");
+
+        Path modelDir = local.getModel("user/model");
+
+        assertEquals("fake onnx weights", Files.readString(modelDir.resolve("onnx/model.onnx")));
+        assertEquals("{}", Files.readString(modelDir.resolve("tokenizer.json")));
+        assertFalse(Files.exists(modelDir.resolve("README.md")));
+        assertTrue(local.isModelCached("user/model"));
+    }
+
+    @Test
+    public void testDownloadsRequestedVariantOnly() throws IOException {
+        HuggingFaceHub local = localHub();
+        local.setDownloadOptions(DownloadOptions.builder().variant("quantized").build());
+        server.addFile("user/model", "tokenizer.json", "{}");
+        server.addFile("user/model", "model.safetensors", "full weights");
+        server.addFile("user/model", "onnx/model.onnx", "fp32 graph");
+        server.addFile("user/model", "onnx/model_quantized.onnx", "int8 graph");
+        server.addFile("user/model", "onnx/model_quantized.onnx_data", "int8 data");
+
+        DownloadPlan plan = local.planDownload("user/model");
+        assertEquals(Set.of("tokenizer.json", "onnx/model_quantized.onnx", "onnx/model_quantized.onnx_data"),
+                new HashSet<>(plan.getFiles()));
+        assertEquals("{}int8 graphint8 data".length(), plan.getTotalBytes());
+
+        Path modelDir = local.getModel("user/model");
+
+        assertEquals("int8 data", Files.readString(modelDir.resolve("onnx/model_quantized.onnx_data")));
+        assertFalse(Files.exists(modelDir.resolve("onnx/model.onnx")));
+        assertFalse(Files.exists(modelDir.resolve("model.safetensors")));
+        assertEquals(0, server.countRequests("/model.safetensors"));
+    }
+
+    @Test
+    public void testCachedModelMissingVariantIsCompleted() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "onnx/model.onnx", "fp32 graph");
+        server.addFile("user/model", "onnx/model_fp16.onnx", "fp16 graph");
+        Path modelDir = local.getModel("user/model");
+        assertFalse(Files.exists(modelDir.resolve("onnx/model_fp16.onnx")));
+
+        local.setDownloadOptions(DownloadOptions.builder().variant("fp16").build());
+        local.getModel("user/model");
+
+        assertEquals("fp16 graph", Files.readString(modelDir.resolve("onnx/model_fp16.onnx")));
+        assertEquals(1, server.countRequests("/onnx/model.onnx"));
+    }
+
+    @Test
+    public void testShardIndexSelectsReferencedShards() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "config.json", "{}");
+        server.addFile("user/model", "model.safetensors.index.json", "{\"weight_map\": {" +
+                "\"a\": \"model-00001-of-00002.safetensors\", \"b\": \"model-00002-of-00002.safetensors\"}}");
+        server.addFile("user/model", "model-00001-of-00002.safetensors", "shard 1");
+        server.addFile("user/model", "model-00002-of-00002.safetensors", "shard 2");
+        // Left over from an earlier upload with a different split
+        server.addFile("user/model", "model-00001-of-00003.safetensors", "stale shard");
+
+        Path modelDir = local.getModel("user/model");
+
+        assertEquals("shard 2", Files.readString(modelDir.resolve("model-00002-of-00002.safetensors")));
+        assertFalse(Files.exists(modelDir.resolve("model-00001-of-00003.safetensors")));
+        assertEquals(0, server.countRequests("/model-00001-of-00003.safetensors"));
+    }
+
+    @Test
+    public void testDownloadsExternalDataReferencedByGraph() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "model.onnx", WeightManifestsTest.onnxGraph("weights.dat"));
+        server.addFile("user/model", "weights.dat", "external");
+        server.addFile("user/model", "unrelated.dat", "unrelated");
+
+        DownloadStats stats = local.getModelWithStats("user/model", false);
+
+        assertEquals("external", Files.readString(stats.getModelDir().resolve("weights.dat")));
+        assertFalse(Files.exists(stats.getModelDir().resolve("unrelated.dat")));
+        assertEquals(2, stats.getPlannedFiles());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingExternalDataFails() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "model.onnx", WeightManifestsTest.onnxGraph("weights.dat"));
+
+        local.getModel("user/model");
+    }
+
+    @Test
+    public void testDownloadsFilesConcurrently() throws IOException {
+        HuggingFaceHub local = localHub();
+        local.setMaxConcurrentDownloads(3);
+        for (int i = 0; i < 6; i++) {
+            server.addFile("user/model", "model-" + i + ".safetensors", "weights " + i);
+        }
+        server.setResponseDelayMillis(100);
+
+        local.getModel("user/model");
+
+        int maxConcurrent = server.getMaxConcurrentRequests();
+        assertTrue("expected parallel requests, saw " + maxConcurrent, maxConcurrent > 1);
+        assertTrue("concurrency limit exceeded: " + maxConcurrent, maxConcurrent <= 3);
+    }
+
+    @Test
+    public void testRetriesTransientFailures() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "model.onnx", "weights");
+        server.failNext("user/model", "model.onnx", 2, 503);
+
+        Path modelDir = local.getModel("user/model");
+
+        assertEquals("weights", Files.readString(modelDir.resolve("model.onnx")));
+        assertEquals(3, server.countRequests("/model.onnx"));
+    }
+
+    @Test
+    public void testDoesNotRetryClientErrors() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "model.onnx", "weights");
+        server.addFile("user/model", "config.json", "{}");
+        server.failNext("user/model", "model.onnx", 1, 403);
+
+        try {
+            local.getModel("user/model");
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("model.onnx"));
+        }
+
+        assertEquals(1, server.countRequests("/model.onnx"));
+        assertFalse(local.isModelCached("user/model"));
+        assertTrue(Files.exists(local.getModelCachePath("user/model").resolve("config.json")));
+    }
+
+    @Test
+    public void testResumesFromCheckpoint() throws IOException {
+        HuggingFaceHub local = localHub();
+        local.setRangeChunkSize(64 * 1024);
+        byte[] weights = new byte[256 * 1024];
+        new Random(1).nextBytes(weights);
+        server.addFile("user/model", "model.onnx", weights);
+
+        // Simulate an earlier run that completed the first half
+        Path modelDir = local.getModelCachePath("user/model");
+        Files.createDirectories(modelDir);
+        byte[] partialBytes = new byte[weights.length];
+        System.arraycopy(weights, 0, partialBytes, 0, 128 * 1024);
+        Files.write(modelDir.resolve("model.onnx.partial"), partialBytes);
+        Files.writeString(modelDir.resolve("model.onnx.partial.json"),
+                "{\"etag\": \"" + LocalHubServer.etagOf(weights).replace("\"", "\\\"") +
+                "\", \"size\": " + weights.length + ", \"completed\": [[0, 131072]]}");
+
+        local.getModel("user/model");
+
+        assertArrayEquals(weights, Files.readAllBytes(modelDir.resolve("model.onnx")));
+        assertEquals(128 * 1024, server.getBytesServed("user/model", "model.onnx"));
+        assertFalse(Files.exists(modelDir.resolve("model.onnx.partial")));
+        assertFalse(Files.exists(modelDir.resolve("model.onnx.partial.json")));
+    }
+
+    @Test
+    public void testRestartsWhenFileChanged() throws IOException {
+        HuggingFaceHub local = localHub();
+        byte[] weights = new byte[100 * 1024];
+        new Random(2).nextBytes(weights);
+        server.addFile("user/model", "model.onnx", weights);
+
+        Path modelDir = local.getModelCachePath("user/model");
+        Files.createDirectories(modelDir);
+        Files.write(modelDir.resolve("model.onnx.partial"), new byte[weights.length]);
+        Files.writeString(modelDir.resolve("model.onnx.partial.json"),
+                "{\"etag\": \"\\\"stale\\\"\", \"size\": " + weights.length + ", \"completed\": [[0, 51200]]}");
+
+        local.getModel("user/model");
+
+        assertArrayEquals(weights, Files.readAllBytes(modelDir.resolve("model.onnx")));
+    }
+
+    @Test
+    public void testInterruptedDownloadResumesOnRetry() throws IOException {
+        HuggingFaceHub local = localHub();
+        local.setRangeChunkSize(64 * 1024);
+        local.setRangeParallelism(1);
+        byte[] weights = new byte[512 * 1024];
+        new Random(3).nextBytes(weights);
+        server.addFile("user/model", "model.onnx", weights);
+        server.truncateNext("user/model", "model.onnx", 1, 300 * 1024);
+
+        Path modelDir = local.getModel("user/model");
+
+        assertArrayEquals(weights, Files.readAllBytes(modelDir.resolve("model.onnx")));
+        // The retry starts from the last checkpoint instead of byte 0
+        assertTrue(server.getBytesServed("user/model", "model.onnx") < 2L * weights.length - 256 * 1024);
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "config.json", "");
+        server.addFile("user/model", "model.onnx", "weights");
+
+        Path modelDir = local.getModel("user/model");
+
+        assertEquals(0, Files.size(modelDir.resolve("config.json")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidConcurrency() {
+        hub.setMaxConcurrentDownloads(0);
+    }
+
+    @Test
+    public void testDownloadsLargeFileInRanges() throws IOException {
+        HuggingFaceHub local = localHub();
+        local.setRangeChunkSize(64 * 1024);
+        local.setRangeParallelism(4);
+        byte[] weights = new byte[1024 * 1024 + 123];
+        new Random(42).nextBytes(weights);
+        server.addFile("user/model", "model.safetensors", weights);
+
+        Path modelDir = local.getModel("user/model");
+
+        assertArrayEquals(weights, Files.readAllBytes(modelDir.resolve("model.safetensors")));
+        assertEquals(17, server.countRequests("/model.safetensors"));
+    }
+
+    @Test
+    public void testFallsBackToSingleStreamWithoutRangeSupport() throws IOException {
+        HuggingFaceHub local = localHub();
+        local.setRangeChunkSize(64 * 1024);
+        byte[] weights = new byte[300 * 1024];
+        new Random(7).nextBytes(weights);
+        server.addFile("user/model", "model.onnx", weights);
+        server.setRangeSupport(false);
+
+        Path modelDir = local.getModel("user/model");
+
+        assertArrayEquals(weights, Files.readAllBytes(modelDir.resolve("model.onnx")));
+        assertEquals(1, server.countRequests("/model.onnx"));
+    }
+
+    @Test
+    public void testRejectsChecksumMismatch() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "model.onnx", "weights");
+        server.reportChecksum("user/model", "model.onnx", LocalHubServer.sha256Of("other".getBytes()));
+
+        try {
+            local.getModel("user/model");
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("model.onnx"));
+        }
+
+        Path modelDir = local.getModelCachePath("user/model");
+        assertFalse(Files.exists(modelDir.resolve("model.onnx")));
+        assertFalse(local.isModelCached("user/model"));
+    }
+
+    @Test
+    public void testVerifiesRangedDownload() throws IOException {
+        HuggingFaceHub local = localHub();
+        local.setRangeChunkSize(64 * 1024);
+        byte[] weights = new byte[500 * 1024];
+        new Random(11).nextBytes(weights);
+        server.addFile("user/model", "model.safetensors", weights);
+
+        local.getModel("user/model");
+
+        assertTrue(local.verifyModel("user/model", true).isEmpty());
+    }
+
+    @Test
+    public void testCacheValidationDetectsModifiedFiles() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "model.onnx", "weights");
+        server.addFile("user/model", "config.json", "{}");
+        Path modelDir = local.getModel("user/model");
+        assertTrue(local.verifyModel("user/model", false).isEmpty());
+
+        // Same size and mtime: only a re-hash notices
+        Path weights = modelDir.resolve("model.onnx");
+        FileTime mtime = Files.getLastModifiedTime(weights);
+        Files.writeString(weights, "WEIGHTS");
+        Files.setLastModifiedTime(weights, mtime);
+        assertTrue(local.isModelCached("user/model"));
+        assertEquals(List.of("model.onnx"), local.verifyModel("user/model", true));
+
+        // Size change: caught by the stat check and re-downloaded
+        Files.writeString(weights, "truncated");
+        assertFalse(local.isModelCached("user/model"));
+        local.getModel("user/model");
+        assertEquals("weights", Files.readString(weights));
+        assertEquals(2, server.countRequests("/model.onnx"));
+        assertEquals(1, server.countRequests("/config.json"));
+    }
+
+    @Test
+    public void testDeduplicatesFilesAcrossRepos() throws IOException {
+        HuggingFaceHub local = localHub();
+        byte[] weights = new byte[64 * 1024];
+        new Random(5).nextBytes(weights);
+        server.addFile("org/base", "model.onnx", weights);
+        server.addFile("org/base", "config.json", "{\"n_positions\": 1024}");
+        server.addFile("org/fork", "model.onnx", weights);
+        server.addFile("org/fork", "config.json", "{\"n_positions\": 2048}");
+
+        Path base = local.getModel("org/base");
+        Path fork = local.getModel("org/fork");
+
+        assertEquals(0, server.countRequests("org/fork/resolve/main/model.onnx"));
+        assertArrayEquals(weights, Files.readAllBytes(fork.resolve("model.onnx")));
+        assertTrue(Files.isSameFile(base.resolve("model.onnx"), fork.resolve("model.onnx")));
+        // Only the fork's own config would be freed by deleting it
+        assertEquals(Files.size(fork.resolve("config.json")), local.getReclaimableBytes("org/fork"));
+    }
+
+    @Test
+    public void testDeleteKeepsSharedBlobs() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("org/base", "model.onnx", "shared weights");
+        server.addFile("org/fork", "model.onnx", "shared weights");
+        local.getModel("org/base");
+        Path fork = local.getModel("org/fork");
+        Path blob = cacheDir.resolve("blobs").resolve(LocalHubServer.sha256Of("shared weights".getBytes()));
+        assertTrue(Files.exists(blob));
+
+        assertTrue(local.deleteModel("org/base"));
+        assertTrue(Files.exists(blob));
+        assertEquals("shared weights", Files.readString(fork.resolve("model.onnx")));
+        assertEquals(List.of("org/fork"), local.listCachedModels());
+
+        assertTrue(local.deleteModel("org/fork"));
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    public void testFollowsRedirectsWithRanges() throws IOException {
+        HuggingFaceHub local = localHub();
+        local.setRangeChunkSize(64 * 1024);
+        byte[] weights = new byte[256 * 1024 + 7];
+        new Random(13).nextBytes(weights);
+        server.addFile("user/model", "model.safetensors", weights);
+        server.setRedirectDownloads(true);
+
+        Path modelDir = local.getModel("user/model");
+
+        assertArrayEquals(weights, Files.readAllBytes(modelDir.resolve("model.safetensors")));
+        // One redirect, then every range goes straight to the resolved URL
+        assertEquals(1 + 5, server.countRequests("/model.safetensors"));
+    }
+
+    @Test
+    public void testRetriesStalledDownload() throws IOException {
+        HuggingFaceHub local = localHub();
+        local.setReadTimeoutMillis(200);
+        local.setRangeParallelism(1);
+        server.addFile("user/model", "model.onnx", "weights that stall halfway");
+        server.stallNext("user/model", "model.onnx", 1, 7, 5000);
+
+        long start = System.nanoTime();
+        Path modelDir = local.getModel("user/model");
+
+        assertEquals("weights that stall halfway", Files.readString(modelDir.resolve("model.onnx")));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 4000);
+    }
+
+    @Test
+    public void testForceDownloadRevalidatesUnchangedFiles() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "tokenizer.json", "{}");
+        server.addFile("user/model", "model.onnx", "weights");
+        local.getModel("user/model");
+
+        Path modelDir = local.getModel("user/model", true);
+
+        assertEquals("weights", Files.readString(modelDir.resolve("model.onnx")));
+        assertEquals("weights".length(), server.getBytesServed("user/model", "model.onnx"));
+        // Model info plus both files
+        assertEquals(3, server.getNotModifiedCount());
+        assertTrue(local.isModelCached("user/model"));
+    }
+
+    @Test
+    public void testForceDownloadFetchesChangedFiles() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "tokenizer.json", "{}");
+        server.addFile("user/model", "model.onnx", "old weights");
+        local.getModel("user/model");
+
+        server.addFile("user/model", "model.onnx", "new weights");
+        Path modelDir = local.getModel("user/model", true);
+
+        assertEquals("new weights", Files.readString(modelDir.resolve("model.onnx")));
+        assertEquals(1, server.getNotModifiedCount());
+    }
+
+    @Test
+    public void testListenerReceivesProgressEvents() throws IOException {
+        HuggingFaceHub local = localHub();
+        byte[] weights = new byte[512 * 1024];
+        new Random(7).nextBytes(weights);
+        server.addFile("user/model", "tokenizer.json", "{}");
+        server.addFile("user/model", "model.onnx", weights);
+        server.failNext("user/model", "model.onnx", 1, 503);
+
+        List<String> events = new CopyOnWriteArrayList<>();
+        List<DownloadProgress> progress = new CopyOnWriteArrayList<>();
+        local.addDownloadListener(new DownloadListener() {
+            @Override
+            public void onPlanned(String repoId, DownloadPlan plan) {
+                events.add("planned " + plan.getTotalBytes());
+            }
+
+            @Override
+            public void onFileStarted(String repoId, String path, long size) {
+                events.add("started " + path);
+            }
+
+            @Override
+            public void onProgress(DownloadProgress update) {
+                progress.add(update);
+            }
+
+            @Override
+            public void onFileFinished(String repoId, String path, long bytesTransferred) {
+                events.add("finished " + path);
+            }
+
+            @Override
+            public void onRetry(String repoId, String path, int attempt, int maxRetries, long backoffMillis,
+                                IOException cause) {
+                events.add("retry " + path);
+            }
+        });
+
+        DownloadStats stats = local.getModelWithStats("user/model", false);
+
+        assertEquals("planned " + (weights.length + 2), events.get(0));
+        assertTrue(events.contains("retry model.onnx"));
+        assertTrue(events.contains("finished model.onnx"));
+        assertTrue(events.contains("finished tokenizer.json"));
+        DownloadProgress last = progress.get(progress.size() - 1);
+        assertEquals(1.0, last.getFraction(), 1e-9);
+        assertEquals(2, last.getCompletedFiles());
+
+        assertFalse(stats.isCached());
+        assertEquals(2, stats.getPlannedFiles());
+        assertEquals(2, stats.getTransferredFiles());
+        assertEquals(weights.length + 2, stats.getTransferredBytes());
+        assertEquals(1, stats.getRetries());
+
+        DownloadStats cached = local.getModelWithStats("user/model", false);
+        assertTrue(cached.isCached());
+        assertEquals(stats.getModelDir(), cached.getModelDir());
+    }
+
+    @Test
+    public void testStatsCountRevalidatedFilesAsReused() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "tokenizer.json", "{}");
+        server.addFile("user/model", "model.onnx", "weights");
+        local.getModel("user/model");
+
+        DownloadStats stats = local.getModelWithStats("user/model", true);
+
+        assertEquals(2, stats.getReusedFiles());
+        assertEquals(0, stats.getTransferredBytes());
+    }
+
+    @Test
+    public void testConcurrentRequestsDownloadOnce() throws Exception {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "model.onnx", "weights");
+        server.setResponseDelayMillis(200);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Path>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                // Separate instances, as in independent callers sharing the cache
+                HuggingFaceHub caller = i == 0 ? local : new HuggingFaceHub(cacheDir, server.getEndpoint());
+                results.add(executor.submit(() -> caller.getModel("user/model")));
+            }
+            for (Future<Path> result : results) {
+                assertEquals("weights", Files.readString(result.get().resolve("model.onnx")));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, server.countRequests("/api/models/user/model"));
+        assertEquals(1, server.countRequests("/model.onnx"));
+    }
+
+    @Test
+    public void testWaitsForLockHeldByAnotherProcess() throws Exception {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "model.onnx", "weights");
+        Path lockFile = ModelLock.lockPath(cacheDir, "user--model");
+        Files.createDirectories(lockFile.getParent());
+
+        // A second JVM holding the model lock for a moment
+        Path holder = tempFolder.newFile("LockHolder.java").toPath();
+        Files.writeString(holder,
+                "import java.nio.channels.FileChannel;\n" +
+                "import java.nio.file.*;\n" +
+                "public class LockHolder {\n" +
+                "    public static void main(String[] args) throws Exception {\n" +
+                "        try (FileChannel channel = FileChannel.open(Paths.get(args[0]),\n" +
+                "                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {\n" +
+                "            channel.lock();\n" +
+                "            System.out.println(\"locked\");\n" +
+                "            Thread.sleep(Long.parseLong(args[1]));\n" +
+                "        }\n" +
+                "    }\n" +
+                "}\n");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, holder.toString(), lockFile.toString(), "500")
+                .redirectErrorStream(true).start();
+        try {
+            BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            assertEquals("locked", output.readLine());
+
+            local.getModel("user/model");
+
+            assertEquals(1, local.getLockWaitCount());
+            assertTrue("waited " + local.getLockWaitMillis() + " ms", local.getLockWaitMillis() >= 100);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    @Test
+    public void testEndpointIsConfigurable() throws IOException {
+        server = new LocalHubServer();
+        server.addFile("user/model", "model.onnx", "weights");
+        ModelResolver resolver = new ModelResolver(new HuggingFaceHub(cacheDir));
+        resolver.setEndpoint(server.getEndpoint() + "/");
+
+        assertEquals(server.getEndpoint(), resolver.getHub().getEndpoint());
+        assertEquals("onnx", resolver.resolve("user/model").getModelFormat());
+    }
+
+    @Test
+    public void testIndexRecordsDownloadedModels() throws IOException {
+        HuggingFaceHub local = localHub();
+        server.addFile("user/model", "model.onnx", "weights");
+        server.addFile("user/model", "config.json", "{}");
+
+        local.getModel("user/model");
+
+        List<CachedModel> models = local.listCachedModelInfo();
+        assertEquals(1, models.size());
+        CachedModel model = models.get(0);
+        assertEquals("user/model", model.getRepoId());
+        assertEquals(9, model.getSizeBytes());
+        assertNotNull(model.getRevision());
+        assertEquals("\"" + model.getRevision() + "\"", model.getEtag());
+        assertFalse(model.isPinned());
+        assertTrue(Files.exists(cacheDir.resolve(".jinfer_index.json")));
+    }
+
+    @Test
+    public void testConcurrentIndexUpdatesFromSeparateHubsAreKept() throws Exception {
+        HuggingFaceHub first = localHub();
+        // Separate instances share nothing in memory, like hubs in other processes
+        HuggingFaceHub second = new HuggingFaceHub(cacheDir, server.getEndpoint());
+        List<String> repos = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            repos.add("org/model" + i);
+            server.addFile("org/model" + i, "model.onnx", "weights" + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Path>> results = new ArrayList<>();
+            for (int i = 0; i < repos.size(); i++) {
+                HuggingFaceHub hub = i % 2 == 0 ? first : second;
+                String repo = repos.get(i);
+                results.add(executor.submit(() -> hub.getModel(repo)));
+            }
+            for (Future<Path> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<String> indexed = new HashSet<>();
+        for (CachedModel model : new HuggingFaceHub(cacheDir).listCachedModelInfo()) {
+            indexed.add(model.getRepoId());
+        }
+        assertEquals(new HashSet<>(repos), indexed);
+        assertTrue(Files.exists(cacheDir.resolve(ModelLock.LOCKS_DIR).resolve(".index.lock")));
+    }
+
+    @Test
+    public void testQuotaEvictsLeastRecentlyUsed() throws Exception {
+        HuggingFaceHub local = localHub();
+        local.setCacheQuotaBytes(2500);
+        for (String repo : new String[]{"org/a", "org/b", "org/c"}) {
+            byte[] weights = new byte[1000];
+            new Random(repo.hashCode()).nextBytes(weights);
+            server.addFile(repo, "model.onnx", weights);
+        }
+
+        local.getModel("org/a");
+        Thread.sleep(5);
+        local.getModel("org/b");
+        Thread.sleep(5);
+        local.getModel("org/a");
+        Thread.sleep(5);
+        local.getModel("org/c");
+
+        assertEquals(List.of("org/a", "org/c"), local.listCachedModels());
+        assertFalse(Files.exists(local.getModelCachePath("org/b")));
+    }
+
+    @Test
+    public void testQuotaKeepsPinnedModels() throws Exception {
+        HuggingFaceHub local = localHub();
+        for (String repo : new String[]{"org/a", "org/b", "org/c"}) {
+            byte[] weights = new byte[1000];
+            new Random(repo.hashCode()).nextBytes(weights);
+            server.addFile(repo, "model.onnx", weights);
+        }
+
+        local.getModel("org/a");
+        assertTrue(local.setPinned("org/a", true));
+        Thread.sleep(5);
+        local.getModel("org/b");
+        Thread.sleep(5);
+        local.setCacheQuotaBytes(2500);
+        local.getModel("org/c");
+
+        assertEquals(List.of("org/a", "org/c"), local.listCachedModels());
+        assertFalse(local.setPinned("org/b", true));
+    }
+
+    @Test
+    public void testParseSize() {
+        assertEquals(1024, HuggingFaceHub.parseSize("1K"));
+        assertEquals(500L * 1024 * 1024, HuggingFaceHub.parseSize("500M"));
+        assertEquals(50L * 1024 * 1024 * 1024, HuggingFaceHub.parseSize("50GB"));
+        assertEquals(1536L * 1024 * 1024, HuggingFaceHub.parseSize("1.5g"));
+        assertEquals(12345, HuggingFaceHub.parseSize("12345"));
+    }
+
+    @Test
+    public void testParseContentRangeTotal() {
+        assertEquals(4096, HuggingFaceHub.parseContentRangeTotal("bytes 0-1023/4096"));
+        assertEquals(-1, HuggingFaceHub.parseContentRangeTotal("bytes 0-1023/*"));
+        assertEquals(-1, HuggingFaceHub.parseContentRangeTotal(null));
+    }
 }
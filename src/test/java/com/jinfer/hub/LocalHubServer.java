@@ -0,0 +1,310 @@
+package com.jinfer.hub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal local stand-in for the HuggingFace Hub API and file endpoints.
+ */
+class LocalHubServer implements AutoCloseable {
+
+    private static final String RESOLVE = "/resolve/main/";
+    private static final String CDN = "/cdn/";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Map<String, byte[]>> repos = new ConcurrentHashMap<>();
+    private final Map<String, int[]> failures = new ConcurrentHashMap<>();
+    private final Map<String, long[]> truncations = new ConcurrentHashMap<>();
+    private final Map<String, long[]> stalls = new ConcurrentHashMap<>();
+    private final Map<String, String> reportedChecksums = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> bytesServed = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private volatile long responseDelayMillis = 0;
+    private volatile boolean rangeSupport = true;
+    private volatile boolean redirectDownloads = false;
+
+    LocalHubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void addFile(String repoId, String filename, byte[] content) {
+        repos.computeIfAbsent(repoId, k -> new ConcurrentHashMap<>()).put(filename, content);
+    }
+
+    void addFile(String repoId, String filename, String content) {
+        addFile(repoId, filename, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Answer the next {@code times} requests for a file with the given status.
+     */
+    void failNext(String repoId, String filename, int times, int status) {
+        failures.put(repoId + RESOLVE + filename, new int[]{times, status});
+    }
+
+    /**
+     * Cut the next {@code times} responses for a file after {@code afterBytes} body bytes.
+     */
+    void truncateNext(String repoId, String filename, int times, long afterBytes) {
+        truncations.put(repoId + RESOLVE + filename, new long[]{times, afterBytes});
+    }
+
+    /**
+     * Pause the next {@code times} responses for a file for {@code millis}
+     * after {@code afterBytes} body bytes.
+     */
+    void stallNext(String repoId, String filename, int times, long afterBytes, long millis) {
+        stalls.put(repoId + RESOLVE + filename, new long[]{times, afterBytes, millis});
+    }
+
+    /**
+     * Answer file requests with a redirect to a separate "CDN" path, like the Hub does for LFS files.
+     */
+    void setRedirectDownloads(boolean redirectDownloads) {
+        this.redirectDownloads = redirectDownloads;
+    }
+
+    /**
+     * Report a different LFS checksum for a file than its real content has.
+     */
+    void reportChecksum(String repoId, String filename, String sha256) {
+        reportedChecksums.put(repoId + RESOLVE + filename, sha256);
+    }
+
+    static String sha256Of(byte[] content) {
+        return Checksums.hex(Checksums.newSha256().digest(content));
+    }
+
+    /**
+     * Strong entity tag the server reports for a file.
+     */
+    static String etagOf(byte[] content) {
+        return "\"" + Integer.toHexString(Arrays.hashCode(content)) + "\"";
+    }
+
+    long getBytesServed(String repoId, String filename) {
+        AtomicLong served = bytesServed.get(repoId + RESOLVE + filename);
+        return served != null ? served.get() : 0;
+    }
+
+    void setResponseDelayMillis(long responseDelayMillis) {
+        this.responseDelayMillis = responseDelayMillis;
+    }
+
+    void setRangeSupport(boolean rangeSupport) {
+        this.rangeSupport = rangeSupport;
+    }
+
+    int getMaxConcurrentRequests() {
+        return maxActive.get();
+    }
+
+    /**
+     * Number of requests answered with 304 Not Modified.
+     */
+    int getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    long countRequests(String pathSuffix) {
+        return requests.stream().filter(r -> r.endsWith(pathSuffix)).count();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requests.add(path);
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            if (responseDelayMillis > 0) {
+                Thread.sleep(responseDelayMillis);
+            }
+            if (path.startsWith("/api/models/")) {
+                handleApi(exchange, path.substring("/api/models/".length()));
+            } else if (path.startsWith(CDN)) {
+                handleFile(exchange, path.substring(CDN.length()));
+            } else if (path.contains(RESOLVE) && redirectDownloads) {
+                exchange.getResponseHeaders().set("Location", getEndpoint() + CDN + path.substring(1));
+                send(exchange, 302, new byte[0]);
+            } else if (path.contains(RESOLVE)) {
+                handleFile(exchange, path.substring(1));
+            } else {
+                send(exchange, 404, new byte[0]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private void handleApi(HttpExchange exchange, String repoId) throws IOException {
+        Map<String, byte[]> files = repos.get(repoId);
+        if (files == null) {
+            send(exchange, 404, new byte[0]);
+            return;
+        }
+        String revision = revisionOf(files);
+        String etag = "\"" + revision + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            send(exchange, 304, new byte[0]);
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"id\": \"" + repoId + "\", \"sha\": \"" + revision + "\", \"siblings\": [");
+        boolean first = true;
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            String name = file.getKey();
+            byte[] content = file.getValue();
+            json.append(first ? "" : ",").append("{\"rfilename\": \"").append(name)
+                .append("\", \"size\": ").append(content.length);
+            if (isLfs(name)) {
+                // Weight files are stored in LFS and listed with their SHA-256
+                String sha256 = reportedChecksums.getOrDefault(repoId + RESOLVE + name, sha256Of(content));
+                json.append(", \"lfs\": {\"sha256\": \"").append(sha256)
+                    .append("\", \"size\": ").append(content.length).append("}");
+            }
+            json.append("}");
+            first = false;
+        }
+        json.append("]}");
+        send(exchange, 200, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Commit hash the server reports for a repository, derived from its contents.
+     */
+    static String revisionOf(Map<String, byte[]> files) {
+        int hash = 0;
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            hash += file.getKey().hashCode() ^ Arrays.hashCode(file.getValue());
+        }
+        return Integer.toHexString(hash);
+    }
+
+    private static boolean isLfs(String name) {
+        return name.endsWith(".onnx") || name.endsWith(".safetensors") || name.endsWith(".bin");
+    }
+
+    private void handleFile(HttpExchange exchange, String key) throws IOException {
+        int[] failure = failures.get(key);
+        if (failure != null && failure[0] > 0) {
+            failure[0]--;
+            send(exchange, failure[1], new byte[0]);
+            return;
+        }
+
+        int split = key.indexOf(RESOLVE);
+        Map<String, byte[]> files = repos.get(key.substring(0, split));
+        byte[] content = files != null ? files.get(key.substring(split + RESOLVE.length())) : null;
+        if (content == null) {
+            send(exchange, 404, new byte[0]);
+            return;
+        }
+        String etag = etagOf(content);
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            send(exchange, 304, new byte[0]);
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        boolean ranged = rangeSupport && range != null && range.startsWith("bytes=")
+                && (ifRange == null || ifRange.equals(etag));
+        if (rangeSupport) {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        }
+
+        byte[] body = content;
+        int status = 200;
+        if (ranged) {
+            String spec = range.substring("bytes=".length());
+            int dash = spec.indexOf('-');
+            long start = Long.parseLong(spec.substring(0, dash));
+            long end = dash + 1 < spec.length() ? Long.parseLong(spec.substring(dash + 1)) : content.length - 1;
+            end = Math.min(end, content.length - 1);
+            if (start > end) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+                send(exchange, 416, new byte[0]);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            body = Arrays.copyOfRange(content, (int) start, (int) end + 1);
+            status = 206;
+        }
+
+        long[] truncation = truncations.get(key);
+        long limit = body.length;
+        if (truncation != null && truncation[0] > 0) {
+            truncation[0]--;
+            limit = Math.min(limit, truncation[1]);
+        }
+        bytesServed.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(limit);
+
+        long[] stall = stalls.get(key);
+        long pauseAt = -1;
+        if (stall != null && stall[0] > 0) {
+            stall[0]--;
+            pauseAt = Math.min(limit, stall[1]);
+        }
+
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (pauseAt >= 0) {
+                out.write(body, 0, (int) pauseAt);
+                out.flush();
+                Thread.sleep(stall[2]);
+                out.write(body, (int) pauseAt, (int) (limit - pauseAt));
+            } else {
+                out.write(body, 0, (int) limit);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Client went away or the response was cut on purpose
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
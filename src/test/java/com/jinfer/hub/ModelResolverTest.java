@@ -9,6 +9,8 @@ import org.junit.rules.TemporaryFolder;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -100,6 +102,57 @@ public class ModelResolverTest {
         assertEquals("safetensors", config.getModelFormat());
     }
 
+    @Test
+    public void testResolvesConfiguredVariantInSubdirectory() throws IOException {
+        Path modelDir = tempFolder.newFolder("variant-model").toPath();
+        Files.createDirectories(modelDir.resolve("onnx"));
+        Files.writeString(modelDir.resolve("onnx/model.onnx"), "fake");
+        Files.writeString(modelDir.resolve("onnx/model_quantized.onnx"), "fake");
+
+        assertEquals(modelDir.resolve("onnx/model.onnx"), resolver.resolve(modelDir.toString()).getModelPath());
+
+        resolver.setDownloadOptions(DownloadOptions.builder().variant("quantized").build());
+        assertEquals(modelDir.resolve("onnx/model_quantized.onnx"), resolver.resolve(modelDir.toString()).getModelPath());
+    }
+
+    @Test
+    public void testResolvesShardedCheckpointByIndex() throws IOException {
+        Path modelDir = tempFolder.newFolder("sharded-model").toPath();
+        Files.writeString(modelDir.resolve("model.safetensors.index.json"), "{\"weight_map\": {" +
+                "\"a\": \"model-00001-of-00002.safetensors\", \"b\": \"model-00002-of-00002.safetensors\"}}");
+        Files.writeString(modelDir.resolve("model-00001-of-00002.safetensors"), "shard 1");
+        Files.writeString(modelDir.resolve("model-00002-of-00002.safetensors"), "shard 2");
+
+        ModelConfig config = resolver.resolve(modelDir.toString());
+
+        assertEquals(modelDir.resolve("model.safetensors.index.json"), config.getModelPath());
+        assertEquals("safetensors", config.getModelFormat());
+        assertEquals(List.of(modelDir.resolve("model-00001-of-00002.safetensors"),
+                modelDir.resolve("model-00002-of-00002.safetensors")), config.getWeightFiles());
+    }
+
+    @Test
+    public void testResolvesOnnxExternalData() throws IOException {
+        Path modelDir = tempFolder.newFolder("external-model").toPath();
+        Files.write(modelDir.resolve("model.onnx"), WeightManifestsTest.onnxGraph("weights.dat"));
+        Files.writeString(modelDir.resolve("weights.dat"), "external");
+
+        ModelConfig config = resolver.resolve(modelDir.toString());
+
+        assertEquals(modelDir.resolve("model.onnx"), config.getModelPath());
+        assertEquals(List.of(modelDir.resolve("weights.dat")), config.getWeightFiles());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingShardFails() throws IOException {
+        Path modelDir = tempFolder.newFolder("incomplete-model").toPath();
+        Files.writeString(modelDir.resolve("model.safetensors.index.json"), "{\"weight_map\": {" +
+                "\"a\": \"model-00001-of-00002.safetensors\", \"b\": \"model-00002-of-00002.safetensors\"}}");
+        Files.writeString(modelDir.resolve("model-00001-of-00002.safetensors"), "shard 1");
+
+        resolver.resolve(modelDir.toString());
+    }
+
     @Test
     public void testReadContextLengthFromConfig() throws IOException {
         Path modelDir = tempFolder.newFolder("config-model").toPath();
@@ -134,6 +187,51 @@ public class ModelResolverTest {
         assertEquals(2048, config.getContextLength()); // default
     }
 
+    @Test
+    public void testResolveCacheSkipsParsingUnchangedFiles() throws IOException {
+        Path modelDir = tempFolder.newFolder("cached-config-model").toPath();
+        Files.writeString(modelDir.resolve("model.onnx"), "fake");
+        Path configFile = modelDir.resolve("config.json");
+        Files.writeString(configFile, "{\"n_positions\": 1024, \"eos_token_id\": 5}");
+
+        ModelConfig first = resolver.resolve(modelDir.toString());
+        assertEquals(1024, first.getContextLength());
+        assertEquals(Long.valueOf(5), first.getMetadata().getEosTokenId());
+        assertTrue(Files.exists(cacheDir.resolve(ResolveCache.FILE_NAME)));
+
+        // Same modification time: a new resolver, as in a later CLI run, reuses the cached result
+        FileTime modified = Files.getLastModifiedTime(configFile);
+        Files.writeString(configFile, "{\"n_positions\": 4096}");
+        Files.setLastModifiedTime(configFile, modified);
+        ModelResolver later = new ModelResolver(new HuggingFaceHub(cacheDir));
+        assertEquals(1024, later.resolve(modelDir.toString()).getContextLength());
+
+        Files.setLastModifiedTime(configFile, FileTime.fromMillis(modified.toMillis() + 1000));
+        assertEquals(4096, later.resolve(modelDir.toString()).getContextLength());
+    }
+
+    @Test
+    public void testResolveCacheSeesAddedWeights() throws IOException {
+        Path modelDir = tempFolder.newFolder("growing-model").toPath();
+        Files.writeString(modelDir.resolve("model.safetensors"), "fake");
+        assertEquals("safetensors", resolver.resolve(modelDir.toString()).getModelFormat());
+
+        FileTime modified = Files.getLastModifiedTime(modelDir);
+        Files.writeString(modelDir.resolve("model.onnx"), "fake");
+        Files.setLastModifiedTime(modelDir, FileTime.fromMillis(modified.toMillis() + 1000));
+
+        assertEquals("onnx", resolver.resolve(modelDir.toString()).getModelFormat());
+    }
+
+    @Test
+    public void testResolveCacheIgnoresCorruptFile() throws IOException {
+        Files.writeString(cacheDir.resolve(ResolveCache.FILE_NAME), "{broken");
+        Path modelDir = tempFolder.newFolder("corrupt-cache-model").toPath();
+        Files.writeString(modelDir.resolve("model.onnx"), "fake");
+
+        assertEquals("onnx", resolver.resolve(modelDir.toString()).getModelFormat());
+    }
+
     @Test(expected = IOException.class)
     public void testResolveNonexistent() throws IOException {
         resolver.resolve("/nonexistent/path/to/model");
@@ -0,0 +1,76 @@
+package com.jinfer.hub;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class WeightManifestsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Bytes standing in for an ONNX graph whose initializers are stored in the
+     * given external data files: a serialized {@code location} entry for each.
+     */
+    static byte[] onnxGraph(String... locations) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{0x08, 0x07, 0x12, 0x04});
+        out.writeBytes("test".getBytes(StandardCharsets.US_ASCII));
+        for (String location : locations) {
+            byte[] value = location.getBytes(StandardCharsets.UTF_8);
+            out.write(0x0A);
+            out.write(8);
+            out.writeBytes("location".getBytes(StandardCharsets.US_ASCII));
+            out.write(0x12);
+            out.write(value.length);
+            out.writeBytes(value);
+            // Followed by the offset entry, as the exporter writes it
+            out.writeBytes(new byte[]{0x0A, 0x06});
+            out.writeBytes("offset".getBytes(StandardCharsets.US_ASCII));
+            out.writeBytes(new byte[]{0x12, 0x01, '0'});
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testParsesWeightMap() throws IOException {
+        String json = "{\"metadata\": {\"total_size\": 16}, \"weight_map\": {" +
+                "\"a.weight\": \"model-00001-of-00002.safetensors\", " +
+                "\"b.weight\": \"model-00002-of-00002.safetensors\", " +
+                "\"c.weight\": \"model-00002-of-00002.safetensors\"}}";
+
+        assertEquals(Set.of("sub/model-00001-of-00002.safetensors", "sub/model-00002-of-00002.safetensors"),
+                WeightManifests.parseWeightMap("sub/model.safetensors.index.json", json));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsIndexWithoutWeightMap() throws IOException {
+        WeightManifests.parseWeightMap("model.safetensors.index.json", "{\"metadata\": {}}");
+    }
+
+    @Test
+    public void testFindsOnnxExternalData() throws IOException {
+        Path graph = tempFolder.newFile("model.onnx").toPath();
+        Files.write(graph, onnxGraph("weights.bin", "weights.bin", "extra/more.dat"));
+
+        assertEquals(Set.of("weights.bin", "extra/more.dat"), WeightManifests.onnxExternalData(graph));
+    }
+
+    @Test
+    public void testGraphWithoutExternalData() throws IOException {
+        Path graph = tempFolder.newFile("model.onnx").toPath();
+        Files.write(graph, onnxGraph());
+
+        assertTrue(WeightManifests.onnxExternalData(graph).isEmpty());
+    }
+}
@@ -0,0 +1,316 @@
+package com.jinfer.tokenization;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class ChatEncoderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private SimpleTokenizer delegate;
+    private List<String> encoded;
+    private ChatEncoder encoder;
+
+    @Before
+    public void setUp() {
+        delegate = new SimpleTokenizer();
+        encoded = new ArrayList<>();
+
+        Tokenizer recording = new Tokenizer() {
+            @Override
+            public long[] encode(String text) {
+                encoded.add(text);
+                return delegate.encode(text);
+            }
+
+            @Override
+            public EncodingResult encodeWithAttention(String text) {
+                return delegate.encodeWithAttention(text);
+            }
+
+            @Override
+            public String decode(long[] tokenIds) {
+                return delegate.decode(tokenIds);
+            }
+
+            @Override
+            public String decode(long tokenId) {
+                return delegate.decode(tokenId);
+            }
+
+            @Override
+            public int getVocabSize() {
+                return delegate.getVocabSize();
+            }
+
+            @Override
+            public long getEosTokenId() {
+                return delegate.getEosTokenId();
+            }
+
+            @Override
+            public long getPadTokenId() {
+                return delegate.getPadTokenId();
+            }
+        };
+
+        encoder = new ChatEncoder(ChatTemplate.plain(), recording);
+    }
+
+    @Test
+    public void testMatchesRenderedPrompt() {
+        List<ChatMessage> messages = Arrays.asList(
+                ChatMessage.system("you are helpful"),
+                ChatMessage.user("hello there"));
+
+        long[] spliced = encoder.encode(messages, true);
+        long[] rendered = delegate.encode(ChatTemplate.plain().render(messages, true));
+
+        assertArrayEquals(rendered, spliced);
+    }
+
+    @Test
+    public void testFragmentsEncodedOnce() {
+        encoder.encode(Arrays.asList(ChatMessage.user("first question")), true);
+        int afterFirst = encoded.size();
+
+        encoder.encode(Arrays.asList(ChatMessage.user("second question")), true);
+
+        // Only the new message content is tokenized on the second request
+        assertEquals(afterFirst + 1, encoded.size());
+        assertEquals("second question", encoded.get(encoded.size() - 1));
+        assertEquals(3, encoder.getCachedFragmentCount());
+    }
+
+    @Test
+    public void testMatchesByteLevelBpeAtSpaceBoundaries() throws IOException {
+        Tokenizer bpe = ByteLevelBpe.load(writeGpt2Tokenizer());
+
+        // The space before content belongs to the content's first token
+        assertFalse(Arrays.equals(bpe.encode("User: hello", false),
+                concat(bpe.encode("User: ", false), bpe.encode("hello", false))));
+
+        assertMatchesRendered(bpe);
+    }
+
+    @Test
+    public void testMatchesHuggingFaceTokenizer() throws IOException {
+        Path path = writeGpt2Tokenizer();
+        HuggingFaceTokenizer tokenizer;
+        try {
+            tokenizer = new HuggingFaceTokenizer(path);
+            Assume.assumeNotNull((Object) tokenizer.encode("hello", false));
+        } catch (Exception | LinkageError e) {
+            Assume.assumeNoException("Tokenizers native library unavailable", e);
+            return;
+        }
+        try {
+            // Same tokenization as the reference implementation
+            Tokenizer reference = ByteLevelBpe.load(path);
+            assertArrayEquals(reference.encode("User: hello [/INST]", false),
+                    tokenizer.encode("User: hello [/INST]", false));
+            assertMatchesRendered(tokenizer);
+        } finally {
+            tokenizer.close();
+        }
+    }
+
+    private void assertMatchesRendered(Tokenizer tokenizer) {
+        List<List<ChatMessage>> conversations = Arrays.asList(
+                Arrays.asList(ChatMessage.system("you are helpful"), ChatMessage.user("hello there")),
+                Arrays.asList(ChatMessage.user("Hello, world"), ChatMessage.assistant(" hello"),
+                        ChatMessage.user("")),
+                Arrays.asList(ChatMessage.user("  two spaces\nand a line")));
+        List<ChatTemplate> templates = Arrays.asList(
+                ChatTemplate.plain(),
+                ChatTemplate.inst("<|endoftext|>", "<|endoftext|>"),
+                ChatTemplate.llama2("<|endoftext|>", "<|endoftext|>"),
+                ChatTemplate.chatml(),
+                ChatTemplate.phi3());
+
+        for (ChatTemplate template : templates) {
+            ChatEncoder chatEncoder = new ChatEncoder(template, tokenizer);
+            for (List<ChatMessage> conversation : conversations) {
+                for (int pass = 0; pass < 2; pass++) {
+                    assertArrayEquals(template.getName() + ": " + conversation,
+                            tokenizer.encode(template.render(conversation, true), false),
+                            chatEncoder.encode(conversation, true));
+                }
+            }
+        }
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * A GPT-2 style byte-level BPE tokenizer.json with a byte alphabet and
+     * merges for a few words, most of them with the leading space.
+     */
+    private Path writeGpt2Tokenizer() throws IOException {
+        JsonObject vocab = new JsonObject();
+        for (int b = 0; b < 256; b++) {
+            vocab.addProperty(String.valueOf(ByteLevelBpe.BYTE_CHARS[b]), b);
+        }
+        JsonArray merges = new JsonArray();
+        String[] words = {"\u0120hello", "\u0120there", "\u0120world", "\u0120helpful", "\u0120[/", "\u0120are", "\u0120you",
+                "User", "System", "Assistant", "hello", "Hello", "INST", "user", "system", "assistant"};
+        for (String word : words) {
+            String merged = word.substring(0, 1);
+            for (int i = 1; i < word.length(); i++) {
+                String next = merged + word.charAt(i);
+                if (!vocab.has(next)) {
+                    merges.add(merged + " " + word.charAt(i));
+                    vocab.addProperty(next, vocab.size());
+                }
+                merged = next;
+            }
+        }
+
+        JsonArray addedTokens = new JsonArray();
+        for (String special : new String[]{"<|endoftext|>", "<|im_start|>", "<|im_end|>",
+                "<|user|>", "<|assistant|>", "<|system|>", "<|end|>"}) {
+            JsonObject token = new JsonObject();
+            token.addProperty("id", vocab.size());
+            token.addProperty("content", special);
+            token.addProperty("single_word", false);
+            token.addProperty("lstrip", false);
+            token.addProperty("rstrip", false);
+            token.addProperty("normalized", false);
+            token.addProperty("special", true);
+            addedTokens.add(token);
+            vocab.addProperty(special, vocab.size());
+        }
+
+        JsonObject byteLevel = new JsonObject();
+        byteLevel.addProperty("type", "ByteLevel");
+        byteLevel.addProperty("add_prefix_space", false);
+        byteLevel.addProperty("trim_offsets", true);
+        byteLevel.addProperty("use_regex", true);
+
+        JsonObject model = new JsonObject();
+        model.addProperty("type", "BPE");
+        model.add("vocab", vocab);
+        model.add("merges", merges);
+
+        JsonObject json = new JsonObject();
+        json.addProperty("version", "1.0");
+        json.add("added_tokens", addedTokens);
+        json.add("pre_tokenizer", byteLevel);
+        json.add("decoder", byteLevel);
+        json.add("model", model);
+
+        Path path = tempFolder.getRoot().toPath().resolve("tokenizer.json");
+        Files.writeString(path, new Gson().toJson(json));
+        return path;
+    }
+
+    /**
+     * Reference GPT-2 byte-level BPE: split off added tokens, pre-tokenize with
+     * the GPT-2 pattern, map bytes to their printable characters and apply the
+     * lowest-ranked merge until none applies.
+     */
+    static final class ByteLevelBpe extends SimpleTokenizer {
+
+        static final char[] BYTE_CHARS = new char[256];
+        private static final Pattern PRE_TOKENS = Pattern.compile(
+                "'s|'t|'re|'ve|'m|'ll|'d| ?\\p{L}+| ?\\p{N}+| ?[^\\s\\p{L}\\p{N}]+|\\s+(?!\\S)|\\s+");
+
+        static {
+            int extra = 0;
+            for (int b = 0; b < 256; b++) {
+                boolean printable = (b >= '!' && b <= '~') || (b >= 0xA1 && b <= 0xAC) || (b >= 0xAE && b <= 0xFF);
+                BYTE_CHARS[b] = printable ? (char) b : (char) (256 + extra++);
+            }
+        }
+
+        private final Map<String, Long> vocab = new HashMap<>();
+        private final Map<String, Integer> ranks = new HashMap<>();
+        private final List<String> addedTokens = new ArrayList<>();
+
+        static ByteLevelBpe load(Path path) throws IOException {
+            JsonObject json = new Gson().fromJson(Files.readString(path), JsonObject.class);
+            ByteLevelBpe bpe = new ByteLevelBpe();
+            JsonObject model = json.getAsJsonObject("model");
+            model.getAsJsonObject("vocab").entrySet()
+                    .forEach(e -> bpe.vocab.put(e.getKey(), e.getValue().getAsLong()));
+            JsonArray merges = model.getAsJsonArray("merges");
+            for (int i = 0; i < merges.size(); i++) {
+                bpe.ranks.put(merges.get(i).getAsString(), i);
+            }
+            json.getAsJsonArray("added_tokens")
+                    .forEach(t -> bpe.addedTokens.add(t.getAsJsonObject().get("content").getAsString()));
+            return bpe;
+        }
+
+        @Override
+        public long[] encode(String text) {
+            List<Long> ids = new ArrayList<>();
+            StringBuilder pattern = new StringBuilder();
+            for (String token : addedTokens) {
+                pattern.append(pattern.length() == 0 ? "" : "|").append(Pattern.quote(token));
+            }
+            Matcher special = Pattern.compile(pattern.toString()).matcher(text);
+            int start = 0;
+            while (special.find()) {
+                encodeText(text.substring(start, special.start()), ids);
+                ids.add(vocab.get(special.group()));
+                start = special.end();
+            }
+            encodeText(text.substring(start), ids);
+            return ids.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        private void encodeText(String text, List<Long> ids) {
+            Matcher matcher = PRE_TOKENS.matcher(text);
+            while (matcher.find()) {
+                List<String> symbols = new ArrayList<>();
+                for (byte b : matcher.group().getBytes(StandardCharsets.UTF_8)) {
+                    symbols.add(String.valueOf(BYTE_CHARS[b & 0xFF]));
+                }
+                while (true) {
+                    int best = -1;
+                    int bestRank = Integer.MAX_VALUE;
+                    for (int i = 0; i + 1 < symbols.size(); i++) {
+                        Integer rank = ranks.get(symbols.get(i) + " " + symbols.get(i + 1));
+                        if (rank != null && rank < bestRank) {
+                            best = i;
+                            bestRank = rank;
+                        }
+                    }
+                    if (best < 0) {
+                        break;
+                    }
+                    symbols.set(best, symbols.get(best) + symbols.remove(best + 1));
+                }
+                for (String symbol : symbols) {
+                    ids.add(vocab.get(symbol));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.jinfer.tokenization;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ChatTemplateTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final List<ChatMessage> messages = Arrays.asList(
+            ChatMessage.system("Be brief."),
+            ChatMessage.user("Hi"));
+
+    @Test
+    public void testRenderChatml() {
+        String prompt = ChatTemplate.chatml().render(messages, true);
+
+        assertEquals("<|im_start|>system\nBe brief.<|im_end|>\n" +
+                "<|im_start|>user\nHi<|im_end|>\n" +
+                "<|im_start|>assistant\n", prompt);
+    }
+
+    @Test
+    public void testRenderLlama3() {
+        String prompt = ChatTemplate.llama3().render(messages, false);
+
+        assertEquals("<|begin_of_text|><|start_header_id|>system<|end_header_id|>\n\nBe brief.<|eot_id|>" +
+                "<|start_header_id|>user<|end_header_id|>\n\nHi<|eot_id|>", prompt);
+    }
+
+    @Test
+    public void testInstMergesSystemPrompt() {
+        String prompt = ChatTemplate.inst("<s>", "</s>").render(messages, true);
+
+        assertEquals("<s>[INST] Be brief.\n\nHi [/INST]", prompt);
+    }
+
+    @Test
+    public void testLlama2PutsSystemPromptInSysBlock() {
+        String prompt = ChatTemplate.llama2("<s>", "</s>").render(messages, true);
+
+        assertEquals("<s>[INST] <<SYS>>\nBe brief.\n<</SYS>>\n\nHi [/INST]", prompt);
+    }
+
+    @Test
+    public void testRenderPhi3() {
+        String prompt = ChatTemplate.phi3().render(messages, true);
+
+        assertEquals("<|system|>\nBe brief.<|end|>\n<|user|>\nHi<|end|>\n<|assistant|>\n", prompt);
+    }
+
+    @Test
+    public void testDetectFamilies() {
+        assertEquals("chatml", ChatTemplate.detect("{{'<|im_start|>' + message['role']}}", "<s>", "</s>").getName());
+        assertEquals("llama3", ChatTemplate.detect("<|start_header_id|>", "<s>", "</s>").getName());
+        assertEquals("gemma", ChatTemplate.detect("<start_of_turn>", "<s>", "</s>").getName());
+        assertEquals("inst", ChatTemplate.detect("[INST] {{ content }} [/INST]", "<s>", "</s>").getName());
+        assertEquals("llama2", ChatTemplate.detect("[INST] <<SYS>>\\n{{ system }}", "<s>", "</s>").getName());
+        assertEquals("zephyr", ChatTemplate.detect("<|user|>\n", "<s>", "</s>").getName());
+        assertEquals("phi3", ChatTemplate.detect("<|user|>\n{{ content }}<|end|>\n", "<s>", "</s>").getName());
+        assertEquals("plain", ChatTemplate.detect(null, "<s>", "</s>").getName());
+    }
+
+    @Test
+    public void testLoadFromTokenizerConfig() throws IOException {
+        Path config = tempFolder.newFile("tokenizer_config.json").toPath();
+        Files.writeString(config, "{\"bos_token\": {\"content\": \"<s>\"}, \"eos_token\": \"</s>\", " +
+                "\"chat_template\": \"{% for m in messages %}[INST] {{ m.content }} [/INST]{% endfor %}\"}");
+
+        ChatTemplate template = ChatTemplate.load(config);
+
+        assertEquals("inst", template.getName());
+        assertEquals("<s>", template.getBos());
+    }
+
+    @Test
+    public void testLoadNamedTemplates() throws IOException {
+        Path config = tempFolder.newFile("tokenizer_config.json").toPath();
+        Files.writeString(config, "{\"chat_template\": [" +
+                "{\"name\": \"tool_use\", \"template\": \"[INST]\"}," +
+                "{\"name\": \"default\", \"template\": \"<|im_start|>\"}]}");
+
+        assertEquals("chatml", ChatTemplate.load(config).getName());
+    }
+
+    @Test
+    public void testLoadMissingFallsBackToPlain() {
+        ChatTemplate template = ChatTemplate.load(tempFolder.getRoot().toPath().resolve("missing.json"));
+
+        assertEquals("plain", template.getName());
+        assertEquals("System: Be brief.\nUser: Hi\nAssistant:", template.render(messages, true));
+    }
+}
@@ -0,0 +1,189 @@
+package com.jinfer.tokenization;
+
+import com.jinfer.config.TruncationStrategy;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ChunkedEncoderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private SimpleTokenizer tokenizer;
+    private ChunkedEncoder encoder;
+    private String text;
+    private long[] expected;
+
+    @Before
+    public void setUp() {
+        tokenizer = new SimpleTokenizer();
+        encoder = new ChunkedEncoder(tokenizer, 64, 4, ForkJoinPool.commonPool());
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("word").append(i).append(i % 7 == 0 ? "\n" : " ");
+        }
+        text = sb.toString();
+
+        // Encode once up front so the vocabulary IDs are fixed
+        expected = tokenizer.encode(text);
+    }
+
+    @Test
+    public void testChunkedMatchesDirectEncoding() {
+        assertArrayEquals(expected, encoder.encode(text));
+    }
+
+    @Test
+    public void testShortTextUsesSingleChunk() {
+        assertArrayEquals(tokenizer.encode("word1 word2"), encoder.encode("word1 word2"));
+    }
+
+    @Test
+    public void testReaderMatchesDirectEncoding() throws IOException {
+        long[] ids = encoder.encode(new StringReader(text), TruncationStrategy.NONE, Integer.MAX_VALUE);
+        assertArrayEquals(expected, ids);
+    }
+
+    @Test
+    public void testMappedFileMatchesDirectEncoding() throws IOException {
+        Path file = tempFolder.newFile("prompt.txt").toPath();
+        Files.writeString(file, text);
+
+        long[] ids = encoder.encode(file, TruncationStrategy.NONE, Integer.MAX_VALUE);
+        assertArrayEquals(expected, ids);
+    }
+
+    @Test
+    public void testLongPromptWithoutTruncationMatchesWholeText() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 3 * ChunkedEncoder.DEFAULT_CHUNK_SIZE; i++) {
+            sb.append("token").append(i).append(i % 11 == 0 ? "\n" : " ");
+        }
+        String prompt = sb.toString();
+        long[] whole = new SimpleTokenizer().encode(prompt);
+
+        // Fresh vocabularies, so IDs depend on the order new words are seen
+        assertArrayEquals(whole, new ChunkedEncoder(new SimpleTokenizer()).encode(prompt));
+        assertArrayEquals(whole, new ChunkedEncoder(new SimpleTokenizer())
+                .encode(new StringReader(prompt), TruncationStrategy.NONE, 100));
+        Path file = tempFolder.newFile("long-prompt.txt").toPath();
+        Files.writeString(file, prompt);
+        assertArrayEquals(whole, new ChunkedEncoder(new SimpleTokenizer())
+                .encode(file, TruncationStrategy.NONE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testKeepHead() {
+        long[] ids = encoder.encode(text, TruncationStrategy.KEEP_HEAD, 100);
+        assertArrayEquals(Arrays.copyOfRange(expected, 0, 100), ids);
+    }
+
+    @Test
+    public void testKeepTail() {
+        long[] ids = encoder.encode(text, TruncationStrategy.KEEP_TAIL, 100);
+        assertArrayEquals(Arrays.copyOfRange(expected, expected.length - 100, expected.length), ids);
+    }
+
+    @Test
+    public void testMiddleOut() {
+        long[] ids = encoder.encode(text, TruncationStrategy.MIDDLE_OUT, 100);
+
+        assertEquals(100, ids.length);
+        assertArrayEquals(Arrays.copyOfRange(expected, 0, 50), Arrays.copyOfRange(ids, 0, 50));
+        assertArrayEquals(Arrays.copyOfRange(expected, expected.length - 50, expected.length),
+                Arrays.copyOfRange(ids, 50, 100));
+    }
+
+    @Test
+    public void testReaderTruncation() throws IOException {
+        long[] ids = encoder.encode(new StringReader(text), TruncationStrategy.KEEP_TAIL, 10);
+        assertArrayEquals(Arrays.copyOfRange(expected, expected.length - 10, expected.length), ids);
+    }
+
+    @Test
+    public void testKeepsSpecialTokensAtTheirEnds() throws IOException {
+        // Adds BOS in front and EOS at the end, like add_bos_token with add_eos_token
+        Tokenizer wrapping = new SimpleTokenizer() {
+            @Override
+            public long[] encode(String text) {
+                return encode(text, true);
+            }
+
+            @Override
+            public long[] encode(String text, boolean addSpecialTokens) {
+                long[] ids = super.encode(text);
+                if (!addSpecialTokens) {
+                    return ids;
+                }
+                long[] result = new long[ids.length + 2];
+                result[0] = 1;
+                System.arraycopy(ids, 0, result, 1, ids.length);
+                result[result.length - 1] = getEosTokenId();
+                return result;
+            }
+        };
+        ChunkedEncoder chunked = new ChunkedEncoder(wrapping, 64, 4, ForkJoinPool.commonPool());
+        long[] all = wrapping.encode(text);
+        long eos = wrapping.getEosTokenId();
+
+        assertArrayEquals(all, chunked.encode(text));
+        assertArrayEquals(all, chunked.encode(new StringReader(text), TruncationStrategy.NONE, Integer.MAX_VALUE));
+
+        long[] head = chunked.encode(text, TruncationStrategy.KEEP_HEAD, 100);
+        assertEquals(100, head.length);
+        assertArrayEquals(Arrays.copyOfRange(all, 0, 99), Arrays.copyOfRange(head, 0, 99));
+        assertEquals(eos, head[99]);
+
+        long[] tail = chunked.encode(new StringReader(text), TruncationStrategy.KEEP_TAIL, 10);
+        assertEquals(1, tail[0]);
+        assertArrayEquals(Arrays.copyOfRange(all, all.length - 9, all.length), Arrays.copyOfRange(tail, 1, 10));
+    }
+
+    @Test
+    public void testReaderStopsOnceHeadIsFull() throws IOException {
+        int[] consumed = new int[1];
+        StringReader reader = new StringReader(text) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                consumed[0] += Math.max(0, read);
+                return read;
+            }
+        };
+        ChunkedEncoder inline = new ChunkedEncoder(tokenizer, 64, 4, Runnable::run);
+
+        long[] ids = inline.encode(reader, TruncationStrategy.KEEP_HEAD, 10);
+
+        assertArrayEquals(Arrays.copyOfRange(expected, 0, 10), ids);
+        assertTrue(consumed[0] < text.length() / 4);
+    }
+
+    @Test
+    public void testHardCutWithoutWhitespace() {
+        char[] chars = new char[300];
+        Arrays.fill(chars, 'a');
+        String word = new String(chars);
+
+        long[] ids = encoder.encode(word, TruncationStrategy.KEEP_HEAD, Integer.MAX_VALUE);
+
+        // SimpleTokenizer sees each chunk as a separate word
+        assertEquals(5, ids.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidChunkSize() {
+        new ChunkedEncoder(tokenizer, 1, 1, ForkJoinPool.commonPool());
+    }
+}